@@ -0,0 +1,227 @@
+package com.fabrica.p6f5.springapp.audit.archive;
+
+import com.fabrica.p6f5.springapp.audit.model.AuditLog;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only view of one segment file, memory-mapped as a whole.
+ * The sparse index is loaded on open; lookups binary search it and inflate only the
+ * blocks that can hold the requested entity. Safe for concurrent readers.
+ */
+public final class AuditSegment {
+    
+    private final Path path;
+    private final Object fileKey;
+    private final MappedByteBuffer buffer;
+    private final String[] entityTypes;
+    private final long[] entityIds;
+    private final int[] offsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+    private final int[] rows;
+    private final long rowCount;
+    
+    private AuditSegment(Path path, Object fileKey, MappedByteBuffer buffer, int blocks, long rowCount) {
+        this.path = path;
+        this.fileKey = fileKey;
+        this.buffer = buffer;
+        this.entityTypes = new String[blocks];
+        this.entityIds = new long[blocks];
+        this.offsets = new int[blocks];
+        this.compressedLengths = new int[blocks];
+        this.rawLengths = new int[blocks];
+        this.rows = new int[blocks];
+        this.rowCount = rowCount;
+    }
+    
+    /**
+     * Map a segment file and load its index.
+     */
+    public static AuditSegment open(Path path) throws IOException {
+        Object fileKey = fileKey(path);
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Audit segment too large to map: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int size = buffer.capacity();
+        if (size < AuditSegmentFormat.HEADER_BYTES + AuditSegmentFormat.FOOTER_BYTES
+                || buffer.getInt(0) != AuditSegmentFormat.MAGIC
+                || buffer.getInt(size - 4) != AuditSegmentFormat.MAGIC) {
+            throw new IOException("Not an audit segment: " + path);
+        }
+        if (buffer.getInt(4) != AuditSegmentFormat.VERSION || buffer.getInt(size - 8) != AuditSegmentFormat.VERSION) {
+            throw new IOException("Unsupported audit segment version: " + path);
+        }
+        int footer = size - AuditSegmentFormat.FOOTER_BYTES;
+        int indexOffset = (int) buffer.getLong(footer);
+        int blocks = buffer.getInt(footer + 8);
+        AuditSegment segment = new AuditSegment(path, fileKey, buffer, blocks, buffer.getLong(footer + 12));
+        
+        byte[] index = new byte[footer - indexOffset];
+        buffer.get(indexOffset, index);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(index));
+        for (int i = 0; i < blocks; i++) {
+            segment.entityTypes[i] = AuditSegmentFormat.readString(in);
+            segment.entityIds[i] = in.readLong();
+            AuditSegmentFormat.readTimestamp(in);
+            segment.offsets[i] = (int) in.readLong();
+            segment.compressedLengths[i] = in.readInt();
+            segment.rawLengths[i] = in.readInt();
+            segment.rows[i] = in.readInt();
+        }
+        return segment;
+    }
+    
+    public Path path() {
+        return path;
+    }
+    
+    /**
+     * Identity of the file this segment was mapped from; changes when the file is replaced.
+     */
+    public Object fileKey() {
+        return fileKey;
+    }
+    
+    public static Object fileKey(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Object key = attributes.fileKey();
+        return key != null ? key : attributes.lastModifiedTime();
+    }
+    
+    public long rowCount() {
+        return rowCount;
+    }
+    
+    /**
+     * Rows of an entity, in (created_at, id) order.
+     */
+    public List<AuditLog> find(String entityType, long entityId) throws IOException {
+        List<AuditLog> found = new ArrayList<>();
+        for (int i = firstCandidateBlock(entityType, entityId); i < rows.length; i++) {
+            if (compare(i, entityType, entityId) > 0) {
+                break;
+            }
+            for (AuditLog log : readBlock(i)) {
+                if (log.getEntityId() == entityId && log.getEntityType().equals(entityType)) {
+                    found.add(log);
+                }
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * All rows in key order.
+     */
+    public List<AuditLog> readAll() throws IOException {
+        List<AuditLog> all = new ArrayList<>((int) rowCount);
+        scan(all::add);
+        return all;
+    }
+    
+    /**
+     * Read every row back and check that the rows are in key order, which lookups rely on,
+     * and that their number matches the footer.
+     * 
+     * @return the sum of the row ids, to compare with the archived source
+     */
+    public long verify() throws IOException {
+        long[] count = {0};
+        long[] idSum = {0};
+        AuditLog[] previous = {null};
+        scan(log -> {
+            if (previous[0] != null && AuditSegmentFormat.compareKeys(previous[0].getEntityType(),
+                    previous[0].getEntityId(), log.getEntityType(), log.getEntityId()) > 0) {
+                throw new IllegalStateException("Audit row " + log.getId() + " out of key order in " + path);
+            }
+            previous[0] = log;
+            count[0]++;
+            idSum[0] = Math.addExact(idSum[0], log.getId());
+        });
+        if (count[0] != rowCount) {
+            throw new IOException("Read " + count[0] + " of " + rowCount + " rows from " + path);
+        }
+        return idSum[0];
+    }
+    
+    /**
+     * Pass all rows in key order to the consumer, inflating one block at a time.
+     */
+    public void scan(Consumer<AuditLog> consumer) throws IOException {
+        for (int i = 0; i < rows.length; i++) {
+            readBlock(i).forEach(consumer);
+        }
+    }
+    
+    /**
+     * Last block starting before the entity, which may hold its first rows, or 0.
+     */
+    private int firstCandidateBlock(String entityType, long entityId) {
+        int low = 0;
+        int high = rows.length - 1;
+        int candidate = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, entityType, entityId) < 0) {
+                candidate = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return candidate;
+    }
+    
+    private int compare(int block, String entityType, long entityId) {
+        return AuditSegmentFormat.compareKeys(entityTypes[block], entityIds[block], entityType, entityId);
+    }
+    
+    private List<AuditLog> readBlock(int block) throws IOException {
+        ByteBuffer compressed = buffer.slice(offsets[block], compressedLengths[block]);
+        byte[] raw = new byte[rawLengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int read = inflater.inflate(raw, length, raw.length - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != raw.length) {
+                throw new IOException("Truncated block " + block + " in " + path);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block " + block + " in " + path, e);
+        } finally {
+            inflater.end();
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        List<AuditLog> logs = new ArrayList<>(rows[block]);
+        for (int i = 0; i < rows[block]; i++) {
+            logs.add(AuditSegmentFormat.readRow(in));
+        }
+        return logs;
+    }
+}
@@ -0,0 +1,122 @@
+package com.fabrica.p6f5.springapp.audit.archive;
+
+import com.fabrica.p6f5.springapp.audit.model.AuditLog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Layout of audit segment files.
+ * <pre>
+ * header   int MAGIC, int VERSION
+ * blocks   deflate-compressed rows, sorted by (entity_type, entity_id, created_at, id),
+ *          entity_type in UTF-8 byte order (PostgreSQL COLLATE "C")
+ * index    per block: first key (entity_type, entity_id, created_at), offset,
+ *          compressed length, raw length, row count
+ * footer   long index offset, int block count, long row count, int VERSION, int MAGIC
+ * </pre>
+ */
+final class AuditSegmentFormat {
+    
+    static final int MAGIC = 0x41554453;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int FOOTER_BYTES = 28;
+    
+    private AuditSegmentFormat() {
+        // Utility class - prevent instantiation
+    }
+    
+    /**
+     * Order of entity keys in segments: entity_type by UTF-8 bytes, as PostgreSQL sorts
+     * with COLLATE "C", then entity_id. String.compareTo differs for some characters.
+     */
+    static int compareKeys(String entityType, long entityId, String otherType, long otherId) {
+        int byType = entityType.equals(otherType) ? 0 : Arrays.compareUnsigned(
+            entityType.getBytes(StandardCharsets.UTF_8), otherType.getBytes(StandardCharsets.UTF_8));
+        return byType != 0 ? byType : Long.compare(entityId, otherId);
+    }
+    
+    static void writeRow(DataOutput out, AuditLog log) throws IOException {
+        out.writeLong(log.getId());
+        writeString(out, log.getEntityType());
+        out.writeLong(log.getEntityId());
+        writeString(out, log.getAction().name());
+        writeNullableLong(out, log.getChangedBy());
+        writeString(out, log.getEncoding().name());
+        writeNullableLong(out, log.getBaseAuditLogId());
+        writeString(out, log.getOldData());
+        writeString(out, log.getNewData());
+        writeString(out, log.getOldPatch());
+        writeString(out, log.getNewPatch());
+        writeString(out, log.getChangeSummary());
+        writeString(out, log.getIpAddress());
+        writeString(out, log.getUserAgent());
+        writeTimestamp(out, log.getCreatedAt());
+    }
+    
+    static AuditLog readRow(DataInput in) throws IOException {
+        AuditLog log = new AuditLog();
+        log.setId(in.readLong());
+        log.setEntityType(readString(in));
+        log.setEntityId(in.readLong());
+        log.setAction(AuditLog.AuditAction.valueOf(readString(in)));
+        log.setChangedBy(readNullableLong(in));
+        log.setEncoding(AuditLog.Encoding.valueOf(readString(in)));
+        log.setBaseAuditLogId(readNullableLong(in));
+        log.setOldData(readString(in));
+        log.setNewData(readString(in));
+        log.setOldPatch(readString(in));
+        log.setNewPatch(readString(in));
+        log.setChangeSummary(readString(in));
+        log.setIpAddress(readString(in));
+        log.setUserAgent(readString(in));
+        log.setCreatedAt(readTimestamp(in));
+        return log;
+    }
+    
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    static void writeTimestamp(DataOutput out, LocalDateTime value) throws IOException {
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value.getNano());
+    }
+    
+    static LocalDateTime readTimestamp(DataInput in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+    
+    private static void writeNullableLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+    
+    private static Long readNullableLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+}
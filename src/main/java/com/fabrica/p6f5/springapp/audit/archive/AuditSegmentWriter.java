@@ -0,0 +1,133 @@
+package com.fabrica.p6f5.springapp.audit.archive;
+
+import com.fabrica.p6f5.springapp.audit.model.AuditLog;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes one segment file. Rows must be appended in key order, else append fails, as
+ * lookups would miss them; {@link #close()} writes the index and footer and forces the
+ * file to disk.
+ */
+public final class AuditSegmentWriter implements Closeable {
+    
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final int blockRows;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(64 * 1024);
+    private final DataOutputStream block = new DataOutputStream(blockBytes);
+    private final List<BlockEntry> index = new ArrayList<>();
+    private byte[] compressed = new byte[64 * 1024];
+    private long position;
+    private long rowCount;
+    private int pendingRows;
+    private AuditLog firstPending;
+    private AuditLog last;
+    
+    private record BlockEntry(String entityType, long entityId, LocalDateTime createdAt,
+                              long offset, int compressedLength, int rawLength, int rows) {
+    }
+    
+    public AuditSegmentWriter(Path path, int blockRows) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+        this.blockRows = Math.max(1, blockRows);
+        out.writeInt(AuditSegmentFormat.MAGIC);
+        out.writeInt(AuditSegmentFormat.VERSION);
+        position = AuditSegmentFormat.HEADER_BYTES;
+    }
+    
+    public void append(AuditLog log) throws IOException {
+        if (last != null && AuditSegmentFormat.compareKeys(
+                last.getEntityType(), last.getEntityId(), log.getEntityType(), log.getEntityId()) > 0) {
+            throw new IllegalArgumentException("Audit row " + log.getId() + " (" + log.getEntityType() + " "
+                + log.getEntityId() + ") is out of key order after row " + last.getId());
+        }
+        last = log;
+        if (firstPending == null) {
+            firstPending = log;
+        }
+        AuditSegmentFormat.writeRow(block, log);
+        pendingRows++;
+        rowCount++;
+        if (pendingRows >= blockRows) {
+            flushBlock();
+        }
+    }
+    
+    /**
+     * Bytes written so far, excluding the pending block.
+     */
+    public long size() {
+        return position;
+    }
+    
+    public long rowCount() {
+        return rowCount;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+            long indexOffset = position;
+            for (BlockEntry entry : index) {
+                AuditSegmentFormat.writeString(out, entry.entityType());
+                out.writeLong(entry.entityId());
+                AuditSegmentFormat.writeTimestamp(out, entry.createdAt());
+                out.writeLong(entry.offset());
+                out.writeInt(entry.compressedLength());
+                out.writeInt(entry.rawLength());
+                out.writeInt(entry.rows());
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(index.size());
+            out.writeLong(rowCount);
+            out.writeInt(AuditSegmentFormat.VERSION);
+            out.writeInt(AuditSegmentFormat.MAGIC);
+            out.flush();
+            channel.force(true);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+    
+    private void flushBlock() throws IOException {
+        if (pendingRows == 0) {
+            return;
+        }
+        byte[] raw = blockBytes.toByteArray();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        out.write(compressed, 0, length);
+        index.add(new BlockEntry(firstPending.getEntityType(), firstPending.getEntityId(), firstPending.getCreatedAt(),
+            position, length, raw.length, pendingRows));
+        position += length;
+        blockBytes.reset();
+        pendingRows = 0;
+        firstPending = null;
+    }
+}
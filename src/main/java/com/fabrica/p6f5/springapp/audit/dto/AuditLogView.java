@@ -0,0 +1,31 @@
+package com.fabrica.p6f5.springapp.audit.dto;
+
+import com.fabrica.p6f5.springapp.audit.model.AuditLog;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for an audit log entry with full old and new data, whatever its storage encoding.
+ * Incomplete entries are deltas whose chain could not be resolved; they carry no data.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditLogView {
+    
+    private Long id;
+    private String entityType;
+    private Long entityId;
+    private AuditLog.AuditAction action;
+    private Long changedBy;
+    private String changeSummary;
+    private LocalDateTime createdAt;
+    private AuditLog.Encoding encoding;
+    private boolean complete;
+    private JsonNode oldData;
+    private JsonNode newData;
+}
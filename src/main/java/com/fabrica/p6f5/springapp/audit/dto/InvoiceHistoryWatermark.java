@@ -0,0 +1,9 @@
+package com.fabrica.p6f5.springapp.audit.dto;
+
+/**
+ * Watermark of the append-only history of an invoice.
+ */
+public record InvoiceHistoryWatermark(
+        Long versionCount,
+        Long lastHistoryId) {
+}
@@ -0,0 +1,17 @@
+package com.fabrica.p6f5.springapp.audit.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Audit event captured in a transaction, serialized when the transaction commits.
+ */
+public record AuditEvent(
+        String entityType,
+        Long entityId,
+        AuditLog.AuditAction action,
+        Long changedBy,
+        Object oldData,
+        Object newData,
+        String changeSummary,
+        LocalDateTime createdAt) {
+}
@@ -1,5 +1,6 @@
 package com.fabrica.p6f5.springapp.audit.model;
 
+import com.fabrica.p6f5.springapp.util.Constants;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -12,6 +13,8 @@ import java.time.LocalDateTime;
 /**
  * AuditLog entity following Single Responsibility Principle.
  * Tracks all changes across the system for audit purposes.
+ * DELTA rows hold JSON patches instead of old and new data; read them through
+ * AuditService.getAuditLogViews. Rows live in monthly partitions of created_at.
  */
 @Entity
 @Table(name = "audit_logs")
@@ -21,7 +24,8 @@ import java.time.LocalDateTime;
 public class AuditLog {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_log_id_seq")
+    @SequenceGenerator(name = "audit_log_id_seq", sequenceName = "audit_log_id_seq", allocationSize = Constants.ID_ALLOCATION_SIZE)
     @Column(name = "audit_log_id")
     private Long id;
     
@@ -46,6 +50,21 @@ public class AuditLog {
     @Column(name = "new_data", columnDefinition = "jsonb")
     private String newData;
     
+    @Enumerated(EnumType.STRING)
+    @Column(name = "encoding", nullable = false, length = 20)
+    private Encoding encoding = Encoding.FULL;
+    
+    @Column(name = "base_audit_log_id")
+    private Long baseAuditLogId;
+    
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "old_patch", columnDefinition = "jsonb")
+    private String oldPatch;
+    
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "new_patch", columnDefinition = "jsonb")
+    private String newPatch;
+    
     @Column(name = "change_summary", columnDefinition = "TEXT")
     private String changeSummary;
     
@@ -63,6 +82,14 @@ public class AuditLog {
         createdAt = LocalDateTime.now();
     }
     
+    /**
+     * Storage encoding of old and new data
+     */
+    public enum Encoding {
+        FULL,
+        DELTA
+    }
+    
     /**
      * Audit action enum
      */
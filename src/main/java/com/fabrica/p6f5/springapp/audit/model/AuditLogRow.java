@@ -0,0 +1,22 @@
+package com.fabrica.p6f5.springapp.audit.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Encoded audit_logs row with its assigned id. JSON columns are held as text.
+ */
+public record AuditLogRow(
+        Long id,
+        String entityType,
+        Long entityId,
+        AuditLog.AuditAction action,
+        Long changedBy,
+        AuditLog.Encoding encoding,
+        Long baseAuditLogId,
+        String oldData,
+        String newData,
+        String oldPatch,
+        String newPatch,
+        String changeSummary,
+        LocalDateTime createdAt) {
+}
@@ -0,0 +1,19 @@
+package com.fabrica.p6f5.springapp.audit.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.LocalDateTime;
+
+/**
+ * Serialized audit event, ready to be encoded for audit_logs.
+ */
+public record AuditRecord(
+        String entityType,
+        Long entityId,
+        AuditLog.AuditAction action,
+        Long changedBy,
+        JsonNode oldData,
+        JsonNode newData,
+        String changeSummary,
+        LocalDateTime createdAt) {
+}
@@ -1,5 +1,6 @@
 package com.fabrica.p6f5.springapp.audit.model;
 
+import com.fabrica.p6f5.springapp.util.Constants;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -12,6 +13,7 @@ import java.time.LocalDateTime;
 /**
  * InvoiceHistory entity following Single Responsibility Principle.
  * Maintains version history for invoices to enable revert functionality.
+ * Rows live in monthly partitions of created_at.
  */
 @Entity
 @Table(name = "invoice_history")
@@ -21,7 +23,8 @@ import java.time.LocalDateTime;
 public class InvoiceHistory {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "invoice_history_id_seq")
+    @SequenceGenerator(name = "invoice_history_id_seq", sequenceName = "invoice_history_id_seq", allocationSize = Constants.ID_ALLOCATION_SIZE)
     @Column(name = "history_id")
     private Long id;
     
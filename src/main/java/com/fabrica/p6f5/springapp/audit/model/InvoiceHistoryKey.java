@@ -0,0 +1,42 @@
+package com.fabrica.p6f5.springapp.audit.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * InvoiceHistoryKey entity following Single Responsibility Principle.
+ * Records each invoice version written to the partitioned invoice_history table; its
+ * primary key keeps a version from being recorded twice. Rows are only ever inserted.
+ */
+@Entity
+@Table(name = "invoice_history_keys")
+@IdClass(InvoiceHistoryKey.VersionKey.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceHistoryKey {
+    
+    @Id
+    @Column(name = "invoice_id", nullable = false)
+    private Long invoiceId;
+    
+    @Id
+    @Column(name = "version", nullable = false)
+    private Integer version;
+    
+    /**
+     * Composite key of an invoice version
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class VersionKey implements Serializable {
+        
+        private Long invoiceId;
+        private Integer version;
+    }
+}
@@ -0,0 +1,100 @@
+package com.fabrica.p6f5.springapp.audit.repository;
+
+import com.fabrica.p6f5.springapp.audit.model.AuditLogRow;
+import com.fabrica.p6f5.springapp.util.Constants;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Audit Log Batch Repository.
+ * Inserts audit rows with multi-row INSERT statements through JDBC, joining the
+ * current transaction when there is one.
+ */
+@Repository
+public class AuditLogBatchRepository {
+    
+    private static final int ROWS_PER_STATEMENT = 100;
+    private static final String INSERT_PREFIX = "INSERT INTO audit_logs " +
+        "(audit_log_id, entity_type, entity_id, action, changed_by, encoding, base_audit_log_id, " +
+        "old_data, new_data, old_patch, new_patch, change_summary, created_at) VALUES ";
+    private static final String ROW_VALUES = "(?, ?, ?, ?, ?, ?, ?, " +
+        "CAST(? AS jsonb), CAST(? AS jsonb), CAST(? AS jsonb), CAST(? AS jsonb), ?, ?)";
+    private static final int COLUMNS = 13;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public AuditLogBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Reserve ids for a number of rows from audit_log_id_seq, pooled like Hibernate does:
+     * each nextval covers the next ID_ALLOCATION_SIZE ids.
+     * 
+     * @param count the number of rows
+     * @return supplier of the reserved ids in ascending order
+     */
+    public LongSupplier allocateIds(int count) {
+        int blocks = (count + Constants.ID_ALLOCATION_SIZE - 1) / Constants.ID_ALLOCATION_SIZE;
+        List<Long> starts = jdbcTemplate.queryForList(
+            "SELECT nextval('audit_log_id_seq') FROM generate_series(1, ?)", Long.class, blocks);
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = starts.get(i / Constants.ID_ALLOCATION_SIZE) + i % Constants.ID_ALLOCATION_SIZE;
+        }
+        int[] next = {0};
+        return () -> ids[next[0]++];
+    }
+    
+    /**
+     * Insert rows, up to 100 rows per statement.
+     * 
+     * @param rows the rows
+     * @return number of inserted rows
+     */
+    public int insertAll(List<AuditLogRow> rows) {
+        int inserted = 0;
+        for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+            List<AuditLogRow> chunk = rows.subList(from, Math.min(from + ROWS_PER_STATEMENT, rows.size()));
+            inserted += jdbcTemplate.update(insertSql(chunk.size()), parameters(chunk));
+        }
+        return inserted;
+    }
+    
+    private String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * (ROW_VALUES.length() + 2));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_VALUES);
+        }
+        return sql.toString();
+    }
+    
+    private Object[] parameters(List<AuditLogRow> rows) {
+        List<Object> parameters = new ArrayList<>(rows.size() * COLUMNS);
+        for (AuditLogRow row : rows) {
+            parameters.add(row.id());
+            parameters.add(row.entityType());
+            parameters.add(row.entityId());
+            parameters.add(row.action().name());
+            parameters.add(row.changedBy());
+            parameters.add(row.encoding().name());
+            parameters.add(row.baseAuditLogId());
+            parameters.add(row.oldData());
+            parameters.add(row.newData());
+            parameters.add(row.oldPatch());
+            parameters.add(row.newPatch());
+            parameters.add(row.changeSummary());
+            parameters.add(Timestamp.valueOf(row.createdAt()));
+        }
+        return parameters.toArray();
+    }
+}
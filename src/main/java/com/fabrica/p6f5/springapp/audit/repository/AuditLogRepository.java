@@ -2,6 +2,8 @@ package com.fabrica.p6f5.springapp.audit.repository;
 
 import com.fabrica.p6f5.springapp.audit.model.AuditLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -9,7 +11,8 @@ import java.util.List;
 
 /**
  * Audit Log Repository interface.
- * Defines data access operations for audit logs.
+ * Defines data access operations for audit logs. audit_logs is partitioned by month of
+ * created_at; queries bounded on created_at only touch the matching partitions.
  */
 @Repository
 public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
@@ -41,11 +44,33 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
     
     /**
      * Find audit logs within a date range.
+     * Only the monthly partitions overlapping the range are scanned.
      * 
      * @param startDate the start date
      * @param endDate the end date
      * @return list of audit logs within the date range
      */
     List<AuditLog> findByCreatedAtBetweenOrderByCreatedAtDesc(LocalDateTime startDate, LocalDateTime endDate);
+    
+    /**
+     * Find an audit log and the rows its delta chain is based on.
+     * Chains never cross a month, so the anchor and every step are bounded by the month
+     * of the audit log and only its partition is scanned.
+     * 
+     * @param auditLogId the audit log ID
+     * @param monthStart start of the month the audit log was created in
+     * @param monthEnd start of the following month
+     * @return the audit log followed by its bases, down to the checkpoint
+     */
+    @Query(value = "WITH RECURSIVE chain AS (" +
+                   "  SELECT a.* FROM audit_logs a WHERE a.audit_log_id = :auditLogId " +
+                   "  AND a.created_at >= :monthStart AND a.created_at < :monthEnd " +
+                   "  UNION ALL " +
+                   "  SELECT b.* FROM audit_logs b JOIN chain c ON b.audit_log_id = c.base_audit_log_id " +
+                   "  AND b.created_at >= :monthStart AND b.created_at < :monthEnd" +
+                   ") SELECT * FROM chain",
+           nativeQuery = true)
+    List<AuditLog> findWithDeltaChain(@Param("auditLogId") Long auditLogId,
+                                      @Param("monthStart") LocalDateTime monthStart,
+                                      @Param("monthEnd") LocalDateTime monthEnd);
 }
-
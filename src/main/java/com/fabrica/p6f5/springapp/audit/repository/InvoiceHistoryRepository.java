@@ -1,7 +1,10 @@
 package com.fabrica.p6f5.springapp.audit.repository;
 
+import com.fabrica.p6f5.springapp.audit.dto.InvoiceHistoryWatermark;
 import com.fabrica.p6f5.springapp.audit.model.InvoiceHistory;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -46,5 +49,25 @@ public interface InvoiceHistoryRepository extends JpaRepository<InvoiceHistory,
      * @return count of versions for the invoice
      */
     long countByInvoiceId(Long invoiceId);
+    
+    /**
+     * Check if a specific version of an invoice exists.
+     * 
+     * @param invoiceId the invoice ID
+     * @param version the version number
+     * @return true if exists, false otherwise
+     */
+    boolean existsByInvoiceIdAndVersion(Long invoiceId, Integer version);
+    
+    /**
+     * Find the watermark of the history of an invoice.
+     * History rows are append-only, so the row count and the last ID identify its state.
+     * 
+     * @param invoiceId the invoice ID
+     * @return the version count and last history ID
+     */
+    @Query("SELECT new com.fabrica.p6f5.springapp.audit.dto.InvoiceHistoryWatermark(COUNT(h), MAX(h.id)) " +
+           "FROM InvoiceHistory h WHERE h.invoiceId = :invoiceId")
+    InvoiceHistoryWatermark findWatermarkByInvoiceId(@Param("invoiceId") Long invoiceId);
 }
 
@@ -0,0 +1,169 @@
+package com.fabrica.p6f5.springapp.audit.service;
+
+import com.fabrica.p6f5.springapp.audit.model.AuditLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Moves closed audit_logs partitions into the segment archive.
+ * <p>
+ * A partition is archived once its month ended more than {@code audit.archive.after-months}
+ * ago; partitions already detached by AuditPartitionManager are archived too. Each partition
+ * is handled in one transaction: its rows are streamed in key order into segment files, the
+ * segments are read back and checked against the partition's row count and id sum, and only
+ * then is the partition dropped. With {@code audit.archive.drop-partitions=false} it is only
+ * detached and kept until an operator drops it, for instance once the archive directory has been
+ * backed up; archived detached partitions are then skipped. A failed run leaves the partition in
+ * place and the next run rewrites its segments. Segments of months older than
+ * {@code audit.archive.retention-years} are deleted.
+ * <p>
+ * Rows are sorted with entity_type COLLATE "C", the byte order segment lookups compare with.
+ */
+@Component
+public class AuditArchiver {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AuditArchiver.class);
+    private static final long ADVISORY_LOCK_KEY = 0x61756469745f6172L;
+    private static final Pattern PARTITION_NAME = Pattern.compile("audit_logs_y(\\d{4})m(\\d{2})");
+    
+    /**
+     * Partitions archived and segments deleted by one run
+     */
+    public record ArchiveResult(List<String> archived, long rows, List<String> deletedSegments) {
+    }
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditSegmentArchive auditSegmentArchive;
+    private final boolean enabled;
+    private final boolean dropPartitions;
+    private final int afterMonths;
+    private final int retentionYears;
+    
+    public AuditArchiver(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            AuditSegmentArchive auditSegmentArchive,
+            @Value("${audit.archive.enabled:false}") boolean enabled,
+            @Value("${audit.archive.drop-partitions:true}") boolean dropPartitions,
+            @Value("${audit.archive.after-months:3}") int afterMonths,
+            @Value("${audit.archive.retention-years:7}") int retentionYears) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(1000);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.auditSegmentArchive = auditSegmentArchive;
+        this.enabled = enabled;
+        this.dropPartitions = dropPartitions;
+        this.afterMonths = Math.max(1, afterMonths);
+        this.retentionYears = retentionYears;
+    }
+    
+    /**
+     * Scheduled archive run. Does nothing unless audit.archive.enabled is set.
+     */
+    @Scheduled(cron = "${audit.archive.cron:0 0 3 * * *}")
+    public void scheduledArchive() {
+        if (enabled) {
+            archive(YearMonth.now());
+        }
+    }
+    
+    /**
+     * Archive partitions closed as of the given month and delete expired segments.
+     */
+    public ArchiveResult archive(YearMonth currentMonth) {
+        YearMonth oldestHot = currentMonth.minusMonths(afterMonths);
+        List<String> archived = new ArrayList<>();
+        long rows = 0;
+        for (Map<String, Object> partition : jdbcTemplate.queryForList(
+                "SELECT relname, relispartition FROM pg_class WHERE relkind = 'r' AND relname LIKE 'audit\\_logs\\_y%' " +
+                "ORDER BY relname")) {
+            String name = (String) partition.get("relname");
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            boolean attached = Boolean.TRUE.equals(partition.get("relispartition"));
+            if (!matcher.matches()
+                    || !YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))).isBefore(oldestHot)
+                    || !dropPartitions && !attached && auditSegmentArchive.hasSegments(name)) {
+                continue;
+            }
+            Long written = transactionTemplate.execute(status -> archivePartition(name, attached));
+            if (written != null) {
+                archived.add(name);
+                rows += written;
+            }
+        }
+        List<String> deleted = retentionYears > 0
+            ? auditSegmentArchive.deleteBefore(currentMonth.minusYears(retentionYears))
+            : List.of();
+        if (!archived.isEmpty() || !deleted.isEmpty()) {
+            logger.info("Audit archive: archived {} ({} rows), deleted segments {}", archived, rows, deleted);
+        }
+        return new ArchiveResult(archived, rows, deleted);
+    }
+    
+    /**
+     * @return rows archived, or null when another node holds the archive lock
+     */
+    private Long archivePartition(String partition, boolean attached) {
+        Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, ADVISORY_LOCK_KEY);
+        if (!Boolean.TRUE.equals(locked)) {
+            return null;
+        }
+        Map<String, Object> expected = jdbcTemplate.queryForMap(String.format(
+            "SELECT COUNT(*) AS row_count, CAST(COALESCE(SUM(audit_log_id), 0) AS BIGINT) AS id_sum FROM \"%s\"",
+            partition));
+        long expectedRows = ((Number) expected.get("row_count")).longValue();
+        long written = auditSegmentArchive.write(partition, sink -> streamingJdbcTemplate.query(
+            String.format("SELECT * FROM \"%s\" ORDER BY entity_type COLLATE \"C\", entity_id, created_at, audit_log_id",
+                partition),
+            rs -> sink.accept(mapRow(rs))));
+        if (written != expectedRows) {
+            throw new IllegalStateException("Archived " + written + " of " + expectedRows + " rows of " + partition);
+        }
+        auditSegmentArchive.verify(partition, expectedRows, ((Number) expected.get("id_sum")).longValue());
+        if (attached) {
+            jdbcTemplate.execute(String.format("ALTER TABLE audit_logs DETACH PARTITION \"%s\"", partition));
+        }
+        if (dropPartitions) {
+            jdbcTemplate.execute(String.format("DROP TABLE \"%s\"", partition));
+        }
+        return written;
+    }
+    
+    private AuditLog mapRow(ResultSet rs) throws SQLException {
+        AuditLog log = new AuditLog();
+        log.setId(rs.getLong("audit_log_id"));
+        log.setEntityType(rs.getString("entity_type"));
+        log.setEntityId(rs.getLong("entity_id"));
+        log.setAction(AuditLog.AuditAction.valueOf(rs.getString("action")));
+        log.setChangedBy(rs.getObject("changed_by", Long.class));
+        log.setEncoding(AuditLog.Encoding.valueOf(rs.getString("encoding")));
+        log.setBaseAuditLogId(rs.getObject("base_audit_log_id", Long.class));
+        log.setOldData(rs.getString("old_data"));
+        log.setNewData(rs.getString("new_data"));
+        log.setOldPatch(rs.getString("old_patch"));
+        log.setNewPatch(rs.getString("new_patch"));
+        log.setChangeSummary(rs.getString("change_summary"));
+        log.setIpAddress(rs.getString("ip_address"));
+        log.setUserAgent(rs.getString("user_agent"));
+        log.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        return log;
+    }
+}
@@ -0,0 +1,211 @@
+package com.fabrica.p6f5.springapp.audit.service;
+
+import com.fabrica.p6f5.springapp.audit.dto.AuditLogView;
+import com.fabrica.p6f5.springapp.audit.model.AuditLog;
+import com.fabrica.p6f5.springapp.audit.model.AuditLogRow;
+import com.fabrica.p6f5.springapp.audit.model.AuditRecord;
+import com.fabrica.p6f5.springapp.util.JsonPatchUtils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Encodes audit records as JSON Patch deltas against an earlier row of the same entity.
+ * <p>
+ * The last written row of each entity (its chain head) is kept in a bounded cache.
+ * A record is written as a FULL checkpoint when its entity has no cached head, after
+ * {@code audit.delta.checkpoint-interval} deltas, when the month changes, or when it
+ * has no new data; otherwise as a DELTA whose base is the head. Chains thus stay within
+ * one monthly partition, and expiring a partition never orphans a delta. Any committed row of
+ * the entity is a valid base, so heads only have to be old, never current: concurrent
+ * writers and other nodes just produce shorter chains. Heads are only cached once the
+ * rows holding them are durable, see {@link EncodedBatch#commit()}.
+ */
+@Component
+public class AuditDeltaCodec {
+    
+    private final ObjectMapper objectMapper;
+    private final int checkpointInterval;
+    private final Cache<String, ChainHead> heads;
+    
+    public AuditDeltaCodec(
+            ObjectMapper objectMapper,
+            @Value("${audit.delta.checkpoint-interval:20}") int checkpointInterval,
+            @Value("${audit.delta.cache-size:10000}") long cacheSize) {
+        this.objectMapper = objectMapper;
+        this.checkpointInterval = checkpointInterval;
+        this.heads = Caffeine.newBuilder()
+            .maximumSize(cacheSize)
+            .build();
+    }
+    
+    /**
+     * Encode records in order, taking row ids from the supplier.
+     */
+    public EncodedBatch encode(List<AuditRecord> records, LongSupplier ids) {
+        Map<String, ChainHead> staged = new LinkedHashMap<>();
+        List<AuditLogRow> rows = new ArrayList<>(records.size());
+        for (AuditRecord record : records) {
+            long id = ids.getAsLong();
+            String key = key(record.entityType(), record.entityId());
+            ChainHead head = staged.containsKey(key) ? staged.get(key) : heads.getIfPresent(key);
+            YearMonth month = YearMonth.from(record.createdAt());
+            if (head == null || record.newData() == null || head.deltas() >= checkpointInterval
+                    || !head.month().equals(month)) {
+                rows.add(fullRow(id, record));
+                staged.put(key, record.newData() != null ? new ChainHead(id, record.newData(), month, 0) : null);
+            } else {
+                rows.add(deltaRow(id, record, head));
+                staged.put(key, new ChainHead(id, record.newData(), month, head.deltas() + 1));
+            }
+        }
+        return new EncodedBatch(rows, staged);
+    }
+    
+    /**
+     * Rebuild full old and new data of rows of one entity. Rows whose chain reaches
+     * a base outside the given rows come back incomplete, without data.
+     */
+    public List<AuditLogView> decode(List<AuditLog> logs) {
+        Map<Long, AuditLog> byId = new HashMap<>();
+        for (AuditLog log : logs) {
+            byId.put(log.getId(), log);
+        }
+        Map<Long, Resolved> resolved = new HashMap<>();
+        List<AuditLogView> views = new ArrayList<>(logs.size());
+        for (AuditLog log : logs) {
+            Resolved data = resolve(log, byId, resolved);
+            views.add(new AuditLogView(
+                log.getId(),
+                log.getEntityType(),
+                log.getEntityId(),
+                log.getAction(),
+                log.getChangedBy(),
+                log.getChangeSummary(),
+                log.getCreatedAt(),
+                log.getEncoding(),
+                data.complete(),
+                data.oldData(),
+                data.newData()));
+        }
+        return views;
+    }
+    
+    private Resolved resolve(AuditLog log, Map<Long, AuditLog> byId, Map<Long, Resolved> resolved) {
+        Resolved known = resolved.get(log.getId());
+        if (known != null) {
+            return known;
+        }
+        Resolved result;
+        if (log.getEncoding() != AuditLog.Encoding.DELTA) {
+            result = new Resolved(true, parse(log.getOldData()), parse(log.getNewData()));
+        } else {
+            AuditLog base = byId.get(log.getBaseAuditLogId());
+            Resolved baseData = base != null ? resolve(base, byId, resolved) : Resolved.INCOMPLETE;
+            if (!baseData.complete() || baseData.newData() == null) {
+                result = Resolved.INCOMPLETE;
+            } else {
+                JsonNode oldData = log.getOldPatch() != null
+                    ? JsonPatchUtils.apply(baseData.newData(), parse(log.getOldPatch()))
+                    : null;
+                JsonNode newData = JsonPatchUtils.apply(
+                    oldData != null ? oldData : baseData.newData(), parse(log.getNewPatch()));
+                result = new Resolved(true, oldData, newData);
+            }
+        }
+        resolved.put(log.getId(), result);
+        return result;
+    }
+    
+    private AuditLogRow fullRow(long id, AuditRecord record) {
+        return new AuditLogRow(id, record.entityType(), record.entityId(), record.action(), record.changedBy(),
+            AuditLog.Encoding.FULL, null, text(record.oldData()), text(record.newData()), null, null,
+            record.changeSummary(), record.createdAt());
+    }
+    
+    private AuditLogRow deltaRow(long id, AuditRecord record, ChainHead head) {
+        JsonNode oldPatch = record.oldData() != null ? JsonPatchUtils.diff(head.newData(), record.oldData()) : null;
+        JsonNode newPatch = JsonPatchUtils.diff(
+            record.oldData() != null ? record.oldData() : head.newData(), record.newData());
+        return new AuditLogRow(id, record.entityType(), record.entityId(), record.action(), record.changedBy(),
+            AuditLog.Encoding.DELTA, head.auditLogId(), null, null, text(oldPatch), text(newPatch),
+            record.changeSummary(), record.createdAt());
+    }
+    
+    private String text(JsonNode node) {
+        if (node == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(node);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to write audit data", e);
+        }
+    }
+    
+    private JsonNode parse(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read audit data", e);
+        }
+    }
+    
+    private static String key(String entityType, Long entityId) {
+        return entityType + ":" + entityId;
+    }
+    
+    private record ChainHead(long auditLogId, JsonNode newData, YearMonth month, int deltas) {
+    }
+    
+    private record Resolved(boolean complete, JsonNode oldData, JsonNode newData) {
+        
+        private static final Resolved INCOMPLETE = new Resolved(false, null, null);
+    }
+    
+    /**
+     * Encoded rows and the chain heads they create.
+     */
+    public final class EncodedBatch {
+        
+        private final List<AuditLogRow> rows;
+        private final Map<String, ChainHead> staged;
+        
+        private EncodedBatch(List<AuditLogRow> rows, Map<String, ChainHead> staged) {
+            this.rows = rows;
+            this.staged = staged;
+        }
+        
+        public List<AuditLogRow> rows() {
+            return rows;
+        }
+        
+        /**
+         * Make the new heads available to later batches; call once the rows are durable.
+         */
+        public void commit() {
+            staged.forEach((key, head) -> {
+                if (head == null) {
+                    heads.invalidate(key);
+                } else {
+                    heads.put(key, head);
+                }
+            });
+        }
+    }
+}
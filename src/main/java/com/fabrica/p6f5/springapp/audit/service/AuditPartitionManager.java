@@ -0,0 +1,153 @@
+package com.fabrica.p6f5.springapp.audit.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the monthly partitions of audit_logs and invoice_history.
+ * <p>
+ * Partitions are named {@code <table>_yYYYYmMM} and cover one calendar month of created_at.
+ * Each run creates the partitions of the current month and {@code audit.partitions.months-ahead}
+ * months after it, and removes partitions that ended more than the table's retention ago:
+ * DETACH keeps them as plain tables for archiving, DROP deletes them. A retention of 0 keeps
+ * every partition. Runs at startup and on {@code audit.partitions.cron}; nodes serialize on an
+ * advisory lock, so concurrent runs are harmless.
+ */
+@Component
+public class AuditPartitionManager {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AuditPartitionManager.class);
+    private static final long ADVISORY_LOCK_KEY = 0x61756469745f7061L;
+    
+    /**
+     * What happens to expired partitions
+     */
+    public enum ExpiredAction {
+        DETACH,
+        DROP
+    }
+    
+    /**
+     * Partition changes of one run
+     */
+    public record MaintenanceResult(List<String> created, List<String> detached, List<String> dropped) {
+    }
+    
+    private record PartitionedTable(String name, int retentionMonths) {
+    }
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final List<PartitionedTable> tables;
+    private final int monthsAhead;
+    private final ExpiredAction expiredAction;
+    
+    public AuditPartitionManager(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${audit.partitions.months-ahead:3}") int monthsAhead,
+            @Value("${audit.partitions.audit-logs.retention-months:24}") int auditLogRetentionMonths,
+            @Value("${audit.partitions.invoice-history.retention-months:0}") int invoiceHistoryRetentionMonths,
+            @Value("${audit.partitions.expired-action:DETACH}") ExpiredAction expiredAction) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tables = List.of(
+            new PartitionedTable("audit_logs", auditLogRetentionMonths),
+            new PartitionedTable("invoice_history", invoiceHistoryRetentionMonths));
+        this.monthsAhead = Math.max(1, monthsAhead);
+        this.expiredAction = expiredAction;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void maintainOnStartup() {
+        maintain();
+    }
+    
+    @Scheduled(cron = "${audit.partitions.cron:0 30 2 * * *}")
+    public void maintain() {
+        maintain(YearMonth.now());
+    }
+    
+    /**
+     * Create and expire partitions as of the given month.
+     */
+    public MaintenanceResult maintain(YearMonth currentMonth) {
+        MaintenanceResult result = transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?)", Object.class, ADVISORY_LOCK_KEY);
+            MaintenanceResult changes = new MaintenanceResult(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+            for (PartitionedTable table : tables) {
+                maintain(table, currentMonth, changes);
+            }
+            return changes;
+        });
+        if (!result.created().isEmpty() || !result.detached().isEmpty() || !result.dropped().isEmpty()) {
+            logger.info("Audit partitions: created {}, detached {}, dropped {}",
+                result.created(), result.detached(), result.dropped());
+        }
+        return result;
+    }
+    
+    private void maintain(PartitionedTable table, YearMonth currentMonth, MaintenanceResult changes) {
+        TreeMap<YearMonth, String> partitions = partitions(table.name());
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = currentMonth.plusMonths(i);
+            if (!partitions.containsKey(month)) {
+                String partition = partitionName(table.name(), month);
+                jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS \"%s\" PARTITION OF \"%s\" FOR VALUES FROM ('%s') TO ('%s')",
+                    partition, table.name(), month.atDay(1), month.plusMonths(1).atDay(1)));
+                changes.created().add(partition);
+            }
+        }
+        if (table.retentionMonths() <= 0) {
+            return;
+        }
+        YearMonth oldestKept = currentMonth.minusMonths(table.retentionMonths());
+        for (String partition : partitions.headMap(oldestKept).values()) {
+            if (expiredAction == ExpiredAction.DROP) {
+                jdbcTemplate.execute(String.format("DROP TABLE \"%s\"", partition));
+                changes.dropped().add(partition);
+            } else {
+                jdbcTemplate.execute(String.format("ALTER TABLE \"%s\" DETACH PARTITION \"%s\"", table.name(), partition));
+                changes.detached().add(partition);
+            }
+        }
+    }
+    
+    /**
+     * Attached partitions of a table that follow the naming scheme, by month.
+     */
+    private TreeMap<YearMonth, String> partitions(String table) {
+        Pattern pattern = Pattern.compile(Pattern.quote(table) + "_y(\\d{4})m(\\d{2})");
+        TreeMap<YearMonth, String> partitions = new TreeMap<>();
+        List<String> names = jdbcTemplate.queryForList(
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = CAST(? AS regclass)", String.class, table);
+        for (String name : names) {
+            Matcher matcher = pattern.matcher(name);
+            if (matcher.matches()) {
+                partitions.put(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))), name);
+            }
+        }
+        return partitions;
+    }
+    
+    private static String partitionName(String table, YearMonth month) {
+        return String.format("%s_y%04dm%02d", table, month.getYear(), month.getMonthValue());
+    }
+}
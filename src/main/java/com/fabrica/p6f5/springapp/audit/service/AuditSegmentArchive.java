@@ -0,0 +1,265 @@
+package com.fabrica.p6f5.springapp.audit.service;
+
+import com.fabrica.p6f5.springapp.audit.archive.AuditSegment;
+import com.fabrica.p6f5.springapp.audit.archive.AuditSegmentWriter;
+import com.fabrica.p6f5.springapp.audit.model.AuditLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Archive of audit segment files in {@code audit.archive.directory}.
+ * <p>
+ * Each archived audit_logs partition becomes one or more immutable segment files named
+ * {@code <partition>-NNNN.seg}, each at most {@code audit.archive.max-segment-bytes} so it can be
+ * mapped whole. Files are written under a temporary name, forced to disk and then renamed, so
+ * readers only ever see complete segments. The directory is rescanned periodically; nodes that
+ * read the archive but do not write it pick up new segments that way.
+ */
+@Component
+public class AuditSegmentArchive {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AuditSegmentArchive.class);
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(audit_logs_y(\\d{4})m(\\d{2}))-(\\d{4})\\.seg");
+    
+    private final Path directory;
+    private final int blockRows;
+    private final long maxSegmentBytes;
+    private final Map<String, AuditSegment> segments = new ConcurrentSkipListMap<>();
+    
+    public AuditSegmentArchive(
+            @Value("${audit.archive.directory:./data/audit-archive}") String directory,
+            @Value("${audit.archive.block-rows:256}") int blockRows,
+            @Value("${audit.archive.max-segment-bytes:1073741824}") long maxSegmentBytes) {
+        this.directory = Paths.get(directory);
+        this.blockRows = blockRows;
+        this.maxSegmentBytes = Math.min(maxSegmentBytes, Integer.MAX_VALUE / 2);
+        refresh();
+    }
+    
+    /**
+     * Archived rows of an entity, in (created_at, id) order.
+     */
+    public List<AuditLog> find(String entityType, Long entityId) {
+        List<AuditLog> found = new ArrayList<>();
+        for (AuditSegment segment : segments.values()) {
+            try {
+                found.addAll(segment.find(entityType, entityId));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read audit segment " + segment.path(), e);
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Write the rows of a partition as segments, replacing any earlier segments of it.
+     * The producer must emit rows ordered by entity_type, entity_id, created_at and id.
+     * 
+     * @param partition the partition name
+     * @param producer emits the rows to the given consumer
+     * @return number of rows written
+     */
+    public long write(String partition, Consumer<Consumer<AuditLog>> producer) {
+        List<Path> written = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            SegmentSink sink = new SegmentSink(partition, written);
+            try {
+                producer.accept(sink);
+            } finally {
+                sink.close();
+            }
+            for (Path temporary : written) {
+                Path target = directory.resolve(temporary.getFileName().toString().replace(".tmp", ""));
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            deleteParts(partition, written.size());
+            refresh();
+            return sink.rows;
+        } catch (IOException e) {
+            written.forEach(AuditSegmentArchive::deleteQuietly);
+            throw new UncheckedIOException("Failed to write audit segments of " + partition, e);
+        } catch (RuntimeException e) {
+            written.forEach(AuditSegmentArchive::deleteQuietly);
+            throw e;
+        }
+    }
+    
+    /**
+     * Read back the segments of a partition and check that they hold exactly the given rows,
+     * in the key order lookups rely on. Run before the partition is dropped.
+     * 
+     * @param partition the partition name
+     * @param expectedRows row count of the partition
+     * @param expectedIdSum sum of the audit_log_id of the partition
+     */
+    public void verify(String partition, long expectedRows, long expectedIdSum) {
+        long rows = 0;
+        long idSum = 0;
+        for (AuditSegment segment : segmentsOf(partition)) {
+            try {
+                idSum = Math.addExact(idSum, segment.verify());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read back audit segment " + segment.path(), e);
+            }
+            rows += segment.rowCount();
+        }
+        if (rows != expectedRows || idSum != expectedIdSum) {
+            throw new IllegalStateException(String.format(
+                "Audit segments of %s hold %d rows with id sum %d, expected %d rows with id sum %d",
+                partition, rows, idSum, expectedRows, expectedIdSum));
+        }
+    }
+    
+    /**
+     * Whether a partition has been archived.
+     */
+    public boolean hasSegments(String partition) {
+        return !segmentsOf(partition).isEmpty();
+    }
+    
+    /**
+     * Delete segments of months before the given one.
+     * 
+     * @return names of deleted segment files
+     */
+    public List<String> deleteBefore(YearMonth oldestKept) {
+        List<String> deleted = new ArrayList<>();
+        for (Path path : segmentFiles()) {
+            Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+            if (matcher.matches() && month(matcher).isBefore(oldestKept)) {
+                segments.remove(path.getFileName().toString());
+                deleteQuietly(path);
+                deleted.add(path.getFileName().toString());
+            }
+        }
+        return deleted;
+    }
+    
+    /**
+     * Map new segment files and forget removed ones.
+     */
+    @Scheduled(fixedDelayString = "${audit.archive.refresh-interval-ms:60000}")
+    public void refresh() {
+        Set<String> present = new HashSet<>();
+        for (Path path : segmentFiles()) {
+            String name = path.getFileName().toString();
+            present.add(name);
+            AuditSegment current = segments.get(name);
+            try {
+                if (current == null || !Objects.equals(current.fileKey(), AuditSegment.fileKey(path))) {
+                    segments.put(name, AuditSegment.open(path));
+                }
+            } catch (IOException e) {
+                logger.error("Skipping unreadable audit segment {}: {}", path, e.getMessage());
+            }
+        }
+        segments.keySet().retainAll(present);
+    }
+    
+    private List<AuditSegment> segmentsOf(String partition) {
+        List<AuditSegment> found = new ArrayList<>();
+        segments.forEach((name, segment) -> {
+            Matcher matcher = SEGMENT_NAME.matcher(name);
+            if (matcher.matches() && matcher.group(1).equals(partition)) {
+                found.add(segment);
+            }
+        });
+        return found;
+    }
+    
+    private List<Path> segmentFiles() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches()).toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list audit archive " + directory, e);
+        }
+    }
+    
+    private void deleteParts(String partition, int keep) {
+        for (Path path : segmentFiles()) {
+            Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+            if (matcher.matches() && matcher.group(1).equals(partition) && Integer.parseInt(matcher.group(4)) > keep) {
+                segments.remove(path.getFileName().toString());
+                deleteQuietly(path);
+            }
+        }
+    }
+    
+    private static YearMonth month(Matcher matcher) {
+        return YearMonth.of(Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3)));
+    }
+    
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+    
+    /**
+     * Appends rows to numbered segment files, starting a new one at the size limit.
+     */
+    private final class SegmentSink implements Consumer<AuditLog> {
+        
+        private final String partition;
+        private final List<Path> written;
+        private AuditSegmentWriter writer;
+        private long rows;
+        
+        private SegmentSink(String partition, List<Path> written) {
+            this.partition = partition;
+            this.written = written;
+        }
+        
+        @Override
+        public void accept(AuditLog log) {
+            try {
+                if (writer == null || writer.size() >= maxSegmentBytes) {
+                    close();
+                    Path path = directory.resolve(String.format("%s-%04d.seg.tmp", partition, written.size() + 1));
+                    Files.deleteIfExists(path);
+                    written.add(path);
+                    writer = new AuditSegmentWriter(path, blockRows);
+                }
+                writer.append(log);
+                rows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        private void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+        }
+    }
+}
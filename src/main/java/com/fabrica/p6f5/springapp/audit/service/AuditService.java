@@ -1,16 +1,23 @@
 package com.fabrica.p6f5.springapp.audit.service;
 
+import com.fabrica.p6f5.springapp.audit.dto.AuditLogView;
+import com.fabrica.p6f5.springapp.audit.dto.InvoiceHistoryWatermark;
+import com.fabrica.p6f5.springapp.audit.model.AuditEvent;
 import com.fabrica.p6f5.springapp.audit.model.AuditLog;
 import com.fabrica.p6f5.springapp.audit.model.InvoiceHistory;
+import com.fabrica.p6f5.springapp.audit.model.InvoiceHistoryKey;
 import com.fabrica.p6f5.springapp.audit.repository.AuditLogRepository;
 import com.fabrica.p6f5.springapp.audit.repository.InvoiceHistoryRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import jakarta.persistence.EntityManager;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -20,75 +27,92 @@ import java.util.Optional;
 @Service
 public class AuditService {
     
-    private static final Logger logger = LoggerFactory.getLogger(AuditService.class);
-    
     private final AuditLogRepository auditLogRepository;
     private final InvoiceHistoryRepository invoiceHistoryRepository;
-    private final ObjectMapper objectMapper;
+    private final AuditWriter auditWriter;
+    private final AuditDeltaCodec auditDeltaCodec;
+    private final AuditSegmentArchive auditSegmentArchive;
+    private final EntityManager entityManager;
     
     public AuditService(AuditLogRepository auditLogRepository, 
                         InvoiceHistoryRepository invoiceHistoryRepository,
-                        ObjectMapper objectMapper) {
+                        AuditWriter auditWriter,
+                        AuditDeltaCodec auditDeltaCodec,
+                        AuditSegmentArchive auditSegmentArchive,
+                        EntityManager entityManager) {
         this.auditLogRepository = auditLogRepository;
         this.invoiceHistoryRepository = invoiceHistoryRepository;
-        this.objectMapper = objectMapper;
+        this.auditWriter = auditWriter;
+        this.auditDeltaCodec = auditDeltaCodec;
+        this.auditSegmentArchive = auditSegmentArchive;
+        this.entityManager = entityManager;
     }
     
     /**
-     * Log an audit event
+     * Log an audit event. Recorded with the current transaction; see AuditWriter.
      */
-    @Transactional
-    public AuditLog logEvent(String entityType, Long entityId, AuditLog.AuditAction action, 
-                            Long changedBy, Object oldData, Object newData, String changeSummary) {
-        try {
-            AuditLog auditLog = new AuditLog();
-            auditLog.setEntityType(entityType);
-            auditLog.setEntityId(entityId);
-            auditLog.setAction(action);
-            auditLog.setChangedBy(changedBy);
-            auditLog.setChangeSummary(changeSummary);
-            
-            if (oldData != null) {
-                auditLog.setOldData(objectMapper.writeValueAsString(oldData));
-            }
-            if (newData != null) {
-                auditLog.setNewData(objectMapper.writeValueAsString(newData));
-            }
-            
-            return auditLogRepository.save(auditLog);
-        } catch (Exception e) {
-            logger.error("Error logging audit event: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to log audit event", e);
-        }
+    public void logEvent(String entityType, Long entityId, AuditLog.AuditAction action, 
+                         Long changedBy, Object oldData, Object newData, String changeSummary) {
+        auditWriter.write(new AuditEvent(entityType, entityId, action, changedBy, oldData, newData,
+            changeSummary, LocalDateTime.now()));
     }
     
     /**
-     * Save invoice history version
+     * Save invoice history version. The snapshot is encoded by the caller, see InvoiceSnapshotCodec.
+     * The version is also recorded in invoice_history_keys, which fails the flush if it was
+     * already recorded; partitioned invoice_history cannot enforce that itself.
      */
     @Transactional
     public InvoiceHistory saveInvoiceHistory(Long invoiceId, Integer version, String fiscalFolio,
-                                             String invoiceNumber, Object invoiceData, Long createdBy) {
-        try {
-            InvoiceHistory history = new InvoiceHistory();
-            history.setInvoiceId(invoiceId);
-            history.setVersion(version);
-            history.setFiscalFolio(fiscalFolio);
-            history.setInvoiceNumber(invoiceNumber);
-            history.setInvoiceData(objectMapper.writeValueAsString(invoiceData));
-            history.setCreatedBy(createdBy);
-            
-            return invoiceHistoryRepository.save(history);
-        } catch (Exception e) {
-            logger.error("Error saving invoice history: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to save invoice history", e);
-        }
+                                             String invoiceNumber, String invoiceData, Long createdBy) {
+        InvoiceHistory history = new InvoiceHistory();
+        history.setInvoiceId(invoiceId);
+        history.setVersion(version);
+        history.setFiscalFolio(fiscalFolio);
+        history.setInvoiceNumber(invoiceNumber);
+        history.setInvoiceData(invoiceData);
+        history.setCreatedBy(createdBy);
+        
+        // Persisted rather than saved: the key is assigned, and save would select it first
+        entityManager.persist(new InvoiceHistoryKey(invoiceId, version));
+        return invoiceHistoryRepository.save(history);
     }
     
     /**
-     * Get audit logs for an entity
+     * Get audit logs for an entity, hot and archived, newest first
      */
     public List<AuditLog> getAuditLogs(String entityType, Long entityId) {
-        return auditLogRepository.findByEntityTypeAndEntityIdOrderByCreatedAtDesc(entityType, entityId);
+        List<AuditLog> hot = auditLogRepository.findByEntityTypeAndEntityIdOrderByCreatedAtDesc(entityType, entityId);
+        List<AuditLog> archived = auditSegmentArchive.find(entityType, entityId);
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        // A partition being archived can briefly be in both places
+        Map<Long, AuditLog> byId = new LinkedHashMap<>();
+        hot.forEach(log -> byId.put(log.getId(), log));
+        archived.forEach(log -> byId.putIfAbsent(log.getId(), log));
+        List<AuditLog> merged = new ArrayList<>(byId.values());
+        merged.sort(Comparator.comparing(AuditLog::getCreatedAt).thenComparing(AuditLog::getId).reversed());
+        return merged;
+    }
+    
+    /**
+     * Get audit logs for an entity with full old and new data, newest first
+     */
+    public List<AuditLogView> getAuditLogViews(String entityType, Long entityId) {
+        return auditDeltaCodec.decode(getAuditLogs(entityType, entityId));
+    }
+    
+    /**
+     * Get a hot audit log with full old and new data. Its creation time selects the
+     * month partition the log and its delta chain are read from.
+     */
+    public Optional<AuditLogView> getAuditLogView(Long auditLogId, LocalDateTime createdAt) {
+        LocalDateTime monthStart = createdAt.toLocalDate().withDayOfMonth(1).atStartOfDay();
+        List<AuditLog> chain = auditLogRepository.findWithDeltaChain(auditLogId, monthStart, monthStart.plusMonths(1));
+        return auditDeltaCodec.decode(chain).stream()
+            .filter(view -> view.getId().equals(auditLogId))
+            .findFirst();
     }
     
     /**
@@ -105,6 +129,20 @@ public class AuditService {
         return invoiceHistoryRepository.findByInvoiceIdAndVersion(invoiceId, version);
     }
     
+    /**
+     * Check if a specific version of invoice history exists
+     */
+    public boolean invoiceHistoryVersionExists(Long invoiceId, Integer version) {
+        return invoiceHistoryRepository.existsByInvoiceIdAndVersion(invoiceId, version);
+    }
+    
+    /**
+     * Get the watermark of invoice history
+     */
+    public InvoiceHistoryWatermark getInvoiceHistoryWatermark(Long invoiceId) {
+        return invoiceHistoryRepository.findWatermarkByInvoiceId(invoiceId);
+    }
+    
     /**
      * Get latest version of invoice
      */
@@ -0,0 +1,277 @@
+package com.fabrica.p6f5.springapp.audit.service;
+
+import com.fabrica.p6f5.springapp.audit.model.AuditEvent;
+import com.fabrica.p6f5.springapp.audit.model.AuditRecord;
+import com.fabrica.p6f5.springapp.audit.repository.AuditLogBatchRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched audit log writer.
+ * <p>
+ * Events are only collected while a transaction runs. Before it commits they are
+ * serialized in one pass, encoded by {@link AuditDeltaCodec}, and then written
+ * according to the mode:
+ * <ul>
+ *   <li>TRANSACTIONAL: one multi-row insert in the committing transaction, so audit
+ *       rows commit or roll back with the change they describe.</li>
+ *   <li>ASYNC: after commit the rows go to a bounded queue drained by a background
+ *       writer in multi-row inserts. When the queue is full the committing thread
+ *       writes its rows itself. Rows still queued when the process dies are lost.</li>
+ * </ul>
+ * Rolled back transactions write nothing in either mode.
+ */
+@Component
+public class AuditWriter {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AuditWriter.class);
+    
+    /**
+     * Audit write mode
+     */
+    public enum Mode {
+        TRANSACTIONAL,
+        ASYNC
+    }
+    
+    private final AuditLogBatchRepository auditLogBatchRepository;
+    private final AuditDeltaCodec auditDeltaCodec;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate newTransaction;
+    private final Mode mode;
+    private final int batchSize;
+    private final BlockingQueue<AuditRecord> queue;
+    private final Timer flushTimer;
+    private final Counter queuedRecords;
+    private final Counter callerRunsRecords;
+    private final Counter transactionalRecords;
+    private final Counter failedRecords;
+    private final Thread worker;
+    private volatile boolean running = true;
+    
+    public AuditWriter(
+            AuditLogBatchRepository auditLogBatchRepository,
+            AuditDeltaCodec auditDeltaCodec,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            PlatformTransactionManager transactionManager,
+            @Value("${audit.writer.mode:TRANSACTIONAL}") Mode mode,
+            @Value("${audit.writer.queue-capacity:10000}") int queueCapacity,
+            @Value("${audit.writer.batch-size:500}") int batchSize) {
+        this.auditLogBatchRepository = auditLogBatchRepository;
+        this.auditDeltaCodec = auditDeltaCodec;
+        this.objectMapper = objectMapper;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.mode = mode;
+        this.batchSize = Math.max(1, batchSize);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.flushTimer = Timer.builder("audit.writer.flush")
+            .description("Latency of audit log batch inserts")
+            .register(meterRegistry);
+        this.queuedRecords = recordCounter(meterRegistry, "queued");
+        this.callerRunsRecords = recordCounter(meterRegistry, "caller_runs");
+        this.transactionalRecords = recordCounter(meterRegistry, "transactional");
+        this.failedRecords = recordCounter(meterRegistry, "failed");
+        Gauge.builder("audit.writer.queue.depth", queue, BlockingQueue::size)
+            .description("Audit records waiting for the background writer")
+            .register(meterRegistry);
+        if (mode == Mode.ASYNC) {
+            this.worker = new Thread(this::drainLoop, "audit-writer");
+            this.worker.setDaemon(true);
+            this.worker.start();
+        } else {
+            this.worker = null;
+        }
+    }
+    
+    /**
+     * Collect an event of the current transaction, or write it immediately without one.
+     */
+    public void write(AuditEvent event) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<AuditRecord> records = List.of(serialize(event));
+            if (mode == Mode.ASYNC) {
+                enqueue(records);
+            } else {
+                insertSeparately(records, transactionalRecords);
+            }
+            return;
+        }
+        PendingEvents pending = (PendingEvents) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingEvents();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.events.add(event);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<AuditRecord> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            insertSeparately(remaining, queuedRecords);
+        }
+    }
+    
+    private void drainLoop() {
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                insertSeparately(batch, queuedRecords);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Audit writer failed: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+    
+    private void enqueue(List<AuditRecord> records) {
+        List<AuditRecord> overflow = new ArrayList<>();
+        for (AuditRecord record : records) {
+            if (!running || !queue.offer(record)) {
+                overflow.add(record);
+            }
+        }
+        if (!overflow.isEmpty()) {
+            insertSeparately(overflow, callerRunsRecords);
+        }
+    }
+    
+    /**
+     * Insert records in their own transaction; also used after commit, where the
+     * finished transaction's resources are still bound to the thread.
+     */
+    private void insertSeparately(List<AuditRecord> records, Counter path) {
+        try {
+            AuditDeltaCodec.EncodedBatch batch = newTransaction.execute(status -> insert(records));
+            path.increment(records.size());
+            batch.commit();
+        } catch (RuntimeException e) {
+            failed(records, e);
+        }
+    }
+    
+    /**
+     * Encode and insert records in the current transaction.
+     */
+    private AuditDeltaCodec.EncodedBatch insert(List<AuditRecord> records) {
+        AuditDeltaCodec.EncodedBatch batch = auditDeltaCodec.encode(records,
+            auditLogBatchRepository.allocateIds(records.size()));
+        flushTimer.record(() -> auditLogBatchRepository.insertAll(batch.rows()));
+        return batch;
+    }
+    
+    /**
+     * Count records that could not be written; only TRANSACTIONAL mode fails the caller.
+     */
+    private void failed(List<AuditRecord> records, RuntimeException e) {
+        failedRecords.increment(records.size());
+        if (mode == Mode.TRANSACTIONAL) {
+            throw e;
+        }
+        logger.error("Lost {} audit records: {}", records.size(), e.getMessage(), e);
+    }
+    
+    private AuditRecord serialize(AuditEvent event) {
+        try {
+            return new AuditRecord(
+                event.entityType(),
+                event.entityId(),
+                event.action(),
+                event.changedBy(),
+                event.oldData() != null ? objectMapper.valueToTree(event.oldData()) : null,
+                event.newData() != null ? objectMapper.valueToTree(event.newData()) : null,
+                event.changeSummary(),
+                event.createdAt());
+        } catch (IllegalArgumentException e) {
+            logger.error("Error serializing audit event: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to log audit event", e);
+        }
+    }
+    
+    private static Counter recordCounter(MeterRegistry meterRegistry, String path) {
+        return Counter.builder("audit.writer.records")
+            .description("Audit records written, by path")
+            .tag("path", path)
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Events of one transaction.
+     */
+    private final class PendingEvents implements TransactionSynchronization {
+        
+        private final List<AuditEvent> events = new ArrayList<>();
+        private List<AuditRecord> records = List.of();
+        private AuditDeltaCodec.EncodedBatch batch;
+        
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            records = new ArrayList<>(events.size());
+            for (AuditEvent event : events) {
+                records.add(serialize(event));
+            }
+            if (mode == Mode.TRANSACTIONAL) {
+                try {
+                    batch = insert(records);
+                    transactionalRecords.increment(records.size());
+                } catch (RuntimeException e) {
+                    failed(records, e);
+                }
+            }
+        }
+        
+        @Override
+        public void afterCommit() {
+            if (batch != null) {
+                batch.commit();
+            }
+            if (mode == Mode.ASYNC) {
+                enqueue(records);
+            }
+        }
+        
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(AuditWriter.this);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.fabrica.p6f5.springapp.billing.controller;
+
+import com.fabrica.p6f5.springapp.billing.dto.RollupRebuildResult;
+import com.fabrica.p6f5.springapp.billing.model.BillingRollup;
+import com.fabrica.p6f5.springapp.billing.service.BillingRollupService;
+import com.fabrica.p6f5.springapp.dto.ApiResponse;
+import com.fabrica.p6f5.springapp.util.ResponseUtils;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Billing Rollup Controller following Single Responsibility Principle.
+ * Serves dashboard aggregates of invoices.
+ */
+@RestController
+@RequestMapping("/api/v1/billing/rollups")
+@Tag(name = "Billing Rollup API", description = "API for invoice aggregates by status, currency and month")
+public class BillingRollupController {
+    
+    private final BillingRollupService billingRollupService;
+    
+    public BillingRollupController(BillingRollupService billingRollupService) {
+        this.billingRollupService = billingRollupService;
+    }
+    
+    /**
+     * Get billing rollups
+     */
+    @GetMapping
+    @Operation(summary = "Get billing rollups", description = "Retrieves invoice count, subtotal, tax and total by status, currency and invoice month")
+    public ResponseEntity<ApiResponse<List<BillingRollup>>> getRollups(
+            @Parameter(description = "Include months from this date") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Include months up to this date") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        List<BillingRollup> rollups = billingRollupService.getRollups(from, to);
+        return ResponseUtils.success(rollups, "Billing rollups retrieved successfully");
+    }
+    
+    /**
+     * Rebuild billing rollups (Admin only)
+     */
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Rebuild billing rollups", description = "Recomputes all rollups from invoices and reports how many buckets had drifted")
+    public ResponseEntity<ApiResponse<RollupRebuildResult>> rebuildRollups() {
+        RollupRebuildResult result = billingRollupService.rebuild();
+        return ResponseUtils.success(result, "Billing rollups rebuilt successfully");
+    }
+}
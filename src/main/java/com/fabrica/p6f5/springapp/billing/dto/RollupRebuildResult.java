@@ -0,0 +1,18 @@
+package com.fabrica.p6f5.springapp.billing.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * DTO for the result of a billing rollup rebuild.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupRebuildResult {
+    
+    private long driftedBuckets;
+    private int rebuiltBuckets;
+    private long durationMs;
+}
@@ -0,0 +1,65 @@
+package com.fabrica.p6f5.springapp.billing.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * BillingRollup entity following Single Responsibility Principle.
+ * Holds invoice aggregates for one status, currency and invoice month bucket.
+ * Rows are written only through delta upserts and rebuilds, never through the entity.
+ */
+@Entity
+@Table(name = "billing_rollups")
+@IdClass(BillingRollup.BucketKey.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BillingRollup {
+    
+    @Id
+    @Column(name = "invoice_status", nullable = false, length = 50)
+    private String status;
+    
+    @Id
+    @Column(name = "currency", nullable = false, length = 10)
+    private String currency;
+    
+    @Id
+    @Column(name = "period_month", nullable = false)
+    private LocalDate periodMonth;
+    
+    @Column(name = "invoice_count", nullable = false)
+    private Long invoiceCount;
+    
+    @Column(name = "subtotal", nullable = false, precision = 16, scale = 2)
+    private BigDecimal subtotal;
+    
+    @Column(name = "tax_amount", nullable = false, precision = 16, scale = 2)
+    private BigDecimal taxAmount;
+    
+    @Column(name = "total_amount", nullable = false, precision = 16, scale = 2)
+    private BigDecimal totalAmount;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    /**
+     * Composite key of a rollup bucket
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BucketKey implements Serializable {
+        
+        private String status;
+        private String currency;
+        private LocalDate periodMonth;
+    }
+}
@@ -0,0 +1,102 @@
+package com.fabrica.p6f5.springapp.billing.repository;
+
+import com.fabrica.p6f5.springapp.billing.model.BillingRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Billing Rollup Repository interface.
+ * Defines data access operations for billing rollups.
+ */
+@Repository
+public interface BillingRollupRepository extends JpaRepository<BillingRollup, BillingRollup.BucketKey> {
+    
+    String FRESH_ROLLUPS = "SELECT invoice_status, COALESCE(currency, 'USD') AS currency, " +
+           "CAST(date_trunc('month', invoice_date) AS DATE) AS period_month, COUNT(*) AS invoice_count, " +
+           "SUM(subtotal) AS subtotal, SUM(COALESCE(tax_amount, 0)) AS tax_amount, SUM(total_amount) AS total_amount " +
+           "FROM invoices GROUP BY 1, 2, 3";
+    
+    /**
+     * Find non-empty rollup buckets within a month range.
+     * 
+     * @param fromMonth the first month (first day of month)
+     * @param toMonth the last month (first day of month)
+     * @return list of rollups ordered by month descending, then status and currency
+     */
+    @Query("SELECT r FROM BillingRollup r WHERE r.periodMonth BETWEEN :fromMonth AND :toMonth AND r.invoiceCount > 0 " +
+           "ORDER BY r.periodMonth DESC, r.status, r.currency")
+    List<BillingRollup> findBuckets(@Param("fromMonth") LocalDate fromMonth, @Param("toMonth") LocalDate toMonth);
+    
+    /**
+     * Add a delta to a rollup bucket, creating the bucket if needed.
+     * 
+     * @return number of affected rows
+     */
+    @Modifying
+    @Query(value = "INSERT INTO billing_rollups " +
+           "(invoice_status, currency, period_month, invoice_count, subtotal, tax_amount, total_amount, updated_at) " +
+           "VALUES (:status, :currency, :periodMonth, :count, :subtotal, :taxAmount, :totalAmount, CURRENT_TIMESTAMP) " +
+           "ON CONFLICT (invoice_status, currency, period_month) DO UPDATE SET " +
+           "invoice_count = billing_rollups.invoice_count + EXCLUDED.invoice_count, " +
+           "subtotal = billing_rollups.subtotal + EXCLUDED.subtotal, " +
+           "tax_amount = billing_rollups.tax_amount + EXCLUDED.tax_amount, " +
+           "total_amount = billing_rollups.total_amount + EXCLUDED.total_amount, " +
+           "updated_at = CURRENT_TIMESTAMP",
+           nativeQuery = true)
+    int applyDelta(@Param("status") String status,
+                   @Param("currency") String currency,
+                   @Param("periodMonth") LocalDate periodMonth,
+                   @Param("count") long count,
+                   @Param("subtotal") BigDecimal subtotal,
+                   @Param("taxAmount") BigDecimal taxAmount,
+                   @Param("totalAmount") BigDecimal totalAmount);
+    
+    /**
+     * Lock the rollups against concurrent deltas until the current transaction ends.
+     */
+    @Modifying
+    @Query(value = "LOCK TABLE billing_rollups IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockForRebuild();
+    
+    /**
+     * Count buckets whose stored values differ from a full recomputation.
+     * Empty buckets left behind by status transitions count as absent.
+     * 
+     * @return number of drifted buckets
+     */
+    @Query(value = "WITH fresh AS (" + FRESH_ROLLUPS + "), " +
+           "stored AS (SELECT * FROM billing_rollups WHERE invoice_count <> 0) " +
+           "SELECT COUNT(*) FROM fresh f FULL OUTER JOIN stored s " +
+           "ON s.invoice_status = f.invoice_status AND s.currency = f.currency AND s.period_month = f.period_month " +
+           "WHERE f.invoice_status IS NULL OR s.invoice_status IS NULL " +
+           "OR (s.invoice_count, s.subtotal, s.tax_amount, s.total_amount) " +
+           "IS DISTINCT FROM (f.invoice_count, f.subtotal, f.tax_amount, f.total_amount)",
+           nativeQuery = true)
+    long countDriftedBuckets();
+    
+    /**
+     * Delete all rollup buckets.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM billing_rollups", nativeQuery = true)
+    int deleteAllBuckets();
+    
+    /**
+     * Recompute all rollup buckets from the invoices table.
+     * 
+     * @return number of buckets written
+     */
+    @Modifying
+    @Query(value = "INSERT INTO billing_rollups " +
+           "(invoice_status, currency, period_month, invoice_count, subtotal, tax_amount, total_amount) " +
+           FRESH_ROLLUPS,
+           nativeQuery = true)
+    int insertFreshBuckets();
+}
@@ -0,0 +1,192 @@
+package com.fabrica.p6f5.springapp.billing.service;
+
+import com.fabrica.p6f5.springapp.billing.dto.RollupRebuildResult;
+import com.fabrica.p6f5.springapp.billing.model.BillingRollup;
+import com.fabrica.p6f5.springapp.billing.repository.BillingRollupRepository;
+import com.fabrica.p6f5.springapp.exception.BusinessException;
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fabrica.p6f5.springapp.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Billing Rollup Service following Single Responsibility Principle.
+ * Maintains invoice aggregates by status, currency and month as deltas of invoice writes.
+ */
+@Service
+public class BillingRollupService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BillingRollupService.class);
+    
+    private static final Comparator<BillingRollup.BucketKey> BUCKET_ORDER =
+        Comparator.comparing(BillingRollup.BucketKey::getStatus)
+            .thenComparing(BillingRollup.BucketKey::getCurrency)
+            .thenComparing(BillingRollup.BucketKey::getPeriodMonth);
+    
+    private static final LocalDate MIN_MONTH = LocalDate.of(1900, 1, 1);
+    private static final LocalDate MAX_MONTH = LocalDate.of(9999, 12, 1);
+    
+    private final BillingRollupRepository billingRollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    
+    public BillingRollupService(BillingRollupRepository billingRollupRepository,
+                                PlatformTransactionManager transactionManager) {
+        this.billingRollupRepository = billingRollupRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Record a newly created invoice. Must run in the invoice transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCreated(Invoice invoice) {
+        RollupBatch batch = batch();
+        batch.created(invoice);
+        batch.apply();
+    }
+    
+    /**
+     * Record a change of an invoice from its previous state. Must run in the invoice transaction.
+     * A change that stays in the same bucket is applied as a single upsert.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordChanged(Invoice before, Invoice after) {
+        RollupBatch batch = batch();
+        batch.changed(before, after);
+        batch.apply();
+    }
+    
+    /**
+     * Start collecting deltas of many invoice writes, to be applied with one upsert per bucket.
+     */
+    public RollupBatch batch() {
+        return new RollupBatch();
+    }
+    
+    /**
+     * Get non-empty rollup buckets within an optional invoice date range.
+     */
+    @Transactional(readOnly = true)
+    public List<BillingRollup> getRollups(LocalDate from, LocalDate to) {
+        LocalDate fromMonth = from != null ? from.withDayOfMonth(1) : MIN_MONTH;
+        LocalDate toMonth = to != null ? to.withDayOfMonth(1) : MAX_MONTH;
+        if (fromMonth.isAfter(toMonth)) {
+            throw new BusinessException(Constants.INVALID_DATE_RANGE);
+        }
+        return billingRollupRepository.findBuckets(fromMonth, toMonth);
+    }
+    
+    /**
+     * Recompute all rollups from scratch and report how many buckets had drifted.
+     * Concurrent invoice commands wait on the table lock, and apply their deltas
+     * on top of the rebuilt values once it commits. The transaction is started here rather
+     * than through the proxy, so the scheduled self-invocation gets one as well.
+     */
+    public RollupRebuildResult rebuild() {
+        long start = System.currentTimeMillis();
+        RollupRebuildResult result = transactionTemplate.execute(status -> {
+            billingRollupRepository.lockForRebuild();
+            long drifted = billingRollupRepository.countDriftedBuckets();
+            billingRollupRepository.deleteAllBuckets();
+            int rebuilt = billingRollupRepository.insertFreshBuckets();
+            return new RollupRebuildResult(drifted, rebuilt, 0);
+        });
+        result.setDurationMs(System.currentTimeMillis() - start);
+        
+        if (result.getDriftedBuckets() > 0) {
+            logger.warn("Billing rollup rebuild corrected {} drifted buckets", result.getDriftedBuckets());
+        }
+        logger.info("Billing rollups rebuilt: {} buckets in {} ms", result.getRebuiltBuckets(), result.getDurationMs());
+        return result;
+    }
+    
+    /**
+     * Scheduled verification rebuild. Disabled unless billing.rollup.rebuild-cron is set.
+     */
+    @Scheduled(cron = "${billing.rollup.rebuild-cron:-}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+    
+    private BillingRollup.BucketKey bucket(Invoice invoice) {
+        return new BillingRollup.BucketKey(invoice.getStatus().name(), currency(invoice), month(invoice));
+    }
+    
+    private String currency(Invoice invoice) {
+        return invoice.getCurrency() != null ? invoice.getCurrency() : Constants.DEFAULT_CURRENCY;
+    }
+    
+    private LocalDate month(Invoice invoice) {
+        return invoice.getInvoiceDate().withDayOfMonth(1);
+    }
+    
+    private BigDecimal amount(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+    
+    /**
+     * Deltas of several invoice writes, netted per bucket.
+     * Applying must happen in the transaction of the writes. Buckets are upserted in key order,
+     * so two batches touching the same buckets lock their rows in the same order.
+     */
+    public class RollupBatch {
+        
+        private final Map<BillingRollup.BucketKey, Delta> deltas = new TreeMap<>(BUCKET_ORDER);
+        
+        public void created(Invoice invoice) {
+            add(invoice, 1);
+        }
+        
+        public void changed(Invoice before, Invoice after) {
+            add(before, -1);
+            add(after, 1);
+        }
+        
+        /**
+         * Upsert every bucket whose net delta is not zero.
+         */
+        public void apply() {
+            deltas.forEach((key, delta) -> {
+                if (!delta.isZero()) {
+                    billingRollupRepository.applyDelta(key.getStatus(), key.getCurrency(), key.getPeriodMonth(),
+                        delta.count(), delta.subtotal(), delta.taxAmount(), delta.totalAmount());
+                }
+            });
+            deltas.clear();
+        }
+        
+        private void add(Invoice invoice, int sign) {
+            BigDecimal factor = BigDecimal.valueOf(sign);
+            Delta delta = new Delta(sign,
+                amount(invoice.getSubtotal()).multiply(factor),
+                amount(invoice.getTaxAmount()).multiply(factor),
+                amount(invoice.getTotalAmount()).multiply(factor));
+            deltas.merge(bucket(invoice), delta, Delta::plus);
+        }
+    }
+    
+    private record Delta(long count, BigDecimal subtotal, BigDecimal taxAmount, BigDecimal totalAmount) {
+        
+        Delta plus(Delta other) {
+            return new Delta(count + other.count, subtotal.add(other.subtotal),
+                taxAmount.add(other.taxAmount), totalAmount.add(other.totalAmount));
+        }
+        
+        boolean isZero() {
+            return count == 0 && subtotal.signum() == 0 && taxAmount.signum() == 0 && totalAmount.signum() == 0;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.fabrica.p6f5.springapp.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Scheduling Configuration.
+ * Enables background jobs such as billing rollup verification and draft autosave flushes.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
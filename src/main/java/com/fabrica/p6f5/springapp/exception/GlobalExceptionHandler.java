@@ -1,6 +1,7 @@
 package com.fabrica.p6f5.springapp.exception;
 
 import com.fabrica.p6f5.springapp.dto.ApiResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceMergeConflictResponse;
 import com.fabrica.p6f5.springapp.util.ResponseUtils;
 import jakarta.validation.ConstraintViolationException;
 import org.slf4j.Logger;
@@ -40,6 +41,16 @@ public class GlobalExceptionHandler {
         return ResponseUtils.error(ex.getMessage(), HttpStatus.BAD_REQUEST);
     }
     
+    /**
+     * Handle InvoiceMergeConflictException
+     */
+    @ExceptionHandler(InvoiceMergeConflictException.class)
+    public ResponseEntity<ApiResponse<InvoiceMergeConflictResponse>> handleMergeConflict(InvoiceMergeConflictException ex) {
+        logger.warn("Merge conflict on invoice {}: {} conflicting fields",
+            ex.getConflict().getInvoiceId(), ex.getConflict().getConflicts().size());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.error(ex.getMessage(), ex.getConflict()));
+    }
+    
     /**
      * Handle MethodArgumentNotValidException
      */
@@ -0,0 +1,20 @@
+package com.fabrica.p6f5.springapp.exception;
+
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceMergeConflictResponse;
+
+/**
+ * Exception thrown when a draft update conflicts with a concurrent update of the same fields.
+ */
+public class InvoiceMergeConflictException extends RuntimeException {
+    
+    private final InvoiceMergeConflictResponse conflict;
+    
+    public InvoiceMergeConflictException(String message, InvoiceMergeConflictResponse conflict) {
+        super(message);
+        this.conflict = conflict;
+    }
+    
+    public InvoiceMergeConflictResponse getConflict() {
+        return conflict;
+    }
+}
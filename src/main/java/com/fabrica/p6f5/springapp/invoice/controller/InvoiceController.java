@@ -2,13 +2,31 @@ package com.fabrica.p6f5.springapp.invoice.controller;
 
 import com.fabrica.p6f5.springapp.dto.ApiResponse;
 import com.fabrica.p6f5.springapp.entity.User;
+import com.fabrica.p6f5.springapp.exception.BusinessException;
+import com.fabrica.p6f5.springapp.invoice.dto.BatchGetInvoicesRequest;
+import com.fabrica.p6f5.springapp.invoice.dto.BatchGetInvoicesResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.BulkCreateInvoicesRequest;
+import com.fabrica.p6f5.springapp.invoice.dto.BulkCreateInvoicesResponse;
 import com.fabrica.p6f5.springapp.invoice.dto.CreateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.dto.DraftAutosaveResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoicePageResponse;
 import com.fabrica.p6f5.springapp.invoice.dto.InvoiceResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceSearchCriteria;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceSearchResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceTextSearchHit;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceVersion;
 import com.fabrica.p6f5.springapp.invoice.dto.UpdateInvoiceRequest;
 import com.fabrica.p6f5.springapp.invoice.model.Invoice;
 import com.fabrica.p6f5.springapp.email.service.EmailService;
+import com.fabrica.p6f5.springapp.invoice.service.DraftAutosaveService;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceBulkService;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceExportService;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceSearchService;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceTextSearchService;
 import com.fabrica.p6f5.springapp.invoice.service.InvoiceService;
 import com.fabrica.p6f5.springapp.pdf.service.PdfService;
+import com.fabrica.p6f5.springapp.util.Constants;
+import com.fabrica.p6f5.springapp.util.ETagUtils;
 import com.fabrica.p6f5.springapp.util.ResponseUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -16,10 +34,16 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -36,11 +60,29 @@ public class InvoiceController {
     private final InvoiceService invoiceService;
     private final PdfService pdfService;
     private final EmailService emailService;
+    private final InvoiceExportService invoiceExportService;
+    private final InvoiceSearchService invoiceSearchService;
+    private final InvoiceTextSearchService invoiceTextSearchService;
+    private final InvoiceBulkService invoiceBulkService;
+    private final DraftAutosaveService draftAutosaveService;
     
-    public InvoiceController(InvoiceService invoiceService, PdfService pdfService, EmailService emailService) {
+    public InvoiceController(
+            InvoiceService invoiceService,
+            PdfService pdfService,
+            EmailService emailService,
+            InvoiceExportService invoiceExportService,
+            InvoiceSearchService invoiceSearchService,
+            InvoiceTextSearchService invoiceTextSearchService,
+            InvoiceBulkService invoiceBulkService,
+            DraftAutosaveService draftAutosaveService) {
         this.invoiceService = invoiceService;
         this.pdfService = pdfService;
         this.emailService = emailService;
+        this.invoiceExportService = invoiceExportService;
+        this.invoiceSearchService = invoiceSearchService;
+        this.invoiceTextSearchService = invoiceTextSearchService;
+        this.invoiceBulkService = invoiceBulkService;
+        this.draftAutosaveService = draftAutosaveService;
     }
     
     /**
@@ -56,20 +98,47 @@ public class InvoiceController {
         return ResponseUtils.created(response, "Draft invoice created successfully");
     }
     
+    /**
+     * Create draft invoices in bulk
+     */
+    @PostMapping("/bulk")
+    @Operation(summary = "Create draft invoices in bulk", description = "Creates up to 5000 draft invoices in chunked transactions and reports a result per entry; invalid entries do not fail the batch")
+    public ResponseEntity<ApiResponse<BulkCreateInvoicesResponse>> createDraftInvoices(
+            @Valid @RequestBody BulkCreateInvoicesRequest request,
+            @AuthenticationPrincipal User user) {
+        logger.info("Bulk creating {} draft invoices by user: {}", request.getInvoices().size(), user.getUsername());
+        BulkCreateInvoicesResponse response = invoiceBulkService.createDraftInvoices(request.getInvoices(), user.getId());
+        return ResponseUtils.success(response, "Bulk draft invoice creation processed");
+    }
+    
     /**
      * Update a draft invoice
      */
     @PutMapping("/{invoiceId}")
-    @Operation(summary = "Update a draft invoice", description = "Updates an existing invoice in DRAFT status with optimistic concurrency control")
+    @Operation(summary = "Update a draft invoice", description = "Updates an existing invoice in DRAFT status. Changes made against an older version are merged; conflicting changes return 409 with the conflicting fields")
     public ResponseEntity<ApiResponse<InvoiceResponse>> updateDraftInvoice(
             @Parameter(description = "Invoice ID") @PathVariable Long invoiceId,
             @Valid @RequestBody UpdateInvoiceRequest request,
             @AuthenticationPrincipal User user) {
         logger.info("Updating draft invoice id: {} by user: {}", invoiceId, user.getUsername());
-        InvoiceResponse response = invoiceService.updateDraftInvoice(invoiceId, request, user.getId());
+        InvoiceResponse response = draftAutosaveService.saveExplicitly(invoiceId, request, user.getId());
         return ResponseUtils.success(response, "Draft invoice updated successfully");
     }
     
+    /**
+     * Autosave a draft invoice
+     */
+    @PutMapping("/{invoiceId}/autosave")
+    @Operation(summary = "Autosave a draft invoice", description = "Buffers the latest state of a draft; changes are written as one version after an idle period, on explicit save or before issuing")
+    public ResponseEntity<ApiResponse<DraftAutosaveResponse>> autosaveDraftInvoice(
+            @Parameter(description = "Invoice ID") @PathVariable Long invoiceId,
+            @Valid @RequestBody UpdateInvoiceRequest request,
+            @AuthenticationPrincipal User user) {
+        logger.debug("Autosaving draft invoice id: {} by user: {}", invoiceId, user.getUsername());
+        DraftAutosaveResponse response = draftAutosaveService.autosave(invoiceId, request, user.getId());
+        return ResponseUtils.accepted(response, "Draft changes saved");
+    }
+    
     /**
      * Issue an invoice
      */
@@ -79,7 +148,8 @@ public class InvoiceController {
             @Parameter(description = "Invoice ID") @PathVariable Long invoiceId,
             @AuthenticationPrincipal User user) {
         logger.info("Issuing invoice id: {} by user: {}", invoiceId, user.getUsername());
-        InvoiceResponse response = invoiceService.issueInvoice(invoiceId, user.getId());
+        InvoiceResponse response = draftAutosaveService.flushAndRun(invoiceId,
+            () -> invoiceService.issueInvoice(invoiceId, user.getId()));
         return ResponseUtils.success(response, "Invoice issued successfully");
     }
     
@@ -87,36 +157,153 @@ public class InvoiceController {
      * Get invoice by ID
      */
     @GetMapping("/{invoiceId}")
-    @Operation(summary = "Get invoice by ID", description = "Retrieves an invoice by its ID")
+    @Operation(summary = "Get invoice by ID", description = "Retrieves an invoice by its ID. Supports If-None-Match with the returned ETag")
     public ResponseEntity<ApiResponse<InvoiceResponse>> getInvoiceById(
-            @Parameter(description = "Invoice ID") @PathVariable Long invoiceId) {
+            @Parameter(description = "Invoice ID") @PathVariable Long invoiceId,
+            WebRequest webRequest) {
         logger.info("Getting invoice id: {}", invoiceId);
-        InvoiceResponse response = invoiceService.getInvoiceById(invoiceId);
-        return ResponseUtils.success(response, "Invoice retrieved successfully");
+        InvoiceVersion version = invoiceService.getInvoiceVersion(invoiceId);
+        String eTag = invoiceETag(invoiceId, version.version());
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseUtils.notModified(eTag);
+        }
+        InvoiceResponse response = invoiceService.getInvoiceById(version);
+        return ResponseUtils.success(response, "Invoice retrieved successfully", invoiceETag(invoiceId, response.getVersion()));
+    }
+    
+    /**
+     * Get several invoices by ID
+     */
+    @PostMapping("/batch-get")
+    @Operation(summary = "Get invoices by IDs", description = "Retrieves up to 500 invoices with items and shipment IDs in request order. Unknown IDs are returned in missingIds")
+    public ResponseEntity<ApiResponse<BatchGetInvoicesResponse>> batchGetInvoices(
+            @Valid @RequestBody BatchGetInvoicesRequest request) {
+        logger.info("Batch getting {} invoices", request.getIds().size());
+        BatchGetInvoicesResponse response = invoiceService.batchGetInvoices(request.getIds());
+        return ResponseUtils.success(response, "Invoices retrieved successfully");
+    }
+    
+    /**
+     * Build the entity tag of a single invoice.
+     */
+    private String invoiceETag(Long invoiceId, Integer version) {
+        return ETagUtils.of("invoice", invoiceId, "v" + version);
     }
     
     /**
      * Get all invoices
      */
     @GetMapping
-    @Operation(summary = "Get all invoices", description = "Retrieves all invoices")
-    public ResponseEntity<ApiResponse<List<InvoiceResponse>>> getAllInvoices() {
-        logger.info("Getting all invoices");
-        List<InvoiceResponse> response = invoiceService.getAllInvoices();
+    @Operation(summary = "Get all invoices", description = "Retrieves invoices newest first using keyset pagination. Use view=summary for list screens. Supports If-None-Match with the returned ETag")
+    public ResponseEntity<ApiResponse<InvoicePageResponse<?>>> getAllInvoices(
+            @Parameter(description = "Continuation token from the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (capped at 200)") @RequestParam(required = false) Integer size,
+            @Parameter(description = "Response view: full or summary") @RequestParam(defaultValue = Constants.VIEW_FULL) String view,
+            WebRequest webRequest) {
+        logger.info("Getting invoices page with view: {}", view);
+        boolean summary = isSummaryView(view);
+        String eTag = pageETag(null, cursor, size, summary);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseUtils.notModified(eTag);
+        }
+        InvoicePageResponse<?> response = summary
+            ? invoiceService.getInvoiceSummaries(cursor, size)
+            : invoiceService.getAllInvoices(cursor, size);
+        return ResponseUtils.success(response, "Invoices retrieved successfully", eTag);
+    }
+    
+    /**
+     * Search invoices
+     */
+    @GetMapping("/search")
+    @Operation(summary = "Search invoices", description = "Searches invoices by status, client, creator, currency, amount range and date ranges, newest first")
+    public ResponseEntity<ApiResponse<InvoiceSearchResponse>> searchInvoices(
+            @ModelAttribute InvoiceSearchCriteria criteria,
+            @Parameter(description = "Continuation token from the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (capped at 200)") @RequestParam(required = false) Integer size) {
+        logger.info("Searching invoices with criteria: {}", criteria);
+        InvoiceSearchResponse response = invoiceSearchService.search(criteria, cursor, size);
         return ResponseUtils.success(response, "Invoices retrieved successfully");
     }
     
+    /**
+     * Full-text search of invoices
+     */
+    @GetMapping("/text-search")
+    @Operation(summary = "Full-text search invoices", description = "Ranked search by words or fragments of invoice numbers, client names and item descriptions, with highlighted snippets")
+    public ResponseEntity<ApiResponse<List<InvoiceTextSearchHit>>> textSearchInvoices(
+            @Parameter(description = "Search text") @RequestParam("q") String text,
+            @Parameter(description = "Maximum number of results (capped at 200)") @RequestParam(required = false) Integer limit) {
+        logger.info("Full-text searching invoices for: {}", text);
+        List<InvoiceTextSearchHit> response = invoiceTextSearchService.search(text, limit);
+        return ResponseUtils.success(response, "Invoices retrieved successfully");
+    }
+    
+    /**
+     * Export invoices as NDJSON
+     */
+    @GetMapping(value = "/export", produces = Constants.NDJSON_MEDIA_TYPE)
+    @Operation(summary = "Export invoices", description = "Streams invoices as newline-delimited JSON, optionally filtered by status and invoice date range")
+    public ResponseEntity<StreamingResponseBody> exportInvoices(
+            @Parameter(description = "Invoice status") @RequestParam(required = false) String status,
+            @Parameter(description = "Start of invoice date range (inclusive)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @Parameter(description = "End of invoice date range (inclusive)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        logger.info("Exporting invoices with status: {} between {} and {}", status, startDate, endDate);
+        Invoice.InvoiceStatus invoiceStatus = status != null ? Invoice.InvoiceStatus.valueOf(status.toUpperCase()) : null;
+        invoiceExportService.validateDateRange(startDate, endDate);
+        
+        StreamingResponseBody body = output -> invoiceExportService.exportInvoices(invoiceStatus, startDate, endDate, output);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(Constants.NDJSON_MEDIA_TYPE))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"invoices.ndjson\"")
+            .body(body);
+    }
+    
     /**
      * Get invoices by status
      */
     @GetMapping("/status/{status}")
-    @Operation(summary = "Get invoices by status", description = "Retrieves invoices filtered by status")
-    public ResponseEntity<ApiResponse<List<InvoiceResponse>>> getInvoicesByStatus(
-            @Parameter(description = "Invoice status") @PathVariable String status) {
-        logger.info("Getting invoices with status: {}", status);
+    @Operation(summary = "Get invoices by status", description = "Retrieves invoices filtered by status using keyset pagination. Use view=summary for list screens. Supports If-None-Match with the returned ETag")
+    public ResponseEntity<ApiResponse<InvoicePageResponse<?>>> getInvoicesByStatus(
+            @Parameter(description = "Invoice status") @PathVariable String status,
+            @Parameter(description = "Continuation token from the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (capped at 200)") @RequestParam(required = false) Integer size,
+            @Parameter(description = "Response view: full or summary") @RequestParam(defaultValue = Constants.VIEW_FULL) String view,
+            WebRequest webRequest) {
+        logger.info("Getting invoices page with status: {} and view: {}", status, view);
         Invoice.InvoiceStatus invoiceStatus = Invoice.InvoiceStatus.valueOf(status.toUpperCase());
-        List<InvoiceResponse> response = invoiceService.getInvoicesByStatus(invoiceStatus);
-        return ResponseUtils.success(response, "Invoices retrieved successfully");
+        boolean summary = isSummaryView(view);
+        String eTag = pageETag(invoiceStatus, cursor, size, summary);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseUtils.notModified(eTag);
+        }
+        InvoicePageResponse<?> response = summary
+            ? invoiceService.getInvoiceSummariesByStatus(invoiceStatus, cursor, size)
+            : invoiceService.getInvoicesByStatus(invoiceStatus, cursor, size);
+        return ResponseUtils.success(response, "Invoices retrieved successfully", eTag);
+    }
+    
+    /**
+     * Build the entity tag of a list page from the versions of its rows.
+     * The page is rendered after the tag is computed, so a concurrent write can at worst
+     * make the next conditional request miss, never serve stale data as current.
+     */
+    private String pageETag(Invoice.InvoiceStatus status, String cursor, Integer size, boolean summary) {
+        String watermark = invoiceService.getInvoicePageWatermark(status, cursor, size);
+        return ETagUtils.digest(ETagUtils.join(summary ? Constants.VIEW_SUMMARY : Constants.VIEW_FULL, status, cursor, watermark));
+    }
+    
+    /**
+     * Resolve the list view parameter.
+     */
+    private boolean isSummaryView(String view) {
+        if (Constants.VIEW_SUMMARY.equalsIgnoreCase(view)) {
+            return true;
+        }
+        if (Constants.VIEW_FULL.equalsIgnoreCase(view)) {
+            return false;
+        }
+        throw new BusinessException(String.format(Constants.INVALID_VIEW, view));
     }
     
     /**
@@ -1,15 +1,20 @@
 package com.fabrica.p6f5.springapp.invoice.controller;
 
+import com.fabrica.p6f5.springapp.audit.dto.InvoiceHistoryWatermark;
 import com.fabrica.p6f5.springapp.audit.model.InvoiceHistory;
 import com.fabrica.p6f5.springapp.audit.service.AuditService;
 import com.fabrica.p6f5.springapp.dto.ApiResponse;
 import com.fabrica.p6f5.springapp.invoice.dto.InvoiceHistoryResponse;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceSnapshotCodec;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import com.fabrica.p6f5.springapp.util.ETagUtils;
 import com.fabrica.p6f5.springapp.util.ResponseUtils;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Optional;
@@ -25,23 +30,31 @@ import java.util.stream.Collectors;
 public class InvoiceHistoryController {
     
     private final AuditService auditService;
+    private final InvoiceSnapshotCodec invoiceSnapshotCodec;
     
-    public InvoiceHistoryController(AuditService auditService) {
+    public InvoiceHistoryController(AuditService auditService, InvoiceSnapshotCodec invoiceSnapshotCodec) {
         this.auditService = auditService;
+        this.invoiceSnapshotCodec = invoiceSnapshotCodec;
     }
     
     /**
      * Get invoice history
      */
     @GetMapping("/{invoiceId}/history")
-    @Operation(summary = "Get invoice history", description = "Retrieves all versions of an invoice")
+    @Operation(summary = "Get invoice history", description = "Retrieves all versions of an invoice. Supports If-None-Match with the returned ETag")
     public ResponseEntity<ApiResponse<List<InvoiceHistoryResponse>>> getInvoiceHistory(
-            @Parameter(description = "Invoice ID") @PathVariable Long invoiceId) {
+            @Parameter(description = "Invoice ID") @PathVariable Long invoiceId,
+            WebRequest webRequest) {
+        InvoiceHistoryWatermark watermark = auditService.getInvoiceHistoryWatermark(invoiceId);
+        String eTag = ETagUtils.of("history", invoiceId, watermark.versionCount(), watermark.lastHistoryId());
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseUtils.notModified(eTag);
+        }
         List<InvoiceHistory> history = auditService.getInvoiceHistory(invoiceId);
         List<InvoiceHistoryResponse> response = history.stream()
             .map(this::convertToResponse)
             .collect(Collectors.toList());
-        return ResponseUtils.success(response, "Invoice history retrieved successfully");
+        return ResponseUtils.success(response, "Invoice history retrieved successfully", eTag);
     }
     
     /**
@@ -51,17 +64,25 @@ public class InvoiceHistoryController {
     @Operation(summary = "Get invoice version", description = "Retrieves a specific version of an invoice")
     public ResponseEntity<ApiResponse<InvoiceHistoryResponse>> getInvoiceVersion(
             @Parameter(description = "Invoice ID") @PathVariable Long invoiceId,
-            @Parameter(description = "Version number") @PathVariable Integer version) {
+            @Parameter(description = "Version number") @PathVariable Integer version,
+            WebRequest webRequest) {
+        String eTag = ETagUtils.of("history", invoiceId, "v" + version);
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && auditService.invoiceHistoryVersionExists(invoiceId, version)
+                && webRequest.checkNotModified(eTag)) {
+            return ResponseUtils.notModified(eTag);
+        }
         Optional<InvoiceHistory> history = auditService.getInvoiceHistoryVersion(invoiceId, version);
         if (history.isEmpty()) {
             return ResponseUtils.errorTyped("Version not found", org.springframework.http.HttpStatus.NOT_FOUND);
         }
         InvoiceHistoryResponse response = convertToResponse(history.get());
-        return ResponseUtils.success(response, "Invoice version retrieved successfully");
+        return ResponseUtils.success(response, "Invoice version retrieved successfully", eTag);
     }
     
     /**
-     * Convert InvoiceHistory to response DTO
+     * Convert InvoiceHistory to response DTO. The snapshot is decoded and rendered in the
+     * shape of the invoice properties, whichever schema version stored it.
      */
     private InvoiceHistoryResponse convertToResponse(InvoiceHistory history) {
         InvoiceHistoryResponse response = new InvoiceHistoryResponse();
@@ -70,7 +91,7 @@ public class InvoiceHistoryController {
         response.setVersion(history.getVersion());
         response.setFiscalFolio(history.getFiscalFolio());
         response.setInvoiceNumber(history.getInvoiceNumber());
-        response.setInvoiceData(history.getInvoiceData());
+        response.setInvoiceData(invoiceSnapshotCodec.render(invoiceSnapshotCodec.decode(history.getInvoiceData())));
         response.setCreatedBy(history.getCreatedBy());
         response.setCreatedAt(history.getCreatedAt());
         response.setIsReverted(history.getIsReverted());
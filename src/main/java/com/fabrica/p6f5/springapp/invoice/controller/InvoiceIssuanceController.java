@@ -0,0 +1,79 @@
+package com.fabrica.p6f5.springapp.invoice.controller;
+
+import com.fabrica.p6f5.springapp.dto.ApiResponse;
+import com.fabrica.p6f5.springapp.entity.User;
+import com.fabrica.p6f5.springapp.invoice.dto.IssuanceJobResponse;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceIssuanceService;
+import com.fabrica.p6f5.springapp.util.ResponseUtils;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Invoice Issuance Controller following Single Responsibility Principle.
+ * Starts, monitors and resumes bulk issuance jobs (Admin only).
+ */
+@RestController
+@RequestMapping("/api/v1/invoices/issuance-jobs")
+@PreAuthorize("hasRole('ADMIN')")
+@Tag(name = "Invoice Issuance API", description = "API for issuing all ready draft invoices in bulk")
+public class InvoiceIssuanceController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceIssuanceController.class);
+    
+    private final InvoiceIssuanceService invoiceIssuanceService;
+    
+    public InvoiceIssuanceController(InvoiceIssuanceService invoiceIssuanceService) {
+        this.invoiceIssuanceService = invoiceIssuanceService;
+    }
+    
+    /**
+     * Start a bulk issuance job
+     */
+    @PostMapping
+    @Operation(summary = "Start a bulk issuance job", description = "Issues every ready draft in chunks on a bounded worker pool; returns immediately with the job")
+    public ResponseEntity<ApiResponse<IssuanceJobResponse>> startJob(@AuthenticationPrincipal User user) {
+        logger.info("Starting bulk issuance job by user: {}", user.getUsername());
+        IssuanceJobResponse response = invoiceIssuanceService.startJob(user.getId());
+        return ResponseUtils.success(response, "Issuance job started");
+    }
+    
+    /**
+     * Get recent bulk issuance jobs
+     */
+    @GetMapping
+    @Operation(summary = "Get recent issuance jobs", description = "Retrieves the 50 most recent issuance jobs with their progress counters")
+    public ResponseEntity<ApiResponse<List<IssuanceJobResponse>>> getRecentJobs() {
+        return ResponseUtils.success(invoiceIssuanceService.getRecentJobs(), "Issuance jobs retrieved successfully");
+    }
+    
+    /**
+     * Get a bulk issuance job
+     */
+    @GetMapping("/{jobId}")
+    @Operation(summary = "Get an issuance job", description = "Retrieves progress, throughput and the outcome of every chunk of an issuance job")
+    public ResponseEntity<ApiResponse<IssuanceJobResponse>> getJob(
+            @Parameter(description = "Issuance job ID") @PathVariable Long jobId) {
+        return ResponseUtils.success(invoiceIssuanceService.getJob(jobId), "Issuance job retrieved successfully");
+    }
+    
+    /**
+     * Resume an interrupted bulk issuance job
+     */
+    @PostMapping("/{jobId}/resume")
+    @Operation(summary = "Resume an issuance job", description = "Resumes an interrupted issuance job; drafts already issued are not claimed again")
+    public ResponseEntity<ApiResponse<IssuanceJobResponse>> resumeJob(
+            @Parameter(description = "Issuance job ID") @PathVariable Long jobId) {
+        logger.info("Resuming issuance job id: {}", jobId);
+        IssuanceJobResponse response = invoiceIssuanceService.resumeJob(jobId);
+        return ResponseUtils.success(response, "Issuance job resumed");
+    }
+}
@@ -0,0 +1,24 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+import com.fabrica.p6f5.springapp.util.Constants;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for fetching several invoices by ID.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchGetInvoicesRequest {
+    
+    @NotEmpty(message = "At least one invoice ID is required")
+    @Size(max = Constants.MAX_BATCH_GET_SIZE, message = "At most " + Constants.MAX_BATCH_GET_SIZE + " invoice IDs are allowed")
+    private List<@NotNull(message = "Invoice ID must not be null") Long> ids;
+}
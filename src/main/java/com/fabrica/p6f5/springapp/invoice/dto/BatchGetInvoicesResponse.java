@@ -0,0 +1,20 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for the result of a batch get.
+ * Invoices keep the order of the requested IDs; IDs with no invoice are listed in missingIds.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchGetInvoicesResponse {
+    
+    private List<InvoiceResponse> invoices;
+    private List<Long> missingIds;
+}
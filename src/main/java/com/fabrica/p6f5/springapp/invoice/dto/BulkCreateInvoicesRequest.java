@@ -0,0 +1,24 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+import com.fabrica.p6f5.springapp.util.Constants;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for creating many draft invoices in one call.
+ * Entries are validated one by one so that an invalid entry fails alone.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCreateInvoicesRequest {
+    
+    @NotEmpty(message = "At least one invoice is required")
+    @Size(max = Constants.MAX_BULK_CREATE_SIZE, message = "At most " + Constants.MAX_BULK_CREATE_SIZE + " invoices are allowed")
+    private List<CreateInvoiceRequest> invoices;
+}
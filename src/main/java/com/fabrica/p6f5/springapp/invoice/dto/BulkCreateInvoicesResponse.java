@@ -0,0 +1,44 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for the result of a bulk draft creation, with one result per request entry.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCreateInvoicesResponse {
+    
+    private int requested;
+    private int created;
+    private int failed;
+    private List<EntryResult> results;
+    
+    /**
+     * Outcome of one request entry, identified by its position in the request
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EntryResult {
+        
+        private int index;
+        private boolean success;
+        private Long invoiceId;
+        private String invoiceNumber;
+        private String error;
+        
+        public static EntryResult created(int index, Long invoiceId, String invoiceNumber) {
+            return new EntryResult(index, true, invoiceId, invoiceNumber, null);
+        }
+        
+        public static EntryResult failed(int index, String error) {
+            return new EntryResult(index, false, null, null, error);
+        }
+    }
+}
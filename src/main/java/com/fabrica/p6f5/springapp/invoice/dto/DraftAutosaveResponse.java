@@ -0,0 +1,23 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * DTO for the state of an autosaved draft.
+ * When flushed is true the change was written directly instead of being buffered.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DraftAutosaveResponse {
+    
+    private Long invoiceId;
+    private boolean flushed;
+    private int pendingChanges;
+    private Instant pendingSince;
+    private Instant flushDueAt;
+}
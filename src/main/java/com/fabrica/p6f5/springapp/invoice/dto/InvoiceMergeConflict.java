@@ -0,0 +1,22 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * DTO for a field changed differently by a request and by a concurrent update.
+ * Item fields are named like {@code items[42].quantity}; a null value of an item
+ * means the item was deleted on that side.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceMergeConflict {
+    
+    private String field;
+    private Long itemId;
+    private Object baseValue;
+    private Object yourValue;
+    private Object currentValue;
+}
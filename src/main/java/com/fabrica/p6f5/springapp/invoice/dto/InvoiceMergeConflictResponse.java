@@ -0,0 +1,21 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for a rejected draft update whose changes conflict with a concurrent update.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceMergeConflictResponse {
+    
+    private Long invoiceId;
+    private Integer baseVersion;
+    private Integer currentVersion;
+    private List<InvoiceMergeConflict> conflicts;
+}
@@ -0,0 +1,32 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * DTO for a keyset-paginated page of invoices.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoicePageResponse<T> {
+    
+    private List<T> items;
+    private String nextCursor;
+    private int size;
+    private boolean hasMore;
+    
+    /**
+     * Build a page from rows fetched with one extra row used as look-ahead.
+     */
+    public static <T> InvoicePageResponse<T> of(List<T> rows, int pageSize, Function<T, String> cursorOf) {
+        boolean hasMore = rows.size() > pageSize;
+        List<T> items = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? cursorOf.apply(items.get(items.size() - 1)) : null;
+        return new InvoicePageResponse<>(items, nextCursor, items.size(), hasMore);
+    }
+}
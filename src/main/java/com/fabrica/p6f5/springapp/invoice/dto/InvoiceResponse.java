@@ -8,6 +8,7 @@ import lombok.AllArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -43,6 +44,19 @@ public class InvoiceResponse {
      * Convert Invoice entity to InvoiceResponse DTO
      */
     public static InvoiceResponse fromEntity(Invoice invoice) {
+        List<Long> shipmentIds = null;
+        if (invoice.getShipments() != null) {
+            shipmentIds = invoice.getShipments().stream()
+                .map(is -> is.getShipment().getId())
+                .collect(Collectors.toList());
+        }
+        return fromEntity(invoice, shipmentIds);
+    }
+    
+    /**
+     * Convert Invoice entity to InvoiceResponse DTO with shipment IDs loaded separately
+     */
+    public static InvoiceResponse fromEntity(Invoice invoice, List<Long> shipmentIds) {
         InvoiceResponse response = new InvoiceResponse();
         response.setId(invoice.getId());
         response.setFiscalFolio(invoice.getFiscalFolio());
@@ -68,15 +82,20 @@ public class InvoiceResponse {
                 .collect(Collectors.toList()));
         }
         
-        if (invoice.getShipments() != null) {
-            response.setShipmentIds(invoice.getShipments().stream()
-                .map(is -> is.getShipment().getId())
-                .collect(Collectors.toList()));
-        }
-        
+        response.setShipmentIds(shipmentIds);
         return response;
     }
     
+    /**
+     * Copy of this response whose item and shipment lists can be changed independently.
+     */
+    public InvoiceResponse copy() {
+        return new InvoiceResponse(id, fiscalFolio, invoiceNumber, clientName, clientEmail, invoiceDate, dueDate,
+            subtotal, taxAmount, totalAmount, currency, status, pdfUrl, createdBy, createdAt, updatedAt, version,
+            items != null ? items.stream().map(InvoiceItemResponse::copy).collect(Collectors.toList()) : null,
+            shipmentIds != null ? new ArrayList<>(shipmentIds) : null);
+    }
+    
     /**
      * Nested DTO for invoice items
      */
@@ -107,6 +126,10 @@ public class InvoiceResponse {
             }
             return response;
         }
+        
+        public InvoiceItemResponse copy() {
+            return new InvoiceItemResponse(id, shipmentId, description, quantity, unitPrice, totalPrice);
+        }
     }
 }
 
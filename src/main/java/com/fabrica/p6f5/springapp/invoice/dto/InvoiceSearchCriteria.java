@@ -0,0 +1,65 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * DTO for multi-criteria invoice search filters.
+ * All filters are optional and combined with AND.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceSearchCriteria {
+    
+    private Invoice.InvoiceStatus status;
+    
+    private String clientName;
+    
+    private Long createdBy;
+    
+    private String currency;
+    
+    private BigDecimal minAmount;
+    
+    private BigDecimal maxAmount;
+    
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate invoiceDateFrom;
+    
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate invoiceDateTo;
+    
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate dueDateFrom;
+    
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate dueDateTo;
+    
+    /**
+     * Check if an invoice date range filter is present
+     */
+    public boolean hasInvoiceDateRange() {
+        return invoiceDateFrom != null || invoiceDateTo != null;
+    }
+    
+    /**
+     * Check if a due date range filter is present
+     */
+    public boolean hasDueDateRange() {
+        return dueDateFrom != null || dueDateTo != null;
+    }
+    
+    /**
+     * Check if an amount range filter is present
+     */
+    public boolean hasAmountRange() {
+        return minAmount != null || maxAmount != null;
+    }
+}
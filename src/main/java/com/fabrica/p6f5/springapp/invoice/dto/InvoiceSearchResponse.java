@@ -0,0 +1,20 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * DTO for invoice search responses.
+ * Reports the access path and index that the filter combination is expected to use.
+ * They are chosen from the filters, not read from the executed plan.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceSearchResponse {
+    
+    private InvoicePageResponse<InvoiceSummary> results;
+    private String expectedAccessPath;
+    private String expectedIndex;
+}
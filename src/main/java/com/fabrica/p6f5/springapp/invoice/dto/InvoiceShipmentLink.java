@@ -0,0 +1,7 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+/**
+ * Projection of an invoice-shipment link as plain IDs.
+ */
+public record InvoiceShipmentLink(Long invoiceId, Long shipmentId) {
+}
@@ -0,0 +1,25 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only invoice projection for list screens.
+ * Loaded through constructor expressions, so rows are never managed entities.
+ */
+public record InvoiceSummary(
+        Long id,
+        String invoiceNumber,
+        String clientName,
+        Invoice.InvoiceStatus status,
+        LocalDate invoiceDate,
+        LocalDate dueDate,
+        BigDecimal subtotal,
+        BigDecimal taxAmount,
+        BigDecimal totalAmount,
+        String currency,
+        LocalDateTime createdAt) {
+}
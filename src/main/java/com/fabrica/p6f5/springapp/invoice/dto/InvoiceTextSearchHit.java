@@ -0,0 +1,29 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Projection of a ranked full-text search hit.
+ * Snippet highlights matched terms with mark tags.
+ */
+public interface InvoiceTextSearchHit {
+    
+    Long getId();
+    
+    String getInvoiceNumber();
+    
+    String getClientName();
+    
+    String getStatus();
+    
+    LocalDate getInvoiceDate();
+    
+    BigDecimal getTotalAmount();
+    
+    String getCurrency();
+    
+    Double getRank();
+    
+    String getSnippet();
+}
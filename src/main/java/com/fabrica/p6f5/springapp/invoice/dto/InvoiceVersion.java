@@ -0,0 +1,15 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+
+import java.time.LocalDateTime;
+
+/**
+ * Version watermark of an invoice, loaded without items or shipments.
+ */
+public record InvoiceVersion(
+        Long id,
+        Integer version,
+        Invoice.InvoiceStatus status,
+        LocalDateTime updatedAt) {
+}
@@ -0,0 +1,33 @@
+package com.fabrica.p6f5.springapp.invoice.dto;
+
+import com.fabrica.p6f5.springapp.invoice.model.IssuanceChunk;
+import com.fabrica.p6f5.springapp.invoice.model.IssuanceJob;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for the progress of a bulk issuance job with its chunks.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IssuanceJobResponse {
+    
+    private IssuanceJob job;
+    private long processed;
+    private long elapsedMs;
+    private double invoicesPerSecond;
+    private List<IssuanceChunk> chunks;
+    
+    public static IssuanceJobResponse fromEntity(IssuanceJob job, List<IssuanceChunk> chunks) {
+        LocalDateTime end = job.getFinishedAt() != null ? job.getFinishedAt() : job.getUpdatedAt();
+        long elapsedMs = Math.max(0, Duration.between(job.getStartedAt(), end).toMillis());
+        double perSecond = elapsedMs > 0 ? job.getIssuedCount() * 1000.0 / elapsedMs : 0;
+        return new IssuanceJobResponse(job, job.getIssuedCount() + job.getFailedCount(), elapsedMs, perSecond, chunks);
+    }
+}
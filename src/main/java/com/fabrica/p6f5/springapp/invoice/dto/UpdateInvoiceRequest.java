@@ -23,6 +23,9 @@ public class UpdateInvoiceRequest {
     @NotBlank(message = "Client name is required")
     private String clientName;
     
+    /**
+     * Omitted (null) keeps the current email; an empty string clears it.
+     */
     private String clientEmail;
     
     @NotNull(message = "Invoice date is required")
@@ -37,10 +40,15 @@ public class UpdateInvoiceRequest {
     
     private List<Long> shipmentIds;
     
-    @NotNull(message = "Tax amount is required")
+    /**
+     * Omitted (null) keeps the current tax amount.
+     */
     private BigDecimal taxAmount;
     
-    private String currency = "USD";
+    /**
+     * Omitted (null) keeps the current currency.
+     */
+    private String currency;
     
     private Integer version;
     
@@ -52,6 +60,12 @@ public class UpdateInvoiceRequest {
     @AllArgsConstructor
     public static class InvoiceItemRequest {
         
+        /**
+         * ID of an existing line of this invoice; null for a new line.
+         * Existing lines missing from the request are deleted.
+         */
+        private Long id;
+        
         private Long shipmentId;
         
         @NotBlank(message = "Description is required")
@@ -1,5 +1,6 @@
 package com.fabrica.p6f5.springapp.invoice.model;
 
+import com.fabrica.p6f5.springapp.util.Constants;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -7,6 +8,7 @@ import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -20,13 +22,22 @@ import java.util.List;
  */
 @Entity
 @Table(name = "invoices")
+@NamedEntityGraph(name = Invoice.GRAPH_ITEMS, attributeNodes = @NamedAttributeNode("items"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Invoice {
     
+    /**
+     * Fetch plan loading the line items together with the invoice.
+     * Items and shipment links are both bags, so only one of them can be join-fetched;
+     * shipment links are loaded through batch fetching instead.
+     */
+    public static final String GRAPH_ITEMS = "Invoice.items";
+    
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "invoice_id_seq")
+    @SequenceGenerator(name = "invoice_id_seq", sequenceName = "invoice_id_seq", allocationSize = Constants.ID_ALLOCATION_SIZE)
     @Column(name = "invoice_id")
     private Long id;
     
@@ -91,9 +102,11 @@ public class Invoice {
     private Integer version = 1;
     
     @OneToMany(mappedBy = "invoice", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 256)
     private List<InvoiceItem> items = new ArrayList<>();
     
     @OneToMany(mappedBy = "invoice", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 256)
     private List<InvoiceShipment> shipments = new ArrayList<>();
     
     @PrePersist
@@ -110,6 +123,14 @@ public class Invoice {
         updatedAt = LocalDateTime.now();
     }
     
+    /**
+     * Mark the invoice itself as changed. Changes to items alone do not dirty the invoice,
+     * so without this its version would stay the same.
+     */
+    public void touch() {
+        updatedAt = LocalDateTime.now();
+    }
+    
     /**
      * Invoice status enum
      */
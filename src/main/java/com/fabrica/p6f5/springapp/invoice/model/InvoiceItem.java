@@ -1,6 +1,10 @@
 package com.fabrica.p6f5.springapp.invoice.model;
 
+import com.fabrica.p6f5.springapp.util.Constants;
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIdentityReference;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -26,7 +30,8 @@ import java.time.LocalDateTime;
 public class InvoiceItem {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "invoice_item_id_seq")
+    @SequenceGenerator(name = "invoice_item_id_seq", sequenceName = "invoice_item_id_seq", allocationSize = Constants.ID_ALLOCATION_SIZE)
     @Column(name = "item_id")
     private Long id;
     
@@ -38,6 +43,8 @@ public class InvoiceItem {
     
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "shipment_id")
+    @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
+    @JsonIdentityReference(alwaysAsId = true)
     private com.fabrica.p6f5.springapp.shipment.model.Shipment shipment;
     
     @NotBlank(message = "Description is required")
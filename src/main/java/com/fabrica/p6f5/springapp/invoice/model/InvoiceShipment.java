@@ -1,38 +1,55 @@
 package com.fabrica.p6f5.springapp.invoice.model;
 
 import com.fabrica.p6f5.springapp.shipment.model.Shipment;
+import com.fabrica.p6f5.springapp.util.Constants;
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIdentityReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.SQLInsert;
+import org.hibernate.jdbc.Expectation;
 
 import java.time.LocalDateTime;
 
 /**
  * InvoiceShipment entity following Single Responsibility Principle.
  * Represents the many-to-many relationship between invoices and shipments.
+ * A shipment already linked to an invoice makes the insert affect no row, which fails
+ * the row count check at flush (keep the JDBC driver's reWriteBatchedInserts off).
  */
 @Entity
 @Table(name = "invoice_shipments")
+@SQLInsert(
+    sql = "INSERT INTO invoice_shipments (created_at, invoice_id, shipment_id, invoice_shipment_id) " +
+          "VALUES (?, ?, ?, ?) ON CONFLICT (shipment_id) DO NOTHING",
+    verify = Expectation.RowCount.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class InvoiceShipment {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "invoice_shipment_id_seq")
+    @SequenceGenerator(name = "invoice_shipment_id_seq", sequenceName = "invoice_shipment_id_seq", allocationSize = Constants.ID_ALLOCATION_SIZE)
     @Column(name = "invoice_shipment_id")
     private Long id;
     
     @NotNull(message = "Invoice is required")
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "invoice_id", nullable = false)
+    @JsonIgnore
     private Invoice invoice;
     
     @NotNull(message = "Shipment is required")
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "shipment_id", nullable = false)
+    @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
+    @JsonIdentityReference(alwaysAsId = true)
     private Shipment shipment;
     
     @Column(name = "created_at", nullable = false, updatable = false)
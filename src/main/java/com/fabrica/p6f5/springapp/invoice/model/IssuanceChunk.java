@@ -0,0 +1,72 @@
+package com.fabrica.p6f5.springapp.invoice.model;
+
+import com.fabrica.p6f5.springapp.util.Constants;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * IssuanceChunk entity following Single Responsibility Principle.
+ * Records the outcome of one chunk of a bulk issuance job. A chunk is FAILED
+ * when at least one of its claimed drafts could not be issued.
+ */
+@Entity
+@Table(name = "issuance_chunks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IssuanceChunk {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "issuance_chunk_id_seq")
+    @SequenceGenerator(name = "issuance_chunk_id_seq", sequenceName = "issuance_chunk_id_seq", allocationSize = Constants.ID_ALLOCATION_SIZE)
+    @Column(name = "chunk_id")
+    private Long id;
+    
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "chunk_status", nullable = false, length = 50)
+    private ChunkStatus status;
+    
+    @Column(name = "invoice_count", nullable = false)
+    private Integer invoiceCount;
+    
+    @Column(name = "failed_count", nullable = false)
+    private Integer failedCount = 0;
+    
+    @Column(name = "first_invoice_id")
+    private Long firstInvoiceId;
+    
+    @Column(name = "last_invoice_id")
+    private Long lastInvoiceId;
+    
+    @Column(name = "duration_ms", nullable = false)
+    private Long durationMs;
+    
+    @Column(name = "worker", length = 100)
+    private String worker;
+    
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+    
+    @Column(name = "completed_at", nullable = false)
+    private LocalDateTime completedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        completedAt = LocalDateTime.now();
+    }
+    
+    /**
+     * Chunk status enum
+     */
+    public enum ChunkStatus {
+        SUCCESS,
+        FAILED
+    }
+}
@@ -0,0 +1,86 @@
+package com.fabrica.p6f5.springapp.invoice.model;
+
+import com.fabrica.p6f5.springapp.util.Constants;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * IssuanceJob entity following Single Responsibility Principle.
+ * Tracks a bulk issuance run. Counters are only changed through repository
+ * updates committed together with each chunk. The node running the job refreshes
+ * heartbeatAt while its workers run.
+ */
+@Entity
+@Table(name = "issuance_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IssuanceJob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "issuance_job_id_seq")
+    @SequenceGenerator(name = "issuance_job_id_seq", sequenceName = "issuance_job_id_seq", allocationSize = Constants.ID_ALLOCATION_SIZE)
+    @Column(name = "job_id")
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "job_status", nullable = false, length = 50)
+    private JobStatus status = JobStatus.RUNNING;
+    
+    @Column(name = "chunk_size", nullable = false)
+    private Integer chunkSize;
+    
+    @Column(name = "ready_at_start", nullable = false)
+    private Long readyAtStart = 0L;
+    
+    @Column(name = "issued_count", nullable = false)
+    private Long issuedCount = 0L;
+    
+    @Column(name = "failed_count", nullable = false)
+    private Long failedCount = 0L;
+    
+    @Column(name = "chunk_count", nullable = false)
+    private Integer chunkCount = 0;
+    
+    @Column(name = "failed_chunk_count", nullable = false)
+    private Integer failedChunkCount = 0;
+    
+    @Column(name = "requested_by")
+    private Long requestedBy;
+    
+    @Column(name = "node_id")
+    private Integer nodeId;
+    
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+    
+    @Column(name = "heartbeat_at", nullable = false)
+    private LocalDateTime heartbeatAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        startedAt = LocalDateTime.now();
+        updatedAt = startedAt;
+        heartbeatAt = startedAt;
+    }
+    
+    /**
+     * Job status enum
+     */
+    public enum JobStatus {
+        RUNNING,
+        COMPLETED,
+        COMPLETED_WITH_FAILURES,
+        INTERRUPTED
+    }
+}
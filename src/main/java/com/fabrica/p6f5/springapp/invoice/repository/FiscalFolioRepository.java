@@ -0,0 +1,76 @@
+package com.fabrica.p6f5.springapp.invoice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Fiscal Folio Repository.
+ * Allocates fiscal folio numbers per series through JDBC, on fiscal_folio_series (next number
+ * of each series) and fiscal_folio_free_ranges (numbers returned by stopped nodes). The
+ * statements write and return rows, which Spring Data query methods cannot express: without
+ * {@code @Modifying} they would run as reads, and with it they could not return the allocated
+ * values. They never touch entities, so the persistence context needs no flush or clear. All
+ * methods must run in a caller transaction.
+ */
+@Repository
+public class FiscalFolioRepository {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public FiscalFolioRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Reserve the next count folio numbers of a series, creating the series on first use.
+     * The series row stays locked until the transaction ends.
+     * 
+     * @param series the series
+     * @param count the number of folios to reserve
+     * @return the first reserved number
+     */
+    public long allocate(String series, long count) {
+        return jdbcTemplate.queryForObject(
+            "INSERT INTO fiscal_folio_series (series, next_value, updated_at) " +
+            "VALUES (?, 1 + ?, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (series) DO UPDATE SET next_value = fiscal_folio_series.next_value + ?, " +
+            "updated_at = CURRENT_TIMESTAMP " +
+            "RETURNING next_value - ?",
+            Long.class, series, count, count, count);
+    }
+    
+    /**
+     * Take the lowest free range of a series, skipping ranges taken by other nodes.
+     * 
+     * @param series the series
+     * @return the range, removed from the free list
+     */
+    public Optional<FolioRange> claimFreeRange(String series) {
+        return jdbcTemplate.query(
+            "DELETE FROM fiscal_folio_free_ranges WHERE range_id = (" +
+            "SELECT range_id FROM fiscal_folio_free_ranges WHERE series = ? " +
+            "ORDER BY first_value LIMIT 1 FOR UPDATE SKIP LOCKED) " +
+            "RETURNING first_value, last_value",
+            (rs, rowNum) -> new FolioRange(rs.getLong("first_value"), rs.getLong("last_value")),
+            series).stream().findFirst();
+    }
+    
+    /**
+     * Return an unused range of a series to the free list.
+     * 
+     * @return number of affected rows
+     */
+    public int releaseRange(String series, long firstValue, long lastValue) {
+        return jdbcTemplate.update(
+            "INSERT INTO fiscal_folio_free_ranges (series, first_value, last_value) VALUES (?, ?, ?)",
+            series, firstValue, lastValue);
+    }
+    
+    /**
+     * Inclusive range of folio numbers
+     */
+    public record FolioRange(long firstValue, long lastValue) {
+    }
+}
@@ -1,20 +1,68 @@
 package com.fabrica.p6f5.springapp.invoice.repository;
 
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceSummary;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceTextSearchHit;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceVersion;
 import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Invoice Repository interface following Dependency Inversion Principle.
  * Defines data access operations for invoices.
  */
 @Repository
-public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
+public interface InvoiceRepository extends JpaRepository<Invoice, Long>, JpaSpecificationExecutor<Invoice> {
+    
+    String VERSION_SELECT = "SELECT new com.fabrica.p6f5.springapp.invoice.dto.InvoiceVersion(" +
+           "i.id, i.version, i.status, i.updatedAt) FROM Invoice i ";
+    
+    String SUMMARY_SELECT = "SELECT new com.fabrica.p6f5.springapp.invoice.dto.InvoiceSummary(" +
+           "i.id, i.invoiceNumber, i.clientName, i.status, i.invoiceDate, i.dueDate, " +
+           "i.subtotal, i.taxAmount, i.totalAmount, i.currency, i.createdAt) FROM Invoice i ";
+    
+    /**
+     * Find an invoice with its line items for the detail view.
+     * 
+     * @param id the invoice ID
+     * @return Optional containing the invoice with items loaded
+     */
+    @EntityGraph(Invoice.GRAPH_ITEMS)
+    Optional<Invoice> findDetailById(Long id);
+    
+    /**
+     * Find the version watermark of an invoice without loading the entity.
+     * 
+     * @param id the invoice ID
+     * @return Optional containing the invoice version, status and update time
+     */
+    @Query(VERSION_SELECT + "WHERE i.id = :id")
+    Optional<InvoiceVersion> findVersionById(@Param("id") Long id);
+    
+    /**
+     * Load the line items of a set of invoices in a single query.
+     * Used after a paginated query, since collections cannot be join-fetched under a row limit.
+     * 
+     * @param ids the invoice IDs
+     * @return list of invoices with items loaded
+     */
+    @EntityGraph(Invoice.GRAPH_ITEMS)
+    List<Invoice> findWithItemsByIdIn(Collection<Long> ids);
     
     /**
      * Find an invoice by fiscal folio.
@@ -40,6 +88,145 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
      */
     List<Invoice> findByStatusOrderByCreatedAtDesc(Invoice.InvoiceStatus status);
     
+    /**
+     * Find the first keyset page of invoices, newest first.
+     * 
+     * @param pageable the page limit
+     * @return list of invoices ordered by creation date and ID descending
+     */
+    @Query("SELECT i FROM Invoice i ORDER BY i.createdAt DESC, i.id DESC")
+    List<Invoice> findFirstPage(Pageable pageable);
+    
+    /**
+     * Find the keyset page of invoices after a cursor position.
+     * 
+     * @param createdAt the creation date of the last row of the previous page
+     * @param id the ID of the last row of the previous page
+     * @param pageable the page limit
+     * @return list of invoices ordered by creation date and ID descending
+     */
+    @Query("SELECT i FROM Invoice i WHERE (i.createdAt, i.id) < (:createdAt, :id) " +
+           "ORDER BY i.createdAt DESC, i.id DESC")
+    List<Invoice> findPageAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+    
+    /**
+     * Find the first keyset page of invoices by status, newest first.
+     * 
+     * @param status the invoice status
+     * @param pageable the page limit
+     * @return list of invoices ordered by creation date and ID descending
+     */
+    @Query("SELECT i FROM Invoice i WHERE i.status = :status ORDER BY i.createdAt DESC, i.id DESC")
+    List<Invoice> findFirstPageByStatus(@Param("status") Invoice.InvoiceStatus status, Pageable pageable);
+    
+    /**
+     * Find the keyset page of invoices by status after a cursor position.
+     * 
+     * @param status the invoice status
+     * @param createdAt the creation date of the last row of the previous page
+     * @param id the ID of the last row of the previous page
+     * @param pageable the page limit
+     * @return list of invoices ordered by creation date and ID descending
+     */
+    @Query("SELECT i FROM Invoice i WHERE i.status = :status AND (i.createdAt, i.id) < (:createdAt, :id) " +
+           "ORDER BY i.createdAt DESC, i.id DESC")
+    List<Invoice> findPageByStatusAfter(@Param("status") Invoice.InvoiceStatus status,
+                                        @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") Long id,
+                                        Pageable pageable);
+    
+    /**
+     * Find the version watermarks of the first keyset page of invoices.
+     * 
+     * @param pageable the page limit
+     * @return list of versions ordered by creation date and ID descending
+     */
+    @Query(VERSION_SELECT + "ORDER BY i.createdAt DESC, i.id DESC")
+    List<InvoiceVersion> findVersionFirstPage(Pageable pageable);
+    
+    /**
+     * Find the version watermarks of the keyset page of invoices after a cursor position.
+     * 
+     * @param createdAt the creation date of the last row of the previous page
+     * @param id the ID of the last row of the previous page
+     * @param pageable the page limit
+     * @return list of versions ordered by creation date and ID descending
+     */
+    @Query(VERSION_SELECT + "WHERE (i.createdAt, i.id) < (:createdAt, :id) ORDER BY i.createdAt DESC, i.id DESC")
+    List<InvoiceVersion> findVersionPageAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+    
+    /**
+     * Find the version watermarks of the first keyset page of invoices by status.
+     * 
+     * @param status the invoice status
+     * @param pageable the page limit
+     * @return list of versions ordered by creation date and ID descending
+     */
+    @Query(VERSION_SELECT + "WHERE i.status = :status ORDER BY i.createdAt DESC, i.id DESC")
+    List<InvoiceVersion> findVersionFirstPageByStatus(@Param("status") Invoice.InvoiceStatus status, Pageable pageable);
+    
+    /**
+     * Find the version watermarks of the keyset page of invoices by status after a cursor position.
+     * 
+     * @param status the invoice status
+     * @param createdAt the creation date of the last row of the previous page
+     * @param id the ID of the last row of the previous page
+     * @param pageable the page limit
+     * @return list of versions ordered by creation date and ID descending
+     */
+    @Query(VERSION_SELECT + "WHERE i.status = :status AND (i.createdAt, i.id) < (:createdAt, :id) " +
+           "ORDER BY i.createdAt DESC, i.id DESC")
+    List<InvoiceVersion> findVersionPageByStatusAfter(@Param("status") Invoice.InvoiceStatus status,
+                                                      @Param("createdAt") LocalDateTime createdAt,
+                                                      @Param("id") Long id,
+                                                      Pageable pageable);
+    
+    /**
+     * Find the first keyset page of invoice summaries, newest first.
+     * 
+     * @param pageable the page limit
+     * @return list of summaries ordered by creation date and ID descending
+     */
+    @Query(SUMMARY_SELECT + "ORDER BY i.createdAt DESC, i.id DESC")
+    List<InvoiceSummary> findSummaryFirstPage(Pageable pageable);
+    
+    /**
+     * Find the keyset page of invoice summaries after a cursor position.
+     * 
+     * @param createdAt the creation date of the last row of the previous page
+     * @param id the ID of the last row of the previous page
+     * @param pageable the page limit
+     * @return list of summaries ordered by creation date and ID descending
+     */
+    @Query(SUMMARY_SELECT + "WHERE (i.createdAt, i.id) < (:createdAt, :id) ORDER BY i.createdAt DESC, i.id DESC")
+    List<InvoiceSummary> findSummaryPageAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+    
+    /**
+     * Find the first keyset page of invoice summaries by status, newest first.
+     * 
+     * @param status the invoice status
+     * @param pageable the page limit
+     * @return list of summaries ordered by creation date and ID descending
+     */
+    @Query(SUMMARY_SELECT + "WHERE i.status = :status ORDER BY i.createdAt DESC, i.id DESC")
+    List<InvoiceSummary> findSummaryFirstPageByStatus(@Param("status") Invoice.InvoiceStatus status, Pageable pageable);
+    
+    /**
+     * Find the keyset page of invoice summaries by status after a cursor position.
+     * 
+     * @param status the invoice status
+     * @param createdAt the creation date of the last row of the previous page
+     * @param id the ID of the last row of the previous page
+     * @param pageable the page limit
+     * @return list of summaries ordered by creation date and ID descending
+     */
+    @Query(SUMMARY_SELECT + "WHERE i.status = :status AND (i.createdAt, i.id) < (:createdAt, :id) " +
+           "ORDER BY i.createdAt DESC, i.id DESC")
+    List<InvoiceSummary> findSummaryPageByStatusAfter(@Param("status") Invoice.InvoiceStatus status,
+                                                      @Param("createdAt") LocalDateTime createdAt,
+                                                      @Param("id") Long id,
+                                                      Pageable pageable);
+    
     /**
      * Find all invoices by client name.
      * 
@@ -65,6 +252,67 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
      */
     List<Invoice> findByInvoiceDateBetweenOrderByInvoiceDateDesc(LocalDate startDate, LocalDate endDate);
     
+    /**
+     * Stream invoices for export through a server-side cursor.
+     * Uses the same inclusive date range semantics as findByInvoiceDateBetweenOrderByInvoiceDateDesc.
+     * Must be consumed inside a transaction and closed after use.
+     * 
+     * @param status the invoice status, or null for all statuses
+     * @param startDate the start date
+     * @param endDate the end date
+     * @return stream of invoices ordered by invoice date and ID descending
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT i FROM Invoice i WHERE (:status IS NULL OR i.status = :status) " +
+           "AND i.invoiceDate BETWEEN :startDate AND :endDate ORDER BY i.invoiceDate DESC, i.id DESC")
+    Stream<Invoice> streamForExport(@Param("status") Invoice.InvoiceStatus status,
+                                    @Param("startDate") LocalDate startDate,
+                                    @Param("endDate") LocalDate endDate);
+    
+    /**
+     * Ranked full-text search over invoice headers and line-item descriptions.
+     * An invoice matches when every term is found in its header or in any of its items, so
+     * terms may be spread over several rows. Candidate rows are found through the GIN indexes
+     * with any term; an invoice ranks by its best match, header matches weigh double, and
+     * snippets are only built for the returned rows.
+     * 
+     * @param terms the tsquery terms, separated by single spaces
+     * @param maxResults the maximum number of invoices to return
+     * @return list of hits ordered by rank descending
+     */
+    @Query(value = "WITH terms AS (" +
+           "  SELECT t.term_no, to_tsquery('simple', t.term) AS query " +
+           "  FROM unnest(string_to_array(:terms, ' ')) WITH ORDINALITY AS t(term, term_no)" +
+           "), " +
+           "q AS (SELECT to_tsquery('simple', replace(:terms, ' ', ' | ')) AS query), " +
+           "hits AS (" +
+           "  SELECT i.invoice_id, ts_rank(i.search_vector, q.query) * 2 AS rank, CAST(NULL AS TEXT) AS description, " +
+           "         i.search_vector AS vector " +
+           "  FROM invoices i, q WHERE i.search_vector @@ q.query " +
+           "  UNION ALL " +
+           "  SELECT it.invoice_id, ts_rank(it.search_vector, q.query) AS rank, it.description, it.search_vector " +
+           "  FROM invoice_items it, q WHERE it.search_vector @@ q.query" +
+           "), " +
+           "best AS (" +
+           "  SELECT h.invoice_id, MAX(h.rank) AS rank, " +
+           "         (ARRAY_AGG(h.description ORDER BY h.rank DESC) FILTER (WHERE h.description IS NOT NULL))[1] AS description " +
+           "  FROM hits h JOIN terms t ON h.vector @@ t.query " +
+           "  GROUP BY h.invoice_id HAVING COUNT(DISTINCT t.term_no) = (SELECT COUNT(*) FROM terms) " +
+           "  ORDER BY MAX(h.rank) DESC, h.invoice_id DESC LIMIT :maxResults" +
+           ") " +
+           "SELECT i.invoice_id AS \"id\", i.invoice_number AS \"invoiceNumber\", i.client_name AS \"clientName\", " +
+           "       i.invoice_status AS \"status\", i.invoice_date AS \"invoiceDate\", " +
+           "       i.total_amount AS \"totalAmount\", i.currency AS \"currency\", b.rank AS \"rank\", " +
+           "       ts_headline('simple', COALESCE(b.description, i.invoice_number || ' ' || i.client_name), q.query, " +
+           "                   'StartSel=<mark>, StopSel=</mark>, MaxFragments=2, MaxWords=20, MinWords=5') AS \"snippet\" " +
+           "FROM best b JOIN invoices i ON i.invoice_id = b.invoice_id CROSS JOIN q " +
+           "ORDER BY b.rank DESC, i.invoice_id DESC",
+           nativeQuery = true)
+    List<InvoiceTextSearchHit> searchFullText(@Param("terms") String terms, @Param("maxResults") int maxResults);
+    
     /**
      * Check if a fiscal folio already exists.
      * 
@@ -90,6 +338,48 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
            "i.subtotal > 0 AND SIZE(i.items) > 0 AND i.clientName IS NOT NULL")
     List<Invoice> findDraftsReadyForIssuance();
     
+    /**
+     * Count drafts that can be issued, with the criteria of findDraftsReadyForIssuance.
+     * 
+     * @return number of ready drafts
+     */
+    @Query("SELECT COUNT(i) FROM Invoice i WHERE i.status = 'DRAFT' AND " +
+           "i.subtotal > 0 AND SIZE(i.items) > 0 AND i.clientName IS NOT NULL")
+    long countDraftsReadyForIssuance();
+    
+    /**
+     * Claim a chunk of drafts that can be issued, with the criteria of findDraftsReadyForIssuance.
+     * Rows are locked until the transaction ends; rows locked by other workers are skipped, as
+     * are drafts that already failed in the job.
+     * 
+     * @param jobId the issuance job
+     * @param limit the maximum number of drafts
+     * @param skippedIds comma-separated IDs of further drafts to skip, may be empty
+     * @return IDs of the claimed drafts in ascending order
+     */
+    @Query(value = "SELECT i.invoice_id FROM invoices i " +
+           "WHERE i.invoice_status = 'DRAFT' AND i.subtotal > 0 AND i.client_name IS NOT NULL " +
+           "AND EXISTS (SELECT 1 FROM invoice_items it WHERE it.invoice_id = i.invoice_id) " +
+           "AND NOT EXISTS (SELECT 1 FROM issuance_chunk_failures f " +
+           "                WHERE f.job_id = :jobId AND f.invoice_id = i.invoice_id) " +
+           "AND i.invoice_id <> ALL (CAST(string_to_array(:skippedIds, ',') AS BIGINT[])) " +
+           "ORDER BY i.invoice_id LIMIT :limit FOR UPDATE OF i SKIP LOCKED",
+           nativeQuery = true)
+    List<Long> claimDraftsReadyForIssuance(@Param("jobId") Long jobId,
+                                           @Param("limit") int limit,
+                                           @Param("skippedIds") String skippedIds);
+    
+    /**
+     * Lock one draft for issuance unless it was issued or is locked by another worker meanwhile.
+     * 
+     * @param id the invoice ID
+     * @return the ID if the draft was locked, empty otherwise
+     */
+    @Query(value = "SELECT i.invoice_id FROM invoices i WHERE i.invoice_id = :id AND i.invoice_status = 'DRAFT' " +
+           "FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<Long> lockDraftForIssuance(@Param("id") Long id);
+    
     /**
      * Count invoices by status.
      * 
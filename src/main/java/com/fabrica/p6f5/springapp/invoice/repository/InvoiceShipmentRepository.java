@@ -1,9 +1,13 @@
 package com.fabrica.p6f5.springapp.invoice.repository;
 
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceShipmentLink;
 import com.fabrica.p6f5.springapp.invoice.model.InvoiceShipment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +26,26 @@ public interface InvoiceShipmentRepository extends JpaRepository<InvoiceShipment
      */
     List<InvoiceShipment> findByInvoiceId(Long invoiceId);
     
+    /**
+     * Find the shipment IDs linked to several invoices with one query.
+     * 
+     * @param invoiceIds the invoice IDs
+     * @return list of invoice and shipment ID pairs
+     */
+    @Query("SELECT new com.fabrica.p6f5.springapp.invoice.dto.InvoiceShipmentLink(s.invoice.id, s.shipment.id) " +
+           "FROM InvoiceShipment s WHERE s.invoice.id IN :invoiceIds ORDER BY s.id")
+    List<InvoiceShipmentLink> findLinksByInvoiceIdIn(@Param("invoiceIds") Collection<Long> invoiceIds);
+    
+    /**
+     * Find the existing links of several shipments with one query.
+     * 
+     * @param shipmentIds the shipment IDs
+     * @return list of invoice and shipment ID pairs
+     */
+    @Query("SELECT new com.fabrica.p6f5.springapp.invoice.dto.InvoiceShipmentLink(s.invoice.id, s.shipment.id) " +
+           "FROM InvoiceShipment s WHERE s.shipment.id IN :shipmentIds")
+    List<InvoiceShipmentLink> findLinksByShipmentIdIn(@Param("shipmentIds") Collection<Long> shipmentIds);
+    
     /**
      * Find an invoice-shipment relationship.
      * 
@@ -0,0 +1,133 @@
+package com.fabrica.p6f5.springapp.invoice.repository;
+
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceSearchCriteria;
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fabrica.p6f5.springapp.util.CursorUtils;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JPA Specifications for composing invoice search filters.
+ * Each filter is a separate specification so any combination can be planned against the indexes.
+ */
+public final class InvoiceSpecifications {
+    
+    private InvoiceSpecifications() {
+        // Utility class - prevent instantiation
+    }
+    
+    /**
+     * Build the specification for all present search filters.
+     */
+    public static Specification<Invoice> matching(InvoiceSearchCriteria criteria) {
+        List<Specification<Invoice>> specs = new ArrayList<>();
+        if (criteria.getStatus() != null) {
+            specs.add(hasStatus(criteria.getStatus()));
+        }
+        if (criteria.getClientName() != null && !criteria.getClientName().isBlank()) {
+            specs.add(hasClientName(criteria.getClientName().trim()));
+        }
+        if (criteria.getCreatedBy() != null) {
+            specs.add(createdBy(criteria.getCreatedBy()));
+        }
+        if (criteria.getCurrency() != null && !criteria.getCurrency().isBlank()) {
+            specs.add(hasCurrency(criteria.getCurrency().trim().toUpperCase()));
+        }
+        if (criteria.hasAmountRange()) {
+            specs.add(totalAmountBetween(criteria));
+        }
+        if (criteria.hasInvoiceDateRange()) {
+            specs.add(invoiceDateBetween(criteria));
+        }
+        if (criteria.hasDueDateRange()) {
+            specs.add(dueDateBetween(criteria));
+        }
+        return Specification.allOf(specs);
+    }
+    
+    /**
+     * Invoices with the given status.
+     */
+    public static Specification<Invoice> hasStatus(Invoice.InvoiceStatus status) {
+        return (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+    
+    /**
+     * Invoices for the given client, matched exactly so the client index can be used.
+     */
+    public static Specification<Invoice> hasClientName(String clientName) {
+        return (root, query, cb) -> cb.equal(root.get("clientName"), clientName);
+    }
+    
+    /**
+     * Invoices created by the given user.
+     */
+    public static Specification<Invoice> createdBy(Long userId) {
+        return (root, query, cb) -> cb.equal(root.get("createdBy"), userId);
+    }
+    
+    /**
+     * Invoices in the given currency.
+     */
+    public static Specification<Invoice> hasCurrency(String currency) {
+        return (root, query, cb) -> cb.equal(root.get("currency"), currency);
+    }
+    
+    /**
+     * Invoices whose total amount is within the inclusive range.
+     */
+    public static Specification<Invoice> totalAmountBetween(InvoiceSearchCriteria criteria) {
+        return (root, query, cb) -> {
+            if (criteria.getMinAmount() == null) {
+                return cb.lessThanOrEqualTo(root.get("totalAmount"), criteria.getMaxAmount());
+            }
+            if (criteria.getMaxAmount() == null) {
+                return cb.greaterThanOrEqualTo(root.get("totalAmount"), criteria.getMinAmount());
+            }
+            return cb.between(root.get("totalAmount"), criteria.getMinAmount(), criteria.getMaxAmount());
+        };
+    }
+    
+    /**
+     * Invoices whose invoice date is within the inclusive range.
+     */
+    public static Specification<Invoice> invoiceDateBetween(InvoiceSearchCriteria criteria) {
+        return (root, query, cb) -> {
+            if (criteria.getInvoiceDateFrom() == null) {
+                return cb.lessThanOrEqualTo(root.get("invoiceDate"), criteria.getInvoiceDateTo());
+            }
+            if (criteria.getInvoiceDateTo() == null) {
+                return cb.greaterThanOrEqualTo(root.get("invoiceDate"), criteria.getInvoiceDateFrom());
+            }
+            return cb.between(root.get("invoiceDate"), criteria.getInvoiceDateFrom(), criteria.getInvoiceDateTo());
+        };
+    }
+    
+    /**
+     * Invoices whose due date is within the inclusive range.
+     */
+    public static Specification<Invoice> dueDateBetween(InvoiceSearchCriteria criteria) {
+        return (root, query, cb) -> {
+            if (criteria.getDueDateFrom() == null) {
+                return cb.lessThanOrEqualTo(root.get("dueDate"), criteria.getDueDateTo());
+            }
+            if (criteria.getDueDateTo() == null) {
+                return cb.greaterThanOrEqualTo(root.get("dueDate"), criteria.getDueDateFrom());
+            }
+            return cb.between(root.get("dueDate"), criteria.getDueDateFrom(), criteria.getDueDateTo());
+        };
+    }
+    
+    /**
+     * Invoices after a keyset position in (created_at, id) descending order.
+     */
+    public static Specification<Invoice> after(CursorUtils.Cursor cursor) {
+        return (root, query, cb) -> cb.or(
+            cb.lessThan(root.get("createdAt"), cursor.createdAt()),
+            cb.and(
+                cb.equal(root.get("createdAt"), cursor.createdAt()),
+                cb.lessThan(root.get("id"), cursor.id())));
+    }
+}
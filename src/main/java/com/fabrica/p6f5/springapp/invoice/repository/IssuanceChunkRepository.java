@@ -0,0 +1,53 @@
+package com.fabrica.p6f5.springapp.invoice.repository;
+
+import com.fabrica.p6f5.springapp.invoice.model.IssuanceChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Issuance Chunk Repository interface.
+ * Defines data access operations for bulk issuance chunks.
+ */
+@Repository
+public interface IssuanceChunkRepository extends JpaRepository<IssuanceChunk, Long> {
+    
+    /**
+     * Find all chunks of a job in completion order.
+     * 
+     * @param jobId the job ID
+     * @return list of chunks
+     */
+    List<IssuanceChunk> findByJobIdOrderByIdAsc(Long jobId);
+    
+    /**
+     * Record a draft that failed in a job, so later claims of the job skip it.
+     * A draft already recorded for the job is left as it is.
+     * 
+     * @return 1 if the failure was recorded, 0 if the draft had already failed in the job
+     */
+    @Modifying
+    @Query(value = "INSERT INTO issuance_chunk_failures (job_id, invoice_id, error_message) " +
+           "VALUES (:jobId, :invoiceId, :errorMessage) ON CONFLICT (job_id, invoice_id) DO NOTHING",
+           nativeQuery = true)
+    int recordFailure(@Param("jobId") Long jobId,
+                      @Param("invoiceId") Long invoiceId,
+                      @Param("errorMessage") String errorMessage);
+    
+    /**
+     * Attach the failures recorded for drafts of a chunk to the chunk record.
+     * 
+     * @return number of affected rows
+     */
+    @Modifying
+    @Query(value = "UPDATE issuance_chunk_failures SET chunk_id = :chunkId " +
+           "WHERE job_id = :jobId AND chunk_id IS NULL AND invoice_id IN (:invoiceIds)",
+           nativeQuery = true)
+    int assignFailures(@Param("chunkId") Long chunkId,
+                       @Param("jobId") Long jobId,
+                       @Param("invoiceIds") List<Long> invoiceIds);
+}
@@ -0,0 +1,108 @@
+package com.fabrica.p6f5.springapp.invoice.repository;
+
+import com.fabrica.p6f5.springapp.invoice.model.IssuanceJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Issuance Job Repository interface.
+ * Defines data access operations for bulk issuance jobs.
+ */
+@Repository
+public interface IssuanceJobRepository extends JpaRepository<IssuanceJob, Long> {
+    
+    /**
+     * Find jobs newest first.
+     * 
+     * @return list of jobs
+     */
+    List<IssuanceJob> findTop50ByOrderByIdDesc();
+    
+    /**
+     * Check whether a job has a given status.
+     * 
+     * @param status the job status
+     * @return true if any job has the status
+     */
+    boolean existsByStatus(IssuanceJob.JobStatus status);
+    
+    /**
+     * Add the outcome of a chunk to the job counters.
+     * 
+     * @return number of affected rows
+     */
+    @Modifying
+    @Query("UPDATE IssuanceJob j SET j.issuedCount = j.issuedCount + :issued, j.failedCount = j.failedCount + :failed, " +
+           "j.chunkCount = j.chunkCount + 1, j.failedChunkCount = j.failedChunkCount + :failedChunks, " +
+           "j.updatedAt = :now WHERE j.id = :jobId")
+    int recordChunk(@Param("jobId") Long jobId,
+                    @Param("issued") long issued,
+                    @Param("failed") long failed,
+                    @Param("failedChunks") int failedChunks,
+                    @Param("now") LocalDateTime now);
+    
+    /**
+     * Set the status of a job.
+     * 
+     * @return number of affected rows
+     */
+    @Modifying
+    @Query("UPDATE IssuanceJob j SET j.status = :status, j.updatedAt = :now, j.finishedAt = :finishedAt WHERE j.id = :jobId")
+    int updateStatus(@Param("jobId") Long jobId,
+                     @Param("status") IssuanceJob.JobStatus status,
+                     @Param("now") LocalDateTime now,
+                     @Param("finishedAt") LocalDateTime finishedAt);
+    
+    /**
+     * Set an interrupted job running again on a node.
+     * 
+     * @return number of affected rows, 0 if the job is no longer interrupted
+     */
+    @Modifying
+    @Query("UPDATE IssuanceJob j SET j.status = 'RUNNING', j.nodeId = :nodeId, j.heartbeatAt = :now, " +
+           "j.updatedAt = :now, j.finishedAt = NULL WHERE j.id = :jobId AND j.status = 'INTERRUPTED'")
+    int resume(@Param("jobId") Long jobId,
+               @Param("nodeId") int nodeId,
+               @Param("now") LocalDateTime now);
+    
+    /**
+     * Refresh the heartbeat of jobs running on this node.
+     * 
+     * @return number of affected rows
+     */
+    @Modifying
+    @Query("UPDATE IssuanceJob j SET j.heartbeatAt = :now WHERE j.id IN :jobIds AND j.status = 'RUNNING'")
+    int heartbeat(@Param("jobIds") Collection<Long> jobIds, @Param("now") LocalDateTime now);
+    
+    /**
+     * Mark RUNNING jobs of a node, and those whose heartbeat is older than staleBefore,
+     * as interrupted. Used at startup, when no job of the node can still be running.
+     * 
+     * @return number of affected rows
+     */
+    @Modifying
+    @Query("UPDATE IssuanceJob j SET j.status = 'INTERRUPTED', j.updatedAt = :now WHERE j.status = 'RUNNING' " +
+           "AND (j.nodeId = :nodeId OR j.heartbeatAt < :staleBefore)")
+    int interruptOrphanedJobs(@Param("nodeId") int nodeId,
+                              @Param("staleBefore") LocalDateTime staleBefore,
+                              @Param("now") LocalDateTime now);
+    
+    /**
+     * Mark RUNNING jobs of other nodes whose heartbeat is older than staleBefore as interrupted.
+     * 
+     * @return number of affected rows
+     */
+    @Modifying
+    @Query("UPDATE IssuanceJob j SET j.status = 'INTERRUPTED', j.updatedAt = :now WHERE j.status = 'RUNNING' " +
+           "AND (j.nodeId IS NULL OR j.nodeId <> :nodeId) AND j.heartbeatAt < :staleBefore")
+    int interruptStaleJobs(@Param("nodeId") int nodeId,
+                           @Param("staleBefore") LocalDateTime staleBefore,
+                           @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,280 @@
+package com.fabrica.p6f5.springapp.invoice.service;
+
+import com.fabrica.p6f5.springapp.exception.BusinessException;
+import com.fabrica.p6f5.springapp.exception.InvoiceMergeConflictException;
+import com.fabrica.p6f5.springapp.exception.ResourceNotFoundException;
+import com.fabrica.p6f5.springapp.invoice.dto.DraftAutosaveResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceVersion;
+import com.fabrica.p6f5.springapp.invoice.dto.UpdateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fabrica.p6f5.springapp.util.Constants;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Service coalescing draft autosaves in memory.
+ * <p>
+ * Each autosave replaces the buffered state of its draft. The buffer is written through
+ * updateDraftInvoice, producing one history version and one audit entry, once the draft
+ * has been idle for the idle timeout, at the latest after the max delay, before the draft
+ * is issued and on shutdown. An explicit save discards the buffer of its user since it
+ * carries the latest state itself; a buffer of another user is written first. Buffers live
+ * on the node that received the autosaves.
+ * <p>
+ * A flush failing on a transient error keeps the buffer and is retried on the next flush
+ * pass, up to MAX_FLUSH_ATTEMPTS times. Other failures, such as merge conflicts, and
+ * exhausted retries are reported to the autosaving user on their next autosave.
+ * <p>
+ * Versions advanced by autosave flushes are tracked per user, so the autosaving client can
+ * keep sending the version it loaded. Other clients sending that version are stale and
+ * get merged.
+ */
+@Service
+public class DraftAutosaveService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DraftAutosaveService.class);
+    
+    private static final int LOCK_STRIPES = 64;
+    private static final int MAX_FLUSH_ATTEMPTS = 5;
+    
+    private final InvoiceService invoiceService;
+    private final Duration idleTimeout;
+    private final Duration maxDelay;
+    private final int maxPending;
+    private final Map<Long, PendingDraft> pending = new ConcurrentHashMap<>();
+    private final Cache<DraftKey, AutosavedVersion> autosavedVersions;
+    private final Cache<DraftKey, RuntimeException> failedFlushes;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    
+    public DraftAutosaveService(
+            InvoiceService invoiceService,
+            @Value("${invoice.autosave.idle-timeout-ms:30000}") long idleTimeoutMs,
+            @Value("${invoice.autosave.max-delay-ms:120000}") long maxDelayMs,
+            @Value("${invoice.autosave.max-pending:10000}") int maxPending) {
+        this.invoiceService = invoiceService;
+        this.idleTimeout = Duration.ofMillis(idleTimeoutMs);
+        this.maxDelay = Duration.ofMillis(maxDelayMs);
+        this.maxPending = maxPending;
+        this.autosavedVersions = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofDays(1))
+            .maximumSize(Math.max(1, maxPending) * 10L)
+            .build();
+        this.failedFlushes = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofDays(1))
+            .maximumSize(Math.max(1, maxPending))
+            .build();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+    
+    /**
+     * Buffer the latest state of a draft. Written through when the buffer is full.
+     * Fails with the error of an earlier flush of this user's changes that could not be written.
+     */
+    public DraftAutosaveResponse autosave(Long invoiceId, UpdateInvoiceRequest request, Long userId) {
+        synchronized (lock(invoiceId)) {
+            RuntimeException failure = failedFlushes.asMap().remove(new DraftKey(invoiceId, userId));
+            if (failure != null) {
+                throw reported(invoiceId, failure);
+            }
+            flushOtherUser(invoiceId, userId);
+            Integer baseVersion = checkedVersion(invoiceId, userId, request.getVersion());
+            if (!pending.containsKey(invoiceId) && pending.size() >= maxPending) {
+                logger.warn("Autosave buffer full ({} drafts), writing invoice {} directly", maxPending, invoiceId);
+                write(invoiceId, new PendingDraft(request, request.getVersion(), baseVersion, userId, null, null, 1, 0));
+                return new DraftAutosaveResponse(invoiceId, true, 0, null, null);
+            }
+            Instant now = Instant.now();
+            PendingDraft previous = pending.get(invoiceId);
+            PendingDraft draft = new PendingDraft(request, request.getVersion(), baseVersion, userId,
+                previous != null ? previous.firstChangeAt() : now, now,
+                previous != null ? previous.changes() + 1 : 1, 0);
+            pending.put(invoiceId, draft);
+            return new DraftAutosaveResponse(invoiceId, false, draft.changes(), draft.firstChangeAt(), flushDueAt(draft));
+        }
+    }
+    
+    /**
+     * Write the buffered state of a draft, if any, then run an action such as issuing it.
+     */
+    public <T> T flushAndRun(Long invoiceId, Supplier<T> action) {
+        synchronized (lock(invoiceId)) {
+            PendingDraft draft = pending.remove(invoiceId);
+            if (draft != null) {
+                write(invoiceId, draft);
+            }
+            return action.get();
+        }
+    }
+    
+    /**
+     * Drop the user's buffered state of a draft and apply an explicit save in its place.
+     */
+    public InvoiceResponse saveExplicitly(Long invoiceId, UpdateInvoiceRequest request, Long userId) {
+        synchronized (lock(invoiceId)) {
+            DraftKey key = new DraftKey(invoiceId, userId);
+            flushOtherUser(invoiceId, userId);
+            if (pending.remove(invoiceId) != null) {
+                logger.debug("Discarded autosaved changes of invoice {} for an explicit save", invoiceId);
+            }
+            failedFlushes.invalidate(key);
+            request.setVersion(checkedVersion(invoiceId, userId, request.getVersion()));
+            InvoiceResponse response = invoiceService.updateDraftInvoice(invoiceId, request, userId);
+            autosavedVersions.invalidate(key);
+            return response;
+        }
+    }
+    
+    /**
+     * Drafts with buffered changes; bulk issuance skips them.
+     */
+    public Set<Long> pendingInvoiceIds() {
+        return Set.copyOf(pending.keySet());
+    }
+    
+    /**
+     * Write drafts that have been idle long enough or buffered too long.
+     */
+    @Scheduled(fixedDelayString = "${invoice.autosave.flush-interval-ms:5000}")
+    public void flushDue() {
+        Instant now = Instant.now();
+        pending.forEach((invoiceId, draft) -> {
+            if (!flushDueAt(draft).isAfter(now)) {
+                flush(invoiceId, true);
+            }
+        });
+    }
+    
+    @PreDestroy
+    public void flushAll() {
+        pending.keySet().forEach(invoiceId -> flush(invoiceId, false));
+    }
+    
+    /**
+     * Write the buffer of a draft. On failure the buffer is kept for the next pass when the
+     * error is transient and attempts remain, otherwise the failure is kept for its user.
+     */
+    private void flush(Long invoiceId, boolean retry) {
+        synchronized (lock(invoiceId)) {
+            PendingDraft draft = pending.remove(invoiceId);
+            if (draft == null) {
+                return;
+            }
+            try {
+                write(invoiceId, draft);
+            } catch (RuntimeException e) {
+                if (retry && isTransient(e) && draft.attempts() + 1 < MAX_FLUSH_ATTEMPTS) {
+                    pending.put(invoiceId, draft.retried());
+                    logger.warn("Failed to write {} autosaved changes of invoice {}, will retry: {}",
+                        draft.changes(), invoiceId, e.getMessage());
+                } else {
+                    failedFlushes.put(new DraftKey(invoiceId, draft.userId()), e);
+                    logger.warn("Failed to write {} autosaved changes of invoice {}, reporting to user {}: {}",
+                        draft.changes(), invoiceId, draft.userId(), e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Write the buffer of a draft if another user's changes are in it, so that a change of
+     * this user never replaces them.
+     */
+    private void flushOtherUser(Long invoiceId, Long userId) {
+        PendingDraft previous = pending.get(invoiceId);
+        if (previous != null && !previous.userId().equals(userId)) {
+            flush(invoiceId, false);
+        }
+    }
+    
+    private void write(Long invoiceId, PendingDraft draft) {
+        UpdateInvoiceRequest request = draft.request();
+        request.setVersion(draft.baseVersion());
+        InvoiceResponse response = invoiceService.updateDraftInvoice(invoiceId, request, draft.userId());
+        if (draft.clientVersion() != null) {
+            autosavedVersions.put(new DraftKey(invoiceId, draft.userId()),
+                new AutosavedVersion(draft.clientVersion(), response.getVersion()));
+        }
+        logger.debug("Flushed {} autosaved changes of invoice {}", draft.changes(), invoiceId);
+    }
+    
+    /**
+     * Conflicts, rejected changes and missing drafts fail the same way on every attempt.
+     */
+    private boolean isTransient(RuntimeException e) {
+        return !(e instanceof InvoiceMergeConflictException || e instanceof BusinessException
+            || e instanceof ResourceNotFoundException);
+    }
+    
+    /**
+     * The failure of a flush as reported to its user. Conflicts keep their details.
+     */
+    private RuntimeException reported(Long invoiceId, RuntimeException failure) {
+        if (failure instanceof InvoiceMergeConflictException || failure instanceof BusinessException) {
+            return failure;
+        }
+        return new BusinessException(String.format(Constants.AUTOSAVE_FLUSH_FAILED, invoiceId), failure);
+    }
+    
+    /**
+     * Check that the draft is editable and return the version to update from. A client version
+     * only advanced by flushes of this user's autosaves stands for the current version; other
+     * stale versions are kept for the update to merge.
+     */
+    private Integer checkedVersion(Long invoiceId, Long userId, Integer clientVersion) {
+        InvoiceVersion current = invoiceService.getInvoiceVersion(invoiceId);
+        if (current.status() != Invoice.InvoiceStatus.DRAFT) {
+            throw new BusinessException(String.format(Constants.INVOICE_CANNOT_BE_EDITED, current.status()));
+        }
+        if (clientVersion == null || clientVersion.equals(current.version())) {
+            return clientVersion;
+        }
+        AutosavedVersion autosaved = autosavedVersions.getIfPresent(new DraftKey(invoiceId, userId));
+        if (autosaved != null && autosaved.clientVersion().equals(clientVersion)
+                && Objects.equals(autosaved.currentVersion(), current.version())) {
+            return current.version();
+        }
+        return clientVersion;
+    }
+    
+    private Instant flushDueAt(PendingDraft draft) {
+        Instant idle = draft.lastChangeAt().plus(idleTimeout);
+        Instant latest = draft.firstChangeAt().plus(maxDelay);
+        return idle.isBefore(latest) ? idle : latest;
+    }
+    
+    private Object lock(Long invoiceId) {
+        return locks[Math.floorMod(invoiceId.hashCode(), LOCK_STRIPES)];
+    }
+    
+    private record PendingDraft(UpdateInvoiceRequest request, Integer clientVersion, Integer baseVersion, Long userId,
+                                Instant firstChangeAt, Instant lastChangeAt, int changes, int attempts) {
+        
+        PendingDraft retried() {
+            return new PendingDraft(request, clientVersion, baseVersion, userId, firstChangeAt, lastChangeAt,
+                changes, attempts + 1);
+        }
+    }
+    
+    private record DraftKey(Long invoiceId, Long userId) {
+    }
+    
+    private record AutosavedVersion(Integer clientVersion, Integer currentVersion) {
+    }
+}
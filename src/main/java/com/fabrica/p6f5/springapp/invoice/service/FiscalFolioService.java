@@ -0,0 +1,252 @@
+package com.fabrica.p6f5.springapp.invoice.service;
+
+import com.fabrica.p6f5.springapp.invoice.repository.FiscalFolioRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Service handing out sequential fiscal folios per series.
+ * <p>
+ * BLOCK mode reserves a range of numbers per node in its own transaction and serves
+ * it from an in-memory counter without touching the database; unused numbers are
+ * returned on shutdown and reused by the next reservation. Numbers taken by rolled
+ * back issuances or lost in a crash leave gaps. Once half of a block is handed out, the
+ * next one is reserved ahead on a background thread, so issuing transactions rarely wait
+ * for a reservation. When one has to, it waits on a second pooled connection while holding
+ * its own; reservations of a series are serialized, so the pool must keep one connection
+ * beyond the concurrently issuing transactions.
+ * <p>
+ * GAP_FREE mode takes each number inside the issuing transaction. The series row
+ * stays locked until that transaction ends, so issuances of a series are serialized
+ * and a rollback gives the number back.
+ */
+@Service
+public class FiscalFolioService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FiscalFolioService.class);
+    
+    private static final String FISCAL_PREFIX = "FISCAL-";
+    
+    /**
+     * Folio allocation mode
+     */
+    public enum Mode {
+        BLOCK,
+        GAP_FREE
+    }
+    
+    private final FiscalFolioRepository fiscalFolioRepository;
+    private final TransactionTemplate newTransaction;
+    private final Mode mode;
+    private final String defaultSeries;
+    private final int blockSize;
+    private final Map<String, SeriesBlocks> blocks = new ConcurrentHashMap<>();
+    private final ExecutorService reserver = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fiscal-folio-reserver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closed;
+    
+    public FiscalFolioService(
+            FiscalFolioRepository fiscalFolioRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${invoice.fiscal-folio.mode:GAP_FREE}") Mode mode,
+            @Value("${invoice.fiscal-folio.series:A}") String defaultSeries,
+            @Value("${invoice.fiscal-folio.block-size:100}") int blockSize) {
+        this.fiscalFolioRepository = fiscalFolioRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.mode = mode;
+        this.defaultSeries = defaultSeries;
+        this.blockSize = Math.max(1, blockSize);
+        logger.info("Fiscal folios allocated in {} mode for default series {}", mode, defaultSeries);
+    }
+    
+    /**
+     * Next folio of the default series.
+     */
+    public String nextFolio() {
+        return nextFolio(defaultSeries);
+    }
+    
+    /**
+     * Next folio of a series. In GAP_FREE mode this must run in the issuing transaction.
+     */
+    public String nextFolio(String series) {
+        long value = mode == Mode.GAP_FREE ? nextGapFree(series) : nextFromBlock(series);
+        return String.format("%s%s-%010d", FISCAL_PREFIX, series, value);
+    }
+    
+    public Mode getMode() {
+        return mode;
+    }
+    
+    /**
+     * Return the unused part of every reserved range, including blocks reserved ahead.
+     */
+    @PreDestroy
+    public void releaseBlocks() {
+        closed = true;
+        reserver.shutdown();
+        blocks.forEach((series, seriesBlocks) -> {
+            release(series, seriesBlocks.current.getAndSet(FolioBlock.EMPTY));
+            seriesBlocks.takeReservedAhead().ifPresent(block -> release(series, block));
+        });
+    }
+    
+    private void release(String series, FolioBlock block) {
+        long first = block.drain();
+        if (first < block.end) {
+            newTransaction.executeWithoutResult(status ->
+                fiscalFolioRepository.releaseRange(series, first, block.end - 1));
+            logger.info("Released fiscal folios {}-{} of series {}", first, block.end - 1, series);
+        }
+    }
+    
+    private long nextGapFree(String series) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Gap-free fiscal folios must be taken in the issuing transaction");
+        }
+        return fiscalFolioRepository.allocate(series, 1);
+    }
+    
+    private long nextFromBlock(String series) {
+        SeriesBlocks seriesBlocks = blocks.computeIfAbsent(series, SeriesBlocks::new);
+        while (true) {
+            FolioBlock block = seriesBlocks.current.get();
+            long value = block.next();
+            if (value >= 0) {
+                if (value == block.reserveAheadAt) {
+                    seriesBlocks.reserveAhead();
+                }
+                return value;
+            }
+            synchronized (seriesBlocks) {
+                if (seriesBlocks.current.get() == block) {
+                    seriesBlocks.current.set(seriesBlocks.takeNext());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Reserve the next range in its own transaction, preferring a range released by a stopped node.
+     */
+    private FolioBlock reserveBlock(String series) {
+        if (closed) {
+            throw new IllegalStateException("Fiscal folio service is shut down");
+        }
+        return newTransaction.execute(status -> fiscalFolioRepository.claimFreeRange(series)
+            .map(range -> new FolioBlock(range.firstValue(), range.lastValue() + 1))
+            .orElseGet(() -> {
+                long first = fiscalFolioRepository.allocate(series, blockSize);
+                return new FolioBlock(first, first + blockSize);
+            }));
+    }
+    
+    /**
+     * Block being served for a series and the block reserved ahead of it.
+     */
+    private final class SeriesBlocks {
+        
+        private final String series;
+        private final AtomicReference<FolioBlock> current = new AtomicReference<>(FolioBlock.EMPTY);
+        private Future<FolioBlock> reservedAhead;
+        
+        private SeriesBlocks(String series) {
+            this.series = series;
+        }
+        
+        /**
+         * Start reserving the next block on the background thread unless one is pending.
+         */
+        private synchronized void reserveAhead() {
+            if (reservedAhead != null || closed) {
+                return;
+            }
+            try {
+                reservedAhead = reserver.submit(() -> reserveBlock(series));
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+            }
+        }
+        
+        /**
+         * The block reserved ahead, or one reserved now when none is pending or it failed.
+         */
+        private synchronized FolioBlock takeNext() {
+            Optional<FolioBlock> reserved = takeReservedAhead();
+            return reserved.isPresent() ? reserved.get() : reserveBlock(series);
+        }
+        
+        private synchronized Optional<FolioBlock> takeReservedAhead() {
+            Future<FolioBlock> pending = reservedAhead;
+            reservedAhead = null;
+            if (pending == null) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(pending.get());
+            } catch (ExecutionException e) {
+                logger.warn("Reserving fiscal folios of series {} ahead failed", series, e.getCause());
+                return Optional.empty();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reserving fiscal folios of series " + series, e);
+            }
+        }
+    }
+    
+    /**
+     * Reserved numbers [cursor, end) of a series. The next block is reserved ahead once
+     * the number at reserveAheadAt, half way through, is handed out.
+     */
+    private static final class FolioBlock {
+        
+        private static final FolioBlock EMPTY = new FolioBlock(0, 0);
+        
+        private final AtomicLong cursor;
+        private final long end;
+        private final long reserveAheadAt;
+        
+        private FolioBlock(long first, long end) {
+            this.cursor = new AtomicLong(first);
+            this.end = end;
+            this.reserveAheadAt = first < end ? first + (end - first) / 2 : -1;
+        }
+        
+        /**
+         * Next number, or -1 when the block is used up.
+         */
+        private long next() {
+            long value = cursor.getAndIncrement();
+            return value < end ? value : -1;
+        }
+        
+        /**
+         * Stop serving the block and return the first number not handed out.
+         */
+        private long drain() {
+            return cursor.getAndSet(end);
+        }
+    }
+}
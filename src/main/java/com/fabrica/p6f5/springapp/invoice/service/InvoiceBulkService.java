@@ -0,0 +1,135 @@
+package com.fabrica.p6f5.springapp.invoice.service;
+
+import com.fabrica.p6f5.springapp.invoice.dto.BulkCreateInvoicesResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.BulkCreateInvoicesResponse.EntryResult;
+import com.fabrica.p6f5.springapp.invoice.dto.CreateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fabrica.p6f5.springapp.util.Constants;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Service for creating draft invoices in bulk.
+ * Valid entries are persisted in chunks, one transaction and one flush per chunk, so
+ * Hibernate batches the inserts of invoices, items and shipment links across the
+ * entries of a chunk, and rollups and audit rows are written once per chunk. When a
+ * chunk fails it is rolled back and replayed entry by entry to isolate the failing entries.
+ */
+@Service
+public class InvoiceBulkService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceBulkService.class);
+    
+    private final InvoiceService invoiceService;
+    private final Validator validator;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    
+    public InvoiceBulkService(
+            InvoiceService invoiceService,
+            Validator validator,
+            EntityManager entityManager,
+            PlatformTransactionManager transactionManager) {
+        this.invoiceService = invoiceService;
+        this.validator = validator;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Create draft invoices and report the outcome of every entry in request order.
+     */
+    public BulkCreateInvoicesResponse createDraftInvoices(List<CreateInvoiceRequest> requests, Long createdBy) {
+        long start = System.currentTimeMillis();
+        EntryResult[] results = new EntryResult[requests.size()];
+        List<Integer> valid = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            String error = validate(requests.get(i));
+            if (error == null) {
+                valid.add(i);
+            } else {
+                results[i] = EntryResult.failed(i, error);
+            }
+        }
+        
+        for (int from = 0; from < valid.size(); from += Constants.BULK_CHUNK_SIZE) {
+            List<Integer> chunk = valid.subList(from, Math.min(from + Constants.BULK_CHUNK_SIZE, valid.size()));
+            createChunk(requests, chunk, createdBy, results);
+        }
+        
+        List<EntryResult> resultList = List.of(results);
+        int created = (int) resultList.stream().filter(EntryResult::isSuccess).count();
+        logger.info("Bulk created {} of {} draft invoices in {} ms",
+            created, requests.size(), System.currentTimeMillis() - start);
+        return new BulkCreateInvoicesResponse(requests.size(), created, requests.size() - created, resultList);
+    }
+    
+    /**
+     * Create a chunk of entries in one transaction, falling back to one transaction per entry.
+     */
+    private void createChunk(List<CreateInvoiceRequest> requests, List<Integer> chunk, Long createdBy, EntryResult[] results) {
+        try {
+            List<EntryResult> created = transactionTemplate.execute(status -> {
+                List<Invoice> invoices = invoiceService.persistDraftInvoices(
+                    chunk.stream().map(requests::get).toList(), createdBy);
+                List<EntryResult> chunkResults = new ArrayList<>(chunk.size());
+                for (int i = 0; i < chunk.size(); i++) {
+                    Invoice invoice = invoices.get(i);
+                    chunkResults.add(EntryResult.created(chunk.get(i), invoice.getId(), invoice.getInvoiceNumber()));
+                }
+                entityManager.flush();
+                entityManager.clear();
+                return chunkResults;
+            });
+            created.forEach(result -> results[result.getIndex()] = result);
+        } catch (RuntimeException e) {
+            logger.warn("Bulk chunk of {} invoices failed, retrying entries one by one: {}", chunk.size(), e.getMessage());
+            chunk.forEach(index -> results[index] = createSingle(requests.get(index), index, createdBy));
+        }
+    }
+    
+    /**
+     * Create one entry in its own transaction.
+     */
+    private EntryResult createSingle(CreateInvoiceRequest request, int index, Long createdBy) {
+        try {
+            return transactionTemplate.execute(status -> {
+                Invoice invoice = invoiceService.persistDraftInvoice(request, createdBy);
+                entityManager.flush();
+                entityManager.clear();
+                return EntryResult.created(index, invoice.getId(), invoice.getInvoiceNumber());
+            });
+        } catch (RuntimeException e) {
+            return EntryResult.failed(index, e.getMessage());
+        }
+    }
+    
+    /**
+     * Validate one entry, returning the violations as a single message or null when valid.
+     */
+    private String validate(CreateInvoiceRequest request) {
+        if (request == null) {
+            return "Invoice entry must not be null";
+        }
+        Set<ConstraintViolation<CreateInvoiceRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+            .sorted(Comparator.comparing(violation -> violation.getPropertyPath().toString()))
+            .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+            .collect(Collectors.joining("; "));
+    }
+}
@@ -0,0 +1,111 @@
+package com.fabrica.p6f5.springapp.invoice.service;
+
+import com.fabrica.p6f5.springapp.exception.BusinessException;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceResponse;
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fabrica.p6f5.springapp.invoice.repository.InvoiceRepository;
+import com.fabrica.p6f5.springapp.util.Constants;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Service for streaming invoice exports.
+ * Reads invoices through a server-side cursor and writes them as NDJSON in constant memory.
+ */
+@Service
+public class InvoiceExportService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceExportService.class);
+    
+    private static final LocalDate EXPORT_MIN_DATE = LocalDate.of(1900, 1, 1);
+    private static final LocalDate EXPORT_MAX_DATE = LocalDate.of(9999, 12, 31);
+    private static final byte NEWLINE = '\n';
+    
+    private final InvoiceRepository invoiceRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    
+    public InvoiceExportService(
+            InvoiceRepository invoiceRepository,
+            EntityManager entityManager,
+            ObjectMapper objectMapper) {
+        this.invoiceRepository = invoiceRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+    
+    /**
+     * Validate the export date range before the response is committed.
+     */
+    public void validateDateRange(LocalDate startDate, LocalDate endDate) {
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            throw new BusinessException(Constants.INVALID_DATE_RANGE);
+        }
+    }
+    
+    /**
+     * Stream invoices matching the filters to the output as NDJSON.
+     * Rows are processed in chunks: items of a chunk are loaded in one query,
+     * and the persistence context is cleared after each chunk is written.
+     * 
+     * @return number of exported invoices
+     */
+    @Transactional(readOnly = true)
+    public long exportInvoices(Invoice.InvoiceStatus status, LocalDate startDate, LocalDate endDate,
+                               OutputStream output) throws IOException {
+        LocalDate from = startDate != null ? startDate : EXPORT_MIN_DATE;
+        LocalDate to = endDate != null ? endDate : EXPORT_MAX_DATE;
+        logger.info("Exporting invoices with status: {} between {} and {}", status, from, to);
+        
+        long exported = 0;
+        List<Invoice> chunk = new ArrayList<>(Constants.EXPORT_CHUNK_SIZE);
+        try (Stream<Invoice> invoices = invoiceRepository.streamForExport(status, from, to)) {
+            Iterator<Invoice> iterator = invoices.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == Constants.EXPORT_CHUNK_SIZE) {
+                    exported += writeChunk(chunk, output);
+                }
+            }
+        }
+        exported += writeChunk(chunk, output);
+        
+        logger.info("Exported {} invoices", exported);
+        return exported;
+    }
+    
+    /**
+     * Write a chunk of invoices and release it from the persistence context.
+     */
+    private int writeChunk(List<Invoice> chunk, OutputStream output) throws IOException {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = chunk.stream().map(Invoice::getId).collect(Collectors.toList());
+        invoiceRepository.findWithItemsByIdIn(ids);
+        
+        for (Invoice invoice : chunk) {
+            output.write(objectMapper.writeValueAsBytes(InvoiceResponse.fromEntity(invoice)));
+            output.write(NEWLINE);
+        }
+        output.flush();
+        
+        int written = chunk.size();
+        chunk.clear();
+        entityManager.clear();
+        return written;
+    }
+}
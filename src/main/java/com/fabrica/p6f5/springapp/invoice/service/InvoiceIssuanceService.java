@@ -0,0 +1,434 @@
+package com.fabrica.p6f5.springapp.invoice.service;
+
+import com.fabrica.p6f5.springapp.billing.service.BillingRollupService;
+import com.fabrica.p6f5.springapp.exception.BusinessException;
+import com.fabrica.p6f5.springapp.exception.ResourceNotFoundException;
+import com.fabrica.p6f5.springapp.invoice.dto.IssuanceJobResponse;
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fabrica.p6f5.springapp.invoice.model.IssuanceChunk;
+import com.fabrica.p6f5.springapp.invoice.model.IssuanceJob;
+import com.fabrica.p6f5.springapp.invoice.repository.InvoiceRepository;
+import com.fabrica.p6f5.springapp.invoice.repository.IssuanceChunkRepository;
+import com.fabrica.p6f5.springapp.invoice.repository.IssuanceJobRepository;
+import com.fabrica.p6f5.springapp.util.Constants;
+import jakarta.annotation.PreDestroy;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Service for issuing all ready drafts in bulk.
+ * Workers of a bounded pool repeatedly claim a chunk of ready drafts with
+ * FOR UPDATE SKIP LOCKED and issue it in one transaction, together with the
+ * chunk record and the job counters, so Hibernate batches the history and audit
+ * inserts and a crash never leaves a chunk half counted. A chunk that fails is
+ * replayed one draft per transaction to isolate the failing drafts.
+ * Only drafts still in DRAFT status are claimed, so an interrupted job can be
+ * resumed without issuing any invoice twice. Drafts that failed in the job are
+ * recorded with its chunks and not claimed again; drafts with unsaved autosaved
+ * changes are skipped.
+ * <p>
+ * A job records the node running it, which refreshes its heartbeat from a
+ * dedicated thread. A RUNNING job is interrupted when its node starts again or
+ * when its heartbeat is older than three intervals, so a job of a live node is
+ * never taken for an orphan.
+ */
+@Service
+public class InvoiceIssuanceService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceIssuanceService.class);
+    
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final int STALE_HEARTBEATS = 3;
+    private static final String RUNNING_JOB_INDEX = "uq_issuance_job_running";
+    
+    private final InvoiceRepository invoiceRepository;
+    private final IssuanceJobRepository issuanceJobRepository;
+    private final IssuanceChunkRepository issuanceChunkRepository;
+    private final InvoiceService invoiceService;
+    private final BillingRollupService billingRollupService;
+    private final DraftAutosaveService draftAutosaveService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService heartbeat;
+    private final int workers;
+    private final int nodeId;
+    private final long heartbeatIntervalMs;
+    private final Map<Long, JobRun> runs = new ConcurrentHashMap<>();
+    
+    public InvoiceIssuanceService(
+            InvoiceRepository invoiceRepository,
+            IssuanceJobRepository issuanceJobRepository,
+            IssuanceChunkRepository issuanceChunkRepository,
+            InvoiceService invoiceService,
+            BillingRollupService billingRollupService,
+            DraftAutosaveService draftAutosaveService,
+            PlatformTransactionManager transactionManager,
+            @Value("${invoice.issuance.workers:4}") int workers,
+            @Value("${invoice.number.node-id}") int nodeId,
+            @Value("${invoice.issuance.heartbeat-interval-ms:10000}") long heartbeatIntervalMs) {
+        this.invoiceRepository = invoiceRepository;
+        this.issuanceJobRepository = issuanceJobRepository;
+        this.issuanceChunkRepository = issuanceChunkRepository;
+        this.invoiceService = invoiceService;
+        this.billingRollupService = billingRollupService;
+        this.draftAutosaveService = draftAutosaveService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workers = Math.max(1, workers);
+        this.executor = Executors.newFixedThreadPool(this.workers, new CustomizableThreadFactory("invoice-issuance-"));
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("invoice-issuance-heartbeat-"));
+        this.nodeId = nodeId;
+        this.heartbeatIntervalMs = Math.max(1, heartbeatIntervalMs);
+    }
+    
+    /**
+     * Start a job issuing every ready draft.
+     */
+    public synchronized IssuanceJobResponse startJob(Long requestedBy) {
+        ensureNoRunningJob();
+        IssuanceJob job;
+        try {
+            job = transactionTemplate.execute(status -> {
+                IssuanceJob newJob = new IssuanceJob();
+                newJob.setChunkSize(Constants.ISSUANCE_CHUNK_SIZE);
+                newJob.setReadyAtStart(invoiceRepository.countDraftsReadyForIssuance());
+                newJob.setRequestedBy(requestedBy);
+                newJob.setNodeId(nodeId);
+                return issuanceJobRepository.save(newJob);
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw alreadyRunning(e);
+        }
+        logger.info("Started issuance job {} for {} ready drafts with {} workers",
+            job.getId(), job.getReadyAtStart(), workers);
+        launch(job);
+        return IssuanceJobResponse.fromEntity(job, List.of());
+    }
+    
+    /**
+     * Resume an interrupted job on this node. Drafts issued before the interruption are no
+     * longer claimable, and drafts that failed in the job are not retried.
+     */
+    public synchronized IssuanceJobResponse resumeJob(Long jobId) {
+        IssuanceJob job = findJob(jobId);
+        if (job.getStatus() != IssuanceJob.JobStatus.INTERRUPTED) {
+            throw new BusinessException(String.format(Constants.ISSUANCE_JOB_NOT_RESUMABLE, job.getStatus()));
+        }
+        ensureNoRunningJob();
+        Integer resumed;
+        try {
+            resumed = transactionTemplate.execute(status ->
+                issuanceJobRepository.resume(jobId, nodeId, LocalDateTime.now()));
+        } catch (DataIntegrityViolationException e) {
+            throw alreadyRunning(e);
+        }
+        if (resumed == null || resumed == 0) {
+            throw new BusinessException(String.format(Constants.ISSUANCE_JOB_NOT_RESUMABLE, findJob(jobId).getStatus()));
+        }
+        logger.info("Resuming issuance job {} with {} workers", jobId, workers);
+        launch(job);
+        return getJob(jobId);
+    }
+    
+    /**
+     * Get a job with its chunks and throughput.
+     */
+    public IssuanceJobResponse getJob(Long jobId) {
+        IssuanceJob job = findJob(jobId);
+        return IssuanceJobResponse.fromEntity(job, issuanceChunkRepository.findByJobIdOrderByIdAsc(jobId));
+    }
+    
+    /**
+     * Get the most recent jobs without their chunks.
+     */
+    public List<IssuanceJobResponse> getRecentJobs() {
+        return issuanceJobRepository.findTop50ByOrderByIdDesc().stream()
+            .map(job -> IssuanceJobResponse.fromEntity(job, List.of()))
+            .toList();
+    }
+    
+    /**
+     * Jobs of this node still RUNNING at startup lost their workers with the previous process,
+     * as did jobs of any node whose heartbeat is stale. Heartbeats start afterwards.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void interruptOrphanedJobs() {
+        LocalDateTime now = LocalDateTime.now();
+        Integer interrupted = transactionTemplate.execute(status ->
+            issuanceJobRepository.interruptOrphanedJobs(nodeId, staleBefore(now), now));
+        if (interrupted != null && interrupted > 0) {
+            logger.warn("Marked {} issuance jobs as interrupted; they can be resumed", interrupted);
+        }
+        heartbeat.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Refresh the heartbeat of the jobs running here and interrupt jobs of nodes that stopped
+     * refreshing theirs. Runs on its own thread, so long scheduled tasks cannot delay it.
+     */
+    private void heartbeat() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Integer interrupted = transactionTemplate.execute(status -> {
+                if (!runs.isEmpty()) {
+                    issuanceJobRepository.heartbeat(List.copyOf(runs.keySet()), now);
+                }
+                return issuanceJobRepository.interruptStaleJobs(nodeId, staleBefore(now), now);
+            });
+            if (interrupted != null && interrupted > 0) {
+                logger.warn("Marked {} issuance jobs of stopped nodes as interrupted; they can be resumed", interrupted);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Issuance job heartbeat failed: {}", e.getMessage());
+        }
+    }
+    
+    private LocalDateTime staleBefore(LocalDateTime now) {
+        return now.minus(Duration.ofMillis(STALE_HEARTBEATS * heartbeatIntervalMs));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        runs.values().forEach(run -> run.stopped = true);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private IssuanceJob findJob(Long jobId) {
+        return issuanceJobRepository.findById(jobId)
+            .orElseThrow(() -> new ResourceNotFoundException(Constants.ISSUANCE_JOB_NOT_FOUND + jobId));
+    }
+    
+    private void ensureNoRunningJob() {
+        if (!runs.isEmpty() || issuanceJobRepository.existsByStatus(IssuanceJob.JobStatus.RUNNING)) {
+            throw new BusinessException(Constants.ISSUANCE_JOB_ALREADY_RUNNING);
+        }
+    }
+    
+    /**
+     * The running-job check is per node; uq_issuance_job_running rejects a job started
+     * or resumed by another node at the same time.
+     */
+    private RuntimeException alreadyRunning(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation
+                    && RUNNING_JOB_INDEX.equalsIgnoreCase(violation.getConstraintName())) {
+                return new BusinessException(Constants.ISSUANCE_JOB_ALREADY_RUNNING);
+            }
+        }
+        return e;
+    }
+    
+    private void launch(IssuanceJob job) {
+        JobRun run = new JobRun(job.getId(), job.getRequestedBy(), job.getChunkSize(), workers);
+        runs.put(job.getId(), run);
+        for (int i = 0; i < workers; i++) {
+            executor.execute(() -> work(run));
+        }
+    }
+    
+    /**
+     * Claim and issue chunks until no ready draft is left.
+     */
+    private void work(JobRun run) {
+        try {
+            while (!run.stopped && processChunk(run)) {
+                // next chunk
+            }
+        } catch (RuntimeException e) {
+            logger.error("Issuance worker of job {} stopped: {}", run.jobId, e.getMessage(), e);
+            run.aborted = true;
+        } finally {
+            if (run.activeWorkers.decrementAndGet() == 0) {
+                finish(run);
+            }
+        }
+    }
+    
+    /**
+     * Issue one claimed chunk; returns false when nothing was left to claim.
+     */
+    private boolean processChunk(JobRun run) {
+        long start = System.currentTimeMillis();
+        List<Long> claimed = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                claimed.addAll(invoiceRepository.claimDraftsReadyForIssuance(run.jobId, run.chunkSize,
+                    joinIds(draftAutosaveService.pendingInvoiceIds())));
+                if (claimed.isEmpty()) {
+                    return;
+                }
+                BillingRollupService.RollupBatch rollups = billingRollupService.batch();
+                for (Invoice invoice : invoiceRepository.findWithItemsByIdIn(claimed)) {
+                    invoiceService.issueDraft(invoice, run.requestedBy, rollups);
+                }
+                rollups.apply();
+                invoiceRepository.flush();
+                recordChunk(run, claimed, claimed.size(), 0, null, start);
+            });
+            return !claimed.isEmpty();
+        } catch (RuntimeException e) {
+            if (claimed.isEmpty()) {
+                throw e;
+            }
+            logger.warn("Issuance chunk of job {} failed ({}), replaying {} drafts individually",
+                run.jobId, e.getMessage(), claimed.size());
+            replayChunk(run, List.copyOf(claimed), start);
+            return true;
+        }
+    }
+    
+    /**
+     * Issue the drafts of a failed chunk one transaction each and record the chunk.
+     * Drafts are unlocked once the chunk rolled back, so each is locked again and
+     * skipped if another worker claimed it meanwhile. A failing draft is recorded for
+     * the job right away, which keeps later claims from picking it up again.
+     */
+    private void replayChunk(JobRun run, List<Long> ids, long start) {
+        int issued = 0;
+        int failed = 0;
+        String firstError = null;
+        for (Long id : ids) {
+            try {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> issueSingle(run, id)))) {
+                    issued++;
+                }
+            } catch (RuntimeException e) {
+                String error = truncate("Invoice " + id + ": " + e.getMessage());
+                logger.warn("Bulk issuance of invoice {} in job {} failed: {}", id, run.jobId, e.getMessage());
+                Integer recorded = transactionTemplate.execute(status ->
+                    issuanceChunkRepository.recordFailure(run.jobId, id, error));
+                if (recorded != null && recorded > 0) {
+                    failed++;
+                    if (firstError == null) {
+                        firstError = error;
+                    }
+                }
+            }
+        }
+        int issuedCount = issued;
+        int failedCount = failed;
+        String error = firstError;
+        transactionTemplate.executeWithoutResult(status -> recordChunk(run, ids, issuedCount, failedCount, error, start));
+    }
+    
+    /**
+     * Issue one draft if it can still be locked; returns false when another worker took it.
+     */
+    private boolean issueSingle(JobRun run, Long id) {
+        if (invoiceRepository.lockDraftForIssuance(id).isEmpty()) {
+            return false;
+        }
+        for (Invoice invoice : invoiceRepository.findWithItemsByIdIn(List.of(id))) {
+            BillingRollupService.RollupBatch rollups = billingRollupService.batch();
+            invoiceService.issueDraft(invoice, run.requestedBy, rollups);
+            rollups.apply();
+            invoiceRepository.flush();
+        }
+        return true;
+    }
+    
+    private void recordChunk(JobRun run, List<Long> ids, int issued, int failed, String error, long start) {
+        IssuanceChunk chunk = new IssuanceChunk();
+        chunk.setJobId(run.jobId);
+        chunk.setStatus(failed > 0 ? IssuanceChunk.ChunkStatus.FAILED : IssuanceChunk.ChunkStatus.SUCCESS);
+        chunk.setInvoiceCount(ids.size());
+        chunk.setFailedCount(failed);
+        chunk.setFirstInvoiceId(ids.get(0));
+        chunk.setLastInvoiceId(ids.get(ids.size() - 1));
+        chunk.setDurationMs(System.currentTimeMillis() - start);
+        chunk.setWorker(Thread.currentThread().getName());
+        chunk.setErrorMessage(error);
+        IssuanceChunk saved = issuanceChunkRepository.save(chunk);
+        if (failed > 0) {
+            issuanceChunkRepository.flush();
+            issuanceChunkRepository.assignFailures(saved.getId(), run.jobId, ids);
+        }
+        issuanceJobRepository.recordChunk(run.jobId, issued, failed, failed > 0 ? 1 : 0, LocalDateTime.now());
+    }
+    
+    private static String truncate(String error) {
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+    
+    /**
+     * Comma-separated IDs for claimDraftsReadyForIssuance.
+     */
+    private static String joinIds(Set<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+    
+    /**
+     * Complete the job once its last worker is done, or leave it resumable when interrupted.
+     */
+    private void finish(JobRun run) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                IssuanceJob job = findJob(run.jobId);
+                LocalDateTime now = LocalDateTime.now();
+                if (run.stopped || run.aborted) {
+                    issuanceJobRepository.updateStatus(run.jobId, IssuanceJob.JobStatus.INTERRUPTED, now, null);
+                } else if (job.getFailedCount() > 0) {
+                    issuanceJobRepository.updateStatus(run.jobId, IssuanceJob.JobStatus.COMPLETED_WITH_FAILURES, now, now);
+                } else {
+                    issuanceJobRepository.updateStatus(run.jobId, IssuanceJob.JobStatus.COMPLETED, now, now);
+                }
+                logger.info("Issuance job {} finished: {} issued, {} failed in {} chunks",
+                    run.jobId, job.getIssuedCount(), job.getFailedCount(), job.getChunkCount());
+            });
+        } finally {
+            runs.remove(run.jobId);
+        }
+    }
+    
+    /**
+     * In-memory state of a running job shared by its workers.
+     */
+    private static final class JobRun {
+        
+        private final Long jobId;
+        private final Long requestedBy;
+        private final int chunkSize;
+        private final AtomicInteger activeWorkers;
+        private volatile boolean stopped;
+        private volatile boolean aborted;
+        
+        private JobRun(Long jobId, Long requestedBy, int chunkSize, int workers) {
+            this.jobId = jobId;
+            this.requestedBy = requestedBy;
+            this.chunkSize = chunkSize;
+            this.activeWorkers = new AtomicInteger(workers);
+        }
+    }
+}
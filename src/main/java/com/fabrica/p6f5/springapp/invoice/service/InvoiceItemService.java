@@ -1,18 +1,20 @@
 package com.fabrica.p6f5.springapp.invoice.service;
 
-import com.fabrica.p6f5.springapp.exception.ResourceNotFoundException;
+import com.fabrica.p6f5.springapp.exception.BusinessException;
 import com.fabrica.p6f5.springapp.invoice.dto.CreateInvoiceRequest;
 import com.fabrica.p6f5.springapp.invoice.dto.UpdateInvoiceRequest;
 import com.fabrica.p6f5.springapp.invoice.model.Invoice;
 import com.fabrica.p6f5.springapp.invoice.model.InvoiceItem;
-import com.fabrica.p6f5.springapp.invoice.repository.InvoiceItemRepository;
 import com.fabrica.p6f5.springapp.shipment.model.Shipment;
-import com.fabrica.p6f5.springapp.shipment.repository.ShipmentRepository;
 import com.fabrica.p6f5.springapp.util.Constants;
 import com.fabrica.p6f5.springapp.util.InvoiceUtils;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Service for handling invoice item operations.
@@ -21,78 +23,116 @@ import java.util.List;
 @Service
 public class InvoiceItemService {
     
-    private final InvoiceItemRepository invoiceItemRepository;
-    private final ShipmentRepository shipmentRepository;
-    
-    public InvoiceItemService(
-            InvoiceItemRepository invoiceItemRepository,
-            ShipmentRepository shipmentRepository) {
-        this.invoiceItemRepository = invoiceItemRepository;
-        this.shipmentRepository = shipmentRepository;
-    }
-    
     /**
      * Add invoice items from create request.
+     * Items are added to the invoice's collection and inserted by cascade at flush.
+     * 
+     * @param shipments the shipments referenced by the items, resolved by ShipmentLinkResolver
      */
-    public void addInvoiceItems(Invoice invoice, List<CreateInvoiceRequest.InvoiceItemRequest> itemRequests) {
+    public void addInvoiceItems(Invoice invoice, List<CreateInvoiceRequest.InvoiceItemRequest> itemRequests,
+                                Map<Long, Shipment> shipments) {
         List<InvoiceItem> items = InvoiceUtils.createInvoiceItems(itemRequests, invoice);
-        linkItemsToShipments(items, itemRequests);
-        invoiceItemRepository.saveAll(items);
+        linkItemsToShipments(items, itemRequests, shipments);
+        invoice.getItems().addAll(items);
     }
     
     /**
-     * Update invoice items from update request.
+     * Merge the requested lines into the invoice's current lines.
+     * Lines with an ID are updated only when a field changed, lines without an ID are
+     * inserted and current lines missing from the request are removed, so Hibernate
+     * issues only the minimal batched DML at flush.
+     * 
+     * @param shipments the shipments referenced by the items, resolved by ShipmentLinkResolver
+     * @return the merge counts and the change of the invoice subtotal
      */
-    public void updateInvoiceItems(Invoice invoice, Long invoiceId, List<UpdateInvoiceRequest.InvoiceItemRequest> itemRequests) {
-        invoiceItemRepository.deleteByInvoiceId(invoiceId);
-        List<InvoiceItem> items = InvoiceUtils.createInvoiceItemsFromUpdate(itemRequests, invoice);
-        linkItemsToShipmentsFromUpdate(items, itemRequests);
-        invoiceItemRepository.saveAll(items);
+    public ItemMergeResult mergeInvoiceItems(Invoice invoice, List<UpdateInvoiceRequest.InvoiceItemRequest> itemRequests,
+                                             Map<Long, Shipment> shipments) {
+        Map<Long, InvoiceItem> currentItems = new HashMap<>();
+        invoice.getItems().forEach(item -> currentItems.put(item.getId(), item));
+        
+        BigDecimal subtotalDelta = BigDecimal.ZERO;
+        int unchanged = 0;
+        int updated = 0;
+        int inserted = 0;
+        for (UpdateInvoiceRequest.InvoiceItemRequest itemRequest : itemRequests) {
+            if (itemRequest.getId() == null) {
+                InvoiceItem item = InvoiceUtils.createInvoiceItemFromUpdate(itemRequest, invoice);
+                item.setShipment(findShipment(shipments, itemRequest.getShipmentId()));
+                invoice.getItems().add(item);
+                subtotalDelta = subtotalDelta.add(item.getTotalPrice());
+                inserted++;
+                continue;
+            }
+            
+            InvoiceItem item = currentItems.remove(itemRequest.getId());
+            if (item == null) {
+                throw new BusinessException(String.format(Constants.INVOICE_ITEM_NOT_IN_INVOICE, itemRequest.getId()));
+            }
+            if (isUnchanged(item, itemRequest)) {
+                unchanged++;
+                continue;
+            }
+            subtotalDelta = subtotalDelta.subtract(item.getTotalPrice());
+            applyChanges(item, itemRequest, shipments);
+            subtotalDelta = subtotalDelta.add(item.getTotalPrice());
+            updated++;
+        }
+        
+        for (InvoiceItem removed : currentItems.values()) {
+            subtotalDelta = subtotalDelta.subtract(removed.getTotalPrice());
+        }
+        invoice.getItems().removeIf(item -> item.getId() != null && currentItems.containsKey(item.getId()));
+        return new ItemMergeResult(unchanged, updated, inserted, currentItems.size(), subtotalDelta);
     }
     
     /**
-     * Link items to shipments from create request.
+     * Check whether a current line already matches the request.
      */
-    private void linkItemsToShipments(
-            List<InvoiceItem> items, 
-            List<CreateInvoiceRequest.InvoiceItemRequest> itemRequests) {
-        for (int i = 0; i < items.size(); i++) {
-            InvoiceItem item = items.get(i);
-            CreateInvoiceRequest.InvoiceItemRequest itemRequest = itemRequests.get(i);
-            linkItemToShipment(item, itemRequest.getShipmentId());
+    private boolean isUnchanged(InvoiceItem item, UpdateInvoiceRequest.InvoiceItemRequest itemRequest) {
+        Long currentShipmentId = item.getShipment() != null ? item.getShipment().getId() : null;
+        return Objects.equals(item.getDescription(), itemRequest.getDescription())
+            && Objects.equals(item.getQuantity(), itemRequest.getQuantity())
+            && item.getUnitPrice().compareTo(itemRequest.getUnitPrice()) == 0
+            && Objects.equals(currentShipmentId, itemRequest.getShipmentId());
+    }
+    
+    /**
+     * Copy the requested values onto a current line.
+     */
+    private void applyChanges(InvoiceItem item, UpdateInvoiceRequest.InvoiceItemRequest itemRequest,
+                              Map<Long, Shipment> shipments) {
+        item.setDescription(itemRequest.getDescription());
+        item.setQuantity(itemRequest.getQuantity());
+        item.setUnitPrice(itemRequest.getUnitPrice());
+        item.calculateTotal();
+        Long currentShipmentId = item.getShipment() != null ? item.getShipment().getId() : null;
+        if (!Objects.equals(currentShipmentId, itemRequest.getShipmentId())) {
+            item.setShipment(findShipment(shipments, itemRequest.getShipmentId()));
         }
     }
     
     /**
-     * Link items to shipments from update request.
+     * Link items to shipments from create request.
      */
-    private void linkItemsToShipmentsFromUpdate(
+    private void linkItemsToShipments(
             List<InvoiceItem> items, 
-            List<UpdateInvoiceRequest.InvoiceItemRequest> itemRequests) {
+            List<CreateInvoiceRequest.InvoiceItemRequest> itemRequests,
+            Map<Long, Shipment> shipments) {
         for (int i = 0; i < items.size(); i++) {
-            InvoiceItem item = items.get(i);
-            UpdateInvoiceRequest.InvoiceItemRequest itemRequest = itemRequests.get(i);
-            linkItemToShipment(item, itemRequest.getShipmentId());
+            items.get(i).setShipment(findShipment(shipments, itemRequests.get(i).getShipmentId()));
         }
     }
     
     /**
-     * Link item to shipment if shipment ID is provided.
+     * Look up a resolved shipment, or null when the item has none.
      */
-    private void linkItemToShipment(InvoiceItem item, Long shipmentId) {
-        if (shipmentId == null) {
-            return;
-        }
-        Shipment shipment = findShipmentById(shipmentId);
-        item.setShipment(shipment);
+    private Shipment findShipment(Map<Long, Shipment> shipments, Long shipmentId) {
+        return shipmentId != null ? shipments.get(shipmentId) : null;
     }
     
     /**
-     * Find shipment by ID or throw exception.
+     * Outcome of an item merge
      */
-    private Shipment findShipmentById(Long shipmentId) {
-        return shipmentRepository.findById(shipmentId)
-            .orElseThrow(() -> new ResourceNotFoundException(Constants.SHIPMENT_NOT_FOUND + shipmentId));
+    public record ItemMergeResult(int unchanged, int updated, int inserted, int deleted, BigDecimal subtotalDelta) {
     }
 }
-
@@ -0,0 +1,289 @@
+package com.fabrica.p6f5.springapp.invoice.service;
+
+import com.fabrica.p6f5.springapp.audit.model.InvoiceHistory;
+import com.fabrica.p6f5.springapp.audit.service.AuditService;
+import com.fabrica.p6f5.springapp.exception.BusinessException;
+import com.fabrica.p6f5.springapp.exception.InvoiceMergeConflictException;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceMergeConflict;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceMergeConflictResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.UpdateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.dto.UpdateInvoiceRequest.InvoiceItemRequest;
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fabrica.p6f5.springapp.invoice.model.InvoiceItem;
+import com.fabrica.p6f5.springapp.invoice.model.InvoiceShipment;
+import com.fabrica.p6f5.springapp.util.Constants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Three-way merge of draft updates made against an older version.
+ * <p>
+ * The history snapshot of the client's version is the merge base. A field or line
+ * changed only by the client or only by the concurrent update takes that change;
+ * a field changed differently by both, or a line deleted on one side and modified
+ * on the other, is a conflict. Email, currency and tax amount omitted by the client are
+ * unchanged on its side. Shipment links are merged as sets and never conflict.
+ * Outcomes are counted in {@code invoice.draft.updates} tagged by outcome.
+ */
+@Service
+public class InvoiceMergeService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceMergeService.class);
+    
+    private static final String METRIC_NAME = "invoice.draft.updates";
+    
+    private final AuditService auditService;
+    private final InvoiceSnapshotCodec invoiceSnapshotCodec;
+    private final Counter currentUpdates;
+    private final Counter mergedUpdates;
+    private final Counter conflictingUpdates;
+    private final Counter baseMissingUpdates;
+    
+    public InvoiceMergeService(AuditService auditService, InvoiceSnapshotCodec invoiceSnapshotCodec,
+                               MeterRegistry meterRegistry) {
+        this.auditService = auditService;
+        this.invoiceSnapshotCodec = invoiceSnapshotCodec;
+        this.currentUpdates = outcomeCounter(meterRegistry, "current");
+        this.mergedUpdates = outcomeCounter(meterRegistry, "merged");
+        this.conflictingUpdates = outcomeCounter(meterRegistry, "conflict");
+        this.baseMissingUpdates = outcomeCounter(meterRegistry, "base_missing");
+    }
+    
+    /**
+     * Rebase a draft update onto the current state of the invoice.
+     * Returns the request itself when its version is current, otherwise the merged request.
+     */
+    public UpdateInvoiceRequest rebase(Invoice current, UpdateInvoiceRequest mine) {
+        Integer baseVersion = mine.getVersion();
+        if (baseVersion == null || baseVersion.equals(current.getVersion())) {
+            currentUpdates.increment();
+            return mine;
+        }
+        
+        Optional<UpdateInvoiceRequest> base = auditService.getInvoiceHistoryVersion(current.getId(), baseVersion)
+            .flatMap(this::fromSnapshot);
+        if (base.isEmpty()) {
+            baseMissingUpdates.increment();
+            throw new BusinessException(Constants.INVOICE_MODIFIED);
+        }
+        
+        List<InvoiceMergeConflict> conflicts = new ArrayList<>();
+        UpdateInvoiceRequest merged = merge(base.get(), mine, fromInvoice(current), conflicts);
+        if (!conflicts.isEmpty()) {
+            conflictingUpdates.increment();
+            throw new InvoiceMergeConflictException(Constants.INVOICE_MERGE_CONFLICT,
+                new InvoiceMergeConflictResponse(current.getId(), baseVersion, current.getVersion(), conflicts));
+        }
+        
+        mergedUpdates.increment();
+        logger.info("Merged update of invoice {} from version {} onto version {}",
+            current.getId(), baseVersion, current.getVersion());
+        merged.setVersion(current.getVersion());
+        return merged;
+    }
+    
+    private UpdateInvoiceRequest merge(UpdateInvoiceRequest base, UpdateInvoiceRequest mine,
+                                       UpdateInvoiceRequest theirs, List<InvoiceMergeConflict> conflicts) {
+        UpdateInvoiceRequest merged = new UpdateInvoiceRequest();
+        merged.setClientName(mergeField("clientName", null, base, mine, theirs, UpdateInvoiceRequest::getClientName, conflicts));
+        merged.setClientEmail(mergeOmittableField("clientEmail", base, mine, theirs, UpdateInvoiceRequest::getClientEmail, conflicts));
+        merged.setInvoiceDate(mergeField("invoiceDate", null, base, mine, theirs, UpdateInvoiceRequest::getInvoiceDate, conflicts));
+        merged.setDueDate(mergeField("dueDate", null, base, mine, theirs, UpdateInvoiceRequest::getDueDate, conflicts));
+        merged.setTaxAmount(mergeOmittableField("taxAmount", base, mine, theirs, UpdateInvoiceRequest::getTaxAmount, conflicts));
+        merged.setCurrency(mergeOmittableField("currency", base, mine, theirs, UpdateInvoiceRequest::getCurrency, conflicts));
+        merged.setItems(mergeItems(base.getItems(), mine.getItems(), theirs.getItems(), conflicts));
+        merged.setShipmentIds(mergeShipmentIds(base.getShipmentIds(), mine.getShipmentIds(), theirs.getShipmentIds()));
+        return merged;
+    }
+    
+    /**
+     * Merge lines by id. Lines added by the client (no id) are always kept.
+     */
+    private List<InvoiceItemRequest> mergeItems(List<InvoiceItemRequest> base, List<InvoiceItemRequest> mine,
+                                                List<InvoiceItemRequest> theirs, List<InvoiceMergeConflict> conflicts) {
+        Map<Long, InvoiceItemRequest> baseById = byId(base);
+        Map<Long, InvoiceItemRequest> mineById = byId(mine);
+        Map<Long, InvoiceItemRequest> theirsById = byId(theirs);
+        List<InvoiceItemRequest> merged = new ArrayList<>();
+        
+        for (InvoiceItemRequest their : theirs) {
+            Long id = their.getId();
+            InvoiceItemRequest baseItem = baseById.get(id);
+            InvoiceItemRequest myItem = mineById.get(id);
+            if (baseItem == null) {
+                merged.add(myItem != null ? mergeItem(id, their, myItem, their, conflicts) : their);
+            } else if (myItem != null) {
+                merged.add(mergeItem(id, baseItem, myItem, their, conflicts));
+            } else if (!sameItem(baseItem, their)) {
+                conflicts.add(new InvoiceMergeConflict(itemField(id, null), id, baseItem, null, their));
+            }
+        }
+        for (InvoiceItemRequest myItem : mine) {
+            Long id = myItem.getId();
+            if (id == null) {
+                merged.add(myItem);
+            } else if (!theirsById.containsKey(id)) {
+                InvoiceItemRequest baseItem = baseById.get(id);
+                if (baseItem == null) {
+                    // Unknown line; rejected by the item merge
+                    merged.add(myItem);
+                } else if (!sameItem(baseItem, myItem)) {
+                    conflicts.add(new InvoiceMergeConflict(itemField(id, null), id, baseItem, myItem, null));
+                }
+            }
+        }
+        return merged;
+    }
+    
+    private InvoiceItemRequest mergeItem(Long id, InvoiceItemRequest base, InvoiceItemRequest mine,
+                                         InvoiceItemRequest theirs, List<InvoiceMergeConflict> conflicts) {
+        return new InvoiceItemRequest(
+            id,
+            mergeField(itemField(id, "shipmentId"), id, base, mine, theirs, InvoiceItemRequest::getShipmentId, conflicts),
+            mergeField(itemField(id, "description"), id, base, mine, theirs, InvoiceItemRequest::getDescription, conflicts),
+            mergeField(itemField(id, "quantity"), id, base, mine, theirs, InvoiceItemRequest::getQuantity, conflicts),
+            mergeField(itemField(id, "unitPrice"), id, base, mine, theirs, InvoiceItemRequest::getUnitPrice, conflicts));
+    }
+    
+    private List<Long> mergeShipmentIds(List<Long> base, List<Long> mine, List<Long> theirs) {
+        Set<Long> baseIds = idSet(base);
+        Set<Long> mineIds = idSet(mine);
+        Set<Long> merged = idSet(theirs);
+        mineIds.stream().filter(id -> !baseIds.contains(id)).forEach(merged::add);
+        baseIds.stream().filter(id -> !mineIds.contains(id)).forEach(merged::remove);
+        return new ArrayList<>(merged);
+    }
+    
+    /**
+     * Merge a header field the client may omit. Omitted (null) means unchanged, so the current
+     * value is kept; a field is cleared by sending an empty value instead.
+     */
+    private <T> T mergeOmittableField(String field, UpdateInvoiceRequest base, UpdateInvoiceRequest mine,
+                                      UpdateInvoiceRequest theirs, Function<UpdateInvoiceRequest, T> getter,
+                                      List<InvoiceMergeConflict> conflicts) {
+        if (getter.apply(mine) == null) {
+            return getter.apply(theirs);
+        }
+        return mergeField(field, null, base, mine, theirs, getter, conflicts);
+    }
+    
+    private <S, T> T mergeField(String field, Long itemId, S base, S mine, S theirs, Function<S, T> getter,
+                                List<InvoiceMergeConflict> conflicts) {
+        T baseValue = getter.apply(base);
+        T myValue = getter.apply(mine);
+        T theirValue = getter.apply(theirs);
+        if (same(myValue, baseValue) || same(myValue, theirValue)) {
+            return theirValue;
+        }
+        if (same(theirValue, baseValue)) {
+            return myValue;
+        }
+        conflicts.add(new InvoiceMergeConflict(field, itemId, baseValue, myValue, theirValue));
+        return theirValue;
+    }
+    
+    private boolean sameItem(InvoiceItemRequest a, InvoiceItemRequest b) {
+        return same(a.getShipmentId(), b.getShipmentId())
+            && same(a.getDescription(), b.getDescription())
+            && same(a.getQuantity(), b.getQuantity())
+            && same(a.getUnitPrice(), b.getUnitPrice());
+    }
+    
+    private boolean same(Object a, Object b) {
+        if (a instanceof BigDecimal x && b instanceof BigDecimal y) {
+            return x.compareTo(y) == 0;
+        }
+        return Objects.equals(a, b);
+    }
+    
+    private String itemField(Long id, String field) {
+        return field == null ? "items[" + id + "]" : "items[" + id + "]." + field;
+    }
+    
+    private Map<Long, InvoiceItemRequest> byId(List<InvoiceItemRequest> items) {
+        Map<Long, InvoiceItemRequest> byId = new LinkedHashMap<>();
+        for (InvoiceItemRequest item : items) {
+            if (item.getId() != null) {
+                byId.put(item.getId(), item);
+            }
+        }
+        return byId;
+    }
+    
+    private Set<Long> idSet(List<Long> ids) {
+        return ids == null ? new LinkedHashSet<>() : new LinkedHashSet<>(ids);
+    }
+    
+    /**
+     * Current state of an invoice in request form.
+     */
+    private UpdateInvoiceRequest fromInvoice(Invoice invoice) {
+        UpdateInvoiceRequest state = new UpdateInvoiceRequest();
+        state.setClientName(invoice.getClientName());
+        state.setClientEmail(invoice.getClientEmail());
+        state.setInvoiceDate(invoice.getInvoiceDate());
+        state.setDueDate(invoice.getDueDate());
+        state.setTaxAmount(invoice.getTaxAmount());
+        state.setCurrency(invoice.getCurrency());
+        List<InvoiceItemRequest> items = new ArrayList<>();
+        for (InvoiceItem item : invoice.getItems()) {
+            items.add(new InvoiceItemRequest(item.getId(),
+                item.getShipment() != null ? item.getShipment().getId() : null,
+                item.getDescription(), item.getQuantity(), item.getUnitPrice()));
+        }
+        state.setItems(items);
+        state.setShipmentIds(invoice.getShipments().stream()
+            .map(InvoiceShipment::getShipment)
+            .map(shipment -> shipment.getId())
+            .toList());
+        return state;
+    }
+    
+    /**
+     * State of a history snapshot in request form; empty when the snapshot cannot be read.
+     */
+    private Optional<UpdateInvoiceRequest> fromSnapshot(InvoiceHistory history) {
+        try {
+            InvoiceSnapshotCodec.Snapshot snapshot = invoiceSnapshotCodec.decode(history.getInvoiceData());
+            InvoiceSnapshotCodec.Header header = snapshot.header();
+            UpdateInvoiceRequest state = new UpdateInvoiceRequest();
+            state.setClientName(header.clientName());
+            state.setClientEmail(header.clientEmail());
+            state.setInvoiceDate(header.invoiceDate());
+            state.setDueDate(header.dueDate());
+            state.setTaxAmount(header.taxAmount());
+            state.setCurrency(header.currency());
+            state.setItems(snapshot.items().stream()
+                .map(item -> new InvoiceItemRequest(item.id(), item.shipmentId(), item.description(),
+                    item.quantity(), item.unitPrice()))
+                .toList());
+            state.setShipmentIds(snapshot.shipmentIds());
+            return Optional.of(state);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unreadable history snapshot {} of invoice {}: {}",
+                history.getVersion(), history.getInvoiceId(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+    
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder(METRIC_NAME)
+            .description("Draft invoice updates by version outcome")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,155 @@
+package com.fabrica.p6f5.springapp.invoice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Time-ordered invoice number generator.
+ * <p>
+ * Each number packs 41 bits of milliseconds since 2024-01-01, a 10-bit node id and a
+ * 12-bit per-millisecond sequence into a positive long, rendered as 13 Crockford base32
+ * characters after the prefix (e.g. {@code INV-01J9Z3K8Q4W5R}). Numbers of one node are
+ * strictly increasing and sort in creation order, so inserts append to the right edge
+ * of the {@code invoice_number} index. Nodes of a cluster must use distinct node ids;
+ * {@code invoice.number.node-id} has no default, so a node without one fails to start.
+ * <p>
+ * The last timestamp and sequence share one AtomicLong updated by CAS. When the sequence
+ * of a millisecond is exhausted, or the clock moves backwards, the generator continues
+ * on the next millisecond instead of blocking. On startup the state is advanced past the
+ * highest number already stored, so a restart with the clock behind never reissues numbers.
+ */
+@Component
+public class InvoiceNumberGenerator {
+    
+    public static final int MAX_NODE_ID = 1023;
+    
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceNumberGenerator.class);
+    
+    private static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int ENCODED_LENGTH = 13;
+    private static final char[] CROCKFORD = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final long MAX_SEED_AHEAD_MS = Duration.ofDays(1).toMillis();
+    
+    private final String prefix;
+    private final long nodeBits;
+    private final LongSupplier clock;
+    private final AtomicLong state = new AtomicLong();
+    
+    @Autowired
+    public InvoiceNumberGenerator(
+            @Value("${invoice.number.prefix:INV-}") String prefix,
+            @Value("${invoice.number.node-id}") int nodeId,
+            JdbcTemplate jdbcTemplate) {
+        this(prefix, nodeId, System::currentTimeMillis);
+        String lastNumber = jdbcTemplate.queryForObject(
+            "SELECT MAX(invoice_number) FROM invoices " +
+            "WHERE LEFT(invoice_number, ?) = ? AND LENGTH(invoice_number) = ?",
+            String.class, prefix.length(), prefix, prefix.length() + ENCODED_LENGTH);
+        if (lastNumber != null) {
+            advancePast(lastNumber);
+        }
+    }
+    
+    public InvoiceNumberGenerator(String prefix, int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Invoice number node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.prefix = prefix;
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+    
+    /**
+     * Continue after a number issued earlier by any node. Numbers that do not decode, or that lie
+     * more than a day ahead of the clock, are ignored rather than trusted.
+     */
+    public void advancePast(String number) {
+        long id = decode(number.substring(Math.min(prefix.length(), number.length())));
+        long millis = id >>> (NODE_BITS + SEQUENCE_BITS);
+        long now = clock.getAsLong() - EPOCH;
+        if (id < 0 || millis - now > MAX_SEED_AHEAD_MS) {
+            logger.warn("Ignoring invoice number {} when seeding the generator", number);
+            return;
+        }
+        // Sequence exhausted for that millisecond: the next id moves on to a later one
+        long seed = (millis << SEQUENCE_BITS) | SEQUENCE_MASK;
+        state.accumulateAndGet(seed, Math::max);
+        if (millis >= now) {
+            logger.info("Invoice numbers continue after {}, {} ms ahead of the clock", number, millis - now);
+        }
+    }
+    
+    /**
+     * Next invoice number of this node.
+     */
+    public String nextInvoiceNumber() {
+        return prefix + encode(nextId());
+    }
+    
+    /**
+     * Next raw id: timestamp, node id and sequence.
+     */
+    public long nextId() {
+        while (true) {
+            long previous = state.get();
+            long previousMillis = previous >>> SEQUENCE_BITS;
+            long now = clock.getAsLong() - EPOCH;
+            long next;
+            if (now > previousMillis) {
+                next = now << SEQUENCE_BITS;
+            } else if ((previous & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = previous + 1;
+            } else {
+                next = (previousMillis + 1) << SEQUENCE_BITS;
+            }
+            if (state.compareAndSet(previous, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+    
+    /**
+     * Fixed-width Crockford base32, so the text sorts like the number.
+     */
+    static String encode(long id) {
+        char[] chars = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = CROCKFORD[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+    
+    /**
+     * Inverse of encode; -1 when the text is not a fixed-width Crockford base32 id.
+     */
+    static long decode(String text) {
+        if (text.length() != ENCODED_LENGTH) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 0; i < ENCODED_LENGTH; i++) {
+            int digit = Arrays.binarySearch(CROCKFORD, text.charAt(i));
+            // The first character carries only 3 of the 63 bits
+            if (digit < 0 || (i == 0 && digit > 7)) {
+                return -1;
+            }
+            id = (id << 5) | digit;
+        }
+        return id;
+    }
+}
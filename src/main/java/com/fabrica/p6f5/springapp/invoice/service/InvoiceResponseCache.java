@@ -0,0 +1,95 @@
+package com.fabrica.p6f5.springapp.invoice.service;
+
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceResponse;
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Bounded in-heap cache of responses for issued and paid invoices.
+ * Entries are stamped with the invoice version and only served for that exact version,
+ * so any write that bumps the version makes older entries unreachable even before invalidation.
+ * Responses are kept as DTOs, so a hit costs no deserialization. The cache holds its own copy
+ * and hands out a fresh copy on every hit, so a caller changing a response cannot change what
+ * other readers get. Each entry weighs its serialized size, measured once on put.
+ */
+@Component
+public class InvoiceResponseCache {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceResponseCache.class);
+    
+    private static final String CACHE_NAME = "invoiceResponses";
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+    
+    private final Cache<Long, CachedResponse> cache;
+    private final ObjectMapper objectMapper;
+    
+    public InvoiceResponseCache(
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${invoice.cache.max-bytes:67108864}") long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((Long id, CachedResponse entry) -> entry.weight())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+    
+    /**
+     * Check whether invoices in the given status are immutable enough to cache.
+     */
+    public boolean isCacheable(Invoice.InvoiceStatus status) {
+        return status == Invoice.InvoiceStatus.ISSUED || status == Invoice.InvoiceStatus.PAID;
+    }
+    
+    /**
+     * Get a copy of the cached response for an exact invoice version.
+     */
+    public Optional<InvoiceResponse> get(Long invoiceId, Integer version) {
+        CachedResponse entry = cache.getIfPresent(invoiceId);
+        if (entry == null || !entry.version().equals(version)) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.response().copy());
+    }
+    
+    /**
+     * Cache a response if its status makes it immutable.
+     */
+    public void put(InvoiceResponse response) {
+        if (!isCacheable(Invoice.InvoiceStatus.valueOf(response.getStatus()))) {
+            return;
+        }
+        try {
+            int weight = objectMapper.writeValueAsBytes(response).length + ENTRY_OVERHEAD_BYTES;
+            cache.put(response.getId(), new CachedResponse(response.getVersion(), response.copy(), weight));
+        } catch (IOException e) {
+            logger.warn("Could not cache response for invoice {}", response.getId(), e);
+        }
+    }
+    
+    /**
+     * Drop the cached response of an invoice after a write.
+     */
+    public void invalidate(Long invoiceId) {
+        cache.invalidate(invoiceId);
+    }
+    
+    /**
+     * Response stamped with the version it was built from, weighed by its serialized size.
+     */
+    private record CachedResponse(Integer version, InvoiceResponse response, int weight) {
+    }
+}
@@ -0,0 +1,59 @@
+package com.fabrica.p6f5.springapp.invoice.service;
+
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceSearchCriteria;
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+
+/**
+ * Index-backed plan families for invoice search.
+ * Each family names the index expected to drive the query for a filter combination;
+ * the remaining filters are applied to the rows that index returns. The family is a
+ * heuristic over the filters; PostgreSQL may still choose another plan.
+ */
+public enum InvoiceSearchPlan {
+    
+    CLIENT_CREATED("idx_invoice_client_created"),
+    DRAFTS_BY_CREATOR("idx_invoice_drafts_creator"),
+    CREATOR_CREATED("idx_invoice_creator_created"),
+    ISSUED_DUE_DATE("idx_invoice_issued_due"),
+    INVOICE_DATE_RANGE("idx_invoice_date"),
+    AMOUNT_RANGE("idx_invoice_total_amount"),
+    STATUS_CREATED("idx_invoice_status_created_keyset"),
+    CREATED_KEYSET("idx_invoice_created_keyset");
+    
+    private final String indexName;
+    
+    InvoiceSearchPlan(String indexName) {
+        this.indexName = indexName;
+    }
+    
+    public String getIndexName() {
+        return indexName;
+    }
+    
+    /**
+     * Choose the plan family for a filter combination, most selective access path first.
+     * Equality filters that also match the (created_at, id) result order are preferred
+     * over range filters, which need a sort of the matching rows.
+     */
+    public static InvoiceSearchPlan choose(InvoiceSearchCriteria criteria) {
+        if (criteria.getClientName() != null && !criteria.getClientName().isBlank()) {
+            return CLIENT_CREATED;
+        }
+        if (criteria.getCreatedBy() != null) {
+            return criteria.getStatus() == Invoice.InvoiceStatus.DRAFT ? DRAFTS_BY_CREATOR : CREATOR_CREATED;
+        }
+        if (criteria.getStatus() == Invoice.InvoiceStatus.ISSUED && criteria.hasDueDateRange()) {
+            return ISSUED_DUE_DATE;
+        }
+        if (criteria.hasInvoiceDateRange()) {
+            return INVOICE_DATE_RANGE;
+        }
+        if (criteria.hasAmountRange()) {
+            return AMOUNT_RANGE;
+        }
+        if (criteria.getStatus() != null) {
+            return STATUS_CREATED;
+        }
+        return CREATED_KEYSET;
+    }
+}
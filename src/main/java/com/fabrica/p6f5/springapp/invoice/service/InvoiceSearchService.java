@@ -0,0 +1,100 @@
+package com.fabrica.p6f5.springapp.invoice.service;
+
+import com.fabrica.p6f5.springapp.exception.BusinessException;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoicePageResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceSearchCriteria;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceSearchResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceSummary;
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fabrica.p6f5.springapp.invoice.repository.InvoiceSpecifications;
+import com.fabrica.p6f5.springapp.util.Constants;
+import com.fabrica.p6f5.springapp.util.CursorUtils;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Service for multi-criteria invoice search.
+ * Composes Specifications into a Criteria query that projects summaries with keyset pagination.
+ */
+@Service
+public class InvoiceSearchService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceSearchService.class);
+    
+    private final EntityManager entityManager;
+    
+    public InvoiceSearchService(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+    
+    /**
+     * Search invoices by any combination of filters, newest first.
+     */
+    @Transactional(readOnly = true)
+    public InvoiceSearchResponse search(InvoiceSearchCriteria criteria, String cursor, Integer size) {
+        validateCriteria(criteria);
+        int pageSize = CursorUtils.resolvePageSize(size);
+        CursorUtils.Cursor position = CursorUtils.decode(cursor);
+        InvoiceSearchPlan plan = InvoiceSearchPlan.choose(criteria);
+        logger.debug("Searching invoices with expected access path {} for criteria {}", plan, criteria);
+        
+        Specification<Invoice> spec = InvoiceSpecifications.matching(criteria);
+        if (position != null) {
+            spec = spec.and(InvoiceSpecifications.after(position));
+        }
+        
+        List<InvoiceSummary> rows = findSummaries(spec, pageSize + 1);
+        InvoicePageResponse<InvoiceSummary> page = InvoicePageResponse.of(rows, pageSize,
+            summary -> CursorUtils.encode(summary.createdAt(), summary.id()));
+        return new InvoiceSearchResponse(page, plan.name(), plan.getIndexName());
+    }
+    
+    /**
+     * Run the specification as a summary projection ordered by (created_at, id) descending.
+     */
+    private List<InvoiceSummary> findSummaries(Specification<Invoice> spec, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<InvoiceSummary> query = cb.createQuery(InvoiceSummary.class);
+        Root<Invoice> root = query.from(Invoice.class);
+        query.select(cb.construct(InvoiceSummary.class,
+                root.get("id"), root.get("invoiceNumber"), root.get("clientName"), root.get("status"),
+                root.get("invoiceDate"), root.get("dueDate"), root.get("subtotal"), root.get("taxAmount"),
+                root.get("totalAmount"), root.get("currency"), root.get("createdAt")))
+            .orderBy(cb.desc(root.get("createdAt")), cb.desc(root.get("id")));
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+    
+    /**
+     * Validate range filters.
+     */
+    private void validateCriteria(InvoiceSearchCriteria criteria) {
+        if (criteria.getMinAmount() != null && criteria.getMaxAmount() != null
+                && criteria.getMinAmount().compareTo(criteria.getMaxAmount()) > 0) {
+            throw new BusinessException(Constants.INVALID_AMOUNT_RANGE);
+        }
+        if (criteria.getInvoiceDateFrom() != null && criteria.getInvoiceDateTo() != null
+                && criteria.getInvoiceDateFrom().isAfter(criteria.getInvoiceDateTo())) {
+            throw new BusinessException(Constants.INVALID_DATE_RANGE);
+        }
+        if (criteria.getDueDateFrom() != null && criteria.getDueDateTo() != null
+                && criteria.getDueDateFrom().isAfter(criteria.getDueDateTo())) {
+            throw new BusinessException(Constants.INVALID_DATE_RANGE);
+        }
+    }
+}
@@ -2,28 +2,41 @@ package com.fabrica.p6f5.springapp.invoice.service;
 
 import com.fabrica.p6f5.springapp.audit.model.AuditLog;
 import com.fabrica.p6f5.springapp.audit.service.AuditService;
+import com.fabrica.p6f5.springapp.billing.service.BillingRollupService;
 import com.fabrica.p6f5.springapp.exception.BusinessException;
 import com.fabrica.p6f5.springapp.exception.ResourceNotFoundException;
+import com.fabrica.p6f5.springapp.invoice.dto.BatchGetInvoicesResponse;
 import com.fabrica.p6f5.springapp.invoice.dto.CreateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoicePageResponse;
 import com.fabrica.p6f5.springapp.invoice.dto.InvoiceResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceShipmentLink;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceSummary;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceVersion;
 import com.fabrica.p6f5.springapp.invoice.dto.UpdateInvoiceRequest;
 import com.fabrica.p6f5.springapp.invoice.model.Invoice;
-import com.fabrica.p6f5.springapp.invoice.model.InvoiceShipment;
 import com.fabrica.p6f5.springapp.invoice.repository.InvoiceRepository;
 import com.fabrica.p6f5.springapp.invoice.repository.InvoiceShipmentRepository;
 import com.fabrica.p6f5.springapp.shipment.model.Shipment;
-import com.fabrica.p6f5.springapp.shipment.repository.ShipmentRepository;
 import com.fabrica.p6f5.springapp.util.Constants;
+import com.fabrica.p6f5.springapp.util.CursorUtils;
 import com.fabrica.p6f5.springapp.util.InvoiceUtils;
-import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -37,21 +50,39 @@ public class InvoiceService {
     
     private final InvoiceRepository invoiceRepository;
     private final InvoiceShipmentRepository invoiceShipmentRepository;
-    private final ShipmentRepository shipmentRepository;
+    private final ShipmentLinkResolver shipmentLinkResolver;
     private final AuditService auditService;
     private final InvoiceItemService invoiceItemService;
+    private final InvoiceResponseCache invoiceResponseCache;
+    private final BillingRollupService billingRollupService;
+    private final FiscalFolioService fiscalFolioService;
+    private final InvoiceNumberGenerator invoiceNumberGenerator;
+    private final InvoiceMergeService invoiceMergeService;
+    private final InvoiceSnapshotCodec invoiceSnapshotCodec;
     
     public InvoiceService(
             InvoiceRepository invoiceRepository,
             InvoiceShipmentRepository invoiceShipmentRepository,
-            ShipmentRepository shipmentRepository,
+            ShipmentLinkResolver shipmentLinkResolver,
             AuditService auditService,
-            InvoiceItemService invoiceItemService) {
+            InvoiceItemService invoiceItemService,
+            InvoiceResponseCache invoiceResponseCache,
+            BillingRollupService billingRollupService,
+            FiscalFolioService fiscalFolioService,
+            InvoiceNumberGenerator invoiceNumberGenerator,
+            InvoiceMergeService invoiceMergeService,
+            InvoiceSnapshotCodec invoiceSnapshotCodec) {
         this.invoiceRepository = invoiceRepository;
         this.invoiceShipmentRepository = invoiceShipmentRepository;
-        this.shipmentRepository = shipmentRepository;
+        this.shipmentLinkResolver = shipmentLinkResolver;
         this.auditService = auditService;
         this.invoiceItemService = invoiceItemService;
+        this.invoiceResponseCache = invoiceResponseCache;
+        this.billingRollupService = billingRollupService;
+        this.fiscalFolioService = fiscalFolioService;
+        this.invoiceNumberGenerator = invoiceNumberGenerator;
+        this.invoiceMergeService = invoiceMergeService;
+        this.invoiceSnapshotCodec = invoiceSnapshotCodec;
     }
     
     /**
@@ -61,16 +92,66 @@ public class InvoiceService {
     public InvoiceResponse createDraftInvoice(CreateInvoiceRequest request, Long createdBy) {
         logger.info("Creating draft invoice for client: {}", request.getClientName());
         
+        Invoice savedInvoice = persistDraftInvoice(request, createdBy);
+        logger.info("Draft invoice created with id: {}", savedInvoice.getId());
+        
+        return toFlushedResponse(savedInvoice);
+    }
+    
+    /**
+     * Persist a draft invoice with its items, shipment links, rollup delta and audit entry.
+     * Must run in a caller transaction; shared by single and bulk creation.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Invoice persistDraftInvoice(CreateInvoiceRequest request, Long createdBy) {
+        Set<Long> linkShipmentIds = distinctIds(request.getShipmentIds());
+        Map<Long, Shipment> shipments = shipmentLinkResolver.resolve(null, linkShipmentIds,
+            itemShipmentIds(request.getItems(), CreateInvoiceRequest.InvoiceItemRequest::getShipmentId));
+        
         Invoice invoice = createInvoiceFromRequest(request, createdBy);
         Invoice savedInvoice = invoiceRepository.save(invoice);
         
-        invoiceItemService.addInvoiceItems(savedInvoice, request.getItems());
-        linkShipments(savedInvoice, request.getShipmentIds());
+        invoiceItemService.addInvoiceItems(savedInvoice, request.getItems(), shipments);
+        shipmentLinkResolver.link(savedInvoice, linkShipmentIds, shipments);
+        billingRollupService.recordCreated(savedInvoice);
         
         logAuditEvent(savedInvoice, createdBy, AuditLog.AuditAction.CREATE, Constants.AUDIT_CREATE_DRAFT);
-        logger.info("Draft invoice created with id: {}", savedInvoice.getId());
+        return savedInvoice;
+    }
+    
+    /**
+     * Persist many draft invoices for bulk creation without flushing per invoice.
+     * Shipments of all entries are resolved up front with one set of queries, rollup deltas are
+     * applied once, and links are written with the caller's flush, so the inserts of all
+     * entries batch together. A shipment linked by two entries fails the whole call.
+     * Must run in a caller transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Invoice> persistDraftInvoices(List<CreateInvoiceRequest> requests, Long createdBy) {
+        Set<Long> linkShipmentIds = new LinkedHashSet<>();
+        Set<Long> itemShipmentIds = new LinkedHashSet<>();
+        for (CreateInvoiceRequest request : requests) {
+            for (Long shipmentId : distinctIds(request.getShipmentIds())) {
+                if (!linkShipmentIds.add(shipmentId)) {
+                    throw new BusinessException(String.format(Constants.SHIPMENT_ALREADY_LINKED, shipmentId));
+                }
+            }
+            itemShipmentIds.addAll(itemShipmentIds(request.getItems(), CreateInvoiceRequest.InvoiceItemRequest::getShipmentId));
+        }
+        Map<Long, Shipment> shipments = shipmentLinkResolver.resolve(null, linkShipmentIds, itemShipmentIds);
         
-        return getInvoiceResponse(savedInvoice.getId());
+        BillingRollupService.RollupBatch rollups = billingRollupService.batch();
+        List<Invoice> invoices = new ArrayList<>(requests.size());
+        for (CreateInvoiceRequest request : requests) {
+            Invoice savedInvoice = invoiceRepository.save(createInvoiceFromRequest(request, createdBy));
+            invoiceItemService.addInvoiceItems(savedInvoice, request.getItems(), shipments);
+            shipmentLinkResolver.addLinks(savedInvoice, distinctIds(request.getShipmentIds()), shipments);
+            rollups.created(savedInvoice);
+            logAuditEvent(savedInvoice, createdBy, AuditLog.AuditAction.CREATE, Constants.AUDIT_CREATE_DRAFT);
+            invoices.add(savedInvoice);
+        }
+        rollups.apply();
+        return invoices;
     }
     
     /**
@@ -78,7 +159,7 @@ public class InvoiceService {
      */
     private Invoice createInvoiceFromRequest(CreateInvoiceRequest request, Long createdBy) {
         Invoice invoice = new Invoice();
-        invoice.setInvoiceNumber(InvoiceUtils.generateInvoiceNumber());
+        invoice.setInvoiceNumber(invoiceNumberGenerator.nextInvoiceNumber());
         invoice.setClientName(request.getClientName());
         invoice.setClientEmail(request.getClientEmail());
         invoice.setInvoiceDate(request.getInvoiceDate());
@@ -98,44 +179,25 @@ public class InvoiceService {
     
     
     /**
-     * Link shipments to invoice.
+     * Distinct IDs in request order.
      */
-    private void linkShipments(Invoice invoice, List<Long> shipmentIds) {
-        if (shipmentIds == null || shipmentIds.isEmpty()) {
-            return;
-        }
-        
-        List<InvoiceShipment> invoiceShipments = new ArrayList<>();
-        for (Long shipmentId : shipmentIds) {
-            validateShipmentNotLinked(shipmentId);
-            InvoiceShipment invoiceShipment = createInvoiceShipment(invoice, shipmentId);
-            invoiceShipments.add(invoiceShipment);
-        }
-        invoiceShipmentRepository.saveAll(invoiceShipments);
+    private Set<Long> distinctIds(List<Long> ids) {
+        return ids != null ? new LinkedHashSet<>(ids) : new LinkedHashSet<>();
     }
     
     /**
-     * Validate that shipment is not already linked.
+     * Shipment IDs referenced by line items.
      */
-    private void validateShipmentNotLinked(Long shipmentId) {
-        if (invoiceShipmentRepository.existsByShipmentId(shipmentId)) {
-            throw new BusinessException(String.format(Constants.SHIPMENT_ALREADY_LINKED, shipmentId));
-        }
+    private <T> Set<Long> itemShipmentIds(List<T> items, Function<T, Long> shipmentId) {
+        return items.stream()
+            .map(shipmentId)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
     }
     
     /**
-     * Create invoice-shipment relationship.
-     */
-    private InvoiceShipment createInvoiceShipment(Invoice invoice, Long shipmentId) {
-        Shipment shipment = findShipmentById(shipmentId);
-        InvoiceShipment invoiceShipment = new InvoiceShipment();
-        invoiceShipment.setInvoice(invoice);
-        invoiceShipment.setShipment(shipment);
-        return invoiceShipment;
-    }
-    
-    /**
-     * Update a draft invoice
+     * Update a draft invoice. Every save bumps the version, also when only lines changed or
+     * nothing did, since ETags, list watermarks and history keys are built from it.
      */
     @Transactional
     public InvoiceResponse updateDraftInvoice(Long invoiceId, UpdateInvoiceRequest request, Long updatedBy) {
@@ -143,20 +205,31 @@ public class InvoiceService {
         
         Invoice invoice = findInvoiceById(invoiceId);
         validateInvoiceCanBeEdited(invoice);
-        validateVersion(invoice, request.getVersion());
+        request = invoiceMergeService.rebase(invoice, request);
         
         saveInvoiceHistory(invoice);
         Invoice oldInvoice = InvoiceUtils.copyInvoice(invoice);
         
+        Set<Long> requestedShipmentIds = distinctIds(request.getShipmentIds());
+        Set<Long> newShipmentIds = newShipmentIds(invoice, requestedShipmentIds);
+        Map<Long, Shipment> shipments = shipmentLinkResolver.resolve(invoiceId, newShipmentIds,
+            itemShipmentIds(request.getItems(), UpdateInvoiceRequest.InvoiceItemRequest::getShipmentId));
+        
         updateInvoiceFields(invoice, request);
-        invoiceItemService.updateInvoiceItems(invoice, invoiceId, request.getItems());
-        updateInvoiceShipments(invoice, invoiceId, request.getShipmentIds());
+        InvoiceItemService.ItemMergeResult merge = invoiceItemService.mergeInvoiceItems(invoice, request.getItems(), shipments);
+        applySubtotalDelta(invoice, merge.subtotalDelta());
+        updateInvoiceShipments(invoice, requestedShipmentIds, newShipmentIds, shipments);
+        invoice.touch();
+        logger.debug("Merged items of invoice {}: {} unchanged, {} updated, {} inserted, {} deleted",
+            invoiceId, merge.unchanged(), merge.updated(), merge.inserted(), merge.deleted());
         
         Invoice updatedInvoice = invoiceRepository.save(invoice);
+        invoiceResponseCache.invalidate(invoiceId);
+        billingRollupService.recordChanged(oldInvoice, updatedInvoice);
         logAuditEvent(updatedInvoice, updatedBy, AuditLog.AuditAction.UPDATE, Constants.AUDIT_UPDATE_DRAFT, oldInvoice);
         
         logger.info("Draft invoice updated with id: {}", updatedInvoice.getId());
-        return getInvoiceResponse(updatedInvoice.getId());
+        return toFlushedResponse(updatedInvoice);
     }
     
     /**
@@ -183,15 +256,6 @@ public class InvoiceService {
         }
     }
     
-    /**
-     * Validate version for optimistic concurrency control.
-     */
-    private void validateVersion(Invoice invoice, Integer requestVersion) {
-        if (requestVersion != null && !requestVersion.equals(invoice.getVersion())) {
-            throw new BusinessException(Constants.INVOICE_MODIFIED);
-        }
-    }
-    
     /**
      * Save invoice history before update.
      */
@@ -201,59 +265,59 @@ public class InvoiceService {
             invoice.getVersion(),
             invoice.getFiscalFolio(),
             invoice.getInvoiceNumber(),
-            invoice,
+            invoiceSnapshotCodec.encode(invoice),
             invoice.getCreatedBy()
         );
     }
     
     /**
-     * Update invoice fields from request.
+     * Update invoice fields from request. Omitted email, currency and tax amount are kept;
+     * an empty email clears it.
      */
     private void updateInvoiceFields(Invoice invoice, UpdateInvoiceRequest request) {
         invoice.setClientName(request.getClientName());
-        invoice.setClientEmail(request.getClientEmail());
+        if (request.getClientEmail() != null) {
+            invoice.setClientEmail(request.getClientEmail().isEmpty() ? null : request.getClientEmail());
+        }
         invoice.setInvoiceDate(request.getInvoiceDate());
         invoice.setDueDate(request.getDueDate());
-        invoice.setCurrency(request.getCurrency() != null ? request.getCurrency() : Constants.DEFAULT_CURRENCY);
-        invoice.setTaxAmount(request.getTaxAmount() != null ? request.getTaxAmount() : BigDecimal.ZERO);
-        
-        BigDecimal subtotal = InvoiceUtils.calculateSubtotal(request.getItems());
+        if (request.getCurrency() != null) {
+            invoice.setCurrency(request.getCurrency());
+        }
+        if (request.getTaxAmount() != null) {
+            invoice.setTaxAmount(request.getTaxAmount());
+        }
+    }
+    
+    /**
+     * Apply the subtotal change of an item merge and recompute the total.
+     */
+    private void applySubtotalDelta(Invoice invoice, BigDecimal subtotalDelta) {
+        BigDecimal subtotal = invoice.getSubtotal().add(subtotalDelta);
         invoice.setSubtotal(subtotal);
         invoice.setTotalAmount(subtotal.add(invoice.getTaxAmount()));
     }
     
-    
     /**
-     * Update invoice shipments.
+     * Requested shipment IDs not yet linked to the invoice.
      */
-    private void updateInvoiceShipments(Invoice invoice, Long invoiceId, List<Long> shipmentIds) {
-        invoiceShipmentRepository.deleteByInvoiceId(invoiceId);
-        
-        if (shipmentIds == null || shipmentIds.isEmpty()) {
-            return;
-        }
-        
-        List<InvoiceShipment> invoiceShipments = new ArrayList<>();
-        for (Long shipmentId : shipmentIds) {
-            validateShipmentForUpdate(invoiceId, shipmentId);
-            InvoiceShipment invoiceShipment = createInvoiceShipment(invoice, shipmentId);
-            invoiceShipments.add(invoiceShipment);
-        }
-        invoiceShipmentRepository.saveAll(invoiceShipments);
+    private Set<Long> newShipmentIds(Invoice invoice, Set<Long> requestedIds) {
+        Set<Long> currentIds = invoice.getShipments().stream()
+            .map(link -> link.getShipment().getId())
+            .collect(Collectors.toSet());
+        return requestedIds.stream()
+            .filter(id -> !currentIds.contains(id))
+            .collect(Collectors.toCollection(LinkedHashSet::new));
     }
     
     /**
-     * Validate shipment for update (can be linked to same invoice but not another).
+     * Update invoice shipments by diffing the requested IDs against the current links.
+     * Kept links are untouched, dropped links are removed and only new links are inserted.
      */
-    private void validateShipmentForUpdate(Long invoiceId, Long shipmentId) {
-        if (!invoiceShipmentRepository.existsByShipmentId(shipmentId)) {
-            return;
-        }
-        
-        Optional<InvoiceShipment> existing = invoiceShipmentRepository.findByInvoiceIdAndShipmentId(invoiceId, shipmentId);
-        if (existing.isEmpty()) {
-            throw new BusinessException(String.format(Constants.SHIPMENT_LINKED_TO_ANOTHER, shipmentId));
-        }
+    private void updateInvoiceShipments(Invoice invoice, Set<Long> requestedIds, Set<Long> newIds,
+                                        Map<Long, Shipment> shipments) {
+        invoice.getShipments().removeIf(link -> !requestedIds.contains(link.getShipment().getId()));
+        shipmentLinkResolver.link(invoice, newIds, shipments);
     }
     
     /**
@@ -264,17 +328,33 @@ public class InvoiceService {
         logger.info("Issuing invoice id: {}", invoiceId);
         
         Invoice invoice = findInvoiceById(invoiceId);
+        BillingRollupService.RollupBatch rollups = billingRollupService.batch();
+        Invoice issuedInvoice = issueDraft(invoice, issuedBy, rollups);
+        rollups.apply();
+        
+        logger.info("Invoice issued with fiscal folio: {}", issuedInvoice.getFiscalFolio());
+        return toFlushedResponse(issuedInvoice);
+    }
+    
+    /**
+     * Issue a loaded draft: assign its fiscal folio and record history and audit entries.
+     * Rollup deltas are collected in the given batch for the caller to apply.
+     * Must run in a caller transaction; shared by single and bulk issuance.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Invoice issueDraft(Invoice invoice, Long issuedBy, BillingRollupService.RollupBatch rollups) {
         validateInvoiceCanBeIssued(invoice);
         
+        Invoice draftInvoice = InvoiceUtils.copyInvoice(invoice);
         ensureFiscalFolioExists(invoice);
         invoice.setStatus(Invoice.InvoiceStatus.ISSUED);
         
         Invoice issuedInvoice = invoiceRepository.save(invoice);
+        invoiceResponseCache.invalidate(invoice.getId());
+        rollups.changed(draftInvoice, issuedInvoice);
         saveInvoiceHistoryOnIssue(issuedInvoice, issuedBy);
-        logAuditEvent(issuedInvoice, issuedBy, AuditLog.AuditAction.ISSUE, Constants.AUDIT_ISSUE, invoice);
-        
-        logger.info("Invoice issued with fiscal folio: {}", issuedInvoice.getFiscalFolio());
-        return getInvoiceResponse(issuedInvoice.getId());
+        logAuditEvent(issuedInvoice, issuedBy, AuditLog.AuditAction.ISSUE, Constants.AUDIT_ISSUE, draftInvoice);
+        return issuedInvoice;
     }
     
     /**
@@ -291,7 +371,7 @@ public class InvoiceService {
      */
     private void ensureFiscalFolioExists(Invoice invoice) {
         if (invoice.getFiscalFolio() == null) {
-            invoice.setFiscalFolio(InvoiceUtils.generateFiscalFolio());
+            invoice.setFiscalFolio(fiscalFolioService.nextFolio());
         }
     }
     
@@ -304,51 +384,200 @@ public class InvoiceService {
             invoice.getVersion(),
             invoice.getFiscalFolio(),
             invoice.getInvoiceNumber(),
-            invoice,
+            invoiceSnapshotCodec.encode(invoice),
             issuedBy
         );
     }
     
+    /**
+     * Get the version watermark of an invoice without loading items or shipments.
+     */
+    @Transactional(readOnly = true)
+    public InvoiceVersion getInvoiceVersion(Long invoiceId) {
+        return invoiceRepository.findVersionById(invoiceId)
+            .orElseThrow(() -> new ResourceNotFoundException(Constants.INVOICE_NOT_FOUND + invoiceId));
+    }
+    
     /**
      * Get invoice by ID
      */
+    @Transactional(readOnly = true)
     public InvoiceResponse getInvoiceById(Long invoiceId) {
-        Invoice invoice = findInvoiceById(invoiceId);
-        return InvoiceResponse.fromEntity(invoice);
+        return getInvoiceById(getInvoiceVersion(invoiceId));
     }
     
     /**
-     * Get all invoices by status
+     * Get an invoice whose version watermark the caller already read, e.g. for its ETag.
      */
-    public List<InvoiceResponse> getInvoicesByStatus(Invoice.InvoiceStatus status) {
-        return invoiceRepository.findByStatusOrderByCreatedAtDesc(status).stream()
-            .map(InvoiceResponse::fromEntity)
-            .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public InvoiceResponse getInvoiceById(InvoiceVersion version) {
+        Long invoiceId = version.id();
+        Optional<InvoiceResponse> cached = invoiceResponseCache.get(invoiceId, version.version());
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        
+        Invoice invoice = findInvoiceDetailById(invoiceId);
+        InvoiceResponse response = InvoiceResponse.fromEntity(invoice);
+        invoiceResponseCache.put(response);
+        return response;
+    }
+    
+    /**
+     * Find invoice with its line items by ID or throw exception.
+     */
+    private Invoice findInvoiceDetailById(Long invoiceId) {
+        return invoiceRepository.findDetailById(invoiceId)
+            .orElseThrow(() -> new ResourceNotFoundException(Constants.INVOICE_NOT_FOUND + invoiceId));
+    }
+    
+    /**
+     * Get the version watermark of a keyset page of invoices, optionally filtered by status.
+     * Covers the look-ahead row as well, so it also changes when the next cursor would change.
+     */
+    @Transactional(readOnly = true)
+    public String getInvoicePageWatermark(Invoice.InvoiceStatus status, String cursor, Integer size) {
+        int pageSize = CursorUtils.resolvePageSize(size);
+        CursorUtils.Cursor position = CursorUtils.decode(cursor);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<InvoiceVersion> versions;
+        if (status == null) {
+            versions = position == null
+                ? invoiceRepository.findVersionFirstPage(limit)
+                : invoiceRepository.findVersionPageAfter(position.createdAt(), position.id(), limit);
+        } else {
+            versions = position == null
+                ? invoiceRepository.findVersionFirstPageByStatus(status, limit)
+                : invoiceRepository.findVersionPageByStatusAfter(status, position.createdAt(), position.id(), limit);
+        }
+        return versions.stream()
+            .map(version -> version.id() + ":" + version.version())
+            .collect(Collectors.joining(",", pageSize + "[", "]"));
+    }
+    
+    /**
+     * Get several invoices by ID in request order with a fixed number of queries:
+     * one for invoices with their items and one for their shipment IDs.
+     */
+    @Transactional(readOnly = true)
+    public BatchGetInvoicesResponse batchGetInvoices(List<Long> invoiceIds) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(invoiceIds));
+        Map<Long, Invoice> invoicesById = invoiceRepository.findWithItemsByIdIn(ids).stream()
+            .collect(Collectors.toMap(Invoice::getId, Function.identity()));
+        Map<Long, List<Long>> shipmentIdsByInvoice = invoicesById.isEmpty()
+            ? Map.of()
+            : invoiceShipmentRepository.findLinksByInvoiceIdIn(invoicesById.keySet()).stream()
+                .collect(Collectors.groupingBy(InvoiceShipmentLink::invoiceId,
+                    Collectors.mapping(InvoiceShipmentLink::shipmentId, Collectors.toList())));
+        
+        List<InvoiceResponse> invoices = new ArrayList<>(invoicesById.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : ids) {
+            Invoice invoice = invoicesById.get(id);
+            if (invoice == null) {
+                missingIds.add(id);
+            } else {
+                invoices.add(InvoiceResponse.fromEntity(invoice, shipmentIdsByInvoice.getOrDefault(id, List.of())));
+            }
+        }
+        return new BatchGetInvoicesResponse(invoices, missingIds);
+    }
+    
+    /**
+     * Get a keyset page of invoices by status
+     */
+    @Transactional(readOnly = true)
+    public InvoicePageResponse<InvoiceResponse> getInvoicesByStatus(Invoice.InvoiceStatus status, String cursor, Integer size) {
+        int pageSize = CursorUtils.resolvePageSize(size);
+        CursorUtils.Cursor position = CursorUtils.decode(cursor);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<Invoice> rows = position == null
+            ? invoiceRepository.findFirstPageByStatus(status, limit)
+            : invoiceRepository.findPageByStatusAfter(status, position.createdAt(), position.id(), limit);
+        return toInvoicePage(rows, pageSize);
     }
     
     /**
-     * Get all invoices
+     * Get a keyset page of all invoices
      */
-    public List<InvoiceResponse> getAllInvoices() {
-        return invoiceRepository.findAll().stream()
+    @Transactional(readOnly = true)
+    public InvoicePageResponse<InvoiceResponse> getAllInvoices(String cursor, Integer size) {
+        int pageSize = CursorUtils.resolvePageSize(size);
+        CursorUtils.Cursor position = CursorUtils.decode(cursor);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<Invoice> rows = position == null
+            ? invoiceRepository.findFirstPage(limit)
+            : invoiceRepository.findPageAfter(position.createdAt(), position.id(), limit);
+        return toInvoicePage(rows, pageSize);
+    }
+    
+    /**
+     * Get a keyset page of invoice summaries by status
+     */
+    @Transactional(readOnly = true)
+    public InvoicePageResponse<InvoiceSummary> getInvoiceSummariesByStatus(Invoice.InvoiceStatus status, String cursor, Integer size) {
+        int pageSize = CursorUtils.resolvePageSize(size);
+        CursorUtils.Cursor position = CursorUtils.decode(cursor);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<InvoiceSummary> rows = position == null
+            ? invoiceRepository.findSummaryFirstPageByStatus(status, limit)
+            : invoiceRepository.findSummaryPageByStatusAfter(status, position.createdAt(), position.id(), limit);
+        return toSummaryPage(rows, pageSize);
+    }
+    
+    /**
+     * Get a keyset page of all invoice summaries
+     */
+    @Transactional(readOnly = true)
+    public InvoicePageResponse<InvoiceSummary> getInvoiceSummaries(String cursor, Integer size) {
+        int pageSize = CursorUtils.resolvePageSize(size);
+        CursorUtils.Cursor position = CursorUtils.decode(cursor);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<InvoiceSummary> rows = position == null
+            ? invoiceRepository.findSummaryFirstPage(limit)
+            : invoiceRepository.findSummaryPageAfter(position.createdAt(), position.id(), limit);
+        return toSummaryPage(rows, pageSize);
+    }
+    
+    /**
+     * Convert a look-ahead summary list into a page.
+     */
+    private InvoicePageResponse<InvoiceSummary> toSummaryPage(List<InvoiceSummary> rows, int pageSize) {
+        return InvoicePageResponse.of(rows, pageSize,
+            summary -> CursorUtils.encode(summary.createdAt(), summary.id()));
+    }
+    
+    /**
+     * Convert a look-ahead row list into a page of invoice responses.
+     */
+    private InvoicePageResponse<InvoiceResponse> toInvoicePage(List<Invoice> rows, int pageSize) {
+        loadItems(rows);
+        List<InvoiceResponse> responses = rows.stream()
             .map(InvoiceResponse::fromEntity)
             .collect(Collectors.toList());
+        return InvoicePageResponse.of(responses, pageSize,
+            response -> CursorUtils.encode(response.getCreatedAt(), response.getId()));
     }
     
     /**
-     * Find shipment by ID or throw exception.
+     * Initialize the line items of already loaded invoices with one query.
+     * Shipment links are then loaded through the collection batch size.
      */
-    private Shipment findShipmentById(Long shipmentId) {
-        return shipmentRepository.findById(shipmentId)
-            .orElseThrow(() -> new ResourceNotFoundException(Constants.SHIPMENT_NOT_FOUND + shipmentId));
+    private void loadItems(List<Invoice> invoices) {
+        if (invoices.isEmpty()) {
+            return;
+        }
+        List<Long> ids = invoices.stream().map(Invoice::getId).collect(Collectors.toList());
+        invoiceRepository.findWithItemsByIdIn(ids);
     }
     
     /**
-     * Get invoice response with fresh data from database.
+     * Build the response of a command from the managed invoice instead of re-reading it.
+     * Flushing first assigns item ids, the new version and timestamps; the statements
+     * would otherwise run at commit.
      */
-    private InvoiceResponse getInvoiceResponse(Long invoiceId) {
-        Invoice invoice = invoiceRepository.findById(invoiceId)
-            .orElseThrow(() -> new ResourceNotFoundException(Constants.INVOICE_NOT_FOUND + invoiceId));
+    private InvoiceResponse toFlushedResponse(Invoice invoice) {
+        invoiceRepository.flush();
         return InvoiceResponse.fromEntity(invoice);
     }
     
@@ -0,0 +1,477 @@
+package com.fabrica.p6f5.springapp.invoice.service;
+
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fabrica.p6f5.springapp.invoice.model.InvoiceItem;
+import com.fabrica.p6f5.springapp.invoice.model.InvoiceShipment;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codec for invoice history snapshots.
+ * <p>
+ * Schema version 1 is a trimmed JSON document with short keys, written field by field
+ * from the entity without reflection, so only items and shipment links are loaded:
+ * <pre>
+ * {"v":1, "id", "no", "folio", "st", "cn", "ce", "d", "due", "cur", "sub", "tax", "tot",
+ *  "ver", "by", "ca", "ua",
+ *  "it": [[id, shipmentId, description, quantity, unitPrice, totalPrice], ...],
+ *  "sh": [shipmentId, ...]}
+ * </pre>
+ * Key order is not significant; jsonb does not keep it. Snapshots without "v" are
+ * full entity serializations written before the codec and are still decoded.
+ * Decoding reads the header only; items and shipment links are decoded on first access.
+ * Snapshots of every version are rendered in one document shape for the history API.
+ */
+@Component
+public class InvoiceSnapshotCodec {
+    
+    public static final int SCHEMA_VERSION = 1;
+    
+    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+    
+    public InvoiceSnapshotCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+    
+    /**
+     * Header fields of a snapshot
+     */
+    public record Header(
+            int schemaVersion,
+            Long invoiceId,
+            String invoiceNumber,
+            String fiscalFolio,
+            String status,
+            String clientName,
+            String clientEmail,
+            LocalDate invoiceDate,
+            LocalDate dueDate,
+            String currency,
+            BigDecimal subtotal,
+            BigDecimal taxAmount,
+            BigDecimal totalAmount,
+            Integer version,
+            Long createdBy,
+            LocalDateTime createdAt,
+            LocalDateTime updatedAt) {
+    }
+    
+    /**
+     * Line item of a snapshot
+     */
+    public record Item(
+            Long id,
+            Long shipmentId,
+            String description,
+            Integer quantity,
+            BigDecimal unitPrice,
+            BigDecimal totalPrice) {
+    }
+    
+    /**
+     * Decoded snapshot. Items and shipment links are decoded on first access; not thread-safe.
+     */
+    public final class Snapshot {
+        
+        private final String data;
+        private final Header header;
+        private List<Item> items;
+        private List<Long> shipmentIds;
+        
+        private Snapshot(String data, Header header) {
+            this.data = data;
+            this.header = header;
+        }
+        
+        public Header header() {
+            return header;
+        }
+        
+        public List<Item> items() {
+            if (items == null) {
+                decodeLines();
+            }
+            return items;
+        }
+        
+        public List<Long> shipmentIds() {
+            if (shipmentIds == null) {
+                decodeLines();
+            }
+            return shipmentIds;
+        }
+        
+        private void decodeLines() {
+            List<Item> decodedItems = new ArrayList<>();
+            List<Long> decodedShipmentIds = new ArrayList<>();
+            if (header.schemaVersion() == 0) {
+                readLegacyLines(data, decodedItems, decodedShipmentIds);
+            } else {
+                readLines(data, decodedItems, decodedShipmentIds);
+            }
+            items = decodedItems;
+            shipmentIds = decodedShipmentIds;
+        }
+    }
+    
+    /**
+     * Encode the current state of an invoice.
+     */
+    public String encode(Invoice invoice) {
+        StringWriter writer = new StringWriter(256 + invoice.getItems().size() * 64);
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeNumberField("v", SCHEMA_VERSION);
+            writeNumber(generator, "id", invoice.getId());
+            writeString(generator, "no", invoice.getInvoiceNumber());
+            writeString(generator, "folio", invoice.getFiscalFolio());
+            writeString(generator, "st", invoice.getStatus() != null ? invoice.getStatus().name() : null);
+            writeString(generator, "cn", invoice.getClientName());
+            writeString(generator, "ce", invoice.getClientEmail());
+            writeString(generator, "d", invoice.getInvoiceDate());
+            writeString(generator, "due", invoice.getDueDate());
+            writeString(generator, "cur", invoice.getCurrency());
+            writeDecimal(generator, "sub", invoice.getSubtotal());
+            writeDecimal(generator, "tax", invoice.getTaxAmount());
+            writeDecimal(generator, "tot", invoice.getTotalAmount());
+            writeNumber(generator, "ver", invoice.getVersion() != null ? invoice.getVersion().longValue() : null);
+            writeNumber(generator, "by", invoice.getCreatedBy());
+            writeString(generator, "ca", invoice.getCreatedAt());
+            writeString(generator, "ua", invoice.getUpdatedAt());
+            generator.writeArrayFieldStart("it");
+            for (InvoiceItem item : invoice.getItems()) {
+                generator.writeStartArray();
+                writeNumber(generator, item.getId());
+                writeNumber(generator, item.getShipment() != null ? item.getShipment().getId() : null);
+                generator.writeString(item.getDescription());
+                writeNumber(generator, item.getQuantity() != null ? item.getQuantity().longValue() : null);
+                writeDecimal(generator, item.getUnitPrice());
+                writeDecimal(generator, item.getTotalPrice());
+                generator.writeEndArray();
+            }
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("sh");
+            for (InvoiceShipment link : invoice.getShipments()) {
+                if (link.getShipment() != null) {
+                    generator.writeNumber(link.getShipment().getId());
+                }
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode snapshot of invoice " + invoice.getId(), e);
+        }
+        return writer.toString();
+    }
+    
+    /**
+     * Decode the header of a snapshot of any schema version.
+     * 
+     * @throws IllegalArgumentException if the snapshot is unreadable or of a newer schema
+     */
+    public Snapshot decode(String data) {
+        Header header = readHeader(data);
+        if (header.schemaVersion() == 0) {
+            header = readLegacyHeader(data);
+        } else if (header.schemaVersion() > SCHEMA_VERSION) {
+            throw new IllegalArgumentException("Unsupported invoice snapshot schema version " + header.schemaVersion());
+        }
+        return new Snapshot(data, header);
+    }
+    
+    /**
+     * Render a snapshot as the document returned by the history API. Fields keep the names of
+     * the invoice properties whatever the schema version, so the storage format is not exposed.
+     */
+    public String render(Snapshot snapshot) {
+        Header header = snapshot.header();
+        StringWriter writer = new StringWriter(256 + snapshot.items().size() * 128);
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            generator.writeStartObject();
+            writeNumber(generator, "id", header.invoiceId());
+            writeString(generator, "invoiceNumber", header.invoiceNumber());
+            writeString(generator, "fiscalFolio", header.fiscalFolio());
+            writeString(generator, "status", header.status());
+            writeString(generator, "clientName", header.clientName());
+            writeString(generator, "clientEmail", header.clientEmail());
+            writeString(generator, "invoiceDate", header.invoiceDate());
+            writeString(generator, "dueDate", header.dueDate());
+            writeString(generator, "currency", header.currency());
+            writeDecimal(generator, "subtotal", header.subtotal());
+            writeDecimal(generator, "taxAmount", header.taxAmount());
+            writeDecimal(generator, "totalAmount", header.totalAmount());
+            writeNumber(generator, "version", header.version() != null ? header.version().longValue() : null);
+            writeNumber(generator, "createdBy", header.createdBy());
+            writeString(generator, "createdAt", header.createdAt());
+            writeString(generator, "updatedAt", header.updatedAt());
+            generator.writeArrayFieldStart("items");
+            for (Item item : snapshot.items()) {
+                generator.writeStartObject();
+                writeNumber(generator, "id", item.id());
+                writeNumber(generator, "shipment", item.shipmentId());
+                writeString(generator, "description", item.description());
+                writeNumber(generator, "quantity", item.quantity() != null ? item.quantity().longValue() : null);
+                writeDecimal(generator, "unitPrice", item.unitPrice());
+                writeDecimal(generator, "totalPrice", item.totalPrice());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("shipments");
+            for (Long shipmentId : snapshot.shipmentIds()) {
+                generator.writeStartObject();
+                generator.writeNumberField("shipment", shipmentId);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to render snapshot of invoice " + header.invoiceId(), e);
+        }
+        return writer.toString();
+    }
+    
+    private Header readHeader(String data) {
+        int schemaVersion = 0;
+        Long invoiceId = null;
+        String invoiceNumber = null;
+        String fiscalFolio = null;
+        String status = null;
+        String clientName = null;
+        String clientEmail = null;
+        LocalDate invoiceDate = null;
+        LocalDate dueDate = null;
+        String currency = null;
+        BigDecimal subtotal = null;
+        BigDecimal taxAmount = null;
+        BigDecimal totalAmount = null;
+        Integer version = null;
+        Long createdBy = null;
+        LocalDateTime createdAt = null;
+        LocalDateTime updatedAt = null;
+        try (JsonParser parser = startObject(data)) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "v" -> schemaVersion = parser.currentToken().isNumeric() ? parser.getIntValue() : 0;
+                    case "id" -> invoiceId = readLong(parser);
+                    case "no" -> invoiceNumber = readString(parser);
+                    case "folio" -> fiscalFolio = readString(parser);
+                    case "st" -> status = readString(parser);
+                    case "cn" -> clientName = readString(parser);
+                    case "ce" -> clientEmail = readString(parser);
+                    case "d" -> invoiceDate = readDate(parser);
+                    case "due" -> dueDate = readDate(parser);
+                    case "cur" -> currency = readString(parser);
+                    case "sub" -> subtotal = readDecimal(parser);
+                    case "tax" -> taxAmount = readDecimal(parser);
+                    case "tot" -> totalAmount = readDecimal(parser);
+                    case "ver" -> version = readInteger(parser);
+                    case "by" -> createdBy = readLong(parser);
+                    case "ca" -> createdAt = readDateTime(parser);
+                    case "ua" -> updatedAt = readDateTime(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Unreadable invoice snapshot: " + e.getMessage(), e);
+        }
+        if (schemaVersion == 0) {
+            return new Header(0, null, null, null, null, null, null, null, null, null, null, null, null,
+                null, null, null, null);
+        }
+        return new Header(schemaVersion, invoiceId, invoiceNumber, fiscalFolio, status, clientName, clientEmail,
+            invoiceDate, dueDate, currency, subtotal, taxAmount, totalAmount, version, createdBy, createdAt, updatedAt);
+    }
+    
+    private void readLines(String data, List<Item> items, List<Long> shipmentIds) {
+        try (JsonParser parser = startObject(data)) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("it".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_ARRAY) {
+                        parser.nextToken();
+                        Long id = readLong(parser);
+                        parser.nextToken();
+                        Long shipmentId = readLong(parser);
+                        parser.nextToken();
+                        String description = readString(parser);
+                        parser.nextToken();
+                        Integer quantity = readInteger(parser);
+                        parser.nextToken();
+                        BigDecimal unitPrice = readDecimal(parser);
+                        parser.nextToken();
+                        BigDecimal totalPrice = readDecimal(parser);
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            parser.skipChildren();
+                        }
+                        items.add(new Item(id, shipmentId, description, quantity, unitPrice, totalPrice));
+                    }
+                } else if ("sh".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        shipmentIds.add(readLong(parser));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Unreadable invoice snapshot: " + e.getMessage(), e);
+        }
+    }
+    
+    private Header readLegacyHeader(String data) {
+        JsonNode root = readTree(data);
+        JsonNode version = root.get("version");
+        return new Header(0, legacyLong(root.get("id")), legacyText(root.get("invoiceNumber")),
+            legacyText(root.get("fiscalFolio")), legacyText(root.get("status")), legacyText(root.get("clientName")),
+            legacyText(root.get("clientEmail")), legacyValue(root.get("invoiceDate"), LocalDate.class),
+            legacyValue(root.get("dueDate"), LocalDate.class), legacyText(root.get("currency")),
+            legacyDecimal(root.get("subtotal")), legacyDecimal(root.get("taxAmount")),
+            legacyDecimal(root.get("totalAmount")), version != null && version.isNumber() ? version.intValue() : null,
+            legacyLong(root.get("createdBy")), legacyValue(root.get("createdAt"), LocalDateTime.class),
+            legacyValue(root.get("updatedAt"), LocalDateTime.class));
+    }
+    
+    private void readLegacyLines(String data, List<Item> items, List<Long> shipmentIds) {
+        JsonNode root = readTree(data);
+        for (JsonNode item : root.path("items")) {
+            JsonNode quantity = item.get("quantity");
+            items.add(new Item(legacyLong(item.get("id")), legacyReference(item.get("shipment")),
+                legacyText(item.get("description")), quantity != null && quantity.isNumber() ? quantity.intValue() : null,
+                legacyDecimal(item.get("unitPrice")), legacyDecimal(item.get("totalPrice"))));
+        }
+        for (JsonNode link : root.path("shipments")) {
+            Long shipmentId = legacyReference(link.get("shipment"));
+            if (shipmentId != null) {
+                shipmentIds.add(shipmentId);
+            }
+        }
+    }
+    
+    private JsonParser startObject(String data) throws IOException {
+        JsonParser parser = jsonFactory.createParser(data);
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            parser.close();
+            throw new IOException("Snapshot is not a JSON object");
+        }
+        return parser;
+    }
+    
+    private JsonNode readTree(String data) {
+        try {
+            return objectMapper.readTree(data);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unreadable invoice snapshot: " + e.getMessage(), e);
+        }
+    }
+    
+    private <T> T legacyValue(JsonNode node, Class<T> type) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        try {
+            return objectMapper.treeToValue(node, type);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unreadable invoice snapshot: " + e.getMessage(), e);
+        }
+    }
+    
+    private static String legacyText(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asText();
+    }
+    
+    private static Long legacyLong(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asLong();
+    }
+    
+    private static BigDecimal legacyDecimal(JsonNode node) {
+        return node == null || node.isNull() ? null : node.decimalValue();
+    }
+    
+    /**
+     * Shipment reference written as an id, or as an object by older snapshots.
+     */
+    private static Long legacyReference(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        return node.isObject() ? legacyLong(node.get("id")) : node.asLong();
+    }
+    
+    private static String readString(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getText();
+    }
+    
+    private static Long readLong(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getLongValue();
+    }
+    
+    private static Integer readInteger(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getIntValue();
+    }
+    
+    private static BigDecimal readDecimal(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getDecimalValue();
+    }
+    
+    private static LocalDate readDate(JsonParser parser) throws IOException {
+        String value = readString(parser);
+        return value == null ? null : LocalDate.parse(value);
+    }
+    
+    private static LocalDateTime readDateTime(JsonParser parser) throws IOException {
+        String value = readString(parser);
+        return value == null ? null : LocalDateTime.parse(value);
+    }
+    
+    private static void writeString(JsonGenerator generator, String field, Object value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(field, value.toString());
+        }
+    }
+    
+    private static void writeNumber(JsonGenerator generator, String field, Long value) throws IOException {
+        if (value != null) {
+            generator.writeNumberField(field, value);
+        }
+    }
+    
+    private static void writeDecimal(JsonGenerator generator, String field, BigDecimal value) throws IOException {
+        if (value != null) {
+            generator.writeNumberField(field, value);
+        }
+    }
+    
+    private static void writeNumber(JsonGenerator generator, Long value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+    
+    private static void writeDecimal(JsonGenerator generator, BigDecimal value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+}
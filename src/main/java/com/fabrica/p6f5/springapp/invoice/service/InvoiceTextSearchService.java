@@ -0,0 +1,67 @@
+package com.fabrica.p6f5.springapp.invoice.service;
+
+import com.fabrica.p6f5.springapp.exception.BusinessException;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceTextSearchHit;
+import com.fabrica.p6f5.springapp.invoice.repository.InvoiceRepository;
+import com.fabrica.p6f5.springapp.util.Constants;
+import com.fabrica.p6f5.springapp.util.CursorUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Service for ranked full-text search over invoices and line-item descriptions.
+ */
+@Service
+public class InvoiceTextSearchService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceTextSearchService.class);
+    
+    private static final String TOKEN_SEPARATOR = "[^\\p{L}\\p{N}]+";
+    private static final int MAX_TERMS = 8;
+    
+    private final InvoiceRepository invoiceRepository;
+    
+    public InvoiceTextSearchService(InvoiceRepository invoiceRepository) {
+        this.invoiceRepository = invoiceRepository;
+    }
+    
+    /**
+     * Search invoices whose number, client name and item descriptions together contain all
+     * terms; each term may match a different field or item. Every term is matched as a prefix,
+     * so fragments of client names also match.
+     */
+    @Transactional(readOnly = true)
+    public List<InvoiceTextSearchHit> search(String text, Integer limit) {
+        String terms = toPrefixTerms(text);
+        int maxResults = CursorUtils.resolvePageSize(limit);
+        logger.debug("Full-text invoice search with terms: {}", terms);
+        return invoiceRepository.searchFullText(terms, maxResults);
+    }
+    
+    /**
+     * Convert free text into space-separated tsquery prefix terms.
+     * Only letters and digits are kept, so user input can never inject tsquery operators.
+     */
+    static String toPrefixTerms(String text) {
+        if (text == null) {
+            throw new BusinessException(Constants.INVALID_SEARCH_QUERY);
+        }
+        List<String> terms = Arrays.stream(text.toLowerCase(Locale.ROOT).split(TOKEN_SEPARATOR))
+            .filter(term -> !term.isEmpty())
+            .limit(MAX_TERMS)
+            .collect(Collectors.toList());
+        if (terms.isEmpty()) {
+            throw new BusinessException(Constants.INVALID_SEARCH_QUERY);
+        }
+        return terms.stream()
+            .map(term -> term + ":*")
+            .collect(Collectors.joining(" "));
+    }
+}
@@ -0,0 +1,118 @@
+package com.fabrica.p6f5.springapp.invoice.service;
+
+import com.fabrica.p6f5.springapp.exception.BusinessException;
+import com.fabrica.p6f5.springapp.exception.ResourceNotFoundException;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceShipmentLink;
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fabrica.p6f5.springapp.invoice.model.InvoiceShipment;
+import com.fabrica.p6f5.springapp.invoice.repository.InvoiceShipmentRepository;
+import com.fabrica.p6f5.springapp.shipment.model.Shipment;
+import com.fabrica.p6f5.springapp.shipment.repository.ShipmentRepository;
+import com.fabrica.p6f5.springapp.util.Constants;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service for resolving the shipments referenced by an invoice command.
+ * Loads all shipments and their existing links in two IN queries and validates in memory.
+ * The unique index on invoice_shipments.shipment_id is the final guard: link inserts
+ * use ON CONFLICT DO NOTHING and a skipped row surfaces as a link conflict.
+ */
+@Service
+public class ShipmentLinkResolver {
+    
+    private final ShipmentRepository shipmentRepository;
+    private final InvoiceShipmentRepository invoiceShipmentRepository;
+    
+    public ShipmentLinkResolver(
+            ShipmentRepository shipmentRepository,
+            InvoiceShipmentRepository invoiceShipmentRepository) {
+        this.shipmentRepository = shipmentRepository;
+        this.invoiceShipmentRepository = invoiceShipmentRepository;
+    }
+    
+    /**
+     * Load the shipments to link and the shipments referenced by items, and check that
+     * none of the shipments to link is linked to an invoice yet.
+     * 
+     * @param invoiceId the invoice being updated, or null for a new invoice
+     * @param linkShipmentIds shipments to link to the invoice
+     * @param itemShipmentIds shipments referenced by line items
+     * @return the referenced shipments by ID
+     */
+    public Map<Long, Shipment> resolve(Long invoiceId, Collection<Long> linkShipmentIds, Collection<Long> itemShipmentIds) {
+        Set<Long> ids = new LinkedHashSet<>(linkShipmentIds);
+        ids.addAll(itemShipmentIds);
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        
+        Map<Long, Shipment> shipments = shipmentRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(Shipment::getId, Function.identity()));
+        ids.stream()
+            .filter(id -> !shipments.containsKey(id))
+            .findFirst()
+            .ifPresent(id -> {
+                throw new ResourceNotFoundException(Constants.SHIPMENT_NOT_FOUND + id);
+            });
+        
+        if (!linkShipmentIds.isEmpty()) {
+            validateNotLinked(invoiceId, linkShipmentIds);
+        }
+        return shipments;
+    }
+    
+    /**
+     * Link shipments to an invoice and write the links immediately, so a link lost to a
+     * concurrent invoice is reported here rather than at commit.
+     */
+    public void link(Invoice invoice, Collection<Long> shipmentIds, Map<Long, Shipment> shipments) {
+        if (shipmentIds.isEmpty()) {
+            return;
+        }
+        addLinks(invoice, shipmentIds, shipments);
+        try {
+            invoiceShipmentRepository.flush();
+        } catch (ObjectOptimisticLockingFailureException e) {
+            if (Invoice.class.getName().equals(e.getPersistentClassName())) {
+                throw new BusinessException(Constants.INVOICE_MODIFIED);
+            }
+            throw new BusinessException(Constants.SHIPMENT_LINK_CONFLICT);
+        }
+    }
+    
+    /**
+     * Link shipments to an invoice without writing the links. A link lost to a concurrent
+     * invoice then fails the caller's flush; used by bulk creation, which flushes per chunk.
+     */
+    public void addLinks(Invoice invoice, Collection<Long> shipmentIds, Map<Long, Shipment> shipments) {
+        for (Long shipmentId : shipmentIds) {
+            InvoiceShipment invoiceShipment = new InvoiceShipment();
+            invoiceShipment.setInvoice(invoice);
+            invoiceShipment.setShipment(shipments.get(shipmentId));
+            invoice.getShipments().add(invoiceShipment);
+        }
+    }
+    
+    /**
+     * Reject shipments that already have a link to another invoice.
+     */
+    private void validateNotLinked(Long invoiceId, Collection<Long> shipmentIds) {
+        for (InvoiceShipmentLink link : invoiceShipmentRepository.findLinksByShipmentIdIn(shipmentIds)) {
+            if (invoiceId == null) {
+                throw new BusinessException(String.format(Constants.SHIPMENT_ALREADY_LINKED, link.shipmentId()));
+            }
+            if (!Objects.equals(invoiceId, link.invoiceId())) {
+                throw new BusinessException(String.format(Constants.SHIPMENT_LINKED_TO_ANOTHER, link.shipmentId()));
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.fabrica.p6f5.springapp.pdf.model;
 
+import com.fabrica.p6f5.springapp.util.Constants;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -19,7 +20,8 @@ import java.time.LocalDateTime;
 public class PdfLog {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pdf_log_id_seq")
+    @SequenceGenerator(name = "pdf_log_id_seq", sequenceName = "pdf_log_id_seq", allocationSize = Constants.ID_ALLOCATION_SIZE)
     @Column(name = "pdf_log_id")
     private Long id;
     
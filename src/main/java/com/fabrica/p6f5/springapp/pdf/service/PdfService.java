@@ -5,6 +5,7 @@ import com.fabrica.p6f5.springapp.exception.BusinessException;
 import com.fabrica.p6f5.springapp.exception.ResourceNotFoundException;
 import com.fabrica.p6f5.springapp.invoice.model.Invoice;
 import com.fabrica.p6f5.springapp.invoice.repository.InvoiceRepository;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceResponseCache;
 import com.fabrica.p6f5.springapp.pdf.model.PdfLog;
 import com.fabrica.p6f5.springapp.pdf.repository.PdfLogRepository;
 import jakarta.transaction.Transactional;
@@ -25,11 +26,17 @@ public class PdfService {
     private final InvoiceRepository invoiceRepository;
     private final PdfLogRepository pdfLogRepository;
     private final EmailService emailService;
+    private final InvoiceResponseCache invoiceResponseCache;
     
-    public PdfService(InvoiceRepository invoiceRepository, PdfLogRepository pdfLogRepository, EmailService emailService) {
+    public PdfService(
+            InvoiceRepository invoiceRepository,
+            PdfLogRepository pdfLogRepository,
+            EmailService emailService,
+            InvoiceResponseCache invoiceResponseCache) {
         this.invoiceRepository = invoiceRepository;
         this.pdfLogRepository = pdfLogRepository;
         this.emailService = emailService;
+        this.invoiceResponseCache = invoiceResponseCache;
     }
     
     /**
@@ -110,6 +117,7 @@ public class PdfService {
     private void updateInvoiceWithPdfUrl(Invoice invoice, String pdfUrl) {
         invoice.setPdfUrl(pdfUrl);
         invoiceRepository.save(invoice);
+        invoiceResponseCache.invalidate(invoice.getId());
     }
     
     /**
@@ -21,16 +21,51 @@ public final class Constants {
     // Default Values
     public static final String DEFAULT_CURRENCY = "USD";
     
+    // Identifier Generation - must match the INCREMENT BY of the id sequences
+    public static final int ID_ALLOCATION_SIZE = 50;
+    
+    // Pagination
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final String VIEW_FULL = "full";
+    public static final String VIEW_SUMMARY = "summary";
+    
+    // Batch Get
+    public static final int MAX_BATCH_GET_SIZE = 500;
+    
+    // Bulk Create
+    public static final int MAX_BULK_CREATE_SIZE = 5000;
+    public static final int BULK_CHUNK_SIZE = 100;
+    
+    // Bulk Issuance
+    public static final int ISSUANCE_CHUNK_SIZE = 200;
+    
+    // Export
+    public static final int EXPORT_CHUNK_SIZE = 500;
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    
     // Error Messages
     public static final String INVOICE_NOT_FOUND = "Invoice not found with id: ";
     public static final String SHIPMENT_NOT_FOUND = "Shipment not found with id: ";
+    public static final String INVOICE_ITEM_NOT_IN_INVOICE = "Item %d does not belong to this invoice";
     public static final String SHIPMENT_ALREADY_LINKED = "Shipment %d is already linked to an invoice";
     public static final String SHIPMENT_LINKED_TO_ANOTHER = "Shipment %d is already linked to another invoice";
+    public static final String SHIPMENT_LINK_CONFLICT = "A shipment was linked to another invoice concurrently. Please refresh and try again.";
     public static final String INVOICE_CANNOT_BE_EDITED = "Invoice cannot be edited. Status: %s";
     public static final String INVOICE_MODIFIED = "Invoice has been modified by another user. Please refresh and try again.";
+    public static final String AUTOSAVE_FLUSH_FAILED = "Autosaved changes of invoice %d could not be saved. Please reload the draft and save again.";
+    public static final String INVOICE_MERGE_CONFLICT = "Invoice was modified concurrently and some of your changes conflict. Review the conflicts and try again.";
     public static final String INVOICE_CANNOT_BE_ISSUED = "Invoice cannot be issued. Missing required data or invalid status.";
     public static final String PDF_ONLY_ISSUED = "PDF can only be generated for ISSUED invoices. Current status: %s";
     public static final String PDF_GENERATION_FAILED = "Failed to generate PDF: %s";
+    public static final String INVALID_CURSOR = "Invalid pagination cursor";
+    public static final String INVALID_AMOUNT_RANGE = "Minimum amount must not be greater than maximum amount";
+    public static final String INVALID_DATE_RANGE = "Start date must not be after end date";
+    public static final String INVALID_SEARCH_QUERY = "Search text must contain at least one letter or digit";
+    public static final String ISSUANCE_JOB_NOT_FOUND = "Issuance job not found with id: ";
+    public static final String ISSUANCE_JOB_ALREADY_RUNNING = "An issuance job is already running";
+    public static final String ISSUANCE_JOB_NOT_RESUMABLE = "Only interrupted issuance jobs can be resumed. Status: %s";
+    public static final String INVALID_VIEW = "Invalid view '%s'. Expected 'full' or 'summary'";
     
     // Audit Messages
     public static final String AUDIT_CREATE_DRAFT = "Created draft invoice";
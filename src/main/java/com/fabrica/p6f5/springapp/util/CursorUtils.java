@@ -0,0 +1,66 @@
+package com.fabrica.p6f5.springapp.util;
+
+import com.fabrica.p6f5.springapp.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Utility class for keyset pagination cursors.
+ * Encodes the (created_at, id) position of the last row of a page as an opaque token.
+ */
+public final class CursorUtils {
+    
+    private CursorUtils() {
+        // Utility class - prevent instantiation
+    }
+    
+    private static final String SEPARATOR = "|";
+    
+    /**
+     * Keyset position decoded from a continuation token.
+     */
+    public record Cursor(LocalDateTime createdAt, Long id) {
+    }
+    
+    /**
+     * Encode a keyset position into an opaque continuation token.
+     */
+    public static String encode(LocalDateTime createdAt, Long id) {
+        String raw = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Decode a continuation token, returning null for a missing token.
+     */
+    public static Cursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new BusinessException(Constants.INVALID_CURSOR);
+            }
+            LocalDateTime createdAt = LocalDateTime.parse(raw.substring(0, separator));
+            Long id = Long.valueOf(raw.substring(separator + 1));
+            return new Cursor(createdAt, id);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BusinessException(Constants.INVALID_CURSOR, e);
+        }
+    }
+    
+    /**
+     * Resolve the requested page size against the default and the maximum.
+     */
+    public static int resolvePageSize(Integer requestedSize) {
+        if (requestedSize == null || requestedSize <= 0) {
+            return Constants.DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(requestedSize, Constants.MAX_PAGE_SIZE);
+    }
+}
@@ -0,0 +1,51 @@
+package com.fabrica.p6f5.springapp.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.stream.Collectors;
+
+/**
+ * Utility class for building strong entity tags from version watermarks.
+ */
+public final class ETagUtils {
+    
+    private ETagUtils() {
+        // Utility class - prevent instantiation
+    }
+    
+    private static final int DIGEST_LENGTH = 16;
+    
+    /**
+     * Build a readable strong ETag from a few watermark parts.
+     */
+    public static String of(Object... parts) {
+        return quote(join(parts));
+    }
+    
+    /**
+     * Build a strong ETag from a digest of an arbitrary long watermark.
+     */
+    public static String digest(String watermark) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha.digest(watermark.getBytes(StandardCharsets.UTF_8));
+            return quote(Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, DIGEST_LENGTH)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * Join watermark parts with a separator.
+     */
+    public static String join(Object... parts) {
+        return Arrays.stream(parts).map(String::valueOf).collect(Collectors.joining("-"));
+    }
+    
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+}
@@ -8,7 +8,6 @@ import com.fabrica.p6f5.springapp.invoice.model.InvoiceItem;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Utility class for invoice-related operations.
@@ -20,27 +19,6 @@ public final class InvoiceUtils {
         // Utility class - prevent instantiation
     }
     
-    private static final String INVOICE_PREFIX = "INV-";
-    private static final String FISCAL_PREFIX = "FISCAL-";
-    private static final int UUID_LENGTH = 8;
-    private static final int FISCAL_UUID_LENGTH = 16;
-    
-    /**
-     * Generate unique invoice number.
-     */
-    public static String generateInvoiceNumber() {
-        String uuid = UUID.randomUUID().toString().substring(0, UUID_LENGTH).toUpperCase();
-        return INVOICE_PREFIX + uuid + "-" + System.currentTimeMillis();
-    }
-    
-    /**
-     * Generate unique fiscal folio.
-     */
-    public static String generateFiscalFolio() {
-        String uuid = UUID.randomUUID().toString().substring(0, FISCAL_UUID_LENGTH).toUpperCase();
-        return FISCAL_PREFIX + uuid + "-" + System.currentTimeMillis();
-    }
-    
     /**
      * Calculate subtotal from items.
      */
@@ -105,24 +83,10 @@ public final class InvoiceUtils {
         return item;
     }
     
-    /**
-     * Create invoice items from update request.
-     */
-    public static List<InvoiceItem> createInvoiceItemsFromUpdate(
-            List<UpdateInvoiceRequest.InvoiceItemRequest> itemRequests, 
-            Invoice invoice) {
-        List<InvoiceItem> items = new ArrayList<>();
-        for (UpdateInvoiceRequest.InvoiceItemRequest itemRequest : itemRequests) {
-            InvoiceItem item = createInvoiceItemFromUpdate(itemRequest, invoice);
-            items.add(item);
-        }
-        return items;
-    }
-    
     /**
      * Create invoice item from update request.
      */
-    private static InvoiceItem createInvoiceItemFromUpdate(
+    public static InvoiceItem createInvoiceItemFromUpdate(
             UpdateInvoiceRequest.InvoiceItemRequest itemRequest, 
             Invoice invoice) {
         InvoiceItem item = new InvoiceItem();
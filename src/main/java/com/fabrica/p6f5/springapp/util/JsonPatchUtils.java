@@ -0,0 +1,153 @@
+package com.fabrica.p6f5.springapp.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utility class for RFC 6902 JSON Patch documents.
+ * Diffs produce add, remove and replace operations only; arrays are compared by index.
+ */
+public final class JsonPatchUtils {
+    
+    private JsonPatchUtils() {
+        // Utility class - prevent instantiation
+    }
+    
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+    
+    /**
+     * Build the patch that turns source into target.
+     */
+    public static ArrayNode diff(JsonNode source, JsonNode target) {
+        ArrayNode patch = NODES.arrayNode();
+        diff(source, target, "", patch);
+        return patch;
+    }
+    
+    /**
+     * Apply a patch to a copy of a document.
+     */
+    public static JsonNode apply(JsonNode document, JsonNode patch) {
+        JsonNode result = document == null ? NODES.nullNode() : document.deepCopy();
+        for (JsonNode operation : patch) {
+            result = applyOperation(result, operation);
+        }
+        return result;
+    }
+    
+    private static void diff(JsonNode source, JsonNode target, String path, ArrayNode patch) {
+        if (source.equals(target)) {
+            return;
+        }
+        if (source.isObject() && target.isObject()) {
+            diffObjects(source, target, path, patch);
+        } else if (source.isArray() && target.isArray()) {
+            diffArrays(source, target, path, patch);
+        } else {
+            patch.add(operation("replace", path, target));
+        }
+    }
+    
+    private static void diffObjects(JsonNode source, JsonNode target, String path, ArrayNode patch) {
+        Iterator<String> sourceFields = source.fieldNames();
+        while (sourceFields.hasNext()) {
+            String field = sourceFields.next();
+            String fieldPath = path + "/" + escape(field);
+            if (target.has(field)) {
+                diff(source.get(field), target.get(field), fieldPath, patch);
+            } else {
+                patch.add(operation("remove", fieldPath, null));
+            }
+        }
+        Iterator<Map.Entry<String, JsonNode>> targetFields = target.fields();
+        while (targetFields.hasNext()) {
+            Map.Entry<String, JsonNode> field = targetFields.next();
+            if (!source.has(field.getKey())) {
+                patch.add(operation("add", path + "/" + escape(field.getKey()), field.getValue()));
+            }
+        }
+    }
+    
+    private static void diffArrays(JsonNode source, JsonNode target, String path, ArrayNode patch) {
+        int common = Math.min(source.size(), target.size());
+        for (int i = 0; i < common; i++) {
+            diff(source.get(i), target.get(i), path + "/" + i, patch);
+        }
+        for (int i = common; i < target.size(); i++) {
+            patch.add(operation("add", path + "/" + i, target.get(i)));
+        }
+        for (int i = source.size() - 1; i >= common; i--) {
+            patch.add(operation("remove", path + "/" + i, null));
+        }
+    }
+    
+    private static ObjectNode operation(String op, String path, JsonNode value) {
+        ObjectNode operation = NODES.objectNode();
+        operation.put("op", op);
+        operation.put("path", path);
+        if (value != null) {
+            operation.set("value", value.deepCopy());
+        }
+        return operation;
+    }
+    
+    private static JsonNode applyOperation(JsonNode document, JsonNode operation) {
+        String op = operation.path("op").asText();
+        List<String> tokens = parsePointer(operation.path("path").asText());
+        JsonNode value = operation.get("value");
+        if (tokens.isEmpty()) {
+            if ("remove".equals(op)) {
+                return NODES.nullNode();
+            }
+            return value.deepCopy();
+        }
+        JsonNode parent = document;
+        for (String token : tokens.subList(0, tokens.size() - 1)) {
+            parent = parent.isArray() ? parent.get(Integer.parseInt(token)) : parent.get(token);
+            if (parent == null) {
+                throw new IllegalArgumentException("Patch path not found: " + operation.path("path").asText());
+            }
+        }
+        String last = tokens.get(tokens.size() - 1);
+        if (parent instanceof ObjectNode object) {
+            switch (op) {
+                case "add", "replace" -> object.set(last, value.deepCopy());
+                case "remove" -> object.remove(last);
+                default -> throw new IllegalArgumentException("Unsupported patch operation: " + op);
+            }
+        } else if (parent instanceof ArrayNode array) {
+            int index = "-".equals(last) ? array.size() : Integer.parseInt(last);
+            switch (op) {
+                case "add" -> array.insert(index, value.deepCopy());
+                case "replace" -> array.set(index, value.deepCopy());
+                case "remove" -> array.remove(index);
+                default -> throw new IllegalArgumentException("Unsupported patch operation: " + op);
+            }
+        } else {
+            throw new IllegalArgumentException("Patch path not found: " + operation.path("path").asText());
+        }
+        return document;
+    }
+    
+    private static List<String> parsePointer(String pointer) {
+        List<String> tokens = new ArrayList<>();
+        if (pointer.isEmpty()) {
+            return tokens;
+        }
+        for (String token : pointer.substring(1).split("/", -1)) {
+            tokens.add(token.replace("~1", "/").replace("~0", "~"));
+        }
+        return tokens;
+    }
+    
+    private static String escape(String field) {
+        return field.replace("~", "~0").replace("/", "~1");
+    }
+}
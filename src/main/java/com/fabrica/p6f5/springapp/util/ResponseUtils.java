@@ -22,6 +22,21 @@ public final class ResponseUtils {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Create success response with data and an entity tag.
+     */
+    public static <T> ResponseEntity<ApiResponse<T>> success(T data, String message, String eTag) {
+        ApiResponse<T> response = new ApiResponse<>(true, message, data);
+        return ResponseEntity.ok().eTag(eTag).body(response);
+    }
+    
+    /**
+     * Create not modified response for a conditional request.
+     */
+    public static <T> ResponseEntity<ApiResponse<T>> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+    }
+    
     /**
      * Create success response with created status.
      */
@@ -30,6 +45,14 @@ public final class ResponseUtils {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
     
+    /**
+     * Create success response with accepted status.
+     */
+    public static <T> ResponseEntity<ApiResponse<T>> accepted(T data, String message) {
+        ApiResponse<T> response = new ApiResponse<>(true, message, data);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+    
     /**
      * Create error response.
      */
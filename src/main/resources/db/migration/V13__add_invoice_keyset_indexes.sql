@@ -0,0 +1,9 @@
+-- Migration V13: Add composite indexes for keyset pagination of invoices
+-- Invoice listings page on (created_at, invoice_id) so every page is an index range scan
+
+CREATE INDEX IF NOT EXISTS idx_invoice_created_keyset ON invoices(created_at DESC, invoice_id DESC);
+CREATE INDEX IF NOT EXISTS idx_invoice_status_created_keyset ON invoices(invoice_status, created_at DESC, invoice_id DESC);
+
+-- Single-column indexes are prefixes of the composite indexes above
+DROP INDEX IF EXISTS idx_invoice_created;
+DROP INDEX IF EXISTS idx_invoice_status;
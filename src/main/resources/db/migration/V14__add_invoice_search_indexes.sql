@@ -0,0 +1,18 @@
+-- Migration V14: Add composite and partial indexes for multi-criteria invoice search
+-- Each index backs one plan family of InvoiceSearchPlan
+
+-- Equality filters that also deliver rows in (created_at, invoice_id) order
+CREATE INDEX IF NOT EXISTS idx_invoice_client_created ON invoices(client_name, created_at DESC, invoice_id DESC);
+CREATE INDEX IF NOT EXISTS idx_invoice_creator_created ON invoices(created_by, created_at DESC, invoice_id DESC);
+
+-- Partial indexes for the hot status-specific screens: a user's drafts and issued invoices by due date
+CREATE INDEX IF NOT EXISTS idx_invoice_drafts_creator ON invoices(created_by, created_at DESC, invoice_id DESC)
+    WHERE invoice_status = 'DRAFT';
+CREATE INDEX IF NOT EXISTS idx_invoice_issued_due ON invoices(due_date)
+    WHERE invoice_status = 'ISSUED';
+
+-- Amount range filters
+CREATE INDEX IF NOT EXISTS idx_invoice_total_amount ON invoices(total_amount);
+
+-- idx_invoice_client is a prefix of idx_invoice_client_created
+DROP INDEX IF EXISTS idx_invoice_client;
@@ -0,0 +1,21 @@
+-- Migration V15: Add full-text search over invoices and line-item descriptions
+-- Search vectors are stored generated columns, so PostgreSQL keeps them current on every
+-- insert and update without triggers. Header and item vectors live on their own rows so an
+-- item change never rewrites (or locks) the parent invoice row.
+
+-- Invoice header: invoice number (weight A) and client name (weight B)
+ALTER TABLE invoices ADD COLUMN IF NOT EXISTS search_vector TSVECTOR
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('simple', COALESCE(invoice_number, '')), 'A') ||
+        setweight(to_tsvector('simple', COALESCE(client_name, '')), 'B')
+    ) STORED;
+
+-- Line items: description
+ALTER TABLE invoice_items ADD COLUMN IF NOT EXISTS search_vector TSVECTOR
+    GENERATED ALWAYS AS (to_tsvector('simple', COALESCE(description, ''))) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_invoice_search_vector ON invoices USING GIN (search_vector);
+CREATE INDEX IF NOT EXISTS idx_item_search_vector ON invoice_items USING GIN (search_vector);
+
+COMMENT ON COLUMN invoices.search_vector IS 'Full-text vector of invoice number and client name';
+COMMENT ON COLUMN invoice_items.search_vector IS 'Full-text vector of the item description';
@@ -0,0 +1,32 @@
+-- Migration V16: Create billing rollups table
+-- Invoice count and amounts per status, currency and invoice month, maintained incrementally
+-- by the invoice commands in the same transaction as the invoice write
+
+CREATE TABLE IF NOT EXISTS billing_rollups (
+    invoice_status VARCHAR(50) NOT NULL,
+    currency VARCHAR(10) NOT NULL,
+    period_month DATE NOT NULL,
+    invoice_count BIGINT NOT NULL DEFAULT 0,
+    subtotal DECIMAL(16, 2) NOT NULL DEFAULT 0.00,
+    tax_amount DECIMAL(16, 2) NOT NULL DEFAULT 0.00,
+    total_amount DECIMAL(16, 2) NOT NULL DEFAULT 0.00,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT pk_billing_rollups PRIMARY KEY (invoice_status, currency, period_month)
+);
+
+CREATE INDEX IF NOT EXISTS idx_rollup_period ON billing_rollups(period_month);
+
+-- Seed from existing invoices
+INSERT INTO billing_rollups (invoice_status, currency, period_month, invoice_count, subtotal, tax_amount, total_amount)
+SELECT invoice_status,
+       COALESCE(currency, 'USD'),
+       CAST(date_trunc('month', invoice_date) AS DATE),
+       COUNT(*),
+       SUM(subtotal),
+       SUM(COALESCE(tax_amount, 0)),
+       SUM(total_amount)
+FROM invoices
+GROUP BY 1, 2, 3
+ON CONFLICT (invoice_status, currency, period_month) DO NOTHING;
+
+COMMENT ON TABLE billing_rollups IS 'Incrementally maintained invoice aggregates by status, currency and month for dashboards';
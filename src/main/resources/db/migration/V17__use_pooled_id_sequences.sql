@@ -0,0 +1,37 @@
+-- Migration V17: Move BIGSERIAL keys to explicit pooled sequences
+-- Hibernate disables JDBC insert batching for IDENTITY keys. With sequences incrementing by the
+-- allocation size, each nextval reserves a block of ids (pooled-lo), so inserts can be batched.
+-- Column defaults keep using the sequences, so native inserts stay valid and never collide.
+-- To change the allocation size, alter the sequence increment; Hibernate adopts it at startup.
+
+DO $$
+DECLARE
+    target RECORD;
+    serial_sequence TEXT;
+BEGIN
+    FOR target IN
+        SELECT * FROM (VALUES
+            ('invoices', 'invoice_id', 'invoice_id_seq'),
+            ('invoice_items', 'item_id', 'invoice_item_id_seq'),
+            ('invoice_shipments', 'invoice_shipment_id', 'invoice_shipment_id_seq'),
+            ('audit_logs', 'audit_log_id', 'audit_log_id_seq'),
+            ('invoice_history', 'history_id', 'invoice_history_id_seq'),
+            ('pdf_logs', 'pdf_log_id', 'pdf_log_id_seq')
+        ) AS t(table_name, column_name, sequence_name)
+    LOOP
+        serial_sequence := pg_get_serial_sequence(target.table_name, target.column_name);
+        
+        EXECUTE format('CREATE SEQUENCE IF NOT EXISTS %I INCREMENT BY 50 MINVALUE 1', target.sequence_name);
+        EXECUTE format('SELECT setval(%L, COALESCE((SELECT MAX(%I) FROM %I), 0) + 1, false)',
+            target.sequence_name, target.column_name, target.table_name);
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN %I SET DEFAULT nextval(%L)',
+            target.table_name, target.column_name, target.sequence_name);
+        EXECUTE format('ALTER SEQUENCE %I OWNED BY %I.%I',
+            target.sequence_name, target.table_name, target.column_name);
+        
+        IF serial_sequence IS NOT NULL AND serial_sequence <> target.sequence_name
+                AND serial_sequence <> 'public.' || target.sequence_name THEN
+            EXECUTE format('DROP SEQUENCE IF EXISTS %s', serial_sequence);
+        END IF;
+    END LOOP;
+END $$;
@@ -0,0 +1,10 @@
+-- Migration V18: A shipment can be linked to at most one invoice
+-- Link inserts rely on this index (INSERT ... ON CONFLICT (shipment_id) DO NOTHING) instead of
+-- checking for an existing link first. Fails if a shipment is already linked twice; resolve
+-- those links before migrating.
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_invoice_shipment_shipment ON invoice_shipments(shipment_id);
+
+-- Covered by the unique index above and by idx_inv_ship_invoice
+DROP INDEX IF EXISTS idx_inv_ship_shipment;
+ALTER TABLE invoice_shipments DROP CONSTRAINT IF EXISTS uk_invoice_shipment;
@@ -0,0 +1,54 @@
+-- Migration V19: Bulk issuance jobs
+-- A job issues every ready draft in chunks; each chunk claims its drafts with FOR UPDATE SKIP LOCKED
+-- and commits the issued invoices together with its chunk row and the job counters.
+
+CREATE SEQUENCE IF NOT EXISTS issuance_job_id_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS issuance_jobs (
+    job_id BIGINT PRIMARY KEY DEFAULT nextval('issuance_job_id_seq'),
+    job_status VARCHAR(50) NOT NULL,
+    chunk_size INTEGER NOT NULL,
+    ready_at_start BIGINT NOT NULL DEFAULT 0,
+    issued_count BIGINT NOT NULL DEFAULT 0,
+    failed_count BIGINT NOT NULL DEFAULT 0,
+    chunk_count INTEGER NOT NULL DEFAULT 0,
+    failed_chunk_count INTEGER NOT NULL DEFAULT 0,
+    requested_by BIGINT,
+    started_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMP,
+    CONSTRAINT fk_issuance_job_user FOREIGN KEY (requested_by) REFERENCES users(user_id) ON DELETE SET NULL,
+    CONSTRAINT chk_issuance_job_status CHECK (job_status IN ('RUNNING', 'COMPLETED', 'COMPLETED_WITH_FAILURES', 'INTERRUPTED'))
+);
+
+ALTER SEQUENCE issuance_job_id_seq OWNED BY issuance_jobs.job_id;
+
+CREATE INDEX IF NOT EXISTS idx_issuance_job_status ON issuance_jobs(job_status);
+
+CREATE SEQUENCE IF NOT EXISTS issuance_chunk_id_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS issuance_chunks (
+    chunk_id BIGINT PRIMARY KEY DEFAULT nextval('issuance_chunk_id_seq'),
+    job_id BIGINT NOT NULL,
+    chunk_status VARCHAR(50) NOT NULL,
+    invoice_count INTEGER NOT NULL,
+    failed_count INTEGER NOT NULL DEFAULT 0,
+    first_invoice_id BIGINT,
+    last_invoice_id BIGINT,
+    duration_ms BIGINT NOT NULL,
+    worker VARCHAR(100),
+    error_message TEXT,
+    completed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_issuance_chunk_job FOREIGN KEY (job_id) REFERENCES issuance_jobs(job_id) ON DELETE CASCADE,
+    CONSTRAINT chk_issuance_chunk_status CHECK (chunk_status IN ('SUCCESS', 'FAILED'))
+);
+
+ALTER SEQUENCE issuance_chunk_id_seq OWNED BY issuance_chunks.chunk_id;
+
+CREATE INDEX IF NOT EXISTS idx_issuance_chunk_job ON issuance_chunks(job_id, chunk_id);
+
+-- Claim order of ready drafts
+CREATE INDEX IF NOT EXISTS idx_invoice_drafts_id ON invoices(invoice_id) WHERE invoice_status = 'DRAFT';
+
+COMMENT ON TABLE issuance_jobs IS 'Bulk issuance runs with progress counters';
+COMMENT ON TABLE issuance_chunks IS 'Outcome, throughput and failures of each bulk issuance chunk';
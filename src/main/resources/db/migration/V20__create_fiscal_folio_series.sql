@@ -0,0 +1,26 @@
+-- Migration V20: Fiscal folio series
+-- Each series keeps the next folio number to hand out. In BLOCK mode nodes reserve ranges of
+-- numbers and return the unused rest to fiscal_folio_free_ranges on shutdown; in GAP_FREE mode
+-- the issuing transaction takes one number and holds the series row lock until it commits.
+
+CREATE TABLE IF NOT EXISTS fiscal_folio_series (
+    series VARCHAR(20) PRIMARY KEY,
+    next_value BIGINT NOT NULL DEFAULT 1,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT chk_folio_next_value CHECK (next_value > 0)
+);
+
+CREATE TABLE IF NOT EXISTS fiscal_folio_free_ranges (
+    range_id BIGSERIAL PRIMARY KEY,
+    series VARCHAR(20) NOT NULL,
+    first_value BIGINT NOT NULL,
+    last_value BIGINT NOT NULL,
+    released_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_folio_range_series FOREIGN KEY (series) REFERENCES fiscal_folio_series(series),
+    CONSTRAINT chk_folio_range CHECK (first_value <= last_value)
+);
+
+CREATE INDEX IF NOT EXISTS idx_folio_range_series ON fiscal_folio_free_ranges(series, first_value);
+
+COMMENT ON TABLE fiscal_folio_series IS 'Next fiscal folio number per series';
+COMMENT ON TABLE fiscal_folio_free_ranges IS 'Reserved folio ranges returned unused by stopped nodes';
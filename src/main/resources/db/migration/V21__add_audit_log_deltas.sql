@@ -0,0 +1,18 @@
+-- Migration V21: Delta-encoded audit logs
+-- FULL rows keep old_data/new_data. DELTA rows store RFC 6902 patches instead:
+-- old_patch turns the new state of the base row into this row's old state, and
+-- new_patch turns this row's old state (or the base's new state) into its new state.
+
+ALTER TABLE audit_logs ADD COLUMN IF NOT EXISTS encoding VARCHAR(20) NOT NULL DEFAULT 'FULL';
+ALTER TABLE audit_logs ADD COLUMN IF NOT EXISTS base_audit_log_id BIGINT;
+ALTER TABLE audit_logs ADD COLUMN IF NOT EXISTS old_patch JSONB;
+ALTER TABLE audit_logs ADD COLUMN IF NOT EXISTS new_patch JSONB;
+
+ALTER TABLE audit_logs ADD CONSTRAINT chk_audit_encoding CHECK (
+    (encoding = 'FULL' AND base_audit_log_id IS NULL)
+    OR (encoding = 'DELTA' AND base_audit_log_id IS NOT NULL)
+);
+
+COMMENT ON COLUMN audit_logs.encoding IS 'FULL snapshot (checkpoint) or DELTA against base_audit_log_id';
+COMMENT ON COLUMN audit_logs.old_patch IS 'RFC 6902 patch from the base row new state to this row old state';
+COMMENT ON COLUMN audit_logs.new_patch IS 'RFC 6902 patch from this row old state (or the base new state) to its new state';
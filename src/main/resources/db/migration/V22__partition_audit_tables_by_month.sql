@@ -0,0 +1,111 @@
+-- Migration V22: Monthly range partitions for audit_logs and invoice_history
+-- Both tables become partitioned by created_at, one partition per calendar month, named
+-- <table>_yYYYYmMM. AuditPartitionManager creates partitions ahead of time and detaches or drops
+-- expired ones; this migration creates partitions for the existing rows and three months ahead.
+-- Primary keys must include the partition key, so they become (id, created_at). Ids still come
+-- from their sequences and stay unique. invoice_history loses its global UNIQUE (invoice_id, version):
+-- history rows are written in the transaction that bumps the invoice version, and the invoice row
+-- lock keeps two writers from recording the same version.
+
+ALTER TABLE audit_logs RENAME TO audit_logs_legacy;
+ALTER TABLE invoice_history RENAME TO invoice_history_legacy;
+
+CREATE TABLE audit_logs (
+    audit_log_id BIGINT NOT NULL,
+    entity_type VARCHAR(100) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    action VARCHAR(50) NOT NULL,
+    changed_by BIGINT,
+    old_data JSONB,
+    new_data JSONB,
+    change_summary TEXT,
+    ip_address VARCHAR(45),
+    user_agent TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    encoding VARCHAR(20) NOT NULL DEFAULT 'FULL',
+    base_audit_log_id BIGINT,
+    old_patch JSONB,
+    new_patch JSONB,
+    CONSTRAINT fk_audit_user FOREIGN KEY (changed_by) REFERENCES users(user_id) ON DELETE SET NULL,
+    CONSTRAINT chk_audit_action CHECK (action IN ('CREATE', 'UPDATE', 'DELETE', 'ISSUE', 'REVERT', 'PUBLISH')),
+    CONSTRAINT chk_audit_encoding CHECK (
+        (encoding = 'FULL' AND base_audit_log_id IS NULL)
+        OR (encoding = 'DELTA' AND base_audit_log_id IS NOT NULL)
+    )
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE invoice_history (
+    history_id BIGINT NOT NULL,
+    invoice_id BIGINT NOT NULL,
+    version INTEGER NOT NULL,
+    fiscal_folio VARCHAR(100),
+    invoice_number VARCHAR(100) NOT NULL,
+    invoice_data JSONB NOT NULL,
+    created_by BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    is_reverted BOOLEAN DEFAULT FALSE,
+    CONSTRAINT fk_history_invoice FOREIGN KEY (invoice_id) REFERENCES invoices(invoice_id) ON DELETE CASCADE,
+    CONSTRAINT fk_history_user FOREIGN KEY (created_by) REFERENCES users(user_id) ON DELETE RESTRICT
+) PARTITION BY RANGE (created_at);
+
+DO $$
+DECLARE
+    target RECORD;
+    first_month DATE;
+    partition_month DATE;
+BEGIN
+    FOR target IN
+        SELECT * FROM (VALUES ('audit_logs'), ('invoice_history')) AS t(table_name)
+    LOOP
+        EXECUTE format('SELECT date_trunc(''month'', COALESCE(MIN(created_at), CURRENT_DATE))::date FROM %I',
+            target.table_name || '_legacy') INTO first_month;
+        partition_month := first_month;
+        WHILE partition_month <= (date_trunc('month', CURRENT_DATE) + INTERVAL '3 months')::date LOOP
+            EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                target.table_name || to_char(partition_month, '"_y"YYYY"m"MM'), target.table_name,
+                partition_month, (partition_month + INTERVAL '1 month')::date);
+            partition_month := (partition_month + INTERVAL '1 month')::date;
+        END LOOP;
+    END LOOP;
+END $$;
+
+INSERT INTO audit_logs (audit_log_id, entity_type, entity_id, action, changed_by, old_data, new_data,
+                        change_summary, ip_address, user_agent, created_at, encoding, base_audit_log_id,
+                        old_patch, new_patch)
+SELECT audit_log_id, entity_type, entity_id, action, changed_by, old_data, new_data,
+       change_summary, ip_address, user_agent, created_at, encoding, base_audit_log_id,
+       old_patch, new_patch
+FROM audit_logs_legacy;
+
+INSERT INTO invoice_history (history_id, invoice_id, version, fiscal_folio, invoice_number, invoice_data,
+                             created_by, created_at, is_reverted)
+SELECT history_id, invoice_id, version, fiscal_folio, invoice_number, invoice_data,
+       created_by, created_at, is_reverted
+FROM invoice_history_legacy;
+
+-- The sequences are owned by the legacy columns; move them before dropping the legacy tables
+ALTER SEQUENCE audit_log_id_seq OWNED BY NONE;
+ALTER SEQUENCE invoice_history_id_seq OWNED BY NONE;
+DROP TABLE audit_logs_legacy;
+DROP TABLE invoice_history_legacy;
+
+ALTER TABLE audit_logs ALTER COLUMN audit_log_id SET DEFAULT nextval('audit_log_id_seq');
+ALTER TABLE invoice_history ALTER COLUMN history_id SET DEFAULT nextval('invoice_history_id_seq');
+ALTER SEQUENCE audit_log_id_seq OWNED BY audit_logs.audit_log_id;
+ALTER SEQUENCE invoice_history_id_seq OWNED BY invoice_history.history_id;
+
+ALTER TABLE audit_logs ADD CONSTRAINT audit_logs_pkey PRIMARY KEY (audit_log_id, created_at);
+ALTER TABLE invoice_history ADD CONSTRAINT invoice_history_pkey PRIMARY KEY (history_id, created_at);
+
+-- Indexes are created on every partition; idx_audit_date only ever covers one month
+CREATE INDEX IF NOT EXISTS idx_audit_entity ON audit_logs(entity_type, entity_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_audit_user ON audit_logs(changed_by);
+CREATE INDEX IF NOT EXISTS idx_audit_action ON audit_logs(action);
+CREATE INDEX IF NOT EXISTS idx_audit_date ON audit_logs(created_at);
+CREATE INDEX IF NOT EXISTS idx_history_version ON invoice_history(invoice_id, version);
+
+COMMENT ON TABLE audit_logs IS 'Audit trail for all entity changes across the system, partitioned by month';
+COMMENT ON TABLE invoice_history IS 'Version history for invoices to enable undo/revert functionality, partitioned by month';
+COMMENT ON COLUMN audit_logs.encoding IS 'FULL snapshot (checkpoint) or DELTA against base_audit_log_id';
+COMMENT ON COLUMN audit_logs.old_patch IS 'RFC 6902 patch from the base row new state to this row old state';
+COMMENT ON COLUMN audit_logs.new_patch IS 'RFC 6902 patch from this row old state (or the base new state) to its new state';
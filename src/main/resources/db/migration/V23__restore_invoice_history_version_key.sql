@@ -0,0 +1,23 @@
+-- Migration V23: Unique (invoice_id, version) for invoice history
+-- V22 partitioned invoice_history by created_at. A unique index on a partitioned table must
+-- include the partition key, so UNIQUE (invoice_id, version) could not be kept there and relied
+-- on the invoice row lock alone. The pair is now recorded in an unpartitioned key table, inserted
+-- with each history row, which rejects a second row for the same version. Keys outlive the
+-- history partitions dropped by retention, so an expired version is never recorded again.
+
+CREATE TABLE IF NOT EXISTS invoice_history_keys (
+    invoice_id BIGINT NOT NULL,
+    version INTEGER NOT NULL,
+    CONSTRAINT invoice_history_keys_pkey PRIMARY KEY (invoice_id, version),
+    CONSTRAINT fk_history_key_invoice FOREIGN KEY (invoice_id) REFERENCES invoices(invoice_id) ON DELETE CASCADE
+);
+
+INSERT INTO invoice_history_keys (invoice_id, version)
+SELECT DISTINCT invoice_id, version
+FROM invoice_history
+ON CONFLICT DO NOTHING;
+
+-- Created on every partition
+CREATE INDEX IF NOT EXISTS idx_history_invoice ON invoice_history(invoice_id);
+
+COMMENT ON TABLE invoice_history_keys IS 'One row per recorded invoice version; enforces UNIQUE (invoice_id, version) across history partitions';
@@ -0,0 +1,24 @@
+-- Migration V24: Node-scoped recovery of issuance jobs and per-draft failures
+-- A job records the node running it and a heartbeat refreshed while its workers run. At startup
+-- a node interrupts only its own RUNNING jobs; jobs of other nodes are interrupted once their
+-- heartbeat is stale. Drafts that failed in a job are recorded per chunk, and claims of the job
+-- skip them, instead of the workers keeping them in memory.
+
+ALTER TABLE issuance_jobs ADD COLUMN IF NOT EXISTS node_id INTEGER;
+ALTER TABLE issuance_jobs ADD COLUMN IF NOT EXISTS heartbeat_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+CREATE TABLE IF NOT EXISTS issuance_chunk_failures (
+    job_id BIGINT NOT NULL,
+    invoice_id BIGINT NOT NULL,
+    chunk_id BIGINT,
+    error_message TEXT,
+    failed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT issuance_chunk_failures_pkey PRIMARY KEY (job_id, invoice_id),
+    CONSTRAINT fk_issuance_failure_job FOREIGN KEY (job_id) REFERENCES issuance_jobs(job_id) ON DELETE CASCADE,
+    CONSTRAINT fk_issuance_failure_chunk FOREIGN KEY (chunk_id) REFERENCES issuance_chunks(chunk_id) ON DELETE CASCADE,
+    CONSTRAINT fk_issuance_failure_invoice FOREIGN KEY (invoice_id) REFERENCES invoices(invoice_id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_issuance_failure_chunk ON issuance_chunk_failures(chunk_id);
+
+COMMENT ON TABLE issuance_chunk_failures IS 'Drafts that failed in a bulk issuance job; later claims of the job skip them';
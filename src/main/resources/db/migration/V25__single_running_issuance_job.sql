@@ -0,0 +1,11 @@
+-- Migration V25: At most one RUNNING issuance job
+-- Nodes check for a running job before starting or resuming one, but two nodes can pass that check
+-- at the same time. The partial unique index makes the second start fail instead. Jobs already
+-- running side by side are reduced to the newest one first; the others can be resumed.
+
+UPDATE issuance_jobs
+SET job_status = 'INTERRUPTED', updated_at = CURRENT_TIMESTAMP
+WHERE job_status = 'RUNNING'
+  AND job_id <> (SELECT MAX(job_id) FROM issuance_jobs WHERE job_status = 'RUNNING');
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_issuance_job_running ON issuance_jobs ((true)) WHERE job_status = 'RUNNING';
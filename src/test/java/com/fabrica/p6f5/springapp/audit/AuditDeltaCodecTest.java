@@ -0,0 +1,183 @@
+package com.fabrica.p6f5.springapp.audit;
+
+import com.fabrica.p6f5.springapp.audit.dto.AuditLogView;
+import com.fabrica.p6f5.springapp.audit.model.AuditLog;
+import com.fabrica.p6f5.springapp.audit.model.AuditLogRow;
+import com.fabrica.p6f5.springapp.audit.model.AuditRecord;
+import com.fabrica.p6f5.springapp.audit.service.AuditDeltaCodec;
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fabrica.p6f5.springapp.invoice.model.InvoiceItem;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trip and storage size of delta-encoded audit logs on a draft edit workload:
+ * create an invoice with 20 lines, edit it 30 times one field at a time, then issue it.
+ */
+class AuditDeltaCodecTest {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AuditDeltaCodecTest.class);
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 4, 9, 0);
+    
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final AuditDeltaCodec codec = new AuditDeltaCodec(objectMapper, 20, 1000);
+    private final AtomicLong ids = new AtomicLong(1);
+    
+    @Test
+    void editWorkloadRoundTripsAndStoresLessThanFullSnapshots() {
+        List<AuditRecord> records = editWorkload();
+        List<AuditLogRow> rows = new ArrayList<>();
+        for (AuditRecord record : records) {
+            AuditDeltaCodec.EncodedBatch batch = codec.encode(List.of(record), ids::getAndIncrement);
+            batch.commit();
+            rows.addAll(batch.rows());
+        }
+        
+        List<AuditLogView> views = codec.decode(rows.stream().map(this::toEntity).toList());
+        for (int i = 0; i < records.size(); i++) {
+            assertTrue(views.get(i).isComplete());
+            assertEquals(records.get(i).oldData(), views.get(i).getOldData());
+            assertEquals(records.get(i).newData(), views.get(i).getNewData());
+        }
+        
+        long fullBytes = records.stream()
+            .mapToLong(record -> length(record.oldData()) + length(record.newData()))
+            .sum();
+        long deltaBytes = rows.stream()
+            .mapToLong(row -> length(row.oldData()) + length(row.newData())
+                + length(row.oldPatch()) + length(row.newPatch()))
+            .sum();
+        long checkpoints = rows.stream().filter(row -> row.encoding() == AuditLog.Encoding.FULL).count();
+        logger.info("{} audit rows ({} checkpoints): full snapshots {} bytes, deltas {} bytes ({}%)",
+            rows.size(), checkpoints, fullBytes, deltaBytes, deltaBytes * 100 / fullBytes);
+        
+        assertEquals(2, checkpoints);
+        assertTrue(deltaBytes * 5 < fullBytes);
+    }
+    
+    @Test
+    void deltaWithoutItsBaseIsIncomplete() {
+        List<AuditRecord> records = editWorkload().subList(0, 3);
+        List<AuditLogRow> rows = new ArrayList<>();
+        for (AuditRecord record : records) {
+            AuditDeltaCodec.EncodedBatch batch = codec.encode(List.of(record), ids::getAndIncrement);
+            batch.commit();
+            rows.addAll(batch.rows());
+        }
+        
+        List<AuditLogView> views = codec.decode(rows.subList(1, 3).stream().map(this::toEntity).toList());
+        
+        assertFalse(views.get(1).isComplete());
+        assertNull(views.get(1).getNewData());
+    }
+    
+    @Test
+    void newMonthStartsANewChain() {
+        List<AuditRecord> records = editWorkload();
+        AuditRecord first = records.get(0);
+        AuditRecord nextMonth = new AuditRecord(first.entityType(), first.entityId(), AuditLog.AuditAction.UPDATE,
+            1L, first.newData(), records.get(1).newData(), "Update", START.plusMonths(1));
+        
+        codec.encode(List.of(first), ids::getAndIncrement).commit();
+        List<AuditLogRow> rows = codec.encode(List.of(nextMonth), ids::getAndIncrement).rows();
+        
+        assertEquals(AuditLog.Encoding.FULL, rows.get(0).encoding());
+    }
+    
+    private List<AuditRecord> editWorkload() {
+        Invoice invoice = new Invoice();
+        invoice.setId(42L);
+        invoice.setInvoiceNumber("INV-0000000000042");
+        invoice.setClientName("Acme Logistics");
+        invoice.setClientEmail("billing@acme.example");
+        invoice.setInvoiceDate(LocalDate.of(2024, 3, 4));
+        invoice.setDueDate(LocalDate.of(2024, 4, 3));
+        invoice.setCreatedBy(1L);
+        invoice.setCreatedAt(START);
+        invoice.setUpdatedAt(START);
+        for (int i = 0; i < 20; i++) {
+            InvoiceItem item = new InvoiceItem();
+            item.setId(1000L + i);
+            item.setDescription("Freight leg " + i + " - palletized dry goods, standard handling");
+            item.setQuantity(1 + i % 4);
+            item.setUnitPrice(new BigDecimal("125.50"));
+            item.setTotalPrice(item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+            invoice.getItems().add(item);
+        }
+        totals(invoice);
+        
+        List<AuditRecord> records = new ArrayList<>();
+        JsonNode previous = objectMapper.valueToTree(invoice);
+        records.add(record(AuditLog.AuditAction.CREATE, null, previous, START));
+        for (int edit = 1; edit <= 30; edit++) {
+            InvoiceItem item = invoice.getItems().get(edit * 7 % 20);
+            if (edit % 5 == 0) {
+                invoice.setDueDate(invoice.getDueDate().plusDays(1));
+            } else {
+                item.setQuantity(item.getQuantity() + 1);
+                item.setTotalPrice(item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+            }
+            totals(invoice);
+            invoice.setVersion(invoice.getVersion() + 1);
+            invoice.setUpdatedAt(START.plusMinutes(edit));
+            JsonNode current = objectMapper.valueToTree(invoice);
+            records.add(record(AuditLog.AuditAction.UPDATE, previous, current, START.plusMinutes(edit)));
+            previous = current;
+        }
+        invoice.setStatus(Invoice.InvoiceStatus.ISSUED);
+        invoice.setFiscalFolio("FISCAL-A-0000000042");
+        invoice.setVersion(invoice.getVersion() + 1);
+        records.add(record(AuditLog.AuditAction.ISSUE, previous, objectMapper.valueToTree(invoice), START.plusHours(1)));
+        return records;
+    }
+    
+    private void totals(Invoice invoice) {
+        BigDecimal subtotal = invoice.getItems().stream()
+            .map(InvoiceItem::getTotalPrice)
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        invoice.setSubtotal(subtotal);
+        invoice.setTotalAmount(subtotal.add(invoice.getTaxAmount()));
+    }
+    
+    private AuditRecord record(AuditLog.AuditAction action, JsonNode oldData, JsonNode newData, LocalDateTime at) {
+        return new AuditRecord("INVOICE", 42L, action, 1L, oldData, newData, action.name(), at);
+    }
+    
+    private AuditLog toEntity(AuditLogRow row) {
+        AuditLog log = new AuditLog();
+        log.setId(row.id());
+        log.setEntityType(row.entityType());
+        log.setEntityId(row.entityId());
+        log.setAction(row.action());
+        log.setChangedBy(row.changedBy());
+        log.setEncoding(row.encoding());
+        log.setBaseAuditLogId(row.baseAuditLogId());
+        log.setOldData(row.oldData());
+        log.setNewData(row.newData());
+        log.setOldPatch(row.oldPatch());
+        log.setNewPatch(row.newPatch());
+        log.setChangeSummary(row.changeSummary());
+        log.setCreatedAt(row.createdAt());
+        return log;
+    }
+    
+    private long length(Object json) {
+        return json == null ? 0 : json.toString().length();
+    }
+}
@@ -0,0 +1,120 @@
+package com.fabrica.p6f5.springapp.audit;
+
+import com.fabrica.p6f5.springapp.audit.service.AuditPartitionManager;
+import com.fabrica.p6f5.springapp.audit.service.AuditService;
+import com.fabrica.p6f5.springapp.invoice.dto.CreateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceResponse;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceService;
+import com.fabrica.p6f5.springapp.support.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Monthly partitions of audit tables: creation ahead of time, retention, pruning of
+ * created_at range queries, and unique invoice versions across history partitions.
+ */
+@TestPropertySource(properties = {
+    "audit.partitions.audit-logs.retention-months=24",
+    "audit.partitions.invoice-history.retention-months=0",
+    "audit.partitions.expired-action=DETACH"
+})
+class AuditPartitionManagerTest extends PostgresIntegrationTest {
+    
+    @Autowired
+    private AuditPartitionManager partitionManager;
+    
+    @Autowired
+    private AuditService auditService;
+    
+    @Autowired
+    private InvoiceService invoiceService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Test
+    void futurePartitionsAreCreatedOnce() {
+        YearMonth later = YearMonth.now().plusYears(2);
+        
+        AuditPartitionManager.MaintenanceResult first = partitionManager.maintain(later);
+        AuditPartitionManager.MaintenanceResult second = partitionManager.maintain(later);
+        
+        assertTrue(first.created().contains(name("audit_logs", later.plusMonths(3))));
+        assertTrue(first.created().contains(name("invoice_history", later)));
+        assertTrue(second.created().isEmpty());
+    }
+    
+    @Test
+    void expiredAuditPartitionsAreDetachedAndHistoryIsKept() {
+        YearMonth old = YearMonth.now().minusYears(5);
+        partitionManager.maintain(old);
+        
+        AuditPartitionManager.MaintenanceResult result = partitionManager.maintain(YearMonth.now());
+        
+        assertTrue(result.detached().contains(name("audit_logs", old)));
+        assertFalse(result.detached().contains(name("invoice_history", old)));
+        assertTrue(attachedPartitions("invoice_history").contains(name("invoice_history", old)));
+        assertFalse(attachedPartitions("audit_logs").contains(name("audit_logs", old)));
+        assertEquals(1, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM pg_class WHERE relname = ?", Integer.class, name("audit_logs", old)));
+    }
+    
+    @Test
+    void createdAtRangeQueriesScanOnlyMatchingPartitions() {
+        YearMonth month = YearMonth.now();
+        List<String> plan = jdbcTemplate.queryForList(
+            "EXPLAIN SELECT * FROM audit_logs WHERE created_at BETWEEN ? AND ? ORDER BY created_at DESC",
+            String.class,
+            Timestamp.valueOf(month.atDay(2).atStartOfDay()),
+            Timestamp.valueOf(month.atDay(20).atStartOfDay()));
+        String text = String.join("\n", plan);
+        
+        assertTrue(text.contains(name("audit_logs", month)), text);
+        assertFalse(text.contains(name("audit_logs", month.plusMonths(1))), text);
+        assertFalse(text.contains(name("audit_logs", month.minusMonths(1))), text);
+    }
+    
+    @Test
+    void invoiceVersionsAreRecordedOnce() {
+        Long userId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE username = 'admin'", Long.class);
+        CreateInvoiceRequest request = new CreateInvoiceRequest();
+        request.setClientName("History Client");
+        request.setInvoiceDate(LocalDate.now());
+        request.setDueDate(LocalDate.now().plusDays(30));
+        request.setItems(List.of(
+            new CreateInvoiceRequest.InvoiceItemRequest(null, "Freight", 1, new BigDecimal("10.00"))));
+        InvoiceResponse invoice = invoiceService.createDraftInvoice(request, userId);
+        
+        auditService.saveInvoiceHistory(invoice.getId(), 1, null, invoice.getInvoiceNumber(), "{}", userId);
+        
+        assertThrows(DataIntegrityViolationException.class, () -> auditService.saveInvoiceHistory(
+            invoice.getId(), 1, null, invoice.getInvoiceNumber(), "{}", userId));
+        assertEquals(1, auditService.getInvoiceVersionCount(invoice.getId()));
+        assertEquals(1, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM pg_indexes WHERE indexname = 'idx_history_invoice'", Integer.class));
+    }
+    
+    private List<String> attachedPartitions(String table) {
+        return jdbcTemplate.queryForList(
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = CAST(? AS regclass)", String.class, table);
+    }
+    
+    private static String name(String table, YearMonth month) {
+        return String.format("%s_y%04dm%02d", table, month.getYear(), month.getMonthValue());
+    }
+}
@@ -0,0 +1,165 @@
+package com.fabrica.p6f5.springapp.audit;
+
+import com.fabrica.p6f5.springapp.audit.model.AuditLog;
+import com.fabrica.p6f5.springapp.audit.service.AuditSegmentArchive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Segment files round trip archived rows, roll over at the size limit, and are found
+ * through the sparse index.
+ */
+class AuditSegmentArchiveTest {
+    
+    private static final String PARTITION = "audit_logs_y2024m03";
+    
+    /**
+     * Before EMOJI in UTF-8 byte order, after it in UTF-16 order (String.compareTo).
+     */
+    private static final String FULLWIDTH = "\uFF29NVOICE";
+    private static final String EMOJI = "\uD83D\uDCC4INVOICE";
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void rowsOfAnEntityAreFoundAcrossBlocksAndSegments() throws Exception {
+        AuditSegmentArchive archive = new AuditSegmentArchive(directory.toString(), 16, 4096);
+        List<AuditLog> rows = rows();
+        
+        long written = archive.write(PARTITION, sink -> rows.forEach(sink));
+        
+        assertEquals(rows.size(), written);
+        assertTrue(segmentFiles().size() > 1);
+        for (long entityId = 0; entityId <= 201; entityId++) {
+            long id = entityId;
+            List<Long> expected = rows.stream()
+                .filter(log -> log.getEntityType().equals("INVOICE") && log.getEntityId() == id)
+                .map(AuditLog::getId)
+                .toList();
+            assertEquals(expected, archive.find("INVOICE", entityId).stream().map(AuditLog::getId).toList());
+        }
+        AuditLog first = archive.find("SHIPMENT", 7L).get(0);
+        assertEquals("{\"status\": \"DELIVERED\"}", first.getNewData());
+        assertEquals(LocalDateTime.of(2024, 3, 5, 10, 0, 0, 123_000), first.getCreatedAt());
+        assertEquals(AuditLog.Encoding.DELTA, first.getEncoding());
+    }
+    
+    @Test
+    void rewritingAPartitionReplacesItsSegments() throws Exception {
+        AuditSegmentArchive archive = new AuditSegmentArchive(directory.toString(), 16, 4096);
+        List<AuditLog> rows = rows();
+        archive.write(PARTITION, sink -> rows.forEach(sink));
+        
+        archive.write(PARTITION, sink -> rows.subList(0, 10).forEach(sink));
+        
+        assertEquals(1, segmentFiles().size());
+        assertEquals(10, archive.find("INVOICE", 1L).size() + archive.find("INVOICE", 2L).size()
+            + archive.find("INVOICE", 3L).size() + archive.find("INVOICE", 4L).size());
+    }
+    
+    @Test
+    void segmentsPastRetentionAreDeleted() throws Exception {
+        AuditSegmentArchive archive = new AuditSegmentArchive(directory.toString(), 16, 1 << 20);
+        List<AuditLog> rows = rows();
+        archive.write(PARTITION, sink -> rows.forEach(sink));
+        
+        assertEquals(List.of(), archive.deleteBefore(YearMonth.of(2024, 3)));
+        assertEquals(List.of(PARTITION + "-0001.seg"), archive.deleteBefore(YearMonth.of(2024, 4)));
+        assertTrue(archive.find("INVOICE", 1L).isEmpty());
+    }
+    
+    @Test
+    void entityTypesAreSearchedInTheByteOrderOfTheCCollation() throws Exception {
+        AuditSegmentArchive archive = new AuditSegmentArchive(directory.toString(), 2, 4096);
+        List<AuditLog> rows = new ArrayList<>();
+        long id = 1;
+        for (String entityType : List.of("INVOICE", "Invoice", FULLWIDTH, EMOJI)) {
+            for (long entityId = 1; entityId <= 5; entityId++) {
+                rows.add(row(id++, entityType, entityId, 0));
+            }
+        }
+        
+        archive.write(PARTITION, sink -> rows.forEach(sink));
+        
+        for (String entityType : List.of("INVOICE", "Invoice", FULLWIDTH, EMOJI)) {
+            for (long entityId = 1; entityId <= 5; entityId++) {
+                assertEquals(1, archive.find(entityType, entityId).size(), entityType + " " + entityId);
+            }
+        }
+    }
+    
+    @Test
+    void rowsOutOfKeyOrderAreRejected() {
+        AuditSegmentArchive archive = new AuditSegmentArchive(directory.toString(), 2, 4096);
+        List<AuditLog> javaOrder = List.of(row(1, EMOJI, 1, 0), row(2, FULLWIDTH, 1, 0));
+        
+        assertThrows(IllegalArgumentException.class, () -> archive.write(PARTITION, sink -> javaOrder.forEach(sink)));
+        assertTrue(archive.find(EMOJI, 1L).isEmpty());
+    }
+    
+    @Test
+    void verificationReadsBackTheRowsOfThePartition() throws Exception {
+        AuditSegmentArchive archive = new AuditSegmentArchive(directory.toString(), 16, 4096);
+        List<AuditLog> rows = rows();
+        archive.write(PARTITION, sink -> rows.forEach(sink));
+        long idSum = rows.stream().mapToLong(AuditLog::getId).sum();
+        
+        archive.verify(PARTITION, rows.size(), idSum);
+        
+        assertThrows(IllegalStateException.class, () -> archive.verify(PARTITION, rows.size() + 1, idSum));
+        assertThrows(IllegalStateException.class, () -> archive.verify(PARTITION, rows.size(), idSum - 1));
+        assertThrows(IllegalStateException.class, () -> archive.verify("audit_logs_y2024m04", rows.size(), idSum));
+    }
+    
+    private List<AuditLog> rows() {
+        List<AuditLog> rows = new ArrayList<>();
+        long id = 1;
+        for (long entityId = 1; entityId <= 200; entityId++) {
+            for (int i = 0; i < entityId % 4 + 1; i++) {
+                rows.add(row(id++, "INVOICE", entityId, i));
+            }
+        }
+        for (long entityId = 1; entityId <= 20; entityId++) {
+            rows.add(row(id++, "SHIPMENT", entityId, 0));
+        }
+        return rows;
+    }
+    
+    private AuditLog row(long id, String entityType, long entityId, int edit) {
+        AuditLog log = new AuditLog();
+        log.setId(id);
+        log.setEntityType(entityType);
+        log.setEntityId(entityId);
+        log.setAction(edit == 0 ? AuditLog.AuditAction.CREATE : AuditLog.AuditAction.UPDATE);
+        log.setChangedBy(edit % 2 == 0 ? 1L : null);
+        if (entityType.equals("SHIPMENT")) {
+            log.setEncoding(AuditLog.Encoding.DELTA);
+            log.setBaseAuditLogId(id - 1);
+            log.setNewData("{\"status\": \"DELIVERED\"}");
+        } else {
+            log.setNewData("{\"clientName\": \"Client " + entityId + "\", \"edit\": " + edit + "}");
+        }
+        log.setChangeSummary("Edit " + edit);
+        log.setCreatedAt(LocalDateTime.of(2024, 3, 5, 10, edit, 0, 123_000));
+        return log;
+    }
+    
+    private List<Path> segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".seg")).toList();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.fabrica.p6f5.springapp.audit;
+
+import com.fabrica.p6f5.springapp.audit.model.AuditEvent;
+import com.fabrica.p6f5.springapp.audit.model.AuditLog;
+import com.fabrica.p6f5.springapp.audit.model.AuditLogRow;
+import com.fabrica.p6f5.springapp.audit.repository.AuditLogBatchRepository;
+import com.fabrica.p6f5.springapp.audit.service.AuditDeltaCodec;
+import com.fabrica.p6f5.springapp.audit.service.AuditWriter;
+import com.fabrica.p6f5.springapp.support.StubTransactionManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Per-transaction batching of audit writes in both modes: one insert per committed
+ * transaction, nothing for rolled back ones, and caller-runs when the async queue is full.
+ */
+class AuditWriterTest {
+    
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 4, 9, 0);
+    
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final StubTransactionManager transactionManager = new StubTransactionManager();
+    private final TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RecordingRepository repository = new RecordingRepository();
+    private AuditWriter writer;
+    
+    @AfterEach
+    void shutdown() {
+        repository.release.countDown();
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+    
+    @Test
+    void transactionalModeWritesOneInsertPerTransactionBeforeCommit() {
+        writer = writer(AuditWriter.Mode.TRANSACTIONAL, 100);
+        
+        transaction.executeWithoutResult(status -> {
+            for (long id = 1; id <= 3; id++) {
+                writer.write(event(id));
+            }
+            assertTrue(repository.inserts.isEmpty());
+        });
+        
+        assertEquals(1, repository.inserts.size());
+        assertEquals(List.of(1L, 2L, 3L), entityIds(repository.inserts.get(0)));
+        assertEquals(Thread.currentThread().getName(), repository.inserts.get(0).thread());
+        assertEquals(1, transactionManager.commits());
+        assertEquals(3.0, records("transactional"));
+    }
+    
+    @Test
+    void rolledBackTransactionsWriteNothing() {
+        for (AuditWriter.Mode mode : AuditWriter.Mode.values()) {
+            writer = writer(mode, 100);
+            
+            transaction.executeWithoutResult(status -> {
+                writer.write(event(1));
+                status.setRollbackOnly();
+            });
+            writer.shutdown();
+            
+            assertTrue(repository.inserts.isEmpty(), mode.name());
+        }
+        writer = null;
+    }
+    
+    @Test
+    void transactionalInsertFailureRollsBackTheChange() {
+        writer = writer(AuditWriter.Mode.TRANSACTIONAL, 100);
+        repository.failure = new IllegalStateException("audit_logs unavailable");
+        
+        assertThrows(IllegalStateException.class,
+            () -> transaction.executeWithoutResult(status -> writer.write(event(1))));
+        
+        assertEquals(0, transactionManager.commits());
+        assertEquals(1.0, records("failed"));
+    }
+    
+    @Test
+    void asyncModeInsertsAfterCommitOnTheWriterThread() throws Exception {
+        writer = writer(AuditWriter.Mode.ASYNC, 100);
+        repository.expected = new CountDownLatch(2);
+        
+        transaction.executeWithoutResult(status -> {
+            writer.write(event(1));
+            writer.write(event(2));
+        });
+        
+        assertTrue(repository.expected.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1L, 2L), repository.inserts.stream()
+            .flatMap(insert -> insert.rows().stream()).map(AuditLogRow::entityId).toList());
+        assertTrue(repository.inserts.stream().allMatch(insert -> insert.thread().equals("audit-writer")));
+    }
+    
+    @Test
+    void asyncModeWritesOnTheCallerWhenTheQueueIsFull() throws Exception {
+        writer = writer(AuditWriter.Mode.ASYNC, 1);
+        repository.blocking = true;
+        transaction.executeWithoutResult(status -> writer.write(event(1)));
+        assertTrue(repository.entered.await(5, TimeUnit.SECONDS));
+        
+        transaction.executeWithoutResult(status -> {
+            for (long id = 2; id <= 4; id++) {
+                writer.write(event(id));
+            }
+        });
+        
+        Insert callerRun = repository.inserts.stream()
+            .filter(insert -> insert.thread().equals(Thread.currentThread().getName()))
+            .findFirst()
+            .orElseThrow();
+        assertEquals(List.of(3L, 4L), entityIds(callerRun));
+        assertEquals(2.0, records("caller_runs"));
+        
+        repository.expected = new CountDownLatch(2);
+        repository.release.countDown();
+        assertTrue(repository.expected.await(5, TimeUnit.SECONDS));
+        writer.shutdown();
+        assertEquals(2.0, records("queued"));
+    }
+    
+    private AuditWriter writer(AuditWriter.Mode mode, int queueCapacity) {
+        return new AuditWriter(repository, new AuditDeltaCodec(objectMapper, 20, 1000), objectMapper,
+            meterRegistry, transactionManager, mode, queueCapacity, 500);
+    }
+    
+    private AuditEvent event(long entityId) {
+        return new AuditEvent("INVOICE", entityId, AuditLog.AuditAction.UPDATE, 1L,
+            null, Map.of("status", "DRAFT"), "Updated", NOW);
+    }
+    
+    private List<Long> entityIds(Insert insert) {
+        return insert.rows().stream().map(AuditLogRow::entityId).toList();
+    }
+    
+    private double records(String path) {
+        return meterRegistry.get("audit.writer.records").tag("path", path).counter().count();
+    }
+    
+    private record Insert(List<AuditLogRow> rows, String thread) {
+    }
+    
+    /**
+     * Batch repository recording inserts with the thread that ran them. When blocking,
+     * the first insert waits for release, which keeps the async writer busy.
+     */
+    private static final class RecordingRepository extends AuditLogBatchRepository {
+        
+        private final List<Insert> inserts = new CopyOnWriteArrayList<>();
+        private final AtomicLong ids = new AtomicLong(1);
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile CountDownLatch expected = new CountDownLatch(0);
+        private volatile boolean blocking;
+        private volatile RuntimeException failure;
+        
+        private RecordingRepository() {
+            super(null);
+        }
+        
+        @Override
+        public LongSupplier allocateIds(int count) {
+            return ids::getAndIncrement;
+        }
+        
+        @Override
+        public int insertAll(List<AuditLogRow> rows) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (blocking && entered.getCount() > 0) {
+                entered.countDown();
+                await(release);
+            }
+            inserts.add(new Insert(List.copyOf(rows), Thread.currentThread().getName()));
+            for (int i = 0; i < rows.size(); i++) {
+                expected.countDown();
+            }
+            return rows.size();
+        }
+        
+        private static void await(CountDownLatch latch) {
+            try {
+                latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.fabrica.p6f5.springapp.billing;
+
+import com.fabrica.p6f5.springapp.billing.service.BillingRollupService;
+import com.fabrica.p6f5.springapp.support.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The scheduled rebuild runs in its own transaction, as the scheduler calls it
+ * outside any transaction and through no proxy, and corrects drifted buckets.
+ */
+class BillingRollupRebuildTest extends PostgresIntegrationTest {
+    
+    @Autowired
+    private BillingRollupService billingRollupService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Test
+    void scheduledRebuildCorrectsDriftedBuckets() {
+        jdbcTemplate.update("INSERT INTO billing_rollups " +
+            "(invoice_status, currency, period_month, invoice_count, subtotal, tax_amount, total_amount) " +
+            "VALUES ('PAID', 'XTS', DATE '2001-01-01', 5, 100.00, 10.00, 110.00)");
+        
+        billingRollupService.scheduledRebuild();
+        
+        assertEquals(0, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM billing_rollups WHERE currency = 'XTS'", Integer.class));
+        assertEquals(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM invoices", Long.class),
+            jdbcTemplate.queryForObject("SELECT COALESCE(SUM(invoice_count), 0) FROM billing_rollups", Long.class));
+    }
+}
@@ -0,0 +1,180 @@
+package com.fabrica.p6f5.springapp.invoice;
+
+import com.fabrica.p6f5.springapp.exception.InvoiceMergeConflictException;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceMergeConflictResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceVersion;
+import com.fabrica.p6f5.springapp.invoice.dto.UpdateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fabrica.p6f5.springapp.invoice.service.DraftAutosaveService;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Buffering of draft autosaves: coalescing, flushing before issuing and when idle,
+ * per-user version tracking, retries of transient failures and reporting of conflicts.
+ */
+class DraftAutosaveServiceTest {
+    
+    private static final long INVOICE_ID = 7L;
+    private static final long ALICE = 1L;
+    private static final long BOB = 2L;
+    
+    private final InvoiceService invoiceService = mock(InvoiceService.class);
+    private final AtomicInteger version = new AtomicInteger(1);
+    private final List<Write> writes = new ArrayList<>();
+    private final List<RuntimeException> failures = new ArrayList<>();
+    
+    @BeforeEach
+    void stubInvoiceService() {
+        when(invoiceService.getInvoiceVersion(INVOICE_ID)).thenAnswer(invocation ->
+            new InvoiceVersion(INVOICE_ID, version.get(), Invoice.InvoiceStatus.DRAFT, null));
+        when(invoiceService.updateDraftInvoice(eq(INVOICE_ID), any(UpdateInvoiceRequest.class), anyLong()))
+            .thenAnswer(invocation -> {
+                if (!failures.isEmpty()) {
+                    throw failures.remove(0);
+                }
+                UpdateInvoiceRequest request = invocation.getArgument(1);
+                writes.add(new Write(request.getClientName(), request.getVersion(), invocation.getArgument(2)));
+                InvoiceResponse response = new InvoiceResponse();
+                response.setId(INVOICE_ID);
+                response.setVersion(version.incrementAndGet());
+                return response;
+            });
+    }
+    
+    @Test
+    void autosavesAreCoalescedAndWrittenBeforeIssuing() {
+        DraftAutosaveService service = service(60_000);
+        
+        service.autosave(INVOICE_ID, request("A", 1), ALICE);
+        service.autosave(INVOICE_ID, request("AB", 1), ALICE);
+        service.autosave(INVOICE_ID, request("ABC", 1), ALICE);
+        service.flushDue();
+        assertTrue(writes.isEmpty());
+        
+        int writesBeforeAction = service.flushAndRun(INVOICE_ID, writes::size);
+        
+        assertEquals(1, writesBeforeAction);
+        assertEquals(List.of(new Write("ABC", 1, ALICE)), writes);
+        assertTrue(service.pendingInvoiceIds().isEmpty());
+    }
+    
+    @Test
+    void idleDraftsAreWrittenByTheFlushPass() {
+        DraftAutosaveService service = service(0);
+        service.autosave(INVOICE_ID, request("A", 1), ALICE);
+        assertEquals(Set.of(INVOICE_ID), service.pendingInvoiceIds());
+        
+        service.flushDue();
+        
+        assertEquals(List.of(new Write("A", 1, ALICE)), writes);
+        assertTrue(service.pendingInvoiceIds().isEmpty());
+    }
+    
+    @Test
+    void flushedVersionStandsForTheCurrentOneOnlyForTheAutosavingUser() {
+        DraftAutosaveService service = service(0);
+        service.autosave(INVOICE_ID, request("A", 1), ALICE);
+        service.flushDue();
+        
+        service.autosave(INVOICE_ID, request("AB", 1), ALICE);
+        service.flushDue();
+        service.saveExplicitly(INVOICE_ID, request("B", 1), BOB);
+        
+        assertEquals(List.of(new Write("A", 1, ALICE), new Write("AB", 2, ALICE), new Write("B", 1, BOB)), writes);
+    }
+    
+    @Test
+    void bufferOfAnotherUserIsWrittenBeforeItIsReplaced() {
+        DraftAutosaveService service = service(60_000);
+        service.autosave(INVOICE_ID, request("A", 1), ALICE);
+        
+        service.autosave(INVOICE_ID, request("B", 1), BOB);
+        service.flushAndRun(INVOICE_ID, () -> null);
+        
+        assertEquals(List.of(new Write("A", 1, ALICE), new Write("B", 1, BOB)), writes);
+    }
+    
+    @Test
+    void transientFailuresKeepTheChangesForTheNextPass() {
+        DraftAutosaveService service = service(0);
+        service.autosave(INVOICE_ID, request("A", 1), ALICE);
+        failures.add(new DataAccessResourceFailureException("connection reset"));
+        
+        service.flushDue();
+        assertEquals(Set.of(INVOICE_ID), service.pendingInvoiceIds());
+        service.flushDue();
+        
+        assertEquals(List.of(new Write("A", 1, ALICE)), writes);
+        assertTrue(service.pendingInvoiceIds().isEmpty());
+    }
+    
+    @Test
+    void conflictsAreReportedOnTheNextAutosaveOfTheUser() {
+        DraftAutosaveService service = service(0);
+        service.autosave(INVOICE_ID, request("A", 1), ALICE);
+        InvoiceMergeConflictException conflict = new InvoiceMergeConflictException("conflict",
+            new InvoiceMergeConflictResponse(INVOICE_ID, 1, 2, List.of()));
+        failures.add(conflict);
+        
+        service.flushDue();
+        
+        assertTrue(service.pendingInvoiceIds().isEmpty());
+        service.autosave(INVOICE_ID, request("B", 1), BOB);
+        assertEquals(conflict, assertThrows(InvoiceMergeConflictException.class,
+            () -> service.autosave(INVOICE_ID, request("AB", 1), ALICE)));
+        service.flushAndRun(INVOICE_ID, () -> null);
+        service.autosave(INVOICE_ID, request("ABC", 2), ALICE);
+        assertEquals(Set.of(INVOICE_ID), service.pendingInvoiceIds());
+    }
+    
+    @Test
+    void exhaustedRetriesAreReportedToTheUser() {
+        DraftAutosaveService service = service(0);
+        service.autosave(INVOICE_ID, request("A", 1), ALICE);
+        for (int i = 0; i < 5; i++) {
+            failures.add(new DataAccessResourceFailureException("connection reset"));
+        }
+        
+        for (int i = 0; i < 5; i++) {
+            service.flushDue();
+        }
+        
+        assertTrue(service.pendingInvoiceIds().isEmpty());
+        assertTrue(writes.isEmpty());
+        assertThrows(RuntimeException.class, () -> service.autosave(INVOICE_ID, request("AB", 1), ALICE));
+    }
+    
+    private DraftAutosaveService service(long idleTimeoutMs) {
+        return new DraftAutosaveService(invoiceService, idleTimeoutMs, 120_000, 100);
+    }
+    
+    private UpdateInvoiceRequest request(String clientName, int version) {
+        UpdateInvoiceRequest request = new UpdateInvoiceRequest();
+        request.setClientName(clientName);
+        request.setInvoiceDate(LocalDate.of(2024, 3, 4));
+        request.setVersion(version);
+        return request;
+    }
+    
+    private record Write(String clientName, Integer version, Long userId) {
+    }
+}
@@ -0,0 +1,103 @@
+package com.fabrica.p6f5.springapp.invoice;
+
+import com.fabrica.p6f5.springapp.invoice.repository.FiscalFolioRepository;
+import com.fabrica.p6f5.springapp.invoice.service.FiscalFolioService;
+import com.fabrica.p6f5.springapp.support.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures fiscal folio throughput of both allocation modes with concurrent issuers
+ * and checks their guarantees: folios are unique, GAP_FREE folios are contiguous,
+ * and BLOCK folios left unused at shutdown are handed out again.
+ */
+class FiscalFolioThroughputTest extends PostgresIntegrationTest {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FiscalFolioThroughputTest.class);
+    
+    private static final int THREADS = 8;
+    private static final int FOLIOS_PER_THREAD = 250;
+    private static final int BLOCK_SIZE = 100;
+    
+    @Autowired
+    private FiscalFolioRepository fiscalFolioRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Test
+    void gapFreeFoliosAreUniqueAndContiguous() throws Exception {
+        FiscalFolioService service = service(FiscalFolioService.Mode.GAP_FREE, "GF");
+        TransactionTemplate issuing = new TransactionTemplate(transactionManager);
+        
+        Set<String> folios = run("GAP_FREE", () -> issuing.execute(status -> service.nextFolio("GF")));
+        
+        assertEquals(THREADS * FOLIOS_PER_THREAD, folios.size());
+        for (int i = 1; i <= THREADS * FOLIOS_PER_THREAD; i++) {
+            assertTrue(folios.contains(String.format("FISCAL-GF-%010d", i)), "missing folio " + i);
+        }
+    }
+    
+    @Test
+    void blockFoliosAreUniqueAndUnusedRangesAreReused() throws Exception {
+        FiscalFolioService service = service(FiscalFolioService.Mode.BLOCK, "BL");
+        
+        Set<String> folios = run("BLOCK", () -> service.nextFolio("BL"));
+        assertEquals(THREADS * FOLIOS_PER_THREAD, folios.size());
+        
+        FiscalFolioService first = service(FiscalFolioService.Mode.BLOCK, "RL");
+        String taken = first.nextFolio("RL");
+        first.releaseBlocks();
+        FiscalFolioService second = service(FiscalFolioService.Mode.BLOCK, "RL");
+        assertEquals("FISCAL-RL-0000000001", taken);
+        assertEquals("FISCAL-RL-0000000002", second.nextFolio("RL"));
+    }
+    
+    private FiscalFolioService service(FiscalFolioService.Mode mode, String series) {
+        return new FiscalFolioService(fiscalFolioRepository, transactionManager, mode, series, BLOCK_SIZE);
+    }
+    
+    /**
+     * Take folios from concurrent threads and log the throughput.
+     */
+    private Set<String> run(String label, Supplier<String> nextFolio) throws Exception {
+        Set<String> folios = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < FOLIOS_PER_THREAD; i++) {
+                        folios.add(nextFolio.get());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            logger.info("{}: {} folios from {} threads in {} ms ({} folios/s)", label, THREADS * FOLIOS_PER_THREAD,
+                THREADS, Math.round(seconds * 1000), Math.round(THREADS * FOLIOS_PER_THREAD / seconds));
+        } finally {
+            executor.shutdown();
+        }
+        return folios;
+    }
+}
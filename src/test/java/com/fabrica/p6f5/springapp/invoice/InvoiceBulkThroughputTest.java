@@ -0,0 +1,103 @@
+package com.fabrica.p6f5.springapp.invoice;
+
+import com.fabrica.p6f5.springapp.invoice.dto.BulkCreateInvoicesResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.CreateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceBulkService;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceService;
+import com.fabrica.p6f5.springapp.support.PostgresIntegrationTest;
+import com.fabrica.p6f5.springapp.support.SqlStatementCounter;
+import com.fabrica.p6f5.springapp.support.SqlStatements;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares bulk creation with the same drafts created one request at a time. Bulk chunks
+ * flush once, so the inserts of all entries of a chunk batch together and the statements
+ * prepared by Hibernate grow with the number of chunks rather than of invoices. Both
+ * throughputs are logged; only the statement counts are asserted, as timings vary by host.
+ */
+@TestPropertySource(properties = {
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.fabrica.p6f5.springapp.support.SqlStatementCounter"
+})
+class InvoiceBulkThroughputTest extends PostgresIntegrationTest {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceBulkThroughputTest.class);
+    
+    private static final int INVOICES = 500;
+    private static final int LINES = 5;
+    
+    @Autowired
+    private InvoiceService invoiceService;
+    
+    @Autowired
+    private InvoiceBulkService invoiceBulkService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Test
+    void bulkCreationBatchesAcrossInvoices() {
+        Long userId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE username = 'admin'", Long.class);
+        List<CreateInvoiceRequest> singles = requests();
+        List<CreateInvoiceRequest> bulk = requests();
+        
+        SqlStatementCounter.start();
+        long start = System.nanoTime();
+        singles.forEach(request -> invoiceService.createDraftInvoice(request, userId));
+        long singleNanos = System.nanoTime() - start;
+        SqlStatements singleStatements = SqlStatementCounter.stop();
+        
+        SqlStatementCounter.start();
+        start = System.nanoTime();
+        BulkCreateInvoicesResponse response = invoiceBulkService.createDraftInvoices(bulk, userId);
+        long bulkNanos = System.nanoTime() - start;
+        SqlStatements bulkStatements = SqlStatementCounter.stop();
+        
+        logger.info("Single: {} invoices in {} ms ({} invoices/s, {} statements)", INVOICES, singleNanos / 1_000_000,
+            rate(singleNanos), singleStatements.count());
+        logger.info("Bulk: {} invoices in {} ms ({} invoices/s, {} statements), {}x the single rate", INVOICES,
+            bulkNanos / 1_000_000, rate(bulkNanos), bulkStatements.count(),
+            String.format("%.1f", (double) singleNanos / bulkNanos));
+        assertThat(response.getCreated()).isEqualTo(INVOICES);
+        assertThat(bulkStatements.count() * 5).isLessThan(singleStatements.count());
+    }
+    
+    private List<CreateInvoiceRequest> requests() {
+        List<Long> shipmentIds = jdbcTemplate.queryForList(
+            "INSERT INTO shipments (client_name, origin_address, destination_address, total_weight, total_volume) " +
+            "SELECT 'Bulk Client', 'Origin', 'Destination', 1.00, 1.00 FROM generate_series(1, ?) RETURNING shipment_id",
+            Long.class, INVOICES);
+        List<CreateInvoiceRequest> requests = new ArrayList<>(INVOICES);
+        for (int i = 0; i < INVOICES; i++) {
+            List<CreateInvoiceRequest.InvoiceItemRequest> items = new ArrayList<>(LINES);
+            for (int line = 0; line < LINES; line++) {
+                items.add(new CreateInvoiceRequest.InvoiceItemRequest(
+                    line == 0 ? shipmentIds.get(i) : null, "Freight " + line, 2, new BigDecimal("10.00")));
+            }
+            CreateInvoiceRequest request = new CreateInvoiceRequest();
+            request.setClientName("Bulk Client " + i);
+            request.setInvoiceDate(LocalDate.now());
+            request.setDueDate(LocalDate.now().plusDays(30));
+            request.setItems(items);
+            request.setShipmentIds(List.of(shipmentIds.get(i)));
+            request.setTaxAmount(new BigDecimal("5.00"));
+            requests.add(request);
+        }
+        return requests;
+    }
+    
+    private static long rate(long nanos) {
+        return Math.round(INVOICES / (nanos / 1_000_000_000.0));
+    }
+}
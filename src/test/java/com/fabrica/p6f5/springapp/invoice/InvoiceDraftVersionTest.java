@@ -0,0 +1,124 @@
+package com.fabrica.p6f5.springapp.invoice;
+
+import com.fabrica.p6f5.springapp.invoice.controller.InvoiceController;
+import com.fabrica.p6f5.springapp.invoice.dto.CreateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.UpdateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.service.DraftAutosaveService;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceService;
+import com.fabrica.p6f5.springapp.support.PostgresIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Every draft save bumps the version, also when it only edits a line in place or an
+ * autosave flush changes nothing, so the ETag changes and the next save records a new
+ * history version.
+ */
+class InvoiceDraftVersionTest extends PostgresIntegrationTest {
+    
+    @Autowired
+    private InvoiceService invoiceService;
+    
+    @Autowired
+    private InvoiceController invoiceController;
+    
+    @Autowired
+    private DraftAutosaveService draftAutosaveService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private Long userId;
+    
+    @BeforeEach
+    void loadUser() {
+        userId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE username = 'admin'", Long.class);
+    }
+    
+    @Test
+    void descriptionOnlyEditsBumpTheVersionAndTheETag() {
+        InvoiceResponse draft = invoiceService.createDraftInvoice(createRequest(), userId);
+        String createdETag = get(draft.getId(), null).getHeaders().getETag();
+        
+        InvoiceResponse edited = invoiceService.updateDraftInvoice(draft.getId(), describe(draft, "Freight, revised"), userId);
+        ResponseEntity<?> afterEdit = get(draft.getId(), createdETag);
+        InvoiceResponse editedAgain = invoiceService.updateDraftInvoice(draft.getId(), describe(edited, "Freight, final"), userId);
+        
+        assertEquals(draft.getVersion() + 1, edited.getVersion());
+        assertEquals(HttpStatus.OK, afterEdit.getStatusCode());
+        assertNotEquals(createdETag, afterEdit.getHeaders().getETag());
+        assertEquals(edited.getVersion() + 1, editedAgain.getVersion());
+        assertEquals("Freight, final", editedAgain.getItems().get(0).getDescription());
+    }
+    
+    @Test
+    void autosavedDescriptionEditsAreFlushedOneAfterAnother() {
+        InvoiceResponse draft = invoiceService.createDraftInvoice(createRequest(), userId);
+        Long invoiceId = draft.getId();
+        
+        draftAutosaveService.autosave(invoiceId, describe(draft, "Freight, typed"), userId);
+        draftAutosaveService.autosave(invoiceId, describe(draft, "Freight"), userId);
+        InvoiceResponse undone = draftAutosaveService.flushAndRun(invoiceId, () -> invoiceService.getInvoiceById(invoiceId));
+        draftAutosaveService.autosave(invoiceId, describe(draft, "Freight, typed again"), userId);
+        InvoiceResponse saved = draftAutosaveService.flushAndRun(invoiceId, () -> invoiceService.getInvoiceById(invoiceId));
+        
+        assertEquals(draft.getVersion() + 1, undone.getVersion());
+        assertEquals("Freight", undone.getItems().get(0).getDescription());
+        assertEquals(draft.getVersion() + 2, saved.getVersion());
+        assertEquals("Freight, typed again", saved.getItems().get(0).getDescription());
+    }
+    
+    /**
+     * GET the invoice, conditionally when an ETag is given.
+     */
+    private ResponseEntity<?> get(Long invoiceId, String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/invoices/" + invoiceId);
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return invoiceController.getInvoiceById(invoiceId, new ServletWebRequest(request, new MockHttpServletResponse()));
+    }
+    
+    private CreateInvoiceRequest createRequest() {
+        CreateInvoiceRequest request = new CreateInvoiceRequest();
+        request.setClientName("Version Client");
+        request.setInvoiceDate(LocalDate.now());
+        request.setDueDate(LocalDate.now().plusDays(30));
+        request.setItems(List.of(new CreateInvoiceRequest.InvoiceItemRequest(null, "Freight", 2, new BigDecimal("10.00"))));
+        request.setTaxAmount(new BigDecimal("5.00"));
+        return request;
+    }
+    
+    /**
+     * The invoice as it is, with a new description on its first line.
+     */
+    private UpdateInvoiceRequest describe(InvoiceResponse invoice, String description) {
+        InvoiceResponse.InvoiceItemResponse item = invoice.getItems().get(0);
+        UpdateInvoiceRequest request = new UpdateInvoiceRequest();
+        request.setClientName(invoice.getClientName());
+        request.setInvoiceDate(invoice.getInvoiceDate());
+        request.setDueDate(invoice.getDueDate());
+        request.setItems(List.of(new UpdateInvoiceRequest.InvoiceItemRequest(
+            item.getId(), item.getShipmentId(), description, item.getQuantity(), item.getUnitPrice())));
+        request.setShipmentIds(invoice.getShipmentIds());
+        request.setTaxAmount(invoice.getTaxAmount());
+        request.setVersion(invoice.getVersion());
+        return request;
+    }
+}
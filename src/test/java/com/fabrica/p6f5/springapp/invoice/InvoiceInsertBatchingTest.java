@@ -0,0 +1,99 @@
+package com.fabrica.p6f5.springapp.invoice;
+
+import com.fabrica.p6f5.springapp.invoice.dto.CreateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceResponse;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceService;
+import com.fabrica.p6f5.springapp.support.PostgresIntegrationTest;
+import com.fabrica.p6f5.springapp.support.SqlStatementCounter;
+import com.fabrica.p6f5.springapp.support.SqlStatements;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the insert round trips of creating one draft with 100 items. With IDENTITY keys
+ * every row is its own insert, as Hibernate needs each generated key back; that baseline is
+ * the number of rows written. With pooled sequences the items go out in JDBC batches of 50,
+ * plus one nextval per 50 ids. A batch statement may be prepared once for several
+ * executions, so item round trips are at least the number of batches. Both numbers are
+ * logged; the pooled count is asserted.
+ */
+@TestPropertySource(properties = {
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.fabrica.p6f5.springapp.support.SqlStatementCounter"
+})
+class InvoiceInsertBatchingTest extends PostgresIntegrationTest {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceInsertBatchingTest.class);
+    
+    private static final int ITEMS = 100;
+    private static final int BATCH_SIZE = 50;
+    
+    @Autowired
+    private InvoiceService invoiceService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Test
+    void itemsOfOneDraftAreInsertedInBatches() {
+        Long userId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE username = 'admin'", Long.class);
+        CreateInvoiceRequest request = createRequest();
+        
+        SqlStatementCounter.start();
+        InvoiceResponse draft = invoiceService.createDraftInvoice(request, userId);
+        SqlStatements statements = SqlStatementCounter.stop();
+        
+        int itemRows = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM invoice_items WHERE invoice_id = ?", Integer.class, draft.getId());
+        long invoiceInserts = count(statements, "insert into invoices ");
+        long itemInserts = count(statements, "insert into invoice_items ");
+        long nextvals = count(statements, "nextval(");
+        long identityRoundTrips = 1 + itemRows;
+        long pooledRoundTrips = invoiceInserts + Math.max(itemInserts, ceilDiv(itemRows, BATCH_SIZE)) + nextvals;
+        
+        logger.info("Insert round trips for one draft with {} items: {} with IDENTITY, {} with pooled sequences " +
+            "({} invoice, {} item batches, {} nextval)", itemRows, identityRoundTrips, pooledRoundTrips,
+            invoiceInserts, Math.max(itemInserts, ceilDiv(itemRows, BATCH_SIZE)), nextvals);
+        assertThat(itemRows).isEqualTo(ITEMS);
+        assertThat(itemInserts).isLessThanOrEqualTo(ceilDiv(ITEMS, BATCH_SIZE));
+        assertThat(nextvals).isLessThanOrEqualTo(1 + ceilDiv(ITEMS, BATCH_SIZE) + 1);
+        assertThat(pooledRoundTrips).isLessThanOrEqualTo(8);
+    }
+    
+    private CreateInvoiceRequest createRequest() {
+        List<CreateInvoiceRequest.InvoiceItemRequest> items = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            items.add(new CreateInvoiceRequest.InvoiceItemRequest(null, "Freight " + i, 2, new BigDecimal("10.00")));
+        }
+        CreateInvoiceRequest request = new CreateInvoiceRequest();
+        request.setClientName("Batching Client");
+        request.setInvoiceDate(LocalDate.now());
+        request.setDueDate(LocalDate.now().plusDays(30));
+        request.setItems(items);
+        request.setTaxAmount(new BigDecimal("5.00"));
+        return request;
+    }
+    
+    /**
+     * Statements containing the given lower-case fragment.
+     */
+    private static long count(SqlStatements statements, String fragment) {
+        return statements.statements().stream()
+            .filter(sql -> sql.trim().replaceAll("\\s+", " ").toLowerCase().contains(fragment))
+            .count();
+    }
+    
+    private static long ceilDiv(long value, long divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
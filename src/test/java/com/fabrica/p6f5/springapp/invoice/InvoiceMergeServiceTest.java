@@ -0,0 +1,189 @@
+package com.fabrica.p6f5.springapp.invoice;
+
+import com.fabrica.p6f5.springapp.audit.model.InvoiceHistory;
+import com.fabrica.p6f5.springapp.audit.service.AuditService;
+import com.fabrica.p6f5.springapp.exception.InvoiceMergeConflictException;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceMergeConflict;
+import com.fabrica.p6f5.springapp.invoice.dto.UpdateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.dto.UpdateInvoiceRequest.InvoiceItemRequest;
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fabrica.p6f5.springapp.invoice.model.InvoiceItem;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceMergeService;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceSnapshotCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Three-way merge of stale draft updates against the history snapshot of their base version.
+ */
+class InvoiceMergeServiceTest {
+    
+    private static final long INVOICE_ID = 7L;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final InvoiceSnapshotCodec snapshotCodec = new InvoiceSnapshotCodec(objectMapper);
+    private final AuditService auditService = mock(AuditService.class);
+    private SimpleMeterRegistry meterRegistry;
+    private InvoiceMergeService mergeService;
+    
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        mergeService = new InvoiceMergeService(auditService, snapshotCodec, meterRegistry);
+        
+        Invoice base = invoice(1, "Acme", item(11L, "Pallets", 1), item(12L, "Crates", 2));
+        when(auditService.getInvoiceHistoryVersion(INVOICE_ID, 1)).thenReturn(Optional.of(history(1, snapshotCodec.encode(base))));
+    }
+    
+    @Test
+    void currentVersionIsNotMerged() {
+        UpdateInvoiceRequest request = request(2, "Acme", itemRequest(11L, "Pallets", 1), itemRequest(12L, "Crates", 2));
+        
+        assertSame(request, mergeService.rebase(invoice(2, "Acme", item(11L, "Pallets", 1), item(12L, "Crates", 2)), request));
+        assertEquals(1.0, meterRegistry.get("invoice.draft.updates").tag("outcome", "current").counter().count());
+    }
+    
+    @Test
+    void unrelatedFieldAndLineChangesAreMerged() {
+        Invoice current = invoice(2, "Acme Corp", item(11L, "Pallets", 1), item(12L, "Crates", 2));
+        UpdateInvoiceRequest mine = request(1, "Acme", itemRequest(11L, "Pallets", 5), itemRequest(12L, "Crates", 2),
+            itemRequest(null, "Freight", 1));
+        
+        UpdateInvoiceRequest merged = mergeService.rebase(current, mine);
+        
+        assertEquals(2, merged.getVersion());
+        assertEquals("Acme Corp", merged.getClientName());
+        assertEquals(List.of(5, 2, 1), merged.getItems().stream().map(InvoiceItemRequest::getQuantity).toList());
+        assertEquals(1.0, meterRegistry.get("invoice.draft.updates").tag("outcome", "merged").counter().count());
+    }
+    
+    @Test
+    void snapshotsWrittenBeforeTheCodecAreStillMergeBases() throws Exception {
+        String legacy = objectMapper.writeValueAsString(invoice(1, "Acme", item(11L, "Pallets", 1), item(12L, "Crates", 2)));
+        when(auditService.getInvoiceHistoryVersion(INVOICE_ID, 1)).thenReturn(Optional.of(history(1, legacy)));
+        Invoice current = invoice(2, "Acme Corp", item(11L, "Pallets", 1), item(12L, "Crates", 2));
+        UpdateInvoiceRequest mine = request(1, "Acme", itemRequest(11L, "Pallets", 5), itemRequest(12L, "Crates", 2));
+        
+        UpdateInvoiceRequest merged = mergeService.rebase(current, mine);
+        
+        assertEquals("Acme Corp", merged.getClientName());
+        assertEquals(List.of(5, 2), merged.getItems().stream().map(InvoiceItemRequest::getQuantity).toList());
+    }
+    
+    @Test
+    void lineDeletedByOneSideAndUntouchedByTheOtherIsDeleted() {
+        Invoice current = invoice(2, "Acme", item(11L, "Pallets", 3), item(12L, "Crates", 2));
+        UpdateInvoiceRequest mine = request(1, "Acme", itemRequest(11L, "Pallets", 1));
+        
+        UpdateInvoiceRequest merged = mergeService.rebase(current, mine);
+        
+        assertEquals(1, merged.getItems().size());
+        assertEquals(3, merged.getItems().get(0).getQuantity());
+    }
+    
+    @Test
+    void sameFieldChangedDifferentlyIsAConflict() {
+        Invoice current = invoice(2, "Acme Corp", item(11L, "Pallets", 1), item(12L, "Crates", 4));
+        UpdateInvoiceRequest mine = request(1, "Acme Inc", itemRequest(11L, "Pallets", 1));
+        
+        InvoiceMergeConflictException ex = assertThrows(InvoiceMergeConflictException.class,
+            () -> mergeService.rebase(current, mine));
+        
+        assertEquals(List.of("clientName", "items[12]"),
+            ex.getConflict().getConflicts().stream().map(InvoiceMergeConflict::getField).toList());
+        assertEquals(2, ex.getConflict().getCurrentVersion());
+        assertEquals(1.0, meterRegistry.get("invoice.draft.updates").tag("outcome", "conflict").counter().count());
+    }
+    
+    @Test
+    void omittedFieldsKeepConcurrentChanges() {
+        Invoice current = invoice(2, "Acme", item(11L, "Pallets", 1), item(12L, "Crates", 2));
+        current.setCurrency("EUR");
+        current.setClientEmail("billing@acme.example");
+        current.setTaxAmount(new BigDecimal("20.00"));
+        UpdateInvoiceRequest mine = request(1, "Acme Inc", itemRequest(11L, "Pallets", 1), itemRequest(12L, "Crates", 2));
+        mine.setTaxAmount(null);
+        
+        UpdateInvoiceRequest merged = mergeService.rebase(current, mine);
+        
+        assertEquals("Acme Inc", merged.getClientName());
+        assertEquals("EUR", merged.getCurrency());
+        assertEquals("billing@acme.example", merged.getClientEmail());
+        assertEquals(new BigDecimal("20.00"), merged.getTaxAmount());
+    }
+    
+    @Test
+    void sentFieldsAreStillMergedAndConflict() {
+        Invoice current = invoice(2, "Acme", item(11L, "Pallets", 1), item(12L, "Crates", 2));
+        current.setCurrency("EUR");
+        UpdateInvoiceRequest mine = request(1, "Acme", itemRequest(11L, "Pallets", 1), itemRequest(12L, "Crates", 2));
+        mine.setCurrency("GBP");
+        mine.setClientEmail("ap@acme.example");
+        
+        InvoiceMergeConflictException ex = assertThrows(InvoiceMergeConflictException.class,
+            () -> mergeService.rebase(current, mine));
+        
+        assertEquals(List.of("currency"),
+            ex.getConflict().getConflicts().stream().map(InvoiceMergeConflict::getField).toList());
+    }
+    
+    private InvoiceHistory history(int version, String invoiceData) {
+        InvoiceHistory history = new InvoiceHistory();
+        history.setInvoiceId(INVOICE_ID);
+        history.setVersion(version);
+        history.setInvoiceData(invoiceData);
+        return history;
+    }
+    
+    private Invoice invoice(int version, String clientName, InvoiceItem... items) {
+        Invoice invoice = new Invoice();
+        invoice.setId(INVOICE_ID);
+        invoice.setVersion(version);
+        invoice.setInvoiceNumber("INV-TEST");
+        invoice.setClientName(clientName);
+        invoice.setInvoiceDate(LocalDate.of(2024, 1, 15));
+        invoice.setDueDate(LocalDate.of(2024, 2, 15));
+        invoice.setTaxAmount(new BigDecimal("10.00"));
+        invoice.setItems(new ArrayList<>(List.of(items)));
+        return invoice;
+    }
+    
+    private InvoiceItem item(Long id, String description, int quantity) {
+        InvoiceItem item = new InvoiceItem();
+        item.setId(id);
+        item.setDescription(description);
+        item.setQuantity(quantity);
+        item.setUnitPrice(new BigDecimal("25.00"));
+        return item;
+    }
+    
+    private UpdateInvoiceRequest request(int version, String clientName, InvoiceItemRequest... items) {
+        UpdateInvoiceRequest request = new UpdateInvoiceRequest();
+        request.setVersion(version);
+        request.setClientName(clientName);
+        request.setInvoiceDate(LocalDate.of(2024, 1, 15));
+        request.setDueDate(LocalDate.of(2024, 2, 15));
+        request.setTaxAmount(new BigDecimal("10.0"));
+        request.setItems(List.of(items));
+        return request;
+    }
+    
+    private InvoiceItemRequest itemRequest(Long id, String description, int quantity) {
+        return new InvoiceItemRequest(id, null, description, quantity, new BigDecimal("25"));
+    }
+}
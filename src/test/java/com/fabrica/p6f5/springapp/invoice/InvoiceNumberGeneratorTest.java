@@ -0,0 +1,115 @@
+package com.fabrica.p6f5.springapp.invoice;
+
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceNumberGenerator;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stress tests the invoice number generator across simulated nodes: numbers must be unique
+ * cluster-wide and strictly increasing per node, also when the clock stands still or goes back,
+ * including across a restart.
+ */
+class InvoiceNumberGeneratorTest {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceNumberGeneratorTest.class);
+    
+    private static final int NODES = 4;
+    private static final int THREADS_PER_NODE = 4;
+    private static final int NUMBERS_PER_THREAD = 50_000;
+    
+    @Test
+    void numbersAreUniqueAcrossNodesAndIncreasingPerThread() throws Exception {
+        Set<String> numbers = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(NODES * THREADS_PER_NODE);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int node = 0; node < NODES; node++) {
+                InvoiceNumberGenerator generator = new InvoiceNumberGenerator("INV-", node, System::currentTimeMillis);
+                for (int t = 0; t < THREADS_PER_NODE; t++) {
+                    futures.add(executor.submit(() -> {
+                        String previous = "";
+                        for (int i = 0; i < NUMBERS_PER_THREAD; i++) {
+                            String number = generator.nextInvoiceNumber();
+                            assertTrue(number.compareTo(previous) > 0, number + " after " + previous);
+                            assertTrue(numbers.add(number), "duplicate " + number);
+                            previous = number;
+                        }
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long total = (long) NODES * THREADS_PER_NODE * NUMBERS_PER_THREAD;
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            logger.info("{} invoice numbers from {} nodes in {} ms ({} numbers/s)",
+                total, NODES, Math.round(seconds * 1000), Math.round(total / seconds));
+            assertEquals(total, numbers.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    @Test
+    void numbersKeepIncreasingWhenClockStallsOrGoesBack() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        InvoiceNumberGenerator generator = new InvoiceNumberGenerator("INV-", 7, clock::get);
+        
+        long previous = generator.nextId();
+        for (int i = 0; i < 20_000; i++) {
+            if (i == 10_000) {
+                clock.addAndGet(-5_000);
+            }
+            long id = generator.nextId();
+            assertTrue(id > previous, "id decreased at " + i);
+            previous = id;
+        }
+    }
+    
+    @Test
+    void numbersContinueAfterTheLastIssuedOneWhenTheClockIsBehind() {
+        long now = System.currentTimeMillis();
+        String lastIssued = new InvoiceNumberGenerator("INV-", 3, () -> now).nextInvoiceNumber();
+        InvoiceNumberGenerator restarted = new InvoiceNumberGenerator("INV-", 3, () -> now - 60_000);
+        
+        restarted.advancePast(lastIssued);
+        
+        assertTrue(restarted.nextInvoiceNumber().compareTo(lastIssued) > 0);
+    }
+    
+    @Test
+    void numbersFarAheadOfTheClockAreNotTrusted() {
+        long now = System.currentTimeMillis();
+        String future = new InvoiceNumberGenerator("INV-", 3, () -> now + 7 * 86_400_000L).nextInvoiceNumber();
+        InvoiceNumberGenerator generator = new InvoiceNumberGenerator("INV-", 3, () -> now);
+        
+        generator.advancePast(future);
+        generator.advancePast("INV-NOT-A-NUMBER");
+        
+        assertTrue(generator.nextInvoiceNumber().compareTo(future) < 0);
+    }
+    
+    @Test
+    void numbersUsePrefixAndFixedWidth() {
+        InvoiceNumberGenerator generator = new InvoiceNumberGenerator("FAC-", InvoiceNumberGenerator.MAX_NODE_ID,
+            System::currentTimeMillis);
+        
+        String number = generator.nextInvoiceNumber();
+        
+        assertTrue(number.matches("FAC-[0-9A-HJKMNP-TV-Z]{13}"), number);
+    }
+}
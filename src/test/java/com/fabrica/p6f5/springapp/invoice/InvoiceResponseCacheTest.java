@@ -0,0 +1,73 @@
+package com.fabrica.p6f5.springapp.invoice;
+
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceResponse;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceResponseCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cached responses are served as copies, only for their exact version and cacheable status.
+ */
+class InvoiceResponseCacheTest {
+    
+    private final InvoiceResponseCache cache = new InvoiceResponseCache(
+        new ObjectMapper().registerModule(new JavaTimeModule()), new SimpleMeterRegistry(), 1 << 20);
+    
+    @Test
+    void hitsReturnTheCachedResponseForItsVersionOnly() {
+        InvoiceResponse response = response(7L, 3, "ISSUED");
+        
+        cache.put(response);
+        
+        assertEquals(response, cache.get(7L, 3).orElseThrow());
+        assertTrue(cache.get(7L, 4).isEmpty());
+        cache.invalidate(7L);
+        assertTrue(cache.get(7L, 3).isEmpty());
+    }
+    
+    @Test
+    void changesToResponsesDoNotReachTheCache() {
+        InvoiceResponse response = response(9L, 2, "ISSUED");
+        response.setItems(List.of(new InvoiceResponse.InvoiceItemResponse(1L, null, "Freight", 1, null, null)));
+        cache.put(response);
+        
+        response.setClientName("Changed after put");
+        InvoiceResponse hit = cache.get(9L, 2).orElseThrow();
+        hit.setPdfUrl("/changed");
+        hit.getItems().get(0).setDescription("Changed after get");
+        InvoiceResponse nextHit = cache.get(9L, 2).orElseThrow();
+        
+        assertNotSame(hit, nextHit);
+        assertNull(nextHit.getClientName());
+        assertNull(nextHit.getPdfUrl());
+        assertEquals("Freight", nextHit.getItems().get(0).getDescription());
+    }
+    
+    @Test
+    void draftsAreNotCached() {
+        cache.put(response(8L, 1, "DRAFT"));
+        
+        assertTrue(cache.get(8L, 1).isEmpty());
+    }
+    
+    private InvoiceResponse response(Long id, int version, String status) {
+        InvoiceResponse response = new InvoiceResponse();
+        response.setId(id);
+        response.setVersion(version);
+        response.setStatus(status);
+        response.setInvoiceDate(LocalDate.of(2024, 3, 4));
+        response.setItems(List.of());
+        response.setShipmentIds(List.of());
+        return response;
+    }
+}
@@ -0,0 +1,211 @@
+package com.fabrica.p6f5.springapp.invoice;
+
+import com.fabrica.p6f5.springapp.invoice.model.Invoice;
+import com.fabrica.p6f5.springapp.invoice.model.InvoiceItem;
+import com.fabrica.p6f5.springapp.invoice.model.InvoiceShipment;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceSnapshotCodec;
+import com.fabrica.p6f5.springapp.shipment.model.Shipment;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trip of invoice history snapshots, their rendering for the history API, and
+ * encode/decode time and size per version against the previous full entity serialization.
+ */
+class InvoiceSnapshotCodecTest {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceSnapshotCodecTest.class);
+    
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final InvoiceSnapshotCodec codec = new InvoiceSnapshotCodec(objectMapper);
+    
+    @Test
+    void snapshotsRoundTrip() {
+        Invoice invoice = invoice(3);
+        
+        InvoiceSnapshotCodec.Snapshot snapshot = codec.decode(codec.encode(invoice));
+        
+        assertEquals(InvoiceSnapshotCodec.SCHEMA_VERSION, snapshot.header().schemaVersion());
+        assertHeader(invoice, snapshot.header());
+        assertItems(invoice, snapshot);
+    }
+    
+    @Test
+    void snapshotsWrittenBeforeTheCodecAreDecoded() throws Exception {
+        Invoice invoice = invoice(3);
+        
+        InvoiceSnapshotCodec.Snapshot snapshot = codec.decode(objectMapper.writeValueAsString(invoice));
+        
+        assertEquals(0, snapshot.header().schemaVersion());
+        assertHeader(invoice, snapshot.header());
+        assertItems(invoice, snapshot);
+    }
+    
+    @Test
+    void snapshotsOfEveryVersionAreRenderedInOneShape() throws Exception {
+        Invoice invoice = invoice(3);
+        
+        Map<?, ?> rendered = objectMapper.readValue(codec.render(codec.decode(codec.encode(invoice))), Map.class);
+        Map<?, ?> legacy = objectMapper.readValue(
+            codec.render(codec.decode(objectMapper.writeValueAsString(invoice))), Map.class);
+        
+        assertEquals(legacy, rendered);
+        assertEquals("Acme Logistics", rendered.get("clientName"));
+        assertEquals(Map.of("id", 1000, "shipment", 901, "description", "Freight leg 0 - palletized dry goods",
+            "quantity", 1, "unitPrice", 125.5, "totalPrice", 125.5), ((List<?>) rendered.get("items")).get(0));
+        assertEquals(List.of(Map.of("shipment", 901), Map.of("shipment", 902)), rendered.get("shipments"));
+        assertFalse(rendered.containsKey("cn"));
+    }
+    
+    @Test
+    void newerSchemaVersionsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> codec.decode("{\"v\": 99, \"id\": 1}"));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode("[1, 2]"));
+    }
+    
+    @Test
+    void snapshotsAreSmallerThanEntitySerialization() throws Exception {
+        for (int items : new int[] {5, 50, 500}) {
+            Invoice invoice = invoice(items);
+            String legacy = objectMapper.writeValueAsString(invoice);
+            String encoded = codec.encode(invoice);
+            
+            long legacyEncode = nanosPerOp(() -> {
+                try {
+                    return objectMapper.writeValueAsString(invoice);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            long codecEncode = nanosPerOp(() -> codec.encode(invoice));
+            long legacyDecode = nanosPerOp(() -> {
+                try {
+                    return objectMapper.readTree(legacy);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            long codecHeader = nanosPerOp(() -> codec.decode(encoded).header());
+            long codecFull = nanosPerOp(() -> codec.decode(encoded).items());
+            logger.info("{} items: bytes {} -> {} ({}%), encode {} -> {} ns, decode {} -> {} ns (header only {} ns)",
+                items, legacy.length(), encoded.length(), encoded.length() * 100L / legacy.length(),
+                legacyEncode, codecEncode, legacyDecode, codecFull, codecHeader);
+            
+            assertTrue(encoded.length() * 10L < legacy.length() * 6L, items + " items: " + encoded.length());
+        }
+    }
+    
+    private long nanosPerOp(Supplier<Object> operation) {
+        int iterations = 2_000;
+        Object sink = null;
+        for (int i = 0; i < iterations; i++) {
+            sink = operation.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = operation.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(sink != null);
+        return elapsed / iterations;
+    }
+    
+    private void assertHeader(Invoice invoice, InvoiceSnapshotCodec.Header header) {
+        assertEquals(invoice.getId(), header.invoiceId());
+        assertEquals(invoice.getInvoiceNumber(), header.invoiceNumber());
+        assertEquals(invoice.getFiscalFolio(), header.fiscalFolio());
+        assertEquals(invoice.getStatus().name(), header.status());
+        assertEquals(invoice.getClientName(), header.clientName());
+        assertEquals(invoice.getClientEmail(), header.clientEmail());
+        assertEquals(invoice.getInvoiceDate(), header.invoiceDate());
+        assertEquals(invoice.getDueDate(), header.dueDate());
+        assertEquals(invoice.getCurrency(), header.currency());
+        assertEquals(0, invoice.getSubtotal().compareTo(header.subtotal()));
+        assertEquals(0, invoice.getTaxAmount().compareTo(header.taxAmount()));
+        assertEquals(0, invoice.getTotalAmount().compareTo(header.totalAmount()));
+        assertEquals(invoice.getVersion(), header.version());
+        assertEquals(invoice.getCreatedBy(), header.createdBy());
+        assertEquals(invoice.getCreatedAt(), header.createdAt());
+        assertEquals(invoice.getUpdatedAt(), header.updatedAt());
+    }
+    
+    private void assertItems(Invoice invoice, InvoiceSnapshotCodec.Snapshot snapshot) {
+        List<InvoiceSnapshotCodec.Item> expected = invoice.getItems().stream()
+            .map(item -> new InvoiceSnapshotCodec.Item(item.getId(),
+                item.getShipment() != null ? item.getShipment().getId() : null, item.getDescription(),
+                item.getQuantity(), item.getUnitPrice(), item.getTotalPrice()))
+            .map(this::normalized)
+            .toList();
+        assertEquals(expected, snapshot.items().stream().map(this::normalized).toList());
+        assertEquals(List.of(901L, 902L), snapshot.shipmentIds());
+    }
+    
+    /**
+     * Decimals compared by value; snapshots written before the codec do not keep their scale.
+     */
+    private InvoiceSnapshotCodec.Item normalized(InvoiceSnapshotCodec.Item item) {
+        return new InvoiceSnapshotCodec.Item(item.id(), item.shipmentId(), item.description(), item.quantity(),
+            item.unitPrice().stripTrailingZeros(), item.totalPrice().stripTrailingZeros());
+    }
+    
+    private Invoice invoice(int items) {
+        Invoice invoice = new Invoice();
+        invoice.setId(42L);
+        invoice.setInvoiceNumber("INV-0HZ8Y2K7Q4M1B");
+        invoice.setFiscalFolio("FISCAL-A-0000000042");
+        invoice.setClientName("Acme Logistics");
+        invoice.setClientEmail("billing@acme.example");
+        invoice.setInvoiceDate(LocalDate.of(2024, 3, 4));
+        invoice.setDueDate(LocalDate.of(2024, 4, 3));
+        invoice.setTaxAmount(new BigDecimal("16.00"));
+        invoice.setVersion(7);
+        invoice.setCreatedBy(1L);
+        invoice.setCreatedAt(LocalDateTime.of(2024, 3, 4, 9, 15, 30, 250_000_000));
+        invoice.setUpdatedAt(LocalDateTime.of(2024, 3, 6, 17, 2, 11));
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (int i = 0; i < items; i++) {
+            InvoiceItem item = new InvoiceItem();
+            item.setId(1000L + i);
+            item.setInvoice(invoice);
+            item.setShipment(i % 3 == 0 ? shipment(901L + i % 2) : null);
+            item.setDescription("Freight leg " + i + " - palletized dry goods");
+            item.setQuantity(1 + i % 4);
+            item.setUnitPrice(new BigDecimal("125.50"));
+            item.setTotalPrice(item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+            item.setCreatedAt(invoice.getCreatedAt());
+            invoice.getItems().add(item);
+            subtotal = subtotal.add(item.getTotalPrice());
+        }
+        invoice.setSubtotal(subtotal);
+        invoice.setTotalAmount(subtotal.add(invoice.getTaxAmount()));
+        for (long shipmentId : new long[] {901L, 902L}) {
+            InvoiceShipment link = new InvoiceShipment();
+            link.setId(shipmentId - 800);
+            link.setInvoice(invoice);
+            link.setShipment(shipment(shipmentId));
+            invoice.getShipments().add(link);
+        }
+        return invoice;
+    }
+    
+    private Shipment shipment(long id) {
+        Shipment shipment = new Shipment();
+        shipment.setId(id);
+        return shipment;
+    }
+}
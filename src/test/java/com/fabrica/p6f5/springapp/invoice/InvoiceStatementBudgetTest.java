@@ -0,0 +1,168 @@
+package com.fabrica.p6f5.springapp.invoice;
+
+import com.fabrica.p6f5.springapp.invoice.dto.CreateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceResponse;
+import com.fabrica.p6f5.springapp.invoice.dto.UpdateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceService;
+import com.fabrica.p6f5.springapp.pdf.service.PdfService;
+import com.fabrica.p6f5.springapp.support.PostgresIntegrationTest;
+import com.fabrica.p6f5.springapp.support.SqlStatementCounter;
+import com.fabrica.p6f5.springapp.support.SqlStatements;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Asserts that invoice commands run a bounded number of SQL statements whatever the
+ * number of lines and shipments, and that none of them lazy loads inside a loop.
+ * Each command is measured with 1 and with 40 lines; both must fit the same budget.
+ */
+@TestPropertySource(properties = {
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.fabrica.p6f5.springapp.support.SqlStatementCounter"
+})
+class InvoiceStatementBudgetTest extends PostgresIntegrationTest {
+    
+    private static final int CREATE_BUDGET = 15;
+    private static final int UPDATE_BUDGET = 20;
+    private static final int ISSUE_BUDGET = 12;
+    private static final int PDF_BUDGET = 6;
+    
+    @Autowired
+    private InvoiceService invoiceService;
+    
+    @Autowired
+    private PdfService pdfService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private Long userId;
+    
+    @BeforeEach
+    void loadUser() {
+        userId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE username = 'admin'", Long.class);
+    }
+    
+    @ParameterizedTest
+    @ValueSource(ints = {1, 40})
+    void createDraftInvoiceStaysWithinBudget(int lines) {
+        CreateInvoiceRequest request = createRequest(lines);
+        
+        SqlStatementCounter.start();
+        invoiceService.createDraftInvoice(request, userId);
+        SqlStatements statements = SqlStatementCounter.stop();
+        
+        statements.assertAtMost(CREATE_BUDGET, "createDraftInvoice");
+        statements.assertNoNPlusOne("createDraftInvoice");
+    }
+    
+    @ParameterizedTest
+    @ValueSource(ints = {2, 40})
+    void updateDraftInvoiceStaysWithinBudget(int lines) {
+        InvoiceResponse draft = invoiceService.createDraftInvoice(createRequest(lines), userId);
+        UpdateInvoiceRequest request = updateRequest(draft);
+        
+        SqlStatementCounter.start();
+        invoiceService.updateDraftInvoice(draft.getId(), request, userId);
+        SqlStatements statements = SqlStatementCounter.stop();
+        
+        statements.assertAtMost(UPDATE_BUDGET, "updateDraftInvoice");
+        statements.assertNoNPlusOne("updateDraftInvoice");
+    }
+    
+    @ParameterizedTest
+    @ValueSource(ints = {1, 40})
+    void issueInvoiceStaysWithinBudget(int lines) {
+        InvoiceResponse draft = invoiceService.createDraftInvoice(createRequest(lines), userId);
+        
+        SqlStatementCounter.start();
+        invoiceService.issueInvoice(draft.getId(), userId);
+        SqlStatements statements = SqlStatementCounter.stop();
+        
+        statements.assertAtMost(ISSUE_BUDGET, "issueInvoice");
+        statements.assertNoNPlusOne("issueInvoice");
+    }
+    
+    @ParameterizedTest
+    @ValueSource(ints = {1, 40})
+    void generateInvoicePdfStaysWithinBudget(int lines) {
+        InvoiceResponse draft = invoiceService.createDraftInvoice(createRequest(lines), userId);
+        invoiceService.issueInvoice(draft.getId(), userId);
+        
+        SqlStatementCounter.start();
+        pdfService.generateInvoicePDF(draft.getId(), userId);
+        SqlStatements statements = SqlStatementCounter.stop();
+        
+        statements.assertAtMost(PDF_BUDGET, "generateInvoicePDF");
+        statements.assertNoNPlusOne("generateInvoicePDF");
+    }
+    
+    /**
+     * Draft with one line and one linked shipment per line.
+     */
+    private CreateInvoiceRequest createRequest(int lines) {
+        List<Long> shipmentIds = createShipments(lines);
+        List<CreateInvoiceRequest.InvoiceItemRequest> items = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            items.add(new CreateInvoiceRequest.InvoiceItemRequest(
+                shipmentIds.get(i), "Freight " + i, 2, new BigDecimal("10.00")));
+        }
+        CreateInvoiceRequest request = new CreateInvoiceRequest();
+        request.setClientName("Budget Client");
+        request.setInvoiceDate(LocalDate.now());
+        request.setDueDate(LocalDate.now().plusDays(30));
+        request.setItems(items);
+        request.setShipmentIds(shipmentIds);
+        request.setTaxAmount(new BigDecimal("5.00"));
+        return request;
+    }
+    
+    /**
+     * Keep every line but the last, change the first line's quantity and add a line,
+     * unlink the last shipment and link a new one.
+     */
+    private UpdateInvoiceRequest updateRequest(InvoiceResponse draft) {
+        List<InvoiceResponse.InvoiceItemResponse> current = draft.getItems();
+        List<UpdateInvoiceRequest.InvoiceItemRequest> items = current.subList(0, current.size() - 1).stream()
+            .map(item -> new UpdateInvoiceRequest.InvoiceItemRequest(
+                item.getId(), item.getShipmentId(), item.getDescription(), item.getQuantity(), item.getUnitPrice()))
+            .collect(Collectors.toCollection(ArrayList::new));
+        items.get(0).setQuantity(items.get(0).getQuantity() + 1);
+        
+        Long newShipmentId = createShipments(1).get(0);
+        items.add(new UpdateInvoiceRequest.InvoiceItemRequest(null, newShipmentId, "Extra freight", 1, new BigDecimal("15.00")));
+        
+        List<Long> shipmentIds = new ArrayList<>(draft.getShipmentIds().subList(0, draft.getShipmentIds().size() - 1));
+        shipmentIds.add(newShipmentId);
+        
+        UpdateInvoiceRequest request = new UpdateInvoiceRequest();
+        request.setClientName(draft.getClientName());
+        request.setInvoiceDate(draft.getInvoiceDate());
+        request.setDueDate(draft.getDueDate());
+        request.setItems(items);
+        request.setShipmentIds(shipmentIds);
+        request.setTaxAmount(draft.getTaxAmount());
+        request.setVersion(draft.getVersion());
+        return request;
+    }
+    
+    private List<Long> createShipments(int count) {
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(jdbcTemplate.queryForObject(
+                "INSERT INTO shipments (client_name, origin_address, destination_address, total_weight, total_volume) " +
+                "VALUES ('Budget Client', 'Origin', 'Destination', 1.00, 1.00) RETURNING shipment_id",
+                Long.class));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,80 @@
+package com.fabrica.p6f5.springapp.invoice;
+
+import com.fabrica.p6f5.springapp.invoice.dto.CreateInvoiceRequest;
+import com.fabrica.p6f5.springapp.invoice.dto.InvoiceTextSearchHit;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceService;
+import com.fabrica.p6f5.springapp.invoice.service.InvoiceTextSearchService;
+import com.fabrica.p6f5.springapp.support.PostgresIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Full-text search requires every term per invoice, not per row: terms may be spread
+ * over the header and the descriptions of different items.
+ */
+class InvoiceTextSearchTest extends PostgresIntegrationTest {
+    
+    @Autowired
+    private InvoiceService invoiceService;
+    
+    @Autowired
+    private InvoiceTextSearchService invoiceTextSearchService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private Long crossFieldInvoiceId;
+    private Long clientOnlyInvoiceId;
+    
+    @BeforeEach
+    void createInvoices() {
+        Long userId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE username = 'admin'", Long.class);
+        crossFieldInvoiceId = invoiceService.createDraftInvoice(
+            request("Quillfeather Cartage", "Refrigerated tundraline haul", "Dock marmorite handling"), userId).getId();
+        clientOnlyInvoiceId = invoiceService.createDraftInvoice(
+            request("Quillfeather Cartage", "Dry goods"), userId).getId();
+    }
+    
+    @Test
+    void termsMatchAcrossHeaderAndItems() {
+        assertEquals(List.of(crossFieldInvoiceId), ids("quillfeather tundraline"));
+        assertEquals(List.of(crossFieldInvoiceId), ids("tundraline marmorite"));
+        assertEquals(List.of(crossFieldInvoiceId), ids("quillfe tundra marmo"));
+    }
+    
+    @Test
+    void everyTermMustMatchTheInvoice() {
+        assertTrue(ids("quillfeather").containsAll(List.of(crossFieldInvoiceId, clientOnlyInvoiceId)));
+        assertTrue(ids("quillfeather zygomorphic").isEmpty());
+        assertTrue(ids("dry tundraline").isEmpty());
+    }
+    
+    private List<Long> ids(String text) {
+        return invoiceTextSearchService.search(text, 100).stream()
+            .map(InvoiceTextSearchHit::getId)
+            .filter(id -> id.equals(crossFieldInvoiceId) || id.equals(clientOnlyInvoiceId))
+            .toList();
+    }
+    
+    private CreateInvoiceRequest request(String clientName, String... descriptions) {
+        CreateInvoiceRequest request = new CreateInvoiceRequest();
+        request.setClientName(clientName);
+        request.setInvoiceDate(LocalDate.now());
+        request.setDueDate(LocalDate.now().plusDays(30));
+        request.setItems(Arrays.stream(descriptions)
+            .map(description -> new CreateInvoiceRequest.InvoiceItemRequest(
+                null, description, 1, new BigDecimal("10.00")))
+            .toList());
+        return request;
+    }
+}
@@ -0,0 +1,39 @@
+package com.fabrica.p6f5.springapp.support;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Base of tests running the application against a PostgreSQL container.
+ * The container is a bean of the test context, so classes sharing a configuration also
+ * share the cached context and its database. Subclasses add their own properties with
+ * another {@link TestPropertySource}, which is merged with these.
+ */
+@SpringBootTest
+@Import(PostgresIntegrationTest.PostgresContainerConfig.class)
+@TestPropertySource(
+    locations = "classpath:application.properties.example",
+    properties = {
+        "spring.jpa.show-sql=false",
+        "jwt.secret=c3RhdGVtZW50LWJ1ZGdldC10ZXN0LXNlY3JldC1rZXktd2l0aC1lbm91Z2gtYml0cw==",
+        "logging.level.com.fabrica.p6f5.springapp=INFO",
+        "logging.level.org.springframework.security=INFO"
+    })
+public abstract class PostgresIntegrationTest {
+    
+    @TestConfiguration(proxyBeanMethods = false)
+    static class PostgresContainerConfig {
+        
+        @Bean
+        @ServiceConnection
+        PostgreSQLContainer<?> postgres() {
+            return new PostgreSQLContainer<>("postgres:16-alpine")
+                .withInitScript("db/test-users.sql");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.fabrica.p6f5.springapp.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hibernate statement inspector recording the SQL prepared on the current thread.
+ * Registered through hibernate.session_factory.statement_inspector; wrap the code
+ * under test in {@link #start()} and {@link #stop()}. A JDBC batch is prepared once,
+ * so it counts as one statement.
+ */
+public class SqlStatementCounter implements StatementInspector {
+    
+    private static final ThreadLocal<List<String>> STATEMENTS = new ThreadLocal<>();
+    
+    /**
+     * Start recording statements on the current thread.
+     */
+    public static void start() {
+        STATEMENTS.set(new ArrayList<>());
+    }
+    
+    /**
+     * Stop recording and return the statements recorded since {@link #start()}.
+     */
+    public static SqlStatements stop() {
+        List<String> statements = STATEMENTS.get();
+        STATEMENTS.remove();
+        return new SqlStatements(statements != null ? statements : List.of());
+    }
+    
+    @Override
+    public String inspect(String sql) {
+        List<String> statements = STATEMENTS.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+}
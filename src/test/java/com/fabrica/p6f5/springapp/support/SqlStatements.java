@@ -0,0 +1,53 @@
+package com.fabrica.p6f5.springapp.support;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SQL statements recorded by {@link SqlStatementCounter} with budget and N+1 assertions.
+ */
+public record SqlStatements(List<String> statements) {
+    
+    /**
+     * An identical SELECT run this many times within one command is a lazy load in a loop.
+     */
+    public static final int N_PLUS_ONE_THRESHOLD = 3;
+    
+    public int count() {
+        return statements.size();
+    }
+    
+    /**
+     * Assert that the command ran at most the given number of statements.
+     */
+    public void assertAtMost(int budget, String command) {
+        assertThat(count())
+            .as("SQL statements of %s:%n%s", command, String.join(System.lineSeparator(), statements))
+            .isLessThanOrEqualTo(budget);
+    }
+    
+    /**
+     * Assert that no SELECT was repeated N_PLUS_ONE_THRESHOLD times or more.
+     * Sequence calls are excluded, as pooled id allocation repeats them by design.
+     */
+    public void assertNoNPlusOne(String command) {
+        Map<String, Long> repeated = statements.stream()
+            .map(SqlStatements::normalize)
+            .filter(sql -> sql.startsWith("select") && !sql.contains("nextval("))
+            .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+            .entrySet().stream()
+            .filter(entry -> entry.getValue() >= N_PLUS_ONE_THRESHOLD)
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        assertThat(repeated)
+            .as("SELECT statements repeated in a loop by %s", command)
+            .isEmpty();
+    }
+    
+    private static String normalize(String sql) {
+        return sql.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+}
@@ -0,0 +1,82 @@
+package com.fabrica.p6f5.springapp.support;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transaction manager without a resource. It runs the full Spring transaction lifecycle,
+ * including synchronization callbacks and suspension for REQUIRES_NEW, and counts
+ * commits and rollbacks, so transaction-bound code can be tested without a database.
+ */
+public class StubTransactionManager extends AbstractPlatformTransactionManager {
+    
+    private final ThreadLocal<StubTransaction> current = new ThreadLocal<>();
+    private final AtomicInteger commits = new AtomicInteger();
+    private final AtomicInteger rollbacks = new AtomicInteger();
+    
+    public int commits() {
+        return commits.get();
+    }
+    
+    public int rollbacks() {
+        return rollbacks.get();
+    }
+    
+    @Override
+    protected Object doGetTransaction() {
+        return new StubTransaction(current.get() != null);
+    }
+    
+    @Override
+    protected boolean isExistingTransaction(Object transaction) {
+        return ((StubTransaction) transaction).existing;
+    }
+    
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        current.set((StubTransaction) transaction);
+    }
+    
+    @Override
+    protected Object doSuspend(Object transaction) {
+        StubTransaction suspended = current.get();
+        current.remove();
+        return suspended;
+    }
+    
+    @Override
+    protected void doResume(Object transaction, Object suspendedResources) {
+        current.set((StubTransaction) suspendedResources);
+    }
+    
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        commits.incrementAndGet();
+    }
+    
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+        rollbacks.incrementAndGet();
+    }
+    
+    @Override
+    protected void doSetRollbackOnly(DefaultTransactionStatus status) {
+    }
+    
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        current.remove();
+    }
+    
+    private static final class StubTransaction {
+        
+        private final boolean existing;
+        
+        private StubTransaction(boolean existing) {
+            this.existing = existing;
+        }
+    }
+}